@@ -0,0 +1,94 @@
+package com.tibame.app_generator.benchmarks;
+
+import com.tibame.app_generator.enums.AgentType;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds synthetic {@code Workflow.graphData} in the shape the canvas saves it.
+ * <p>
+ * Nodes are numbered in a random permutation of a hidden topological order and every edge points
+ * forward in that order, so the graph is acyclic unless a back edge is requested explicitly.
+ */
+final class GraphGenerator {
+
+    private static final AgentType[] AGENT_TYPES = AgentType.values();
+
+    private GraphGenerator() {
+    }
+
+    /**
+     * @param nodeCount number of nodes
+     * @param density   average number of outgoing edges per node
+     * @param cyclic    whether to close a cycle between the last two nodes, so that a topological sort
+     *                  drains every other node before it finds the cycle
+     * @param seed      random seed, so that every fork measures the same graph
+     */
+    static Map<String, Object> generate(int nodeCount, double density, boolean cyclic, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+
+        int[] order = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        for (int i = nodeCount - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        List<Map<String, Object>> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            nodes.add(node("n" + order[i], AGENT_TYPES[i % AGENT_TYPES.length], i));
+        }
+
+        List<Map<String, Object>> edges = new ArrayList<>();
+        // A chain through the hidden order keeps the graph connected
+        for (int i = 1; i < nodeCount; i++) {
+            edges.add(edge("n" + order[i - 1], "n" + order[i]));
+        }
+        long extraEdges = Math.max(0, Math.round(nodeCount * density) - (nodeCount - 1));
+        for (long e = 0; e < extraEdges && nodeCount > 2; e++) {
+            int from = random.nextInt(nodeCount - 1);
+            // Mostly local edges, like the fan-out / fan-in shapes templates produce
+            int span = 1 + random.nextInt(Math.min(32, nodeCount - 1 - from));
+            edges.add(edge("n" + order[from], "n" + order[from + span]));
+        }
+        if (cyclic && nodeCount > 1) {
+            edges.add(edge("n" + order[nodeCount - 1], "n" + order[nodeCount - 2]));
+        }
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", nodes);
+        graphData.put("edges", edges);
+        return graphData;
+    }
+
+    private static Map<String, Object> node(String id, AgentType agentType, int position) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType.name());
+        data.put("label", agentType.name() + " " + id);
+        Map<String, Object> coordinates = new LinkedHashMap<>();
+        coordinates.put("x", (position % 100) * 200);
+        coordinates.put("y", (position / 100) * 120);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("type", "agentNode");
+        node.put("position", coordinates);
+        node.put("data", data);
+        return node;
+    }
+
+    private static Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
@@ -0,0 +1,97 @@
+package com.tibame.app_generator.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.service.workflow.WorkflowGraphValidator;
+import com.tibame.app_generator.service.workflow.WorkflowPlan;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Planning cost of a workflow run: reading {@code graphData} back from JSON, validating it and
+ * compiling it into a {@link WorkflowPlan}, which includes the topological sort and cycle detection.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar WorkflowPlanningBenchmark}; narrow the matrix with
+ * e.g. {@code -p nodeCount=10000 -p density=4}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkflowPlanningBenchmark {
+
+    private static final TypeReference<Map<String, Object>> GRAPH_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"10", "100", "1000", "10000", "50000"})
+    public int nodeCount;
+
+    /** Average outgoing edges per node; 1 is a plain chain. */
+    @Param({"1", "2", "4"})
+    public double density;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final UUID workflowId = UUID.randomUUID();
+    private final ZonedDateTime version = ZonedDateTime.now();
+
+    private Map<String, Object> acyclicGraph;
+    private Map<String, Object> cyclicGraph;
+    private byte[] acyclicJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        acyclicGraph = GraphGenerator.generate(nodeCount, density, false, 42L);
+        cyclicGraph = GraphGenerator.generate(nodeCount, density, true, 42L);
+        acyclicJson = objectMapper.writeValueAsBytes(acyclicGraph);
+    }
+
+    @Benchmark
+    public WorkflowPlan compile() {
+        return WorkflowPlan.compile(workflowId, version, acyclicGraph);
+    }
+
+    /**
+     * A cycle is only noticed once the sort has drained every node it can reach. The generated cycle
+     * closes between the last two nodes, so all others are drained first, which is close to the worst
+     * case of a rejected graph.
+     */
+    @Benchmark
+    public void detectCycle(Blackhole blackhole) {
+        try {
+            blackhole.consume(WorkflowPlan.compile(workflowId, version, cyclicGraph));
+        } catch (IllegalStateException expected) {
+            blackhole.consume(expected);
+        }
+    }
+
+    @Benchmark
+    public List<String> validate() {
+        return WorkflowGraphValidator.validate(acyclicGraph);
+    }
+
+    /**
+     * Mirrors Hibernate's JSON mapping of {@code Workflow.graphData}, which goes through Jackson as well.
+     */
+    @Benchmark
+    public Map<String, Object> deserializeGraphData() throws Exception {
+        return objectMapper.readValue(acyclicJson, GRAPH_TYPE);
+    }
+
+    /**
+     * Everything a run start pays for a workflow whose plan is not cached yet.
+     */
+    @Benchmark
+    public WorkflowPlan deserializeValidateAndCompile() throws Exception {
+        Map<String, Object> graphData = objectMapper.readValue(acyclicJson, GRAPH_TYPE);
+        WorkflowGraphValidator.validate(graphData);
+        return WorkflowPlan.compile(workflowId, version, graphData);
+    }
+}
@@ -0,0 +1,117 @@
+package com.tibame.app_generator.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Named executors per workload class. {@code @Async} methods select theirs by bean name;
+ * unqualified {@code @Async} methods run on the workflow executor.
+ * <p>
+ * Pool size and queue depth are published by Spring Boot's executor metrics; the time tasks spend
+ * queued before a thread picks them up is recorded here as {@code executor.wait}.
+ */
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class AsyncConfig implements AsyncConfigurer {
+
+    private final ExecutorProperties executorProperties;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Executor running workflow runs and their individual nodes, so that independent branches
+     * of the same run can execute in parallel.
+     */
+    @Bean(name = "workflowTaskExecutor")
+    public AsyncTaskExecutor workflowTaskExecutor() {
+        return createExecutor("workflow-", executorProperties.getRuns());
+    }
+
+    @Bean(name = "analysisTaskExecutor")
+    public AsyncTaskExecutor analysisTaskExecutor() {
+        return createExecutor("analysis-", executorProperties.getAnalysis());
+    }
+
+    @Bean(name = "importTaskExecutor")
+    public AsyncTaskExecutor importTaskExecutor() {
+        return createExecutor("import-", executorProperties.getImports());
+    }
+
+    @Bean(name = "llmCallExecutor")
+    public AsyncTaskExecutor llmCallExecutor() {
+        return createExecutor("llm-call-", executorProperties.getLlm());
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return workflowTaskExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) -> log.error("Uncaught exception in async method {}", method.getName(), ex);
+    }
+
+    private AsyncTaskExecutor createExecutor(String threadNamePrefix, ExecutorProperties.Pool pool) {
+        if (pool.isVirtualThreads()) {
+            try {
+                SimpleAsyncTaskExecutor virtualThreads = new SimpleAsyncTaskExecutor(threadNamePrefix);
+                virtualThreads.setVirtualThreads(true);
+                log.info("Executor {} uses virtual threads, at most {} at a time", threadNamePrefix, pool.getMaxSize());
+                return new BoundedTaskExecutor(threadNamePrefix, virtualThreads, waitTimer(threadNamePrefix), pool);
+            } catch (UnsupportedOperationException e) {
+                log.warn("Virtual threads are not supported on this JDK, executor {} falls back to a thread pool", threadNamePrefix);
+            }
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(pool.getCoreSize());
+        executor.setMaxPoolSize(pool.getMaxSize());
+        executor.setQueueCapacity(pool.getQueueCapacity());
+        executor.setKeepAliveSeconds(pool.getKeepAliveSeconds());
+        executor.setRejectedExecutionHandler(toHandler(pool.getRejectionPolicy()));
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(waitTimer(threadNamePrefix));
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    private TaskDecorator waitTimer(String threadNamePrefix) {
+        Timer timer = Timer.builder("executor.wait")
+                .description("Time tasks spend queued before they start executing")
+                .tag("name", threadNamePrefix.substring(0, threadNamePrefix.length() - 1))
+                .register(meterRegistry);
+        return runnable -> {
+            long submittedAt = System.nanoTime();
+            return () -> {
+                timer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+                runnable.run();
+            };
+        };
+    }
+
+    private RejectedExecutionHandler toHandler(ExecutorProperties.RejectionPolicy policy) {
+        return switch (policy) {
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+            case DISCARD -> new ThreadPoolExecutor.DiscardPolicy();
+            case DISCARD_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+            case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+        };
+    }
+}
@@ -0,0 +1,70 @@
+package com.tibame.app_generator.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds a thread-per-task executor, e.g. one starting virtual threads, like the pool it replaces: at most
+ * {@code maxSize} tasks run at once, up to {@code queueCapacity} more wait for a slot on their own thread,
+ * and beyond that the rejection policy applies. Submitting never blocks, so tasks can keep submitting
+ * work to the executor they run on.
+ */
+@Slf4j
+public class BoundedTaskExecutor implements AsyncTaskExecutor {
+
+    private final String name;
+    private final TaskExecutor delegate;
+    private final TaskDecorator taskDecorator;
+    private final ExecutorProperties.RejectionPolicy rejectionPolicy;
+    private final Semaphore running;
+    private final Semaphore accepted;
+
+    public BoundedTaskExecutor(String name, TaskExecutor delegate, TaskDecorator taskDecorator, ExecutorProperties.Pool pool) {
+        this.name = name;
+        this.delegate = delegate;
+        this.taskDecorator = taskDecorator;
+        this.rejectionPolicy = pool.getRejectionPolicy();
+        this.running = new Semaphore(pool.getMaxSize());
+        this.accepted = new Semaphore(pool.getMaxSize() + pool.getQueueCapacity());
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        Runnable decorated = taskDecorator.decorate(task);
+        if (!accepted.tryAcquire()) {
+            reject(decorated);
+            return;
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    running.acquireUninterruptibly();
+                    try {
+                        decorated.run();
+                    } finally {
+                        running.release();
+                    }
+                } finally {
+                    accepted.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            accepted.release();
+            throw e;
+        }
+    }
+
+    private void reject(Runnable task) {
+        switch (rejectionPolicy) {
+            case CALLER_RUNS -> task.run();
+            case ABORT -> throw new TaskRejectedException("Executor " + name + " is saturated");
+            // Waiting tasks already hold their threads, so the newest task is the one dropped
+            case DISCARD, DISCARD_OLDEST -> log.warn("Executor {} is saturated, task discarded", name);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.tibame.app_generator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizing of the executors backing {@code @Async} work, one per workload class,
+ * so that a burst in one class (e.g. imports) cannot starve another (e.g. workflow runs).
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "platform.executor")
+public class ExecutorProperties {
+
+    /**
+     * Workflow runs: node execution and retries.
+     */
+    private Pool runs = new Pool(8, 16, 200, RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * Project source analysis.
+     */
+    private Pool analysis = new Pool(2, 4, 50, RejectionPolicy.CALLER_RUNS);
+
+    /**
+     * Git imports of external repositories.
+     */
+    private Pool imports = new Pool(2, 4, 100, RejectionPolicy.ABORT);
+
+    /**
+     * Outgoing LLM requests. Workers wait on these calls instead of making them, so a cancelled
+     * call releases its worker immediately. A saturated pool rejects the call, failing the task into
+     * its retry, rather than running it on the worker where it could not be aborted.
+     */
+    private Pool llm = new Pool(8, 32, 100, RejectionPolicy.ABORT);
+
+    public enum RejectionPolicy {
+        /**
+         * Reject the task with a TaskRejectedException.
+         */
+        ABORT,
+        /**
+         * Run the task on the submitting thread, which slows the submitter down.
+         */
+        CALLER_RUNS,
+        /**
+         * Silently drop the task.
+         */
+        DISCARD,
+        /**
+         * Drop the oldest queued task to make room.
+         */
+        DISCARD_OLDEST
+    }
+
+    @Data
+    public static class Pool {
+        private Integer coreSize;
+        private Integer maxSize;
+        private Integer queueCapacity;
+        private RejectionPolicy rejectionPolicy;
+        private Integer keepAliveSeconds = 60;
+
+        /**
+         * Run each task on a new virtual thread instead of a pooled platform thread (requires JDK 21+).
+         * At most {@code maxSize} tasks run at once and {@code queueCapacity} more wait for a slot, beyond
+         * which the rejection policy applies, as for the pool. Falls back to the pool on older JDKs.
+         */
+        private boolean virtualThreads = false;
+
+        public Pool() {
+        }
+
+        public Pool(Integer coreSize, Integer maxSize, Integer queueCapacity, RejectionPolicy rejectionPolicy) {
+            this.coreSize = coreSize;
+            this.maxSize = maxSize;
+            this.queueCapacity = queueCapacity;
+            this.rejectionPolicy = rejectionPolicy;
+        }
+    }
+}
@@ -1,13 +1,24 @@
 package com.tibame.app_generator.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.service.llm.mock.MockChatLanguageModel;
+import com.tibame.app_generator.service.llm.routing.LlmBackend;
+import com.tibame.app_generator.service.llm.routing.LlmRouter;
+import com.tibame.app_generator.service.llm.routing.RoutingChatLanguageModel;
+import com.tibame.app_generator.service.llm.routing.RoutingStreamingChatLanguageModel;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
+import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @RequiredArgsConstructor
@@ -16,31 +27,103 @@ public class LlmConfig {
 
     private final LlmProperties llmProperties;
 
+    /**
+     * Backends from {@code platform.llm.providers}, or the single backend described by the top-level
+     * {@code platform.llm} properties when no providers are listed.
+     */
     @Bean
-    public ChatLanguageModel chatLanguageModel() {
-        log.info("Initializing ChatLanguageModel with provider: {}", llmProperties.getProvider());
-
-        // Currently defaulting to OpenAI.
-        // In the future, we can switch based on llmProperties.getProvider()
-        // e.g. if ("azure".equalsIgnoreCase(llmProperties.getProvider())) ...
+    public LlmRouter llmRouter(PipelineMetrics metrics, ObjectMapper objectMapper) {
+        List<LlmProperties.Provider> providers = llmProperties.getProviders();
+        if (providers.isEmpty()) {
+            LlmProperties.Provider single = new LlmProperties.Provider();
+            single.setName(llmProperties.getProvider());
+            single.setType(llmProperties.getProvider());
+            single.setApiKey(llmProperties.getApiKey());
+            single.setBaseUrl(llmProperties.getBaseUrl());
+            single.setMaxRetries(llmProperties.getMaxRetries());
+            providers = List.of(single);
+        }
 
-        String apiKey = llmProperties.getApiKey();
-        if (apiKey == null || apiKey.isBlank()) {
-            log.warn("No API key provided for LLM. Using 'demo' key which might not work.");
-            apiKey = "demo";
+        List<LlmBackend> backends = new ArrayList<>(providers.size());
+        for (LlmProperties.Provider provider : providers) {
+            if ("mock".equalsIgnoreCase(provider.getType())) {
+                log.warn("Initializing mock LLM backend {}; responses are generated, not produced by a model",
+                        provider.getName());
+                MockChatLanguageModel mock = new MockChatLanguageModel(llmProperties.getMock(), objectMapper);
+                backends.add(LlmRouter.backend(provider.getName(), mock, mock,
+                        llmProperties.getRouting(), provider.getRequestsPerMinute()));
+                continue;
+            }
+            if (!"openai".equalsIgnoreCase(provider.getType())) {
+                throw new IllegalStateException("Unsupported LLM provider type '" + provider.getType()
+                        + "' for backend " + provider.getName() + "; use an OpenAI-compatible endpoint or mock");
+            }
+            log.info("Initializing LLM backend {} ({}, model {})", provider.getName(),
+                    provider.getBaseUrl() != null ? provider.getBaseUrl() : "default endpoint", modelName(provider));
+            backends.add(LlmRouter.backend(provider.getName(), chatModel(provider), streamingModel(provider),
+                    llmProperties.getRouting(), provider.getRequestsPerMinute()));
         }
+        return new LlmRouter(backends, metrics);
+    }
+
+    @Bean
+    public ChatLanguageModel chatLanguageModel(LlmRouter llmRouter) {
+        return new RoutingChatLanguageModel(llmRouter);
+    }
+
+    /**
+     * Used when {@code platform.llm.streaming.enabled} is set.
+     * Streaming requests are not retried by the client; the router fails them over before the first token.
+     */
+    @Bean
+    public StreamingChatLanguageModel streamingChatLanguageModel(LlmRouter llmRouter) {
+        return new RoutingStreamingChatLanguageModel(llmRouter);
+    }
 
+    private ChatLanguageModel chatModel(LlmProperties.Provider provider) {
         OpenAiChatModel.OpenAiChatModelBuilder builder = OpenAiChatModel.builder()
-                .apiKey(apiKey)
-                .modelName(llmProperties.getModelName())
-                .temperature(llmProperties.getTemperature())
-                .timeout(Duration.ofSeconds(llmProperties.getTimeout()))
-                .maxRetries(llmProperties.getMaxRetries());
-
-        if (llmProperties.getBaseUrl() != null && !llmProperties.getBaseUrl().isBlank()) {
-            builder.baseUrl(llmProperties.getBaseUrl());
+                .apiKey(apiKey(provider))
+                .modelName(modelName(provider))
+                .temperature(provider.getTemperature() != null ? provider.getTemperature() : llmProperties.getTemperature())
+                .timeout(timeout(provider))
+                .maxRetries(provider.getMaxRetries());
+
+        if (provider.getBaseUrl() != null && !provider.getBaseUrl().isBlank()) {
+            builder.baseUrl(provider.getBaseUrl());
         }
 
         return builder.build();
     }
+
+    private StreamingChatLanguageModel streamingModel(LlmProperties.Provider provider) {
+        OpenAiStreamingChatModel.OpenAiStreamingChatModelBuilder builder = OpenAiStreamingChatModel.builder()
+                .apiKey(apiKey(provider))
+                .modelName(modelName(provider))
+                .temperature(provider.getTemperature() != null ? provider.getTemperature() : llmProperties.getTemperature())
+                .timeout(timeout(provider));
+
+        if (provider.getBaseUrl() != null && !provider.getBaseUrl().isBlank()) {
+            builder.baseUrl(provider.getBaseUrl());
+        }
+
+        return builder.build();
+    }
+
+    private String modelName(LlmProperties.Provider provider) {
+        return provider.getModelName() != null ? provider.getModelName() : llmProperties.getModelName();
+    }
+
+    private Duration timeout(LlmProperties.Provider provider) {
+        return Duration.ofSeconds(provider.getTimeout() != null ? provider.getTimeout() : llmProperties.getTimeout());
+    }
+
+    private String apiKey(LlmProperties.Provider provider) {
+        String apiKey = provider.getApiKey();
+        if (apiKey == null || apiKey.isBlank()) {
+            // Local OpenAI-compatible servers usually accept any key
+            log.warn("No API key provided for LLM backend {}. Using 'demo' key which might not work.", provider.getName());
+            apiKey = "demo";
+        }
+        return apiKey;
+    }
 }
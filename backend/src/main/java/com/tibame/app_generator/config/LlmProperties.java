@@ -1,9 +1,15 @@
 package com.tibame.app_generator.config;
 
+import com.tibame.app_generator.enums.AgentType;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Component
 @ConfigurationProperties(prefix = "platform.llm")
@@ -42,4 +48,285 @@ public class LlmProperties {
      * Max retries for failed requests.
      */
     private Integer maxRetries = 3;
+
+    /**
+     * Backends requests are routed between. When empty, the single backend described by the
+     * properties above is used.
+     */
+    private List<Provider> providers = new ArrayList<>();
+
+    /**
+     * Backend selection, failover and circuit breaking.
+     */
+    private Routing routing = new Routing();
+
+    /**
+     * Client-side limit on requests and tokens sent per minute.
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * Token budget of agent prompts and compaction of oversized inputs.
+     */
+    private PromptBudget promptBudget = new PromptBudget();
+
+    /**
+     * Memoization of agent results.
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * Streaming of model output to the task topic while it is generated.
+     */
+    private Streaming streaming = new Streaming();
+
+    /**
+     * Versioned prompt templates published in the database.
+     */
+    private PromptTemplates promptTemplates = new PromptTemplates();
+
+    /**
+     * Behaviour of backends of type {@code mock}, an in-process stand-in for load tests without a provider.
+     */
+    private Mock mock = new Mock();
+
+    /**
+     * Targeted repair of agent output that fails to parse or does not match the expected structure.
+     */
+    private Repair repair = new Repair();
+
+    @Data
+    public static class Provider {
+        /**
+         * Name used in logs and metrics.
+         */
+        private String name;
+
+        /**
+         * Provider type: {@code openai} for OpenAI-compatible APIs, which includes local servers such as
+         * Ollama, vLLM or LM Studio through {@code base-url}, or {@code mock} for generated responses.
+         */
+        private String type = "openai";
+
+        private String apiKey;
+
+        private String baseUrl;
+
+        /**
+         * Defaults to {@code platform.llm.model-name}.
+         */
+        private String modelName;
+
+        /**
+         * Defaults to {@code platform.llm.temperature}.
+         */
+        private Double temperature;
+
+        /**
+         * Timeout in seconds, defaults to {@code platform.llm.timeout}.
+         */
+        private Integer timeout;
+
+        /**
+         * Retries within this backend before the router fails over to the next one.
+         */
+        private Integer maxRetries = 0;
+
+        /**
+         * Request budget of this backend per minute, 0 for unlimited. The router prefers backends
+         * with more budget left and skips those that have none.
+         */
+        private Integer requestsPerMinute = 0;
+    }
+
+    @Data
+    public static class Routing {
+        /**
+         * Consecutive failures after which a backend's circuit opens.
+         */
+        private Integer failureThreshold = 5;
+
+        /**
+         * How long an open circuit keeps a backend out before a trial request, in seconds.
+         */
+        private Integer openDurationSeconds = 30;
+
+        /**
+         * How long a backend answering with a rate-limit error is skipped, in seconds.
+         */
+        private Integer throttleCooldownSeconds = 20;
+
+        /**
+         * Number of recent latencies the median is computed over.
+         */
+        private Integer latencyWindow = 64;
+    }
+
+    @Data
+    public static class RateLimit {
+        /**
+         * Queue LLM calls once the per-minute budget is used up. Off by default.
+         */
+        private boolean enabled = false;
+
+        private Integer requestsPerMinute = 500;
+
+        private Integer tokensPerMinute = 300000;
+
+        /**
+         * Tokens reserved for a response until the provider reports the actual usage.
+         */
+        private Integer estimatedOutputTokens = 1500;
+    }
+
+    @Data
+    public static class PromptBudget {
+        /**
+         * Compact agent inputs exceeding their budget.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Max estimated tokens of a prompt, template included, for agents without their own limit.
+         */
+        private Integer defaultMaxInputTokens = 24000;
+
+        /**
+         * Max estimated prompt tokens by agent type.
+         */
+        private Map<AgentType, Integer> maxInputTokens = new EnumMap<>(AgentType.class);
+
+        /**
+         * Items kept of a list that has to be truncated.
+         */
+        private Integer maxListItems = 20;
+
+        /**
+         * Length texts are summarised or truncated to.
+         */
+        private Integer maxTextChars = 4000;
+
+        /**
+         * Let the LLM summarise long texts before truncating them. Costs an extra call per text.
+         */
+        private boolean summarize = false;
+    }
+
+    @Data
+    public static class Cache {
+        /**
+         * Serve identical agent calls from the result cache. Off by default, and bypassed when calls are
+         * routed across several providers or go to the mock backend.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long a cached result stays valid, in hours.
+         */
+        private Integer ttlHours = 168;
+
+        /**
+         * Max number of cached results; the least recently used ones are evicted beyond it.
+         */
+        private Integer maxEntries = 10000;
+    }
+
+    @Data
+    public static class Streaming {
+        /**
+         * Use the provider's streaming API and forward output deltas over the WebSocket. Off by default.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Min interval between two delta events of a task, in milliseconds; tokens arriving in between are batched.
+         */
+        private Integer flushIntervalMs = 250;
+    }
+
+    @Data
+    public static class PromptTemplates {
+        /**
+         * How often active template versions are reloaded from prompt_template_versions, in milliseconds.
+         */
+        private Long reloadIntervalMs = 30000L;
+    }
+
+    @Data
+    public static class Repair {
+        /**
+         * When disabled, invalid output fails the task right away and is generated again by a retry.
+         */
+        private boolean enabled = true;
+        /**
+         * Max repair calls per response before it is rejected.
+         */
+        private Integer maxAttempts = 2;
+        /**
+         * Max size of the fragment around a syntax error that is sent back to the model, in characters.
+         */
+        private Integer maxFragmentChars = 2000;
+    }
+
+    @Data
+    public static class Mock {
+
+        public enum LatencyDistribution {
+            FIXED,
+            UNIFORM,
+            LOGNORMAL
+        }
+
+        /**
+         * Distribution of the latency until the first token. FIXED always waits the median, UNIFORM
+         * between min and max, LOGNORMAL around the median with the given 99th percentile.
+         */
+        private LatencyDistribution latencyDistribution = LatencyDistribution.LOGNORMAL;
+
+        private Integer latencyMinMs = 100;
+
+        private Integer latencyMedianMs = 800;
+
+        private Integer latencyP99Ms = 4000;
+
+        /**
+         * Upper bound of every distribution.
+         */
+        private Integer latencyMaxMs = 20000;
+
+        /**
+         * Generation speed after the first token; blocking calls take the same total time as streaming ones.
+         */
+        private Integer tokensPerSecond = 200;
+
+        /**
+         * Tokens per streamed chunk.
+         */
+        private Integer chunkTokens = 4;
+
+        /**
+         * Entries of each list in PM, SA and QA output.
+         */
+        private Integer listItems = 5;
+
+        /**
+         * Files in PG output.
+         */
+        private Integer files = 5;
+
+        /**
+         * Approximate size of each generated file, in characters.
+         */
+        private Integer fileChars = 2000;
+
+        /**
+         * Share of requests failing with a server error, between 0 and 1.
+         */
+        private Double failureRate = 0.0;
+
+        /**
+         * Share of requests rejected with HTTP 429, between 0 and 1.
+         */
+        private Double rateLimitRate = 0.0;
+    }
 }
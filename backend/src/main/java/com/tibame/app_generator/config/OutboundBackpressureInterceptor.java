@@ -0,0 +1,177 @@
+package com.tibame.app_generator.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the messages queued on the client outbound channel per session and keeps slow sessions from
+ * piling up progress updates.
+ * <p>
+ * Messages whose {@code event-type} header is PROGRESS can be superseded by a newer PROGRESS message of the
+ * same task on the same destination, identified by the {@code task-id} header. When more than
+ * {@code maxQueuedProgressPerSession} of them are queued for a session, the oldest one that has such a newer
+ * message behind it is skipped when its turn comes; the latest progress of every task is always delivered,
+ * as are all other messages. Log lines carried by a skipped message are not resent, so clients re-fetch
+ * the task log once the task finishes. The queue depth a message found when it was queued is recorded in
+ * {@code websocket.session.queue.depth}, next to gauges of the deepest and total queue.
+ */
+@Component
+public class OutboundBackpressureInterceptor implements ExecutorChannelInterceptor {
+
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String TASK_ID_HEADER = "task-id";
+    private static final String DROPPABLE_EVENT_TYPE = "PROGRESS";
+
+    private final WebSocketProperties webSocketProperties;
+    private final Map<String, SessionQueue> sessions = new ConcurrentHashMap<>();
+    private final DistributionSummary queueDepth;
+    private final Counter dropped;
+
+    public OutboundBackpressureInterceptor(WebSocketProperties webSocketProperties, MeterRegistry meterRegistry) {
+        this.webSocketProperties = webSocketProperties;
+        this.queueDepth = DistributionSummary.builder("websocket.session.queue.depth")
+                .description("Messages already queued for a session when another one is queued for it")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.dropped = Counter.builder("websocket.messages.dropped")
+                .description("Progress messages skipped because newer ones were queued for a slow session")
+                .register(meterRegistry);
+        Gauge.builder("websocket.session.queue.depth.max", this, OutboundBackpressureInterceptor::maxDepth)
+                .description("Messages queued for the most backed-up session")
+                .register(meterRegistry);
+        Gauge.builder("websocket.session.queue.depth.total", this, OutboundBackpressureInterceptor::totalDepth)
+                .description("Messages queued for all sessions")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return message;
+        }
+        SessionQueue queue = sessions.computeIfAbsent(sessionId, id -> new SessionQueue());
+        synchronized (queue) {
+            queueDepth.record(queue.depth);
+            queue.depth++;
+            String stream = droppableStream(message);
+            if (stream != null) {
+                queue.progress.computeIfAbsent(stream, key -> new ArrayDeque<>()).addLast(message);
+                if (++queue.queuedProgress > webSocketProperties.getMaxQueuedProgressPerSession()) {
+                    queue.supersedeOldest(stream);
+                }
+            }
+        }
+        return message;
+    }
+
+    @Override
+    public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        SessionQueue queue = sessionId != null ? sessions.get(sessionId) : null;
+        if (queue == null) {
+            return message;
+        }
+        synchronized (queue) {
+            queue.depth = Math.max(0, queue.depth - 1);
+            if (queue.superseded.remove(message)) {
+                dropped.increment();
+                return null;
+            }
+            String stream = droppableStream(message);
+            if (stream != null) {
+                queue.remove(stream, message);
+            }
+        }
+        return message;
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        sessions.remove(event.getSessionId());
+    }
+
+    /**
+     * Returns the destination and task a PROGRESS message reports on, or null for messages that are never dropped.
+     */
+    private static String droppableStream(Message<?> message) {
+        Object nativeHeaders = message.getHeaders().get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+        if (nativeHeaders instanceof Map<?, ?> headers
+                && DROPPABLE_EVENT_TYPE.equals(first(headers.get(EVENT_TYPE_HEADER)))) {
+            Object taskId = first(headers.get(TASK_ID_HEADER));
+            return taskId != null ? SimpMessageHeaderAccessor.getDestination(message.getHeaders()) + "|" + taskId : null;
+        }
+        return null;
+    }
+
+    private static Object first(Object values) {
+        return values instanceof List<?> list && !list.isEmpty() ? list.get(0) : null;
+    }
+
+    private double maxDepth() {
+        int max = 0;
+        for (SessionQueue queue : sessions.values()) {
+            max = Math.max(max, queue.depth);
+        }
+        return max;
+    }
+
+    private double totalDepth() {
+        long total = 0;
+        for (SessionQueue queue : sessions.values()) {
+            total += queue.depth;
+        }
+        return total;
+    }
+
+    private static final class SessionQueue {
+        int depth;
+        int queuedProgress;
+        // Queued progress messages per destination and task, oldest first, and those to skip; compared by
+        // identity, since the broker creates a separate message per subscriber
+        final Map<String, Deque<Message<?>>> progress = new HashMap<>();
+        final Set<Message<?>> superseded = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        // Skips the oldest message of a task that has a newer one queued, preferring the task just updated
+        void supersedeOldest(String stream) {
+            Deque<Message<?>> messages = progress.get(stream);
+            if (messages.size() < 2) {
+                messages = null;
+                for (Deque<Message<?>> candidate : progress.values()) {
+                    if (candidate.size() > 1) {
+                        messages = candidate;
+                        break;
+                    }
+                }
+            }
+            if (messages != null) {
+                superseded.add(messages.pollFirst());
+                queuedProgress--;
+            }
+        }
+
+        void remove(String stream, Message<?> message) {
+            Deque<Message<?>> messages = progress.get(stream);
+            if (messages != null && messages.removeIf(queued -> queued == message)) {
+                queuedProgress--;
+                if (messages.isEmpty()) {
+                    progress.remove(stream);
+                }
+            }
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package com.tibame.app_generator.config;
 
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.TaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
 @Configuration
 @EnableWebSocketMessageBroker
+@RequiredArgsConstructor
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final WebSocketProperties webSocketProperties;
+    private final OutboundBackpressureInterceptor outboundBackpressureInterceptor;
+
+    private TaskScheduler messageBrokerTaskScheduler;
+
+    // The broker's own scheduler, which is created by this configuration and therefore injected lazily
+    @Autowired
+    public void setMessageBrokerTaskScheduler(@Lazy @Qualifier("messageBrokerTaskScheduler") TaskScheduler taskScheduler) {
+        this.messageBrokerTaskScheduler = taskScheduler;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        long heartbeat = webSocketProperties.getHeartbeatIntervalMs();
+        config.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{heartbeat, heartbeat})
+                .setTaskScheduler(messageBrokerTaskScheduler);
         config.setApplicationDestinationPrefixes("/app");
     }
 
@@ -22,4 +44,34 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*") // Allow all origins for MVP/Development
                 .withSockJS();
     }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        WebSocketProperties.Channel inbound = webSocketProperties.getInbound();
+        registration.taskExecutor()
+                .corePoolSize(inbound.getCoreSize())
+                .maxPoolSize(inbound.getMaxSize())
+                .queueCapacity(inbound.getQueueCapacity());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        WebSocketProperties.Channel outbound = webSocketProperties.getOutbound();
+        registration.taskExecutor()
+                .corePoolSize(outbound.getCoreSize())
+                .maxPoolSize(outbound.getMaxSize())
+                .queueCapacity(outbound.getQueueCapacity());
+        registration.interceptors(outboundBackpressureInterceptor);
+    }
+
+    /**
+     * A session whose client stops reading is closed once a send to it exceeds the time or buffer limit,
+     * instead of holding up an outbound thread.
+     */
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(webSocketProperties.getSendTimeLimitMs())
+                .setSendBufferSizeLimit(webSocketProperties.getSendBufferSizeLimit())
+                .setMessageSizeLimit(webSocketProperties.getMessageSizeLimit());
+    }
 }
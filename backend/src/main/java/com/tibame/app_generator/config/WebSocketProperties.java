@@ -0,0 +1,66 @@
+package com.tibame.app_generator.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sizing and limits of the STOMP message broker, so that a slow client cannot hold up messages to everyone else.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "platform.websocket")
+public class WebSocketProperties {
+
+    /**
+     * Threads handling messages received from clients.
+     */
+    private Channel inbound = new Channel(2, 4, 1000);
+
+    /**
+     * Threads writing messages to client sessions.
+     */
+    private Channel outbound = new Channel(4, 8, 10000);
+
+    /**
+     * Max time a single send to a session may take before the session is closed, in milliseconds.
+     */
+    private Integer sendTimeLimitMs = 10000;
+
+    /**
+     * Max amount of data buffered for a session while a send to it is in progress, in bytes.
+     * The session is closed when this is exceeded.
+     */
+    private Integer sendBufferSizeLimit = 512 * 1024;
+
+    /**
+     * Max size of an incoming STOMP message, in bytes.
+     */
+    private Integer messageSizeLimit = 64 * 1024;
+
+    /**
+     * Heartbeat interval the broker sends, and expects from clients, in milliseconds; 0 disables heartbeats.
+     */
+    private Long heartbeatIntervalMs = 10000L;
+
+    /**
+     * Max number of PROGRESS messages queued for one session; the oldest are dropped beyond that.
+     */
+    private Integer maxQueuedProgressPerSession = 50;
+
+    @Data
+    public static class Channel {
+        private Integer coreSize;
+        private Integer maxSize;
+        private Integer queueCapacity;
+
+        public Channel() {
+        }
+
+        public Channel(Integer coreSize, Integer maxSize, Integer queueCapacity) {
+            this.coreSize = coreSize;
+            this.maxSize = maxSize;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
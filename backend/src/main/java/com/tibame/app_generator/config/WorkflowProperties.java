@@ -0,0 +1,157 @@
+package com.tibame.app_generator.config;
+
+import com.tibame.app_generator.enums.UserPlanType;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "platform.workflow")
+public class WorkflowProperties {
+    /**
+     * Max number of compiled workflow plans kept in memory.
+     */
+    private Integer planCacheSize = 256;
+
+    /**
+     * Resume runs left RUNNING by a restart from their last checkpoints on startup.
+     */
+    private boolean resumeOnStartup = true;
+
+    /**
+     * How often the retry scheduler polls agent_tasks for retries becoming due.
+     */
+    private Long retryPollIntervalMs = 5000L;
+
+    /**
+     * Tick length of the in-memory retry timer wheel.
+     */
+    private Long retryTickMs = 100L;
+
+    /**
+     * Number of buckets of the retry timer wheel.
+     */
+    private Integer retryWheelSize = 512;
+
+    /**
+     * Max number of due retries loaded per poll.
+     */
+    private Integer retryBatchSize = 500;
+
+    /**
+     * Admission control of workflow runs.
+     */
+    private Admission admission = new Admission();
+
+    /**
+     * Splitting of PG nodes into per-module subtasks.
+     */
+    private PgFanOut pgFanOut = new PgFanOut();
+
+    /**
+     * Buffering of agent task log lines, which are appended to agent_task_logs in batches.
+     */
+    private TaskLog taskLog = new TaskLog();
+
+    /**
+     * Task events sent over the WebSocket task topic.
+     */
+    private TaskEvents taskEvents = new TaskEvents();
+
+    /**
+     * Write-behind of the state of executing agent tasks.
+     */
+    private TaskState taskState = new TaskState();
+
+    @Data
+    public static class Admission {
+        /**
+         * Max number of runs executing at the same time across all users.
+         */
+        private Integer maxConcurrentRuns = 32;
+
+        /**
+         * Max number of runs of a single project executing at the same time.
+         */
+        private Integer maxRunsPerProject = 1;
+
+        /**
+         * Max number of runs of a single user executing at the same time, by plan.
+         */
+        private Map<UserPlanType, Integer> maxRunsPerUser = new EnumMap<>(Map.of(
+                UserPlanType.FREE, 1,
+                UserPlanType.PRO, 4,
+                UserPlanType.ENTERPRISE, 16));
+
+        /**
+         * Relative share of free slots a user with queued runs receives, by plan.
+         */
+        private Map<UserPlanType, Integer> weights = new EnumMap<>(Map.of(
+                UserPlanType.FREE, 1,
+                UserPlanType.PRO, 3,
+                UserPlanType.ENTERPRISE, 6));
+    }
+
+    @Data
+    public static class PgFanOut {
+        /**
+         * Generate the code of a PG node as one subtask per module of the SA API design, in parallel. Off by default.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Nodes whose design has fewer modules are generated in a single call.
+         */
+        private Integer minModules = 2;
+
+        /**
+         * Max number of subtasks per node; smaller modules are combined beyond that.
+         */
+        private Integer maxModules = 6;
+    }
+
+    @Data
+    public static class TaskLog {
+        /**
+         * How often buffered log lines are written, in milliseconds.
+         */
+        private Long flushIntervalMs = 500L;
+        /**
+         * Number of buffered lines that triggers a write right away.
+         */
+        private Integer batchSize = 200;
+        /**
+         * Max number of lines kept while writes fail; the oldest are dropped beyond that.
+         */
+        private Integer maxBufferedLines = 50000;
+        /**
+         * Max number of flushes a line is kept for while no line can be written; it is dropped after that.
+         */
+        private Integer maxWriteAttempts = 120;
+        /**
+         * Max number of lines returned by one read.
+         */
+        private Integer maxReadLimit = 1000;
+    }
+
+    @Data
+    public static class TaskEvents {
+        /**
+         * PROGRESS events of a task within this many milliseconds are merged into one; 0 sends each of them.
+         */
+        private Long progressWindowMs = 250L;
+    }
+
+    @Data
+    public static class TaskState {
+        /**
+         * Min interval between two writes of an executing task's progress, in milliseconds. Start and final
+         * states are always written right away.
+         */
+        private Long checkpointIntervalMs = 5000L;
+    }
+}
@@ -2,8 +2,10 @@ package com.tibame.app_generator.controller;
 
 import com.tibame.app_generator.enums.AgentType;
 import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.model.AgentTaskLog;
 import com.tibame.app_generator.service.AgentTaskService;
 import com.tibame.app_generator.service.AgentTaskSimulator;
+import com.tibame.app_generator.service.TaskLogService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,6 +22,7 @@ public class AgentTaskController {
 
     private final AgentTaskService agentTaskService;
     private final AgentTaskSimulator agentTaskSimulator;
+    private final TaskLogService taskLogService;
 
     @GetMapping
     @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
@@ -27,6 +30,42 @@ public class AgentTaskController {
         return ResponseEntity.ok(agentTaskService.getTasksByProject(projectId));
     }
 
+    /**
+     * Result of a task, which task events only refer to.
+     */
+    @GetMapping("/{taskId}/result")
+    @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
+    public ResponseEntity<Map<String, Object>> getTaskResult(@PathVariable UUID projectId, @PathVariable UUID taskId) {
+        return agentTaskService.findTask(taskId)
+                .filter(task -> task.getProject().getId().equals(projectId))
+                .map(task -> ResponseEntity.ok(task.getContextData() != null ? task.getContextData() : Map.<String, Object>of()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Log lines of a task from sequence number {@code offset} on; pass the last seq + 1 to page forward.
+     */
+    @GetMapping("/{taskId}/logs")
+    @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
+    public ResponseEntity<List<AgentTaskLog>> getTaskLog(@PathVariable UUID projectId, @PathVariable UUID taskId,
+                                                         @RequestParam(defaultValue = "0") long offset,
+                                                         @RequestParam(defaultValue = "200") int limit) {
+        if (!belongsToProject(taskId, projectId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(taskLogService.read(taskId, offset, limit));
+    }
+
+    @GetMapping("/{taskId}/logs/tail")
+    @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
+    public ResponseEntity<List<AgentTaskLog>> getTaskLogTail(@PathVariable UUID projectId, @PathVariable UUID taskId,
+                                                             @RequestParam(defaultValue = "200") int lines) {
+        if (!belongsToProject(taskId, projectId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(taskLogService.tail(taskId, lines));
+    }
+
     @PostMapping("/simulate")
     @PreAuthorize("@projectSecurityService.isMember(#projectId)")
     public ResponseEntity<?> simulateTask(@PathVariable UUID projectId) {
@@ -42,4 +81,10 @@ public class AgentTaskController {
 
         return ResponseEntity.ok(task);
     }
+
+    private boolean belongsToProject(UUID taskId, UUID projectId) {
+        return agentTaskService.findTask(taskId)
+                .map(task -> task.getProject().getId().equals(projectId))
+                .orElse(false);
+    }
 }
@@ -1,10 +1,13 @@
 package com.tibame.app_generator.controller;
 
+import com.tibame.app_generator.enums.RunMode;
+import com.tibame.app_generator.enums.TaskStatus;
 import com.tibame.app_generator.model.AgentTask;
 import com.tibame.app_generator.model.WorkflowRun;
 import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.WorkflowRunRepository;
 import com.tibame.app_generator.service.WorkflowService;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -21,24 +24,34 @@ public class WorkflowRunController {
     private final WorkflowService workflowService;
     private final WorkflowRunRepository workflowRunRepository;
     private final AgentTaskRepository agentTaskRepository;
+    private final RunAdmissionService runAdmissionService;
 
     @GetMapping("/api/projects/{projectId}/runs")
     @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
     public ResponseEntity<List<WorkflowRun>> getProjectRuns(@PathVariable UUID projectId) {
-        return ResponseEntity.ok(workflowRunRepository.findByProjectIdOrderByCreatedAtDesc(projectId));
+        List<WorkflowRun> runs = workflowRunRepository.findByProjectIdOrderByCreatedAtDesc(projectId);
+        runs.forEach(this::fillQueuePosition);
+        return ResponseEntity.ok(runs);
     }
 
     @PostMapping("/api/projects/{projectId}/runs")
     @PreAuthorize("@projectSecurityService.isMember(#projectId)")
-    public ResponseEntity<?> startRun(@PathVariable UUID projectId) {
+    public ResponseEntity<?> startRun(@PathVariable UUID projectId,
+                                      @RequestParam(defaultValue = "FULL") RunMode mode) {
         try {
-            WorkflowRun run = workflowService.startRun(projectId);
+            WorkflowRun run = workflowService.startRun(projectId, mode);
             return ResponseEntity.accepted().body(run);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    @GetMapping("/api/projects/{projectId}/retries")
+    @PreAuthorize("@projectSecurityService.isViewer(#projectId)")
+    public ResponseEntity<List<AgentTask>> getPendingRetries(@PathVariable UUID projectId) {
+        return ResponseEntity.ok(agentTaskRepository.findByProject_IdAndStatusOrderByNextRetryAtAsc(projectId, TaskStatus.RETRY_WAIT));
+    }
+
     @GetMapping("/api/runs/{runId}")
     // Need to lookup project ID for runId to check permissions?
     // For now assume if they have the run ID they can see it, OR implement a helper.
@@ -46,7 +59,10 @@ public class WorkflowRunController {
     // Actually, secure by checking project membership via run -> project
     public ResponseEntity<WorkflowRun> getRun(@PathVariable UUID runId) {
         return workflowRunRepository.findById(runId)
-                .map(ResponseEntity::ok)
+                .map(run -> {
+                    fillQueuePosition(run);
+                    return ResponseEntity.ok(run);
+                })
                 .orElse(ResponseEntity.notFound().build());
     }
 
@@ -58,8 +74,16 @@ public class WorkflowRunController {
     @PostMapping("/api/runs/{runId}/retry")
     public ResponseEntity<?> retryRun(@PathVariable UUID runId) {
         try {
-            workflowService.resumeRun(runId);
-            return ResponseEntity.accepted().body(Map.of("message", "Run resumed"));
+            return ResponseEntity.accepted().body(workflowService.resumeRun(runId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PostMapping("/api/runs/{runId}/cancel")
+    public ResponseEntity<?> cancelRun(@PathVariable UUID runId) {
+        try {
+            return ResponseEntity.accepted().body(workflowService.cancelRun(runId));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -68,10 +92,15 @@ public class WorkflowRunController {
     @PostMapping("/api/tasks/{taskId}/retry")
     public ResponseEntity<?> retryTask(@PathVariable UUID taskId) {
         try {
-            workflowService.retryTask(taskId);
-            return ResponseEntity.accepted().body(Map.of("message", "Task retry initiated"));
+            return ResponseEntity.accepted().body(workflowService.retryTask(taskId));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
+
+    private void fillQueuePosition(WorkflowRun run) {
+        if (run.getStatus() == TaskStatus.PENDING) {
+            run.setQueuePosition(runAdmissionService.getQueuePosition(run.getId()));
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.tibame.app_generator.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.tibame.app_generator.enums.TaskStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -19,8 +20,10 @@ public class TaskEventDTO {
     private UUID projectId;
     private UUID taskId;
     private String taskName;
+    private TaskStatus status;
     private Integer progress;
     private String message;
+    // Small event-specific data only, e.g. where to fetch a completed task's result; never the task context
     private Map<String, Object> payload;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd'T'HH:mm:ss.SSSZ")
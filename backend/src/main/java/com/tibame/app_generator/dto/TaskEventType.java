@@ -8,5 +8,8 @@ public enum TaskEventType {
     PROGRESS,
     RETRY_SCHEDULED,
     COMPLETED,
-    FAILED
+    FAILED,
+    CANCELLED,
+    OUTPUT_DELTA,
+    FILE_READY
 }
@@ -0,0 +1,12 @@
+package com.tibame.app_generator.enums;
+
+public enum RunMode {
+    /**
+     * Execute every node of the workflow.
+     */
+    FULL,
+    /**
+     * Reuse results of nodes unchanged since the last successful run, execute only changed nodes and their descendants.
+     */
+    CHANGED
+}
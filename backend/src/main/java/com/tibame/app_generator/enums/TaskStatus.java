@@ -5,5 +5,6 @@ public enum TaskStatus {
     RUNNING,
     RETRY_WAIT,
     SUCCESS,
-    FAIL
+    FAIL,
+    CANCELLED
 }
@@ -0,0 +1,62 @@
+package com.tibame.app_generator.model;
+
+import com.tibame.app_generator.enums.AgentType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Memoized result of an agent call, addressed by the hash of everything that determines the prompt and the model.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "agent_result_cache", indexes = {
+        @Index(name = "idx_agent_result_cache_last_accessed", columnList = "last_accessed_at"),
+        @Index(name = "idx_agent_result_cache_expires", columnList = "expires_at")
+})
+public class AgentResultCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "cache_key", nullable = false, unique = true, length = 64)
+    private String cacheKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "agent_type", nullable = false, length = 50)
+    private AgentType agentType;
+
+    @Column(name = "model_name", length = 100)
+    private String modelName;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "result", columnDefinition = "jsonb")
+    private Map<String, Object> result;
+
+    @Column(name = "hit_count")
+    @Builder.Default
+    private Long hitCount = 0L;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private ZonedDateTime createdAt;
+
+    @Column(name = "last_accessed_at")
+    private ZonedDateTime lastAccessedAt;
+
+    @Column(name = "expires_at")
+    private ZonedDateTime expiresAt;
+}
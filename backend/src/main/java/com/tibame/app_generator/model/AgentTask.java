@@ -8,6 +8,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
 
@@ -21,7 +22,12 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Entity
-@Table(name = "agent_tasks")
+// Updates only write changed columns, so progress ticks leave the jsonb columns alone
+@DynamicUpdate
+@Table(name = "agent_tasks", indexes = {
+        // Due-time index scanned by the RetryScheduler
+        @Index(name = "idx_agent_tasks_retry_due", columnList = "status, next_retry_at")
+})
 public class AgentTask {
 
     @Id
@@ -36,6 +42,13 @@ public class AgentTask {
     @JoinColumn(name = "workflow_run_id")
     private WorkflowRun workflowRun;
 
+    @Column(name = "node_id", length = 100)
+    private String nodeId;
+
+    // Task of the node this subtask generates a part of; null for node tasks
+    @Column(name = "parent_task_id")
+    private UUID parentTaskId;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "agent_type", nullable = false, length = 50)
     private AgentType agentType;
@@ -56,9 +69,6 @@ public class AgentTask {
     @Column(name = "input_context", columnDefinition = "jsonb")
     private Map<String, Object> inputContext;
 
-    @Column(name = "log_content", columnDefinition = "TEXT")
-    private String logContent;
-
     @Column(name = "progress_pct")
     @Builder.Default
     private Integer progressPct = 0;
@@ -79,10 +89,27 @@ public class AgentTask {
     @Builder.Default
     private Integer initialDelaySeconds = 5;
 
+    @Column(name = "next_retry_at")
+    private ZonedDateTime nextRetryAt;
+
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "attempt_history", columnDefinition = "jsonb")
     private List<Map<String, Object>> attemptHistory;
 
+    // Version of the prompt template the task was prompted with
+    @Column(name = "prompt_version", length = 64)
+    private String promptVersion;
+
+    // How the input was compacted to fit the prompt budget; null when it fit as is
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "prompt_compaction", columnDefinition = "jsonb")
+    private Map<String, Object> promptCompaction;
+
+    // The result was served from the agent result cache instead of calling the LLM
+    @Column(name = "cached")
+    @Builder.Default
+    private boolean cached = false;
+
     @Column(name = "is_retryable")
     @Builder.Default
     private boolean isRetryable = true;
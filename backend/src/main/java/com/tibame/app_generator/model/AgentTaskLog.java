@@ -0,0 +1,41 @@
+package com.tibame.app_generator.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * One line of an agent task's log. Lines are only ever inserted, numbered per task from 0.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "agent_task_logs",
+        uniqueConstraints = @UniqueConstraint(name = "uk_agent_task_logs_task_seq", columnNames = {"agent_task_id", "seq"}))
+public class AgentTaskLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "agent_task_id", nullable = false)
+    private UUID taskId;
+
+    @Column(name = "seq", nullable = false)
+    private Long seq;
+
+    @Column(name = "message", columnDefinition = "TEXT")
+    private String message;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private ZonedDateTime createdAt;
+}
@@ -0,0 +1,49 @@
+package com.tibame.app_generator.model;
+
+import com.tibame.app_generator.enums.AgentType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+/**
+ * A published version of an agent's prompt template. Versions are immutable: to change a template,
+ * insert a new version; the highest active version of each agent type is used.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "prompt_template_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_prompt_template_versions_type_version", columnNames = {"agent_type", "version"})
+})
+public class PromptTemplateVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "agent_type", nullable = false, length = 50)
+    private AgentType agentType;
+
+    @Column(nullable = false)
+    private Integer version;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String template;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private boolean active = true;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private ZonedDateTime createdAt;
+}
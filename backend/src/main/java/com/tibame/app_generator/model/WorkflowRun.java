@@ -33,6 +33,28 @@ public class WorkflowRun {
     @Builder.Default
     private TaskStatus status = TaskStatus.PENDING;
 
+    @Column(name = "workflow_id")
+    private UUID workflowId;
+
+    // updatedAt of the workflow when the run started, identifies the compiled plan the run executes
+    @Column(name = "workflow_version")
+    private ZonedDateTime workflowVersion;
+
+    // Successful run whose results are reused for unchanged nodes (RunMode.CHANGED)
+    @Column(name = "source_run_id")
+    private UUID sourceRunId;
+
+    @Column(name = "reused_nodes")
+    @Builder.Default
+    private Integer reusedNodes = 0;
+
+    @Column(name = "total_nodes")
+    private Integer totalNodes;
+
+    @Column(name = "completed_nodes")
+    @Builder.Default
+    private Integer completedNodes = 0;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private ZonedDateTime createdAt;
@@ -46,4 +68,8 @@ public class WorkflowRun {
 
     @Column(name = "ended_at")
     private ZonedDateTime endedAt;
+
+    // Position in the admission queue while PENDING, filled in when the run is returned by the API
+    @Transient
+    private Integer queuePosition;
 }
@@ -0,0 +1,54 @@
+package com.tibame.app_generator.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Result of a workflow node that completed within a run.
+ * Used to resume interrupted runs without re-executing nodes that already succeeded.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Entity
+@Table(name = "workflow_run_checkpoints",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"workflow_run_id", "node_id"}))
+public class WorkflowRunCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "workflow_run_id", nullable = false)
+    private WorkflowRun workflowRun;
+
+    @Column(name = "node_id", nullable = false, length = 100)
+    private String nodeId;
+
+    // RunExecution.fingerprintOf the node when it ran, lets later runs reuse the result while nothing it depends on changed
+    @Column(name = "fingerprint", length = 160)
+    private String fingerprint;
+
+    @Column(name = "agent_task_id")
+    private UUID agentTaskId;
+
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "result", columnDefinition = "jsonb")
+    private Map<String, Object> result;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private ZonedDateTime createdAt;
+}
@@ -0,0 +1,33 @@
+package com.tibame.app_generator.repository;
+
+import com.tibame.app_generator.model.AgentResultCacheEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface AgentResultCacheRepository extends JpaRepository<AgentResultCacheEntry, UUID> {
+    Optional<AgentResultCacheEntry> findByCacheKey(String cacheKey);
+
+    @Modifying
+    @Transactional
+    @Query("update AgentResultCacheEntry e set e.lastAccessedAt = :accessedAt, e.hitCount = e.hitCount + 1 where e.id = :id")
+    int touch(@Param("id") UUID id, @Param("accessedAt") ZonedDateTime accessedAt);
+
+    @Modifying
+    @Transactional
+    @Query("delete from AgentResultCacheEntry e where e.expiresAt < :now")
+    int deleteExpired(@Param("now") ZonedDateTime now);
+
+    @Query("select e.id from AgentResultCacheEntry e order by e.lastAccessedAt asc")
+    List<UUID> findLeastRecentlyUsedIds(Pageable pageable);
+}
@@ -0,0 +1,23 @@
+package com.tibame.app_generator.repository;
+
+import com.tibame.app_generator.model.AgentTaskLog;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface AgentTaskLogRepository extends JpaRepository<AgentTaskLog, UUID> {
+
+    List<AgentTaskLog> findByTaskIdAndSeqGreaterThanEqualOrderBySeqAsc(UUID taskId, long seq, Pageable pageable);
+
+    List<AgentTaskLog> findByTaskIdOrderBySeqDesc(UUID taskId, Pageable pageable);
+
+    @Query("select max(l.seq) from AgentTaskLog l where l.taskId = :taskId")
+    Optional<Long> findMaxSeq(@Param("taskId") UUID taskId);
+}
@@ -1,14 +1,47 @@
 package com.tibame.app_generator.repository;
 
+import com.tibame.app_generator.enums.TaskStatus;
 import com.tibame.app_generator.model.AgentTask;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface AgentTaskRepository extends JpaRepository<AgentTask, UUID> {
     List<AgentTask> findByProject_Id(UUID projectId);
     List<AgentTask> findByWorkflowRun_IdOrderByCreatedAtAsc(UUID workflowRunId);
+    List<AgentTask> findByStatusAndNextRetryAtBeforeOrderByNextRetryAtAsc(TaskStatus status, ZonedDateTime before, Pageable pageable);
+    List<AgentTask> findByProject_IdAndStatusOrderByNextRetryAtAsc(UUID projectId, TaskStatus status);
+
+    @Query("select t.status from AgentTask t where t.id = :taskId")
+    Optional<TaskStatus> findStatusById(@Param("taskId") UUID taskId);
+
+    // Atomically takes a due retry, so a task is retried once even if it was also retried manually. A retry that was
+    // rescheduled to a later time is left alone
+    @Modifying
+    @Transactional
+    @Query("update AgentTask t set t.status = com.tibame.app_generator.enums.TaskStatus.RUNNING, t.nextRetryAt = null " +
+            "where t.id = :taskId and t.status = com.tibame.app_generator.enums.TaskStatus.RETRY_WAIT " +
+            "and (t.nextRetryAt is null or t.nextRetryAt < :dueBefore)")
+    int claimRetry(@Param("taskId") UUID taskId, @Param("dueBefore") ZonedDateTime dueBefore);
+
+    // Only the retry bookkeeping, so the columns the task's execution wrote are kept. A cancelled task stays cancelled
+    @Modifying
+    @Transactional
+    @Query("update AgentTask t set t.status = com.tibame.app_generator.enums.TaskStatus.RETRY_WAIT, " +
+            "t.retryCount = :retryCount, t.attemptHistory = :attemptHistory, t.nextRetryAt = :nextRetryAt " +
+            "where t.id = :taskId and t.status <> com.tibame.app_generator.enums.TaskStatus.CANCELLED")
+    int markRetryWait(@Param("taskId") UUID taskId, @Param("retryCount") int retryCount,
+                      @Param("attemptHistory") List<Map<String, Object>> attemptHistory,
+                      @Param("nextRetryAt") ZonedDateTime nextRetryAt);
 }
@@ -1,13 +1,20 @@
 package com.tibame.app_generator.repository;
 
+import com.tibame.app_generator.enums.UserPlanType;
 import com.tibame.app_generator.model.Project;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, UUID> {
     List<Project> findByUserId(UUID userId);
+
+    @Query("select u.planType from Project p join p.user u where p.id = :projectId")
+    Optional<UserPlanType> findOwnerPlanType(@Param("projectId") UUID projectId);
 }
@@ -0,0 +1,18 @@
+package com.tibame.app_generator.repository;
+
+import com.tibame.app_generator.model.PromptTemplateVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface PromptTemplateVersionRepository extends JpaRepository<PromptTemplateVersion, UUID> {
+
+    @Query("select v.id from PromptTemplateVersion v where v.active = true")
+    List<UUID> findActiveIds();
+
+    List<PromptTemplateVersion> findByActiveTrueOrderByVersionDesc();
+}
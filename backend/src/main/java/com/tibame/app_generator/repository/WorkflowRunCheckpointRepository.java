@@ -0,0 +1,15 @@
+package com.tibame.app_generator.repository;
+
+import com.tibame.app_generator.model.WorkflowRunCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface WorkflowRunCheckpointRepository extends JpaRepository<WorkflowRunCheckpoint, UUID> {
+    List<WorkflowRunCheckpoint> findByWorkflowRun_Id(UUID workflowRunId);
+    Optional<WorkflowRunCheckpoint> findByWorkflowRun_IdAndNodeId(UUID workflowRunId, String nodeId);
+}
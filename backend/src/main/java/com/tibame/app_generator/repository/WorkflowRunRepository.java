@@ -1,13 +1,74 @@
 package com.tibame.app_generator.repository;
 
+import com.tibame.app_generator.enums.TaskStatus;
 import com.tibame.app_generator.model.WorkflowRun;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
 public interface WorkflowRunRepository extends JpaRepository<WorkflowRun, UUID> {
     List<WorkflowRun> findByProjectIdOrderByCreatedAtDesc(UUID projectId);
+    List<WorkflowRun> findByStatus(TaskStatus status);
+    List<WorkflowRun> findByStatusOrderByCreatedAtAsc(TaskStatus status);
+    Optional<WorkflowRun> findFirstByProjectIdAndStatusOrderByCreatedAtDesc(UUID projectId, TaskStatus status);
+
+    @Query("select r.createdAt from WorkflowRun r where r.id = :runId")
+    Optional<ZonedDateTime> findCreatedAtById(@Param("runId") UUID runId);
+
+    @Query("select r.status from WorkflowRun r where r.id = :runId")
+    Optional<TaskStatus> findStatusById(@Param("runId") UUID runId);
+
+    // Moves a queued run to RUNNING once it is admitted
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.status = com.tibame.app_generator.enums.TaskStatus.RUNNING, r.startedAt = :startedAt " +
+            "where r.id = :runId and r.status = com.tibame.app_generator.enums.TaskStatus.PENDING")
+    int markStarted(@Param("runId") UUID runId, @Param("startedAt") ZonedDateTime startedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.status = com.tibame.app_generator.enums.TaskStatus.CANCELLED, r.endedAt = :endedAt " +
+            "where r.id = :runId and r.status in (com.tibame.app_generator.enums.TaskStatus.PENDING, com.tibame.app_generator.enums.TaskStatus.RUNNING)")
+    int markCancelled(@Param("runId") UUID runId, @Param("endedAt") ZonedDateTime endedAt);
+
+    // Conditional like markCancelled, so a run cancelled meanwhile stays cancelled
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.status = com.tibame.app_generator.enums.TaskStatus.SUCCESS, r.endedAt = :endedAt " +
+            "where r.id = :runId and r.status = com.tibame.app_generator.enums.TaskStatus.RUNNING")
+    int markSucceeded(@Param("runId") UUID runId, @Param("endedAt") ZonedDateTime endedAt);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.status = com.tibame.app_generator.enums.TaskStatus.FAIL, r.endedAt = :endedAt " +
+            "where r.id = :runId and r.status = com.tibame.app_generator.enums.TaskStatus.RUNNING")
+    int markFailed(@Param("runId") UUID runId, @Param("endedAt") ZonedDateTime endedAt);
+
+    // Targeted update so that concurrent branches never overwrite the run status with a stale entity
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.completedNodes = :completedNodes where r.id = :runId")
+    int updateCompletedNodes(@Param("runId") UUID runId, @Param("completedNodes") int completedNodes);
+
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.completedNodes = :completedNodes, r.reusedNodes = :reusedNodes where r.id = :runId")
+    int updateReusedNodes(@Param("runId") UUID runId, @Param("reusedNodes") int reusedNodes, @Param("completedNodes") int completedNodes);
+
+    // Records the compiled plan of a run without touching its status, which a cancel may have changed meanwhile
+    @Modifying
+    @Transactional
+    @Query("update WorkflowRun r set r.workflowId = :workflowId, r.workflowVersion = :workflowVersion, r.totalNodes = :totalNodes " +
+            "where r.id = :runId")
+    int updatePlan(@Param("runId") UUID runId, @Param("workflowId") UUID workflowId,
+                   @Param("workflowVersion") ZonedDateTime workflowVersion, @Param("totalNodes") int totalNodes);
 }
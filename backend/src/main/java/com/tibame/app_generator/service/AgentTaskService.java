@@ -11,7 +11,6 @@ import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.ProjectRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,7 +25,8 @@ public class AgentTaskService {
 
     private final AgentTaskRepository agentTaskRepository;
     private final ProjectRepository projectRepository;
-    private final SimpMessagingTemplate messagingTemplate;
+    private final TaskEventPublisher taskEventPublisher;
+    private final TaskLogService taskLogService;
 
     @Transactional
     public AgentTask createTask(UUID projectId, AgentType agentType, String taskName, Map<String, Object> contextData) {
@@ -35,18 +35,39 @@ public class AgentTaskService {
 
     @Transactional
     public AgentTask createTask(UUID projectId, WorkflowRun workflowRun, AgentType agentType, String taskName, Map<String, Object> contextData) {
+        return createTask(projectId, workflowRun, null, agentType, taskName, contextData);
+    }
+
+    @Transactional
+    public AgentTask createTask(UUID projectId, WorkflowRun workflowRun, String nodeId, AgentType agentType, String taskName, Map<String, Object> contextData) {
+        return createTask(projectId, workflowRun, nodeId, null, agentType, taskName, contextData);
+    }
+
+    /**
+     * Creates a subtask generating part of a node's result. It is not bound to the node itself, so that
+     * it is retried on its own rather than as the node.
+     */
+    @Transactional
+    public AgentTask createSubtask(AgentTask parent, String taskName, Map<String, Object> contextData) {
+        return createTask(parent.getProject().getId(), parent.getWorkflowRun(), null, parent.getId(),
+                parent.getAgentType(), taskName, contextData);
+    }
+
+    private AgentTask createTask(UUID projectId, WorkflowRun workflowRun, String nodeId, UUID parentTaskId,
+                                 AgentType agentType, String taskName, Map<String, Object> contextData) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new IllegalArgumentException("Project not found: " + projectId));
 
         AgentTask task = AgentTask.builder()
                 .project(project)
                 .workflowRun(workflowRun)
+                .nodeId(nodeId)
+                .parentTaskId(parentTaskId)
                 .agentType(agentType)
                 .taskName(taskName)
                 .status(TaskStatus.PENDING)
                 .contextData(contextData)
                 .progressPct(0)
-                .logContent("")
                 .build();
 
         task = agentTaskRepository.save(task);
@@ -67,11 +88,10 @@ public class AgentTaskService {
     public void updateProgress(UUID taskId, int progressPct, String logMessage) {
         AgentTask task = getTask(taskId);
         task.setProgressPct(progressPct);
+        agentTaskRepository.save(task);
         if (logMessage != null && !logMessage.isEmpty()) {
-            String currentLog = task.getLogContent() == null ? "" : task.getLogContent();
-            task.setLogContent(currentLog + "\n" + logMessage);
+            taskLogService.append(taskId, logMessage);
         }
-        agentTaskRepository.save(task);
         publishEvent(task, TaskEventType.PROGRESS, logMessage);
     }
 
@@ -88,9 +108,10 @@ public class AgentTaskService {
     }
 
     @Transactional
-    public void setInputContext(UUID taskId, Map<String, Object> inputContext) {
+    public void setInputContext(UUID taskId, Map<String, Object> inputContext, String promptVersion) {
         AgentTask task = getTask(taskId);
         task.setInputContext(inputContext);
+        task.setPromptVersion(promptVersion);
         agentTaskRepository.save(task);
     }
 
@@ -99,11 +120,11 @@ public class AgentTaskService {
         AgentTask task = getTask(taskId);
         task.setStatus(TaskStatus.SUCCESS);
         task.setProgressPct(100);
+        agentTaskRepository.save(task);
         if (resultMessage != null) {
-            String currentLog = task.getLogContent() == null ? "" : task.getLogContent();
-            task.setLogContent(currentLog + "\n" + resultMessage);
+            taskLogService.append(taskId, resultMessage);
         }
-        agentTaskRepository.save(task);
+        taskLogService.close(taskId);
         publishEvent(task, TaskEventType.COMPLETED, resultMessage);
     }
 
@@ -112,35 +133,99 @@ public class AgentTaskService {
         AgentTask task = getTask(taskId);
         task.setStatus(TaskStatus.FAIL);
         task.setErrorDetails(errorMessage);
-        String currentLog = task.getLogContent() == null ? "" : task.getLogContent();
-        task.setLogContent(currentLog + "\nERROR: " + errorMessage);
         agentTaskRepository.save(task);
+        taskLogService.append(taskId, "ERROR: " + errorMessage);
+        taskLogService.close(taskId);
         publishEvent(task, TaskEventType.FAILED, errorMessage);
     }
 
+    @Transactional
+    public void cancelTask(UUID taskId, String message) {
+        AgentTask task = getTask(taskId);
+        task.setStatus(TaskStatus.CANCELLED);
+        // A retry that is still scheduled can no longer claim the task
+        task.setNextRetryAt(null);
+        agentTaskRepository.save(task);
+        if (message != null) {
+            taskLogService.append(taskId, message);
+        }
+        taskLogService.close(taskId);
+        publishEvent(task, TaskEventType.CANCELLED, message);
+    }
+
+    public boolean isCancelled(UUID taskId) {
+        return agentTaskRepository.findStatusById(taskId).orElse(null) == TaskStatus.CANCELLED;
+    }
+
     public AgentTask getTask(UUID taskId) {
         return agentTaskRepository.findById(taskId)
                 .orElseThrow(() -> new IllegalArgumentException("Task not found: " + taskId));
     }
 
+    public java.util.Optional<AgentTask> findTask(UUID taskId) {
+        return agentTaskRepository.findById(taskId);
+    }
+
     public java.util.List<AgentTask> getTasksByProject(UUID projectId) {
         return agentTaskRepository.findByProject_Id(projectId);
     }
 
+    /**
+     * Publishes what changed about a task: its status, progress and new log line. The task's context is
+     * never attached; a completed task's event points to where its result can be fetched instead.
+     */
     public void publishEvent(AgentTask task, TaskEventType type, String message) {
         TaskEventDTO event = TaskEventDTO.builder()
                 .type(type)
                 .projectId(task.getProject().getId())
                 .taskId(task.getId())
                 .taskName(task.getTaskName())
+                .status(task.getStatus())
                 .progress(task.getProgressPct())
                 .message(message)
-                .payload(task.getContextData())
+                .payload(type == TaskEventType.COMPLETED ? Map.of("resultUrl", resultUrlOf(task)) : null)
                 .timestamp(ZonedDateTime.now())
                 .build();
 
-        String destination = "/topic/project/" + task.getProject().getId() + "/tasks";
-        log.info("Publishing event {} to {}", type, destination);
-        messagingTemplate.convertAndSend(destination, event);
+        log.debug("Publishing event {} of task {}", type, task.getId());
+        taskEventPublisher.publish(event);
+    }
+
+    /**
+     * Forwards a chunk of model output while the task is running. Nothing is persisted and the
+     * task's context is not attached, so these events stay small however often they are sent.
+     */
+    public void publishOutputDelta(AgentTask task, String delta) {
+        TaskEventDTO event = TaskEventDTO.builder()
+                .type(TaskEventType.OUTPUT_DELTA)
+                .projectId(task.getProject().getId())
+                .taskId(task.getId())
+                .taskName(task.getTaskName())
+                .message(delta)
+                .timestamp(ZonedDateTime.now())
+                .build();
+
+        taskEventPublisher.publish(event);
+    }
+
+    /**
+     * Announces a file of the task's output that was fully received while the response is still streaming.
+     */
+    public void publishFileReady(AgentTask task, String path, int length) {
+        TaskEventDTO event = TaskEventDTO.builder()
+                .type(TaskEventType.FILE_READY)
+                .projectId(task.getProject().getId())
+                .taskId(task.getId())
+                .taskName(task.getTaskName())
+                .message("Generated " + path)
+                .payload(Map.of("path", path, "length", length))
+                .timestamp(ZonedDateTime.now())
+                .build();
+
+        taskEventPublisher.publish(event);
+    }
+
+    private static String resultUrlOf(AgentTask task) {
+        return "/api/projects/" + task.getProject().getId() + "/tasks/" + task.getId() + "/result";
     }
 }
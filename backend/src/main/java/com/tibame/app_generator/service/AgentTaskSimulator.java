@@ -15,7 +15,7 @@ public class AgentTaskSimulator {
 
     private final AgentTaskService agentTaskService;
 
-    @Async
+    @Async("workflowTaskExecutor")
     public void simulateTaskExecution(UUID taskId) {
         try {
             log.info("Starting simulation for task {}", taskId);
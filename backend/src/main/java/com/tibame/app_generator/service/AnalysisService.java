@@ -33,7 +33,7 @@ public class AnalysisService {
     private final ProjectAnalysisRepository projectAnalysisRepository;
     private final GitService gitService;
 
-    @Async
+    @Async("analysisTaskExecutor")
     @Transactional
     public void analyzeProject(UUID projectId) {
         log.info("Starting analysis for project {}", projectId);
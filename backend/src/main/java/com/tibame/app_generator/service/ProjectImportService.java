@@ -20,7 +20,7 @@ public class ProjectImportService {
     private final ProjectRepository projectRepository;
     private final AnalysisService analysisService;
 
-    @Async
+    @Async("importTaskExecutor")
     public void importProjectAsync(UUID projectId) {
         Project project = projectRepository.findById(projectId)
                 .orElseThrow(() -> new IllegalArgumentException("Project not found: " + projectId));
@@ -0,0 +1,134 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.config.OutboundBackpressureInterceptor;
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.dto.TaskEventDTO;
+import com.tibame.app_generator.dto.TaskEventType;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends task events to the project's task topic.
+ * <p>
+ * PROGRESS events of a task are coalesced: the first one goes out right away, later ones within the
+ * window are merged into a single event carrying the latest progress and all of their log lines, sent
+ * when the window ends. Any other event of the task sends the merged one first, so events of a task are
+ * never reordered. A slow session may still skip a PROGRESS event along with its log lines, see
+ * {@link OutboundBackpressureInterceptor}; the task log endpoints remain the complete record.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TaskEventPublisher {
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final WorkflowProperties workflowProperties;
+
+    private final Map<UUID, ProgressWindow> windows = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "task-event-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public void publish(TaskEventDTO event) {
+        long windowMs = workflowProperties.getTaskEvents().getProgressWindowMs();
+        if (event.getType() == TaskEventType.PROGRESS && windowMs > 0) {
+            ProgressWindow window = windows.computeIfAbsent(event.getTaskId(), id -> new ProgressWindow());
+            synchronized (window) {
+                if (window.closed) {
+                    // The task finished in the meantime
+                    send(event);
+                    return;
+                }
+                long now = System.currentTimeMillis();
+                if (window.pending == null && now - window.lastSentAt >= windowMs) {
+                    send(event);
+                    window.lastSentAt = now;
+                    return;
+                }
+                if (window.pending == null) {
+                    window.pending = event;
+                    long delay = window.lastSentAt + windowMs - now;
+                    flusher.schedule(() -> flush(window), delay, TimeUnit.MILLISECONDS);
+                } else {
+                    window.pending = merge(window.pending, event);
+                }
+            }
+            return;
+        }
+
+        ProgressWindow window = isFinal(event.getType()) ? windows.remove(event.getTaskId()) : windows.get(event.getTaskId());
+        if (window == null) {
+            send(event);
+            return;
+        }
+        synchronized (window) {
+            if (window.pending != null) {
+                send(window.pending);
+                window.pending = null;
+            }
+            window.closed = isFinal(event.getType());
+            send(event);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+    }
+
+    private void flush(ProgressWindow window) {
+        synchronized (window) {
+            if (window.pending != null) {
+                send(window.pending);
+                window.pending = null;
+                window.lastSentAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private static TaskEventDTO merge(TaskEventDTO earlier, TaskEventDTO later) {
+        String message = earlier.getMessage() == null || earlier.getMessage().isEmpty() ? later.getMessage()
+                : later.getMessage() == null || later.getMessage().isEmpty() ? earlier.getMessage()
+                : earlier.getMessage() + "\n" + later.getMessage();
+        return TaskEventDTO.builder()
+                .type(TaskEventType.PROGRESS)
+                .projectId(later.getProjectId())
+                .taskId(later.getTaskId())
+                .taskName(later.getTaskName())
+                .status(later.getStatus())
+                .progress(later.getProgress())
+                .message(message)
+                .timestamp(later.getTimestamp())
+                .build();
+    }
+
+    private static boolean isFinal(TaskEventType type) {
+        return type == TaskEventType.COMPLETED || type == TaskEventType.FAILED || type == TaskEventType.CANCELLED;
+    }
+
+    // The event type and task headers let the outbound channel drop superseded progress messages of slow sessions
+    private void send(TaskEventDTO event) {
+        messagingTemplate.convertAndSend("/topic/project/" + event.getProjectId() + "/tasks", event,
+                Map.of(OutboundBackpressureInterceptor.EVENT_TYPE_HEADER, event.getType().name(),
+                        OutboundBackpressureInterceptor.TASK_ID_HEADER, String.valueOf(event.getTaskId())));
+    }
+
+    private static final class ProgressWindow {
+        long lastSentAt;
+        TaskEventDTO pending;
+        boolean closed;
+    }
+}
@@ -0,0 +1,212 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.model.AgentTaskLog;
+import com.tibame.app_generator.repository.AgentTaskLogRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only log of agent tasks.
+ * <p>
+ * Lines are numbered per task and buffered in memory, then inserted in batches by {@link #flush()},
+ * which runs periodically and whenever the buffer reaches the batch size. Reads flush first, so they
+ * see every line appended before them. A task's sequence counter is dropped once the task reached a
+ * final state and its lines are written; a later retry continues from the highest stored number.
+ * <p>
+ * When a batch cannot be written, its lines are written one by one: lines the store rejects while it
+ * accepts others are dropped, and when none can be written the batch is kept for the next flush, up to
+ * {@code maxWriteAttempts} times.
+ */
+@Service
+@Slf4j
+public class TaskLogService {
+
+    private final AgentTaskLogRepository agentTaskLogRepository;
+    private final WorkflowProperties workflowProperties;
+    // Batches are written in their own transaction, independent of whichever transaction appended the last line
+    private final TransactionTemplate transactionTemplate;
+
+    // Next sequence number per task; entries are added outside the lock of this and removed under it
+    private final Map<UUID, AtomicLong> nextSeq = new ConcurrentHashMap<>();
+    // Guarded by this
+    private final Set<UUID> closed = new HashSet<>();
+    private List<AgentTaskLog> pending = new ArrayList<>();
+
+    // Only one flush writes at a time, so that lines of a task are inserted in order
+    private final Object flushLock = new Object();
+    // Failed writes of lines kept for the next flush, guarded by flushLock
+    private final Map<AgentTaskLog, Integer> writeAttempts = new IdentityHashMap<>();
+
+    public TaskLogService(AgentTaskLogRepository agentTaskLogRepository, WorkflowProperties workflowProperties,
+                          PlatformTransactionManager transactionManager) {
+        this.agentTaskLogRepository = agentTaskLogRepository;
+        this.workflowProperties = workflowProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public void append(UUID taskId, String message) {
+        boolean appended = false;
+        boolean full = false;
+        while (!appended) {
+            // The first line of a task looks up where its numbering continues, blocking only appends to that task
+            AtomicLong seq = nextSeq.computeIfAbsent(taskId,
+                    id -> new AtomicLong(agentTaskLogRepository.findMaxSeq(id).map(max -> max + 1).orElse(0L)));
+            synchronized (this) {
+                // Otherwise the counter was released in the meantime and is looked up again
+                if (nextSeq.get(taskId) == seq) {
+                    closed.remove(taskId);
+                    pending.add(AgentTaskLog.builder().taskId(taskId).seq(seq.getAndIncrement()).message(message).build());
+                    full = pending.size() >= workflowProperties.getTaskLog().getBatchSize();
+                    appended = true;
+                }
+            }
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    /**
+     * Marks a task as finished, so that its sequence counter is released after the next flush.
+     */
+    public synchronized void close(UUID taskId) {
+        closed.add(taskId);
+    }
+
+    /**
+     * Lines of a task starting at a sequence number, in order.
+     */
+    public List<AgentTaskLog> read(UUID taskId, long offset, int limit) {
+        flush();
+        return agentTaskLogRepository.findByTaskIdAndSeqGreaterThanEqualOrderBySeqAsc(
+                taskId, Math.max(0, offset), PageRequest.of(0, clampLimit(limit)));
+    }
+
+    /**
+     * The last lines of a task, in order.
+     */
+    public List<AgentTaskLog> tail(UUID taskId, int lines) {
+        flush();
+        List<AgentTaskLog> tail = new ArrayList<>(
+                agentTaskLogRepository.findByTaskIdOrderBySeqDesc(taskId, PageRequest.of(0, clampLimit(lines))));
+        Collections.reverse(tail);
+        return tail;
+    }
+
+    @PreDestroy
+    public void flush() {
+        synchronized (flushLock) {
+            List<AgentTaskLog> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    releaseClosed();
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+            }
+            List<AgentTaskLog> unwritten;
+            try {
+                transactionTemplate.executeWithoutResult(status -> agentTaskLogRepository.saveAll(batch));
+                unwritten = List.of();
+            } catch (Exception e) {
+                log.warn("Failed to write {} task log lines at once, writing them one by one", batch.size(), e);
+                unwritten = writeEach(batch);
+            }
+            if (!unwritten.isEmpty()) {
+                requeue(unwritten);
+                return;
+            }
+            batch.forEach(writeAttempts::remove);
+            synchronized (this) {
+                releaseClosed();
+            }
+        }
+    }
+
+    // Caller holds flushLock. Returns the lines to write again, none if the store accepted any line
+    private List<AgentTaskLog> writeEach(List<AgentTaskLog> batch) {
+        List<AgentTaskLog> failed = new ArrayList<>();
+        Exception lastError = null;
+        for (AgentTaskLog line : batch) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> agentTaskLogRepository.save(line));
+            } catch (Exception e) {
+                failed.add(line);
+                lastError = e;
+            }
+        }
+        if (failed.isEmpty()) {
+            return List.of();
+        }
+        if (failed.size() < batch.size()) {
+            // The store accepts other lines, so it will never accept these
+            log.error("Dropping {} task log lines the store rejects", failed.size(), lastError);
+            return List.of();
+        }
+        log.error("Failed to write {} task log lines", failed.size(), lastError);
+        return failed;
+    }
+
+    // Caller holds flushLock
+    private void requeue(List<AgentTaskLog> batch) {
+        int maxAttempts = workflowProperties.getTaskLog().getMaxWriteAttempts();
+        List<AgentTaskLog> retained = new ArrayList<>(batch.size());
+        for (AgentTaskLog line : batch) {
+            if (writeAttempts.merge(line, 1, Integer::sum) < maxAttempts) {
+                retained.add(line);
+            } else {
+                writeAttempts.remove(line);
+            }
+        }
+        if (retained.size() < batch.size()) {
+            log.warn("Dropping {} task log lines after {} failed writes", batch.size() - retained.size(), maxAttempts);
+        }
+        synchronized (this) {
+            List<AgentTaskLog> lines = new ArrayList<>(retained.size() + pending.size());
+            lines.addAll(retained);
+            lines.addAll(pending);
+            int max = workflowProperties.getTaskLog().getMaxBufferedLines();
+            if (lines.size() > max) {
+                log.warn("Dropping {} task log lines that could not be written", lines.size() - max);
+                lines.subList(0, lines.size() - max).forEach(writeAttempts::remove);
+                lines = new ArrayList<>(lines.subList(lines.size() - max, lines.size()));
+            }
+            pending = lines;
+        }
+    }
+
+    // Caller holds the lock of this. Counters of tasks with lines still waiting are kept, since those lines are not
+    // visible to findMaxSeq yet
+    private void releaseClosed() {
+        if (closed.isEmpty()) {
+            return;
+        }
+        Set<UUID> waiting = new HashSet<>();
+        for (AgentTaskLog line : pending) {
+            waiting.add(line.getTaskId());
+        }
+        for (Iterator<UUID> it = closed.iterator(); it.hasNext(); ) {
+            UUID taskId = it.next();
+            if (!waiting.contains(taskId)) {
+                nextSeq.remove(taskId);
+                it.remove();
+            }
+        }
+    }
+
+    private int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, workflowProperties.getTaskLog().getMaxReadLimit()));
+    }
+}
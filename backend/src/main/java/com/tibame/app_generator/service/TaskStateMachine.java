@@ -0,0 +1,222 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.dto.TaskEventType;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.repository.AgentTaskRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Tracks the state of an executing agent task in memory and writes it behind.
+ * <p>
+ * An {@link Execution} applies transitions to the task locally and publishes their events right away,
+ * but only writes the task when it starts, when it reaches a final state and, in between, at most once per
+ * checkpoint interval on progress. Each write loads the task and updates only the columns the execution owns
+ * in one transaction, so columns written by others in the meantime (retry bookkeeping, cancellation) are
+ * left alone. Events of a write are published after it committed; a client reacting to one finds the state
+ * it announces. After a crash, the task is left in the state of its last write, RUNNING at the latest, which
+ * is what recovery resumes from.
+ */
+@Service
+@Slf4j
+public class TaskStateMachine {
+
+    private final AgentTaskRepository agentTaskRepository;
+    private final AgentTaskService agentTaskService;
+    private final TaskLogService taskLogService;
+    private final WorkflowProperties workflowProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public TaskStateMachine(AgentTaskRepository agentTaskRepository, AgentTaskService agentTaskService,
+                            TaskLogService taskLogService, WorkflowProperties workflowProperties,
+                            PlatformTransactionManager transactionManager) {
+        this.agentTaskRepository = agentTaskRepository;
+        this.agentTaskService = agentTaskService;
+        this.taskLogService = taskLogService;
+        this.workflowProperties = workflowProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Begins tracking an execution of a task. Nothing is written until it {@link Execution#start() starts}.
+     */
+    public Execution begin(AgentTask task) {
+        return new Execution(task);
+    }
+
+    /**
+     * One execution of an agent task: NEW, then RUNNING, then SUCCESS or FAIL. The task passed in is updated
+     * along, so that its status and progress are those last published. Used by a single worker thread.
+     */
+    public class Execution {
+
+        private final AgentTask task;
+        private TaskStatus status;
+        private Map<String, Object> inputContext;
+        private String promptVersion;
+        private Map<String, Object> promptCompaction;
+        private boolean cached;
+        private Map<String, Object> result;
+        private String errorDetails;
+        private boolean dirty;
+        private long lastWriteAt;
+
+        private Execution(AgentTask task) {
+            this.task = task;
+        }
+
+        public AgentTask getTask() {
+            return task;
+        }
+
+        public void setInputContext(Map<String, Object> inputContext, String promptVersion) {
+            this.inputContext = inputContext;
+            this.promptVersion = promptVersion;
+            dirty = true;
+        }
+
+        public void recordPromptCompaction(Map<String, Object> compaction) {
+            this.promptCompaction = compaction;
+            dirty = true;
+        }
+
+        public void markCached() {
+            this.cached = true;
+            dirty = true;
+        }
+
+        public void start() {
+            if (status != null) {
+                throw new IllegalStateException("Task " + task.getId() + " was already started");
+            }
+            status = TaskStatus.RUNNING;
+            task.setStatus(status);
+            dirty = true;
+            if (!write()) {
+                throw new CancellationException("Task " + task.getId() + " was cancelled before it started");
+            }
+            agentTaskService.publishEvent(task, TaskEventType.RUNNING, "Task started.");
+        }
+
+        /**
+         * Records progress. It is only written once the checkpoint interval passed since the last write.
+         */
+        public void progress(int progressPct, String message) {
+            if (status != TaskStatus.RUNNING) {
+                throw new IllegalStateException("Task " + task.getId() + " is not running");
+            }
+            task.setProgressPct(progressPct);
+            dirty = true;
+            if (System.currentTimeMillis() - lastWriteAt >= workflowProperties.getTaskState().getCheckpointIntervalMs()) {
+                write();
+            }
+            if (message != null && !message.isEmpty()) {
+                taskLogService.append(task.getId(), message);
+            }
+            agentTaskService.publishEvent(task, TaskEventType.PROGRESS, message);
+        }
+
+        /**
+         * Completes the task, merging the result into its context.
+         *
+         * @throws CancellationException if the task was cancelled meanwhile; the result is dropped
+         */
+        public void complete(Map<String, Object> result, String message) {
+            if (status != TaskStatus.RUNNING) {
+                throw new IllegalStateException("Task " + task.getId() + " is not running");
+            }
+            this.result = result;
+            task.setProgressPct(100);
+            finish(TaskStatus.SUCCESS, TaskEventType.COMPLETED, message, message);
+        }
+
+        /**
+         * @throws CancellationException if the task was cancelled meanwhile
+         */
+        public void fail(String errorMessage) {
+            if (status == TaskStatus.SUCCESS || status == TaskStatus.FAIL) {
+                throw new IllegalStateException("Task " + task.getId() + " already finished");
+            }
+            this.result = null;
+            this.errorDetails = errorMessage;
+            task.setErrorDetails(errorMessage);
+            finish(TaskStatus.FAIL, TaskEventType.FAILED, "ERROR: " + errorMessage, errorMessage);
+        }
+
+        private void finish(TaskStatus finalStatus, TaskEventType type, String logLine, String message) {
+            TaskStatus previous = status;
+            status = finalStatus;
+            task.setStatus(finalStatus);
+            dirty = true;
+            boolean written;
+            try {
+                written = write();
+            } catch (RuntimeException e) {
+                // Still unfinished as far as the database is concerned, so that the task can be failed instead
+                status = previous;
+                task.setStatus(previous);
+                throw e;
+            }
+            if (!written) {
+                // The caller must not go on as if the task had finished
+                throw new CancellationException("Task " + task.getId() + " was cancelled while executing, its "
+                        + finalStatus + " state is dropped");
+            }
+            if (logLine != null) {
+                taskLogService.append(task.getId(), logLine);
+            }
+            taskLogService.close(task.getId());
+            agentTaskService.publishEvent(task, type, message);
+        }
+
+        /**
+         * Writes the owned columns unless the task was cancelled meanwhile; returns false in that case.
+         */
+        private boolean write() {
+            if (!dirty) {
+                return true;
+            }
+            Boolean written = transactionTemplate.execute(tx -> {
+                AgentTask stored = agentTaskRepository.findById(task.getId())
+                        .orElseThrow(() -> new IllegalArgumentException("Task not found: " + task.getId()));
+                if (stored.getStatus() == TaskStatus.CANCELLED) {
+                    return false;
+                }
+                stored.setStatus(status);
+                stored.setProgressPct(task.getProgressPct());
+                if (inputContext != null) {
+                    stored.setInputContext(inputContext);
+                    stored.setPromptVersion(promptVersion);
+                }
+                if (promptCompaction != null) {
+                    stored.setPromptCompaction(promptCompaction);
+                }
+                if (cached) {
+                    stored.setCached(true);
+                }
+                if (result != null) {
+                    Map<String, Object> context = stored.getContextData() != null
+                            ? new HashMap<>(stored.getContextData())
+                            : new HashMap<>();
+                    context.putAll(result);
+                    stored.setContextData(context);
+                }
+                if (errorDetails != null) {
+                    stored.setErrorDetails(errorDetails);
+                }
+                return true;
+            });
+            dirty = false;
+            lastWriteAt = System.currentTimeMillis();
+            return Boolean.TRUE.equals(written);
+        }
+    }
+}
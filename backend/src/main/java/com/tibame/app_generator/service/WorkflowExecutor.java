@@ -7,23 +7,44 @@ import com.tibame.app_generator.model.AgentTask;
 import com.tibame.app_generator.model.Project;
 import com.tibame.app_generator.model.Workflow;
 import com.tibame.app_generator.model.WorkflowRun;
+import com.tibame.app_generator.model.WorkflowRunCheckpoint;
 import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.ProjectRepository;
 import com.tibame.app_generator.repository.WorkflowRepository;
+import com.tibame.app_generator.repository.WorkflowRunCheckpointRepository;
 import com.tibame.app_generator.repository.WorkflowRunRepository;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
 import com.tibame.app_generator.service.llm.LlmAgentExecutionService;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import com.tibame.app_generator.service.retry.RetryScheduler;
+import com.tibame.app_generator.service.workflow.FanOut;
+import com.tibame.app_generator.service.workflow.PgFanOutPlanner;
+import com.tibame.app_generator.service.workflow.PlanNode;
+import com.tibame.app_generator.service.workflow.RunExecution;
+import com.tibame.app_generator.service.workflow.WorkflowPlan;
+import com.tibame.app_generator.service.workflow.WorkflowPlanCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.context.annotation.Lazy;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.TimeUnit;
-
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes workflow runs as a DAG: every node whose upstream nodes have all completed is
+ * dispatched to the workflow task executor immediately, so independent branches run in parallel
+ * and fan-in nodes start once all of their inputs are available.
+ * <p>
+ * A PG node whose design splits into modules is generated as one subtask per module, in parallel;
+ * each subtask is retried on its own and the node completes with the merged files of all modules.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -32,304 +53,630 @@ public class WorkflowExecutor {
     private final WorkflowRepository workflowRepository;
     private final ProjectRepository projectRepository;
     private final WorkflowRunRepository workflowRunRepository;
+    private final WorkflowRunCheckpointRepository checkpointRepository;
     private final AgentTaskService agentTaskService;
     private final AgentTaskRepository agentTaskRepository;
     private final LlmAgentExecutionService llmAgentExecutionService;
+    private final WorkflowPlanCache workflowPlanCache;
+    private final RetryScheduler retryScheduler;
+    private final RunAdmissionService runAdmissionService;
+    private final PipelineMetrics metrics;
+    private final PgFanOutPlanner pgFanOutPlanner;
+    @Qualifier("workflowTaskExecutor")
+    private final TaskExecutor workflowTaskExecutor;
+
+    // Runs that still have nodes executing or waiting for a retry
+    private final Map<UUID, RunExecution> activeRuns = new ConcurrentHashMap<>();
+
+    // Nodes generated by subtasks, by the task of the node
+    private final Map<UUID, FanOut> activeFanOuts = new ConcurrentHashMap<>();
 
-    @Async
+    @Async("workflowTaskExecutor")
     public void executeRunAsync(UUID runId, UUID projectId) {
          try {
              WorkflowRun run = workflowRunRepository.findById(runId).orElseThrow();
+             if (run.getStatus() != TaskStatus.RUNNING) {
+                 // Cancelled between admission and dispatch
+                 log.info("Run {} is {}, not executing it", runId, run.getStatus());
+                 runAdmissionService.release(runId);
+                 return;
+             }
              Workflow workflow = workflowRepository.findByProjectId(projectId)
                      .orElseThrow(() -> new IllegalArgumentException("Workflow not found"));
 
-             // Initial context
-             Project project = projectRepository.findById(projectId).orElseThrow();
-             Map<String, Object> executionContext = new HashMap<>();
-             if (project.getDescription() != null) {
-                 executionContext.put("description", project.getDescription());
+             WorkflowPlan plan = workflowPlanCache.getPlan(workflow);
+             RunExecution execution = createExecution(run, plan, projectId);
+             activeRuns.put(runId, execution);
+
+             // A cancel either found the execution above or has already marked the run
+             if (workflowRunRepository.findStatusById(runId).orElse(null) != TaskStatus.RUNNING) {
+                 activeRuns.remove(runId);
+                 execution.cancel();
+                 runAdmissionService.release(runId);
+                 return;
              }
 
-             List<Map<String, Object>> sortedNodes = getSortedNodes(workflow.getGraphData());
+             workflowRunRepository.updatePlan(runId, plan.getWorkflowId(), plan.getVersion(), execution.size());
 
-             for (int i = 0; i < sortedNodes.size(); i++) {
-                 boolean success = executeNode(run, sortedNodes.get(i), executionContext);
-                 if (!success) {
-                     // Node failed, stop execution.
-                     // If it was retried, the retry mechanism will trigger continueRunAsync later.
-                     // If it failed permanently, the run is already marked as failed.
-                     return;
-                 }
+             if (run.getSourceRunId() != null && reuseUnchangedNodes(execution, run.getSourceRunId()) && execution.tryFinish()) {
+                 activeRuns.remove(runId);
+                 completeRun(runId);
+                 return;
              }
 
-             completeRun(runId);
+             dispatch(execution, execution.drainReady());
 
          } catch (Exception e) {
              log.error("Run failed", e);
+             activeRuns.remove(runId);
              failRun(runId);
          }
     }
 
-    @Async
-    public void continueRunAsync(UUID runId, Map<String, Object> context, int startNodeIndex) {
+    /**
+     * Resumes a run whose execution was lost, e.g. by a restart, from its checkpoints.
+     * Nodes with a checkpoint are not executed again; tasks that were in flight are failed
+     * and their nodes dispatched anew, and tasks waiting for a retry keep their persisted retry time.
+     */
+    @Async("workflowTaskExecutor")
+    public void resumeRunAsync(UUID runId) {
         try {
-            WorkflowRun run = workflowRunRepository.findById(runId).orElseThrow();
-            Workflow workflow = workflowRepository.findByProjectId(run.getProject().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Workflow not found"));
+            if (activeRuns.containsKey(runId)) {
+                log.info("Run {} is already executing, nothing to resume", runId);
+                return;
+            }
+            if (!isRunning(runId)) {
+                return;
+            }
 
-            List<Map<String, Object>> sortedNodes = getSortedNodes(workflow.getGraphData());
+            RunExecution execution = getOrRestoreExecution(runId);
+            log.info("Resuming run {} with {}/{} nodes restored from checkpoints",
+                    runId, execution.getCompletedCount(), execution.size());
 
-            for (int i = startNodeIndex; i < sortedNodes.size(); i++) {
-                boolean success = executeNode(run, sortedNodes.get(i), context);
-                if (!success) {
-                    return;
+            for (AgentTask task : agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(runId)) {
+                if (task.getParentTaskId() != null) {
+                    // Subtasks are not resumed; their node is failed below and generated anew
+                    if (isUnfinished(task.getStatus())) {
+                        agentTaskService.cancelTask(task.getId(), "Interrupted, its node will be executed again.");
+                    }
+                    continue;
+                }
+                if (task.getNodeId() == null) {
+                    continue;
+                }
+                if (task.getStatus() == TaskStatus.PENDING || task.getStatus() == TaskStatus.RUNNING) {
+                    agentTaskService.failTask(task.getId(), "Interrupted before completion, the node will be executed again.");
+                } else if (task.getStatus() == TaskStatus.RETRY_WAIT) {
+                    execution.markRetryWait(execution.indexOf(task.getNodeId()));
+                    // Retries without a due time predate the retry scheduler and are due right away
+                    retryScheduler.schedule(task.getId(), runId,
+                            task.getNextRetryAt() != null ? task.getNextRetryAt() : ZonedDateTime.now());
                 }
             }
 
-            completeRun(runId);
+            if (execution.tryFinish()) {
+                activeRuns.remove(runId);
+                completeRun(runId);
+                return;
+            }
+
+            dispatch(execution, execution.drainReady());
+
         } catch (Exception e) {
-            log.error("Run continuation failed", e);
+            log.error("Run resume failed", e);
+            activeRuns.remove(runId);
             failRun(runId);
         }
     }
 
-    @Async
+    @Async("workflowTaskExecutor")
     public void retryTaskAsync(UUID taskId, UUID runId) {
         try {
+            if (!isRunning(runId)) {
+                return;
+            }
             AgentTask task = agentTaskRepository.findById(taskId).orElseThrow();
-            WorkflowRun run = workflowRunRepository.findById(runId).orElseThrow();
 
             log.info("Retrying task {} (Run {})", taskId, runId);
 
+            if (task.getParentTaskId() != null) {
+                retrySubtask(task);
+                return;
+            }
+
+            RunExecution execution = getOrRestoreExecution(runId);
+            if (task.getNodeId() == null) {
+                throw new IllegalStateException("Task " + taskId + " is not bound to a workflow node");
+            }
+            int nodeIndex = execution.indexOf(task.getNodeId());
+
+            // Nodes deferred while the run was halted are released together with the retried node
+            dispatch(execution, execution.reopen(nodeIndex));
+
             // Re-execute task
             // We need to catch exception here too in case retry fails again
-            Map<String, Object> result = null;
-            try {
-                Map<String, Object> inputContext = task.getInputContext();
-                result = llmAgentExecutionService.executeTask(task, inputContext);
-            } catch (Exception e) {
-                 handleTaskFailure(task, run, e);
-                 return;
-            }
+            Map<String, Object> inputContext = task.getInputContext() != null
+                    ? task.getInputContext()
+                    : execution.inputFor(nodeIndex);
+            runNodeTask(execution, nodeIndex, task, inputContext);
+
+        } catch (Exception e) {
+            log.error("Task retry setup failed", e);
+            activeRuns.remove(runId);
+            failRun(runId);
+        }
+    }
 
-            // If successful, continue the run
-            Map<String, Object> nextContext = new HashMap<>();
-            if (task.getInputContext() != null) {
-                nextContext.putAll(task.getInputContext());
+    /**
+     * Stops a run: nothing further is dispatched, outstanding LLM calls are aborted so their workers are
+     * released right away, and unfinished tasks are cancelled, which also drops their scheduled retries.
+     * The caller has already marked the run CANCELLED.
+     */
+    public void cancelRun(UUID runId) {
+        RunExecution execution = activeRuns.remove(runId);
+        if (execution != null) {
+            execution.cancel();
+        }
+        activeFanOuts.values().removeIf(fanOut -> fanOut.getExecution().getRun().getId().equals(runId));
+
+        for (AgentTask task : agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(runId)) {
+            if (isUnfinished(task.getStatus())) {
+                // Cancel before aborting, so the aborted worker finds the task already settled
+                agentTaskService.cancelTask(task.getId(), "Cancelled with run " + runId);
+                llmAgentExecutionService.abort(task.getId());
             }
-            if (result != null) {
-                nextContext.putAll(result);
+        }
+
+        runAdmissionService.release(runId);
+        log.info("Run {} cancelled", runId);
+    }
+
+    private void dispatch(RunExecution execution, List<Integer> nodeIndexes) {
+        for (int nodeIndex : nodeIndexes) {
+            try {
+                workflowTaskExecutor.execute(() -> {
+                    try {
+                        executeNode(execution, nodeIndex);
+                    } catch (Exception e) {
+                        log.error("Node execution failed", e);
+                        abortNode(execution, nodeIndex);
+                    }
+                });
+            } catch (TaskRejectedException e) {
+                log.error("Workflow executor rejected node {} of run {}", nodeIndex, execution.getRun().getId(), e);
+                abortNode(execution, nodeIndex);
             }
+        }
+    }
+
+    private void abortNode(RunExecution execution, int nodeIndex) {
+        execution.markFailed(nodeIndex);
+        failRun(execution.getRun().getId());
+        releaseIfIdle(execution);
+    }
+
+    /**
+     * Executes a node and schedules its downstream nodes once it succeeds.
+     */
+    private void executeNode(RunExecution execution, int nodeIndex) {
+         if (execution.isCancelled()) {
+             return;
+         }
+         PlanNode node = execution.getNode(nodeIndex);
+         WorkflowRun run = execution.getRun();
+         Map<String, Object> inputContext = execution.inputFor(nodeIndex);
 
-            // Determine next node index
-            Workflow workflow = workflowRepository.findByProjectId(run.getProject().getId())
-                    .orElseThrow(() -> new IllegalArgumentException("Workflow not found"));
-            List<Map<String, Object>> sortedNodes = getSortedNodes(workflow.getGraphData());
+         // Create Task
+         AgentTask task = agentTaskService.createTask(run.getProject().getId(), run, node.getId(), node.getAgentType(),
+                 node.getTaskName(), new HashMap<>(node.getData()));
+         agentTaskService.publishEvent(task, TaskEventType.STEP_START,
+                 "Node " + task.getTaskName() + " started (" + execution.getCompletedCount() + "/" + execution.size() + " nodes done)");
 
-            // Find task index by matching agent types in order
-            List<AgentTask> tasks = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId());
+         runNodeTask(execution, nodeIndex, task, inputContext);
+    }
 
-            int taskIndex = -1;
-            for(int i=0; i<tasks.size(); i++) {
-                if(tasks.get(i).getId().equals(taskId)) {
-                    taskIndex = i;
-                    break;
-                }
+    /**
+     * Executes the task of a node, as parallel module subtasks where the node's design splits into modules.
+     */
+    private void runNodeTask(RunExecution execution, int nodeIndex, AgentTask task, Map<String, Object> inputContext) {
+        if (task.getAgentType() == AgentType.PG) {
+            List<PgFanOutPlanner.Module> modules = pgFanOutPlanner.split(inputContext);
+            if (!modules.isEmpty()) {
+                startFanOut(execution, nodeIndex, task, inputContext, modules);
+                return;
             }
+        }
 
-            if (taskIndex >= 0 && taskIndex < sortedNodes.size() - 1) {
-                // Continue with next node
-                continueRunAsync(run.getId(), nextContext, taskIndex + 1);
-            } else {
-                // Last task, just complete run
-                completeRun(run.getId());
+        Map<String, Object> result;
+        try {
+            // Execute
+            result = llmAgentExecutionService.executeTask(task, inputContext);
+        } catch (Exception e) {
+            handleTaskFailure(task, execution, nodeIndex, e);
+            return;
+        }
+
+        onNodeSuccess(execution, nodeIndex, task, result);
+    }
+
+    private void startFanOut(RunExecution execution, int nodeIndex, AgentTask task, Map<String, Object> inputContext,
+                             List<PgFanOutPlanner.Module> modules) {
+        agentTaskService.setInputContext(task.getId(), inputContext, null);
+        agentTaskService.startTask(task.getId());
+
+        FanOut fanOut = new FanOut(execution, nodeIndex, task, modules);
+        List<AgentTask> subtasks = new ArrayList<>(modules.size());
+        for (int i = 0; i < modules.size(); i++) {
+            AgentTask subtask = agentTaskService.createSubtask(task,
+                    task.getTaskName() + " [" + modules.get(i).name() + "]", new HashMap<>());
+            fanOut.addSubtask(subtask.getId(), i);
+            subtasks.add(subtask);
+        }
+        activeFanOuts.put(task.getId(), fanOut);
+        agentTaskService.updateProgress(task.getId(), 5, "Generating " + modules.size() + " modules in parallel: "
+                + modules.stream().map(PgFanOutPlanner.Module::name).toList());
+
+        for (AgentTask subtask : subtasks) {
+            try {
+                workflowTaskExecutor.execute(() -> runSubtask(fanOut, subtask));
+            } catch (TaskRejectedException e) {
+                log.error("Workflow executor rejected subtask {} of run {}", subtask.getId(), execution.getRun().getId(), e);
+                failFanOut(fanOut, "Subtask " + subtask.getTaskName() + " could not be scheduled");
             }
+        }
+    }
 
+    private void runSubtask(FanOut fanOut, AgentTask subtask) {
+        if (fanOut.getExecution().isCancelled()) {
+            return;
+        }
+        try {
+            Map<String, Object> result;
+            try {
+                result = llmAgentExecutionService.executeTask(subtask, fanOut.inputOf(subtask.getId()));
+            } catch (Exception e) {
+                handleSubtaskFailure(fanOut, subtask, e);
+                return;
+            }
+            onSubtaskSuccess(fanOut, subtask, result);
         } catch (Exception e) {
-            log.error("Task retry setup failed", e);
-            failRun(runId);
+            log.error("Subtask execution failed", e);
+            failFanOut(fanOut, "Subtask " + subtask.getTaskName() + " failed: " + e.getMessage());
+        }
+    }
+
+    private void retrySubtask(AgentTask subtask) {
+        FanOut fanOut = activeFanOuts.get(subtask.getParentTaskId());
+        if (fanOut == null || fanOut.getExecution().isCancelled()) {
+            agentTaskService.cancelTask(subtask.getId(), "Its node is no longer executing, the retry was dropped.");
+            return;
+        }
+        runSubtask(fanOut, subtask);
+    }
+
+    private void onSubtaskSuccess(FanOut fanOut, AgentTask subtask, Map<String, Object> result) {
+        AgentTask parent = fanOut.getParentTask();
+        String module = fanOut.moduleOf(subtask.getId());
+        List<Map<String, Object>> results = fanOut.complete(subtask.getId(), result);
+        if (results == null) {
+            // Progress is only published, the node task is written once when all modules are done
+            agentTaskService.publishEvent(parent, TaskEventType.PROGRESS, "Module " + module + " generated ("
+                    + fanOut.getCompletedCount() + "/" + fanOut.getModules().size() + ")");
+            return;
+        }
+        activeFanOuts.remove(parent.getId(), fanOut);
+
+        Map<String, Object> merged = pgFanOutPlanner.merge(fanOut.getModules(), results);
+        if (merged.get("conflicts") instanceof List<?> conflicts) {
+            log.warn("Task {}: {} files were generated differently by several modules, keeping the first version",
+                    parent.getId(), conflicts.size());
+            agentTaskService.updateProgress(parent.getId(), 95, conflicts.size()
+                    + " files were generated differently by several modules, keeping the version of the first one");
+        }
+        agentTaskService.updateContext(parent.getId(), merged);
+        agentTaskService.completeTask(parent.getId(), "Generated " + ((List<?>) merged.get("files")).size()
+                + " files in " + fanOut.getModules().size() + " modules.");
+
+        onNodeSuccess(fanOut.getExecution(), fanOut.getNodeIndex(), parent, merged);
+    }
+
+    private void handleSubtaskFailure(FanOut fanOut, AgentTask subtask, Exception e) {
+        if (fanOut.getExecution().isCancelled()) {
+            log.info("Subtask {} stopped, its run was cancelled", subtask.getId());
+            return;
+        }
+        if (e instanceof CancellationException) {
+            // Cancelled along with its node, which another module failed
+            log.info("Subtask {} stopped, it was cancelled", subtask.getId());
+            return;
+        }
+        log.error("Subtask {} failed: {}", subtask.getId(), e.getMessage());
+
+        if (!scheduleRetry(subtask, fanOut.getExecution().getRun(), e, () -> { })) {
+            metrics.countPermanentFailure(subtask.getAgentType());
+            failFanOut(fanOut, "Module " + fanOut.moduleOf(subtask.getId()) + " failed: " + e.getMessage());
         }
     }
 
     /**
-     * Executes a node. Returns true if successful, false if failed (or retrying).
+     * Fails a node generated by subtasks, cancelling the subtasks of its other modules.
      */
-    private boolean executeNode(WorkflowRun run, Map<String, Object> node, Map<String, Object> context) {
-         Map<String, Object> data = (Map<String, Object>) node.get("data");
-         String agentTypeStr = (String) data.get("agentType");
-         String label = (String) data.get("label");
+    private void failFanOut(FanOut fanOut, String reason) {
+        if (!fanOut.fail()) {
+            return;
+        }
+        AgentTask parent = fanOut.getParentTask();
+        activeFanOuts.remove(parent.getId(), fanOut);
+        for (AgentTask subtask : agentTaskRepository.findAllById(fanOut.getSubtaskIds())) {
+            if (isUnfinished(subtask.getStatus())) {
+                agentTaskService.cancelTask(subtask.getId(), "Cancelled, another module of the node failed");
+                llmAgentExecutionService.abort(subtask.getId());
+            }
+        }
+        agentTaskService.failTask(parent.getId(), reason);
 
-         AgentType agentType;
-         try {
-             agentType = AgentType.valueOf(agentTypeStr);
-         } catch (IllegalArgumentException e) {
-             log.error("Invalid agent type: {}", agentTypeStr);
-             throw e;
-         }
+        RunExecution execution = fanOut.getExecution();
+        execution.markFailed(fanOut.getNodeIndex());
+        failRun(execution.getRun().getId());
+        releaseIfIdle(execution);
+    }
 
-         // Create Task
-         AgentTask task = agentTaskService.createTask(run.getProject().getId(), run, agentType, label != null ? label : agentType.name() + " Task", data);
+    private void onNodeSuccess(RunExecution execution, int nodeIndex, AgentTask task, Map<String, Object> result) {
+        // Persist the result before anything downstream depends on it
+        saveCheckpoint(execution, nodeIndex, task, result);
 
-         try {
-             // Execute
-             Map<String, Object> result = llmAgentExecutionService.executeTask(task, context);
+        List<Integer> readyNodes = execution.complete(nodeIndex, result);
 
-             // Update context for next steps
-             if (result != null) {
-                 context.putAll(result);
-             }
-             return true;
-         } catch (Exception e) {
-             return handleTaskFailure(task, run, e);
-         }
+        UUID runId = execution.getRun().getId();
+        int completed = execution.getCompletedCount();
+        workflowRunRepository.updateCompletedNodes(runId, completed);
+        agentTaskService.publishEvent(task, TaskEventType.STEP_COMPLETE,
+                "Node " + task.getTaskName() + " completed (" + completed + "/" + execution.size() + " nodes done)");
+
+        if (execution.tryFinish()) {
+            activeRuns.remove(runId);
+            completeRun(runId);
+            return;
+        }
+
+        dispatch(execution, readyNodes);
+        releaseIfIdle(execution);
     }
 
-    private boolean handleTaskFailure(AgentTask task, WorkflowRun run, Exception e) {
+    private void handleTaskFailure(AgentTask task, RunExecution execution, int nodeIndex, Exception e) {
+         if (execution.isCancelled()) {
+             log.info("Task {} stopped, its run was cancelled", task.getId());
+             return;
+         }
          log.error("Task {} failed: {}", task.getId(), e.getMessage());
 
-         // Refresh task from DB to get latest retry count if needed (though we have the object)
-         // But let's use the object we have, assuming it's up to date or we increment on it
-
-         if (task.isRetryable() && task.getRetryCount() < task.getMaxRetries()) {
-             int newRetryCount = task.getRetryCount() + 1;
-             task.setRetryCount(newRetryCount);
-             task.setStatus(TaskStatus.RETRY_WAIT);
-
-             // Update history
-             List<Map<String, Object>> history = task.getAttemptHistory();
-             if (history == null) history = new ArrayList<>();
-             Map<String, Object> attempt = new HashMap<>();
-             attempt.put("timestamp", ZonedDateTime.now().toString());
-             attempt.put("error", e.getMessage());
-             attempt.put("attempt", newRetryCount);
-             history.add(attempt);
-             task.setAttemptHistory(history);
-
-             agentTaskRepository.save(task);
-
-             // Calculate delay
-             // Calculate delay
-             long delaySeconds = (long) (task.getInitialDelaySeconds() * Math.pow(task.getBackoffFactor(), newRetryCount - 1));
-
-             // Check if we are in a test environment to speed up retries
-             // Simple hack: if initialDelaySeconds is small (< 1), treat it as millis or just run fast
-             // Or better: rely on the task configuration.
-             // In tests, we can set initialDelaySeconds to 0 or 1.
-             // But standard integration tests use default values (5s).
-             // Let's force a shorter delay if system property is set, or just use what we have.
-             // The integration test failed waiting for 5s+.
-
-             long delayMillis = delaySeconds * 1000;
-
-             // Optimization for tests: check a system property
-             if (Boolean.getBoolean("app.test.mode")) {
-                 delayMillis = 100; // 100ms in test mode
-                 log.info("Test mode detected: Overriding retry delay to {}ms", delayMillis);
-             }
+         WorkflowRun run = execution.getRun();
 
-             log.info("Scheduling retry {} for task {} in {} seconds ({} ms)", newRetryCount, task.getId(), delaySeconds, delayMillis);
+         if (!scheduleRetry(task, run, e, () -> execution.markRetryWait(nodeIndex))) {
+             // Permanent failure
+             // LlmAgentExecutionService catches exceptions and calls failTask, so the task is already FAIL.
+             // Other branches still running are allowed to finish, but nothing new is dispatched.
+             metrics.countPermanentFailure(task.getAgentType());
+             execution.markFailed(nodeIndex);
+             failRun(run.getId());
+             releaseIfIdle(execution);
+         }
+    }
 
-             agentTaskService.publishEvent(task, TaskEventType.RETRY_SCHEDULED, "Retry " + newRetryCount + " scheduled in " + (delayMillis/1000.0) + "s");
+    /**
+     * Schedules the next attempt of a failed task if it has retries left. {@code onRetryWait} runs once
+     * the task is persisted as waiting, before the retry can fire.
+     */
+    private boolean scheduleRetry(AgentTask task, WorkflowRun run, Exception e, Runnable onRetryWait) {
+        if (!task.isRetryable() || task.getRetryCount() >= task.getMaxRetries()) {
+            return false;
+        }
 
-             CompletableFuture.runAsync(() -> retryTaskAsync(task.getId(), run.getId()),
-                     CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
-                     .exceptionally(ex -> {
-                         log.error("Failed to execute scheduled retry", ex);
-                         return null;
-                     });
+        int newRetryCount = task.getRetryCount() + 1;
+        task.setRetryCount(newRetryCount);
+        task.setStatus(TaskStatus.RETRY_WAIT);
+
+        // Update history
+        List<Map<String, Object>> history = task.getAttemptHistory();
+        if (history == null) history = new ArrayList<>();
+        Map<String, Object> attempt = new HashMap<>();
+        attempt.put("timestamp", ZonedDateTime.now().toString());
+        attempt.put("error", e.getMessage());
+        attempt.put("attempt", newRetryCount);
+        history.add(attempt);
+        task.setAttemptHistory(history);
+
+        // Calculate delay
+        long delaySeconds = (long) (task.getInitialDelaySeconds() * Math.pow(task.getBackoffFactor(), newRetryCount - 1));
+        long delayMillis = delaySeconds * 1000;
+
+        // Optimization for tests: check a system property
+        if (Boolean.getBoolean("app.test.mode")) {
+            delayMillis = 100; // 100ms in test mode
+            log.info("Test mode detected: Overriding retry delay to {}ms", delayMillis);
+        }
 
-             return false; // Stop current execution flow
-         } else {
-             // Permanent failure
-             // AgentTaskService.failTask might have been called inside executeTask exception handling?
-             // LlmAgentExecutionService catches exceptions and calls failTask, then rethrows.
-             // So task status is likely already FAIL.
-             // But just in case, or to update history for final failure:
+        // Persist the due time first so the retry survives a restart
+        ZonedDateTime nextRetryAt = ZonedDateTime.now().plusNanos(delayMillis * 1_000_000L);
+        task.setNextRetryAt(nextRetryAt);
+        if (agentTaskRepository.markRetryWait(task.getId(), newRetryCount, history, nextRetryAt) == 0) {
+            log.info("Task {} was cancelled, no retry scheduled", task.getId());
+            return false;
+        }
+        onRetryWait.run();
 
-             // We need to ensure the final error is in history too?
-             // Or failTask handles it?
+        log.info("Scheduling retry {} for task {} in {} seconds ({} ms)", newRetryCount, task.getId(), delaySeconds, delayMillis);
 
-             // failRun(run.getId()); // failRun is called by caller if we return false/throw?
-             // executeRunAsync catches exception and calls failRun.
-             // But if we return false here, we need to make sure run is failed.
+        metrics.countRetry(task.getAgentType());
+        agentTaskService.publishEvent(task, TaskEventType.RETRY_SCHEDULED, "Retry " + newRetryCount + " scheduled in " + (delayMillis/1000.0) + "s");
 
-             failRun(run.getId());
-             return false;
-         }
+        retryScheduler.schedule(task.getId(), run.getId(), nextRetryAt);
+        return true;
     }
 
-    private void completeRun(UUID runId) {
-        WorkflowRun run = workflowRunRepository.findById(runId).orElse(null);
-        if (run != null) {
-            run.setStatus(TaskStatus.SUCCESS);
-            run.setEndedAt(ZonedDateTime.now());
-            workflowRunRepository.save(run);
+    private void saveCheckpoint(RunExecution execution, int nodeIndex, AgentTask task, Map<String, Object> result) {
+        WorkflowRun run = execution.getRun();
+        String nodeId = execution.getNode(nodeIndex).getId();
+        WorkflowRunCheckpoint checkpoint = checkpointRepository.findByWorkflowRun_IdAndNodeId(run.getId(), nodeId)
+                .orElse(WorkflowRunCheckpoint.builder().workflowRun(run).nodeId(nodeId).build());
+        checkpoint.setAgentTaskId(task.getId());
+        checkpoint.setFingerprint(execution.fingerprintOf(nodeIndex));
+        checkpoint.setResult(result);
+        checkpointRepository.save(checkpoint);
+    }
+
+    /**
+     * Drops a halted run from memory once none of its nodes are executing anymore.
+     * A later retry rebuilds the execution from the run's checkpoints.
+     */
+    private void releaseIfIdle(RunExecution execution) {
+        if (execution.isHalted() && execution.isIdle()) {
+            activeRuns.remove(execution.getRun().getId(), execution);
         }
     }
 
-    private void failRun(UUID runId) {
-        WorkflowRun run = workflowRunRepository.findById(runId).orElse(null);
-        if (run != null) {
-            run.setStatus(TaskStatus.FAIL);
-            run.setEndedAt(ZonedDateTime.now());
-            workflowRunRepository.save(run);
+    /**
+     * Takes over the results of nodes whose fingerprint is unchanged since the source run, so only changed
+     * nodes and their descendants are executed. Returns true if any node was reused.
+     */
+    private boolean reuseUnchangedNodes(RunExecution execution, UUID sourceRunId) {
+        Map<String, WorkflowRunCheckpoint> sourceCheckpoints = new HashMap<>();
+        for (WorkflowRunCheckpoint checkpoint : checkpointRepository.findByWorkflowRun_Id(sourceRunId)) {
+            sourceCheckpoints.put(checkpoint.getNodeId(), checkpoint);
+        }
+
+        WorkflowRun run = execution.getRun();
+        List<WorkflowRunCheckpoint> reused = new ArrayList<>();
+        boolean[] restored = new boolean[execution.size()];
+        // Topological order: a node is only reused when everything upstream of it was reused as well
+        for (int i = 0; i < execution.size(); i++) {
+            WorkflowRunCheckpoint source = sourceCheckpoints.get(execution.getNode(i).getId());
+            String fingerprint = execution.fingerprintOf(i);
+            if (source == null || !fingerprint.equals(source.getFingerprint())) {
+                continue;
+            }
+            boolean upstreamRestored = true;
+            for (int upstream : execution.getPlan().getPredecessors()[i]) {
+                upstreamRestored &= restored[upstream];
+            }
+            if (!upstreamRestored) {
+                continue;
+            }
+
+            execution.restore(i, source.getResult());
+            restored[i] = true;
+            reused.add(WorkflowRunCheckpoint.builder()
+                    .workflowRun(run)
+                    .nodeId(source.getNodeId())
+                    .agentTaskId(source.getAgentTaskId())
+                    .fingerprint(fingerprint)
+                    .result(source.getResult())
+                    .build());
         }
+
+        if (reused.isEmpty()) {
+            log.info("Run {}: no node is unchanged since run {}, executing all nodes", run.getId(), sourceRunId);
+            return false;
+        }
+        // Copied so that this run can be resumed, and serve as the source of the next incremental run, on its own
+        checkpointRepository.saveAll(reused);
+        workflowRunRepository.updateReusedNodes(run.getId(), reused.size(), execution.getCompletedCount());
+        log.info("Run {}: reusing {}/{} node results from run {}", run.getId(), reused.size(), execution.size(), sourceRunId);
+        return true;
     }
 
-    private List<Map<String, Object>> getSortedNodes(Map<String, Object> graphData) {
-        List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
-        List<Map<String, Object>> edges = (List<Map<String, Object>>) graphData.get("edges");
-        if (edges == null) edges = new ArrayList<>();
-        return topologicalSort(nodes, edges);
+    private RunExecution createExecution(WorkflowRun run, WorkflowPlan plan, UUID projectId) {
+        // Initial context
+        Project project = projectRepository.findById(projectId).orElseThrow();
+        Map<String, Object> executionContext = new HashMap<>();
+        if (project.getDescription() != null) {
+            executionContext.put("description", project.getDescription());
+        }
+        return new RunExecution(run, plan, executionContext);
     }
 
-    private List<Map<String, Object>> topologicalSort(List<Map<String, Object>> nodes, List<Map<String, Object>> edges) {
-        Map<String, List<String>> adj = new HashMap<>();
-        Map<String, Integer> inDegree = new HashMap<>();
-        Map<String, Map<String, Object>> nodeMap = new HashMap<>();
+    /**
+     * Returns the in-memory execution of a run, or rebuilds it from the run's checkpoints
+     * when it is no longer held in memory (after a restart or a permanent failure).
+     */
+    private RunExecution getOrRestoreExecution(UUID runId) {
+        RunExecution active = activeRuns.get(runId);
+        if (active != null) {
+            return active;
+        }
+
+        WorkflowRun run = workflowRunRepository.findById(runId).orElseThrow();
+        UUID projectId = run.getProject().getId();
+        Workflow workflow = workflowRepository.findByProjectId(projectId)
+                .orElseThrow(() -> new IllegalArgumentException("Workflow not found"));
+        RunExecution execution = createExecution(run, planOf(run, workflow), projectId);
 
-        for (Map<String, Object> node : nodes) {
-            String id = (String) node.get("id");
-            nodeMap.put(id, node);
-            adj.put(id, new ArrayList<>());
-            inDegree.put(id, 0);
+        Map<String, Map<String, Object>> resultsByNode = new HashMap<>();
+        for (WorkflowRunCheckpoint checkpoint : checkpointRepository.findByWorkflowRun_Id(runId)) {
+            resultsByNode.put(checkpoint.getNodeId(), checkpoint.getResult());
         }
 
-        for (Map<String, Object> edge : edges) {
-            String source = (String) edge.get("source");
-            String target = (String) edge.get("target");
-            if (adj.containsKey(source) && inDegree.containsKey(target)) {
-                adj.get(source).add(target);
-                inDegree.put(target, inDegree.get(target) + 1);
+        for (int i = 0; i < execution.size(); i++) {
+            String nodeId = execution.getNode(i).getId();
+            if (resultsByNode.containsKey(nodeId)) {
+                execution.restore(i, resultsByNode.get(nodeId));
             }
         }
 
-        Queue<String> queue = new LinkedList<>();
-        for (Map.Entry<String, Integer> entry : inDegree.entrySet()) {
-            if (entry.getValue() == 0) {
-                queue.add(entry.getKey());
-            }
+        RunExecution existing = activeRuns.putIfAbsent(runId, execution);
+        return existing != null ? existing : execution;
+    }
+
+    // A run cancelled between admission and dispatch gives its slot back and is not executed
+    private boolean isRunning(UUID runId) {
+        TaskStatus status = workflowRunRepository.findStatusById(runId).orElse(null);
+        if (status == TaskStatus.RUNNING) {
+            return true;
         }
+        log.info("Run {} is {}, not executing it", runId, status);
+        runAdmissionService.release(runId);
+        return false;
+    }
 
-        List<Map<String, Object>> result = new ArrayList<>();
-        while (!queue.isEmpty()) {
-            String u = queue.poll();
-            result.add(nodeMap.get(u));
+    /**
+     * Returns the plan a run was started with. Checkpoints are keyed by node id, so they are never applied
+     * to an edited graph: when the workflow changed and the original plan is no longer cached, the run
+     * cannot be continued and has to be started anew.
+     */
+    private WorkflowPlan planOf(WorkflowRun run, Workflow workflow) {
+        ZonedDateTime version = run.getWorkflowVersion();
+        if (version == null || workflow.getUpdatedAt() == null
+                || version.toInstant().equals(workflow.getUpdatedAt().toInstant())) {
+            return workflowPlanCache.getPlan(workflow);
+        }
+        return workflowPlanCache.findPlan(workflow.getId(), version)
+                .orElseThrow(() -> new IllegalStateException("Workflow of run " + run.getId()
+                        + " was edited since the run started, start a new run instead"));
+    }
 
-            if (adj.containsKey(u)) {
-                for (String v : adj.get(u)) {
-                    inDegree.put(v, inDegree.get(v) - 1);
-                    if (inDegree.get(v) == 0) {
-                        queue.add(v);
-                    }
-                }
-            }
+    private void completeRun(UUID runId) {
+        ZonedDateTime endedAt = ZonedDateTime.now();
+        if (workflowRunRepository.markSucceeded(runId, endedAt) > 0) {
+            recordRunDuration(runId, endedAt, TaskStatus.SUCCESS);
         }
+        runAdmissionService.release(runId);
+    }
 
-        if (result.size() != nodes.size()) {
-            throw new IllegalStateException("Cycle detected in workflow graph");
+    private void failRun(UUID runId) {
+        ZonedDateTime endedAt = ZonedDateTime.now();
+        if (workflowRunRepository.markFailed(runId, endedAt) > 0) {
+            recordRunDuration(runId, endedAt, TaskStatus.FAIL);
         }
+        runAdmissionService.release(runId);
+    }
+
+    private static boolean isUnfinished(TaskStatus status) {
+        return status == TaskStatus.PENDING || status == TaskStatus.RUNNING || status == TaskStatus.RETRY_WAIT;
+    }
 
-        return result;
+    private void recordRunDuration(UUID runId, ZonedDateTime endedAt, TaskStatus status) {
+        workflowRunRepository.findById(runId)
+                .map(WorkflowRun::getStartedAt)
+                .ifPresent(startedAt -> metrics.recordRunDuration(Duration.between(startedAt, endedAt), status));
     }
 }
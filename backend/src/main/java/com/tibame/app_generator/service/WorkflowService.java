@@ -1,6 +1,6 @@
 package com.tibame.app_generator.service;
 
-import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.RunMode;
 import com.tibame.app_generator.enums.TaskStatus;
 import com.tibame.app_generator.model.AgentTask;
 import com.tibame.app_generator.model.Project;
@@ -10,6 +10,8 @@ import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.ProjectRepository;
 import com.tibame.app_generator.repository.WorkflowRunRepository;
 import com.tibame.app_generator.repository.WorkflowRepository;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
+import com.tibame.app_generator.service.workflow.WorkflowGraphValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.scheduling.annotation.Async;
@@ -29,6 +31,7 @@ public class WorkflowService {
     private final WorkflowRunRepository workflowRunRepository;
     private final AgentTaskRepository agentTaskRepository;
     private final WorkflowExecutor workflowExecutor;
+    private final RunAdmissionService runAdmissionService;
 
     @Transactional
     public Workflow saveWorkflow(UUID projectId, Map<String, Object> graphData) {
@@ -48,38 +51,16 @@ public class WorkflowService {
     }
 
     public List<String> validateWorkflow(Map<String, Object> graphData) {
-        List<String> errors = new ArrayList<>();
-        if (graphData == null || !graphData.containsKey("nodes")) {
-            errors.add("Invalid graph data structure.");
-            return errors;
-        }
-
-        List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
-
-        if (nodes == null || nodes.isEmpty()) {
-            errors.add("Workflow must contain at least one node.");
-            return errors;
-        }
-
-        Set<String> presentTypes = new HashSet<>();
-        for (Map<String, Object> node : nodes) {
-            Map<String, Object> data = (Map<String, Object>) node.get("data");
-            if (data != null && data.containsKey("agentType")) {
-                presentTypes.add(String.valueOf(data.get("agentType")));
-            }
-        }
-
-        for (AgentType type : AgentType.values()) {
-            if (!presentTypes.contains(type.name())) {
-                 errors.add("Missing required agent role: " + type.name());
-            }
-        }
-
-        return errors;
+        return WorkflowGraphValidator.validate(graphData);
     }
 
     @Transactional
     public WorkflowRun startRun(UUID projectId) {
+        return startRun(projectId, RunMode.FULL);
+    }
+
+    @Transactional
+    public WorkflowRun startRun(UUID projectId, RunMode mode) {
         Workflow workflow = getWorkflow(projectId);
         List<String> validationErrors = validateWorkflow(workflow.getGraphData());
         if (!validationErrors.isEmpty()) {
@@ -91,32 +72,51 @@ public class WorkflowService {
 
         WorkflowRun run = WorkflowRun.builder()
                 .project(project)
-                .status(TaskStatus.RUNNING)
-                .startedAt(ZonedDateTime.now())
+                .status(TaskStatus.PENDING)
                 .build();
 
+        if (mode == RunMode.CHANGED) {
+            // Without a successful run there is nothing to reuse and the run executes every node
+            UUID sourceRunId = workflowRunRepository.findFirstByProjectIdAndStatusOrderByCreatedAtDesc(projectId, TaskStatus.SUCCESS)
+                    .map(WorkflowRun::getId)
+                    .orElse(null);
+            run.setSourceRunId(sourceRunId);
+        }
+
         run = workflowRunRepository.save(run);
 
-        // Trigger async execution via executor
-        workflowExecutor.executeRunAsync(run.getId(), projectId);
+        // Started by the admission queue as soon as the caps allow it
+        int position = runAdmissionService.submit(run);
+        if (position == 0) {
+            run.setStatus(TaskStatus.RUNNING);
+            run.setStartedAt(ZonedDateTime.now());
+        }
+        run.setQueuePosition(position);
 
         return run;
     }
 
-    @Async
+    @Async("workflowTaskExecutor")
     public void compileAndRun(UUID projectId) {
         // Deprecated: Delegates to startRun but ignores return
         startRun(projectId);
     }
 
+    /**
+     * Continues a failed or interrupted run. The run is queued for admission like a new one and returned
+     * with its queue position.
+     */
     @Transactional
-    public void resumeRun(UUID runId) {
+    public WorkflowRun resumeRun(UUID runId) {
         WorkflowRun run = workflowRunRepository.findById(runId)
                 .orElseThrow(() -> new IllegalArgumentException("Run not found: " + runId));
 
         if (run.getStatus() == TaskStatus.RUNNING) {
              throw new IllegalStateException("Run is already running.");
         }
+        if (run.getStatus() == TaskStatus.PENDING) {
+            throw new IllegalStateException("Run is waiting in the admission queue.");
+        }
 
         List<AgentTask> tasks = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(runId);
         AgentTask failedTask = tasks.stream()
@@ -125,26 +125,53 @@ public class WorkflowService {
                 .orElse(null);
 
         if (failedTask != null) {
-            retryTask(failedTask.getId());
-        } else {
-            // If no failed task, maybe it was interrupted?
-            // If status is FAIL but no failed task, maybe system crash.
-            // We should try to find the last task and see if we can resume.
-            log.warn("No failed task found to resume for run {}", runId);
-            // If we want to support resuming interrupted runs (e.g. server restart), we'd need to check which tasks are PENDING or RUNNING and restart them.
-            // For now, simpler to just say "No failed task".
+            return retryTask(failedTask.getId());
         }
+
+        // No failed task: the run was interrupted (e.g. by a restart or a setup error).
+        // Continue from the checkpoints of the nodes that already completed.
+        log.info("No failed task found for run {}, resuming from checkpoints", runId);
+        return admit(run, () -> workflowExecutor.resumeRunAsync(runId));
+    }
+
+    /**
+     * Cancels a queued or executing run. The run is marked CANCELLED before its execution is stopped,
+     * so that nodes aborted by the cancellation do not fail the run.
+     */
+    public WorkflowRun cancelRun(UUID runId) {
+        if (!workflowRunRepository.existsById(runId)) {
+            throw new IllegalArgumentException("Run not found: " + runId);
+        }
+        // Conditional update, so a run finishing at the same moment is not turned into a cancelled one
+        if (workflowRunRepository.markCancelled(runId, ZonedDateTime.now()) == 0) {
+            throw new IllegalStateException("Run is not running.");
+        }
+
+        workflowExecutor.cancelRun(runId);
+        return workflowRunRepository.findById(runId).orElseThrow();
     }
 
+    /**
+     * Executes a failed task again. A run that is no longer running is queued for admission first;
+     * returns the task's run.
+     */
     @Transactional
-    public void retryTask(UUID taskId) {
+    public WorkflowRun retryTask(UUID taskId) {
         AgentTask task = agentTaskRepository.findById(taskId)
                 .orElseThrow(() -> new IllegalArgumentException("Task not found: " + taskId));
 
+        if (task.getParentTaskId() != null) {
+            // A subtask that failed for good failed its node, which is generated anew
+            return retryTask(task.getParentTaskId());
+        }
+
         WorkflowRun run = task.getWorkflowRun();
         if (run == null) {
             throw new IllegalStateException("Task is not associated with a workflow run.");
         }
+        if (run.getStatus() == TaskStatus.PENDING) {
+            throw new IllegalStateException("Run is waiting in the admission queue.");
+        }
 
         // Idempotency check
         if (task.getStatus() == TaskStatus.RUNNING) {
@@ -155,6 +182,8 @@ public class WorkflowService {
         task.setStatus(TaskStatus.RUNNING);
         task.setRetryCount(task.getRetryCount() + 1);
         task.setErrorDetails(null);
+        // A pending scheduled retry can no longer claim the task
+        task.setNextRetryAt(null);
 
         // Update retry metadata
         Map<String, Object> metadata = task.getRetryMetadata();
@@ -180,13 +209,27 @@ public class WorkflowService {
 
         agentTaskRepository.save(task);
 
-        // Update run status if needed
-        if (run.getStatus() != TaskStatus.RUNNING) {
-            run.setStatus(TaskStatus.RUNNING);
-            workflowRunRepository.save(run);
+        UUID runId = run.getId();
+        if (run.getStatus() == TaskStatus.RUNNING) {
+            // The run still holds its slot
+            workflowExecutor.retryTaskAsync(taskId, runId);
+            return run;
         }
+        return admit(run, () -> workflowExecutor.retryTaskAsync(taskId, runId));
+    }
 
-        // Run async via executor
-        workflowExecutor.retryTaskAsync(task.getId(), run.getId());
+    // Queues a run to continue like startRun queues a new one; started right away if the caps allow it
+    private WorkflowRun admit(WorkflowRun run, Runnable start) {
+        run.setStatus(TaskStatus.PENDING);
+        run.setEndedAt(null);
+        workflowRunRepository.save(run);
+
+        int position = runAdmissionService.submit(run, start);
+        if (position == 0) {
+            run.setStatus(TaskStatus.RUNNING);
+            run.setStartedAt(ZonedDateTime.now());
+        }
+        run.setQueuePosition(position);
+        return run;
     }
 }
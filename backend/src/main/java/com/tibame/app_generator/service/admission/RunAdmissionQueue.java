@@ -0,0 +1,195 @@
+package com.tibame.app_generator.service.admission;
+
+import com.tibame.app_generator.enums.UserPlanType;
+
+import java.util.*;
+
+/**
+ * Admission state of workflow runs: which runs are queued and which ones hold a slot.
+ * <p>
+ * Runs are admitted while the global, per-project and per-user caps allow it. Among users with queued runs
+ * the next slot goes to the one with the lowest pass value (stride scheduling): each admission advances a
+ * user's pass by a stride inversely proportional to their weight, so over time users receive slots in proportion to the weight of their
+ * plan, and a user flooding the queue only delays their own runs. Each user's runs are admitted in order.
+ * <p>
+ * Not thread-safe; {@link RunAdmissionService} serializes access.
+ */
+public class RunAdmissionQueue {
+
+    // Divisible by every weight up to 16, so strides stay exact integers
+    private static final long STRIDE = 720720L;
+
+    public record Ticket(UUID runId, UUID projectId, UUID userId, UserPlanType planType) {
+    }
+
+    private final int maxConcurrentRuns;
+    private final int maxRunsPerProject;
+    private final Map<UserPlanType, Integer> maxRunsPerUser;
+    private final Map<UserPlanType, Integer> weights;
+
+    // Insertion order keeps ties between users first-come, first-served
+    private final Map<UUID, Deque<Ticket>> queuedByUser = new LinkedHashMap<>();
+    private final Map<UUID, Long> passByUser = new HashMap<>();
+    private long globalPass;
+
+    private final Map<UUID, Ticket> running = new HashMap<>();
+    private final Map<UUID, Integer> runningByUser = new HashMap<>();
+    private final Map<UUID, Integer> runningByProject = new HashMap<>();
+
+    public RunAdmissionQueue(int maxConcurrentRuns, int maxRunsPerProject,
+                             Map<UserPlanType, Integer> maxRunsPerUser, Map<UserPlanType, Integer> weights) {
+        this.maxConcurrentRuns = maxConcurrentRuns;
+        this.maxRunsPerProject = maxRunsPerProject;
+        this.maxRunsPerUser = maxRunsPerUser;
+        this.weights = weights;
+    }
+
+    public void enqueue(Ticket ticket) {
+        Deque<Ticket> queue = queuedByUser.computeIfAbsent(ticket.userId(), id -> new ArrayDeque<>());
+        if (queue.isEmpty()) {
+            // A user returning after being idle does not get credit for the time they were not queued
+            passByUser.merge(ticket.userId(), globalPass, Math::max);
+        }
+        queue.add(ticket);
+    }
+
+    /**
+     * Records a run that already holds a slot, e.g. one resumed after a restart.
+     */
+    public void markRunning(Ticket ticket) {
+        if (running.putIfAbsent(ticket.runId(), ticket) == null) {
+            runningByUser.merge(ticket.userId(), 1, Integer::sum);
+            runningByProject.merge(ticket.projectId(), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Frees the slot of a finished run, or drops it from the queue. Returns false for unknown runs.
+     */
+    public boolean release(UUID runId) {
+        Ticket ticket = running.remove(runId);
+        if (ticket != null) {
+            runningByUser.merge(ticket.userId(), -1, Integer::sum);
+            runningByProject.merge(ticket.projectId(), -1, Integer::sum);
+            return true;
+        }
+        for (Iterator<Deque<Ticket>> it = queuedByUser.values().iterator(); it.hasNext(); ) {
+            Deque<Ticket> queue = it.next();
+            if (queue.removeIf(t -> t.runId().equals(runId))) {
+                if (queue.isEmpty()) {
+                    it.remove();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Admits as many queued runs as the caps allow and returns them in admission order.
+     */
+    public List<Ticket> admit() {
+        List<Ticket> admitted = new ArrayList<>();
+        while (running.size() < maxConcurrentRuns) {
+            UUID bestUser = null;
+            Ticket bestTicket = null;
+            long bestPass = Long.MAX_VALUE;
+
+            for (Map.Entry<UUID, Deque<Ticket>> entry : queuedByUser.entrySet()) {
+                long pass = passByUser.getOrDefault(entry.getKey(), globalPass);
+                if (pass >= bestPass) {
+                    continue;
+                }
+                Ticket candidate = firstAdmissible(entry.getValue());
+                if (candidate != null) {
+                    bestUser = entry.getKey();
+                    bestTicket = candidate;
+                    bestPass = pass;
+                }
+            }
+
+            if (bestTicket == null) {
+                break;
+            }
+
+            Deque<Ticket> queue = queuedByUser.get(bestUser);
+            queue.remove(bestTicket);
+            if (queue.isEmpty()) {
+                queuedByUser.remove(bestUser);
+            }
+            globalPass = bestPass;
+            passByUser.put(bestUser, bestPass + strideOf(bestTicket.planType()));
+            markRunning(bestTicket);
+            admitted.add(bestTicket);
+        }
+        return admitted;
+    }
+
+    /**
+     * Returns the 1-based position of a queued run in the expected admission order, 0 for a run holding
+     * a slot and -1 for an unknown run. The estimate follows the fair order but ignores the caps.
+     */
+    public int positionOf(UUID runId) {
+        if (running.containsKey(runId)) {
+            return 0;
+        }
+
+        Map<UUID, Iterator<Ticket>> cursors = new LinkedHashMap<>();
+        Map<UUID, Long> passes = new HashMap<>();
+        for (Map.Entry<UUID, Deque<Ticket>> entry : queuedByUser.entrySet()) {
+            cursors.put(entry.getKey(), entry.getValue().iterator());
+            passes.put(entry.getKey(), passByUser.getOrDefault(entry.getKey(), globalPass));
+        }
+
+        int position = 0;
+        while (!cursors.isEmpty()) {
+            UUID next = null;
+            for (UUID userId : cursors.keySet()) {
+                if (next == null || passes.get(userId) < passes.get(next)) {
+                    next = userId;
+                }
+            }
+            Iterator<Ticket> cursor = cursors.get(next);
+            Ticket ticket = cursor.next();
+            position++;
+            if (ticket.runId().equals(runId)) {
+                return position;
+            }
+            passes.merge(next, strideOf(ticket.planType()), Long::sum);
+            if (!cursor.hasNext()) {
+                cursors.remove(next);
+            }
+        }
+        return -1;
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    public int getQueuedCount() {
+        int count = 0;
+        for (Deque<Ticket> queue : queuedByUser.values()) {
+            count += queue.size();
+        }
+        return count;
+    }
+
+    private Ticket firstAdmissible(Deque<Ticket> queue) {
+        Ticket head = queue.peekFirst();
+        if (head == null || runningByUser.getOrDefault(head.userId(), 0) >= maxRunsPerUser.getOrDefault(head.planType(), 1)) {
+            return null;
+        }
+        // A project at its cap does not block the user's runs in other projects
+        for (Ticket ticket : queue) {
+            if (runningByProject.getOrDefault(ticket.projectId(), 0) < maxRunsPerProject) {
+                return ticket;
+            }
+        }
+        return null;
+    }
+
+    private long strideOf(UserPlanType planType) {
+        return STRIDE / Math.max(1, weights.getOrDefault(planType, 1));
+    }
+}
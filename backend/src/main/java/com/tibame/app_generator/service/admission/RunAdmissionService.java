@@ -0,0 +1,172 @@
+package com.tibame.app_generator.service.admission;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.enums.UserPlanType;
+import com.tibame.app_generator.model.Project;
+import com.tibame.app_generator.model.User;
+import com.tibame.app_generator.model.WorkflowRun;
+import com.tibame.app_generator.repository.WorkflowRunRepository;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Admission control in front of the {@link WorkflowExecutor}.
+ * <p>
+ * New runs start PENDING and are queued; a run is started once it fits the concurrency caps and it is its
+ * owner's turn by the weighted fair order of {@link RunAdmissionQueue}. Resumed and retried runs are queued
+ * the same way and continue from their checkpoints once admitted. Runs are accounted to the owner of
+ * their project, whose plan determines the caps and the weight.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RunAdmissionService {
+
+    private final WorkflowRunRepository workflowRunRepository;
+    private final WorkflowProperties workflowProperties;
+    private final PipelineMetrics metrics;
+    @Lazy
+    private final WorkflowExecutor workflowExecutor;
+
+    private RunAdmissionQueue queue;
+    // What to do with each queued run once it is admitted, guarded by the queue
+    private final Map<UUID, Runnable> startActions = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        WorkflowProperties.Admission admission = workflowProperties.getAdmission();
+        queue = new RunAdmissionQueue(admission.getMaxConcurrentRuns(), admission.getMaxRunsPerProject(),
+                admission.getMaxRunsPerUser(), admission.getWeights());
+        metrics.gauge("workflow.admission.queued", "Runs waiting for admission", this::getQueuedCount);
+        metrics.gauge("workflow.admission.running", "Runs holding an execution slot", this::getRunningCount);
+    }
+
+    /**
+     * Queues a PENDING run and starts whatever can be admitted. Returns the run's queue position,
+     * 0 if it was started right away. A run that already executed is resumed from its checkpoints.
+     */
+    public int submit(WorkflowRun run) {
+        UUID runId = run.getId();
+        UUID projectId = run.getProject().getId();
+        // The plan is recorded once a run executes
+        return submit(run, run.getWorkflowVersion() != null
+                ? () -> workflowExecutor.resumeRunAsync(runId)
+                : () -> workflowExecutor.executeRunAsync(runId, projectId));
+    }
+
+    /**
+     * Like {@link #submit(WorkflowRun)}, but runs {@code start} once the run is admitted.
+     */
+    public int submit(WorkflowRun run, Runnable start) {
+        List<RunAdmissionQueue.Ticket> admitted;
+        int position;
+        synchronized (queue) {
+            startActions.put(run.getId(), start);
+            queue.enqueue(ticketFor(run));
+            admitted = queue.admit();
+            position = queue.positionOf(run.getId());
+        }
+        start(admitted);
+        if (position > 0) {
+            log.info("Run {} queued at position {}", run.getId(), position);
+        }
+        return position;
+    }
+
+    /**
+     * Accounts for a run that is already executing, e.g. one resumed after a restart.
+     */
+    public void register(WorkflowRun run) {
+        synchronized (queue) {
+            queue.markRunning(ticketFor(run));
+        }
+    }
+
+    /**
+     * Frees the slot of a run that finished or failed, or removes it from the queue, and admits the next runs.
+     */
+    public void release(UUID runId) {
+        List<RunAdmissionQueue.Ticket> admitted;
+        synchronized (queue) {
+            startActions.remove(runId);
+            if (!queue.release(runId)) {
+                return;
+            }
+            admitted = queue.admit();
+        }
+        start(admitted);
+    }
+
+    public int getQueuedCount() {
+        synchronized (queue) {
+            return queue.getQueuedCount();
+        }
+    }
+
+    public int getRunningCount() {
+        synchronized (queue) {
+            return queue.getRunningCount();
+        }
+    }
+
+    public int getQueuePosition(UUID runId) {
+        synchronized (queue) {
+            return queue.positionOf(runId);
+        }
+    }
+
+    private void start(List<RunAdmissionQueue.Ticket> admitted) {
+        if (admitted.isEmpty()) {
+            return;
+        }
+        ZonedDateTime now = ZonedDateTime.now();
+        List<Runnable> starts = new ArrayList<>(admitted.size());
+        for (RunAdmissionQueue.Ticket ticket : admitted) {
+            workflowRunRepository.markStarted(ticket.runId(), now);
+            Runnable action;
+            synchronized (queue) {
+                action = startActions.remove(ticket.runId());
+            }
+            // Missing when the run was cancelled right after being admitted
+            if (action != null) {
+                starts.add(action);
+            }
+        }
+
+        Runnable dispatch = () -> starts.forEach(Runnable::run);
+        // A run submitted inside a transaction is only visible to the executor once that transaction commits
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch.run();
+                }
+            });
+        } else {
+            dispatch.run();
+        }
+    }
+
+    private RunAdmissionQueue.Ticket ticketFor(WorkflowRun run) {
+        Project project = run.getProject();
+        User owner = project.getUser();
+        // Without an owner the project is its own tenant on the free plan
+        UUID userId = owner != null ? owner.getId() : project.getId();
+        UserPlanType planType = owner != null && owner.getPlanType() != null ? owner.getPlanType() : UserPlanType.FREE;
+        return new RunAdmissionQueue.Ticket(run.getId(), project.getId(), userId, planType);
+    }
+}
@@ -95,4 +95,12 @@ public enum AgentPromptTemplate {
         }
         throw new IllegalArgumentException("No template found for agent type: " + type);
     }
+
+    /**
+     * Returns the top-level array of the agent's output whose elements can be handled while the
+     * response is still streaming, or null if the output is only useful as a whole.
+     */
+    public static String getStreamedArray(AgentType type) {
+        return type == AgentType.PG ? "files" : null;
+    }
 }
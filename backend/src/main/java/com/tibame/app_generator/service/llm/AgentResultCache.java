@@ -0,0 +1,149 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.model.AgentResultCacheEntry;
+import com.tibame.app_generator.repository.AgentResultCacheRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable memo cache of agent results.
+ * <p>
+ * The key is a SHA-256 over the agent type, the prompt template version, the canonical JSON of the input context
+ * (map keys sorted) and the backend serving the call (provider type, endpoint, model name and temperature),
+ * so any change to what is sent to the LLM, or to where, addresses a different entry.
+ * <p>
+ * The cache is bypassed when calls are routed across several backends, since the one serving a call is
+ * only chosen when it is made, and for the mock backend, whose results do not come from a model.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AgentResultCache {
+
+    private final AgentResultCacheRepository cacheRepository;
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+
+    public boolean isEnabled() {
+        return llmProperties.getCache().isEnabled() && servingBackend() != null;
+    }
+
+    public String keyFor(CompiledPromptTemplate template, Map<String, Object> inputContext) {
+        try {
+            String canonicalInput = objectMapper.writer()
+                    .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsString(inputContext);
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, template.getAgentType().name());
+            update(digest, template.getVersionId());
+            update(digest, canonicalInput);
+            LlmProperties.Provider backend = servingBackend();
+            if (backend == null) {
+                throw new IllegalStateException("Agent results are not cached with routed or mock backends");
+            }
+            update(digest, backend.getType().toLowerCase(Locale.ROOT));
+            update(digest, backend.getBaseUrl());
+            update(digest, modelName(backend));
+            update(digest, String.valueOf(backend.getTemperature() != null
+                    ? backend.getTemperature() : llmProperties.getTemperature()));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to compute cache key", e);
+        }
+    }
+
+    public Optional<Map<String, Object>> get(String cacheKey) {
+        ZonedDateTime now = ZonedDateTime.now();
+        Optional<AgentResultCacheEntry> entry = cacheRepository.findByCacheKey(cacheKey)
+                .filter(e -> e.getExpiresAt() == null || e.getExpiresAt().isAfter(now));
+        entry.ifPresent(e -> cacheRepository.touch(e.getId(), now));
+        return entry.map(AgentResultCacheEntry::getResult);
+    }
+
+    public void put(String cacheKey, AgentType agentType, Map<String, Object> result) {
+        ZonedDateTime now = ZonedDateTime.now();
+        AgentResultCacheEntry entry = cacheRepository.findByCacheKey(cacheKey)
+                .orElseGet(() -> AgentResultCacheEntry.builder().cacheKey(cacheKey).agentType(agentType).build());
+        LlmProperties.Provider backend = servingBackend();
+        entry.setModelName(backend != null ? modelName(backend) : llmProperties.getModelName());
+        entry.setResult(result);
+        entry.setLastAccessedAt(now);
+        entry.setExpiresAt(now.plusHours(llmProperties.getCache().getTtlHours()));
+        try {
+            cacheRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent identical call stored the same result first
+            log.debug("Cache entry {} was stored concurrently", cacheKey);
+        }
+    }
+
+    /**
+     * Drops expired entries, then the least recently used ones beyond the configured size.
+     */
+    public void evict() {
+        int expired = cacheRepository.deleteExpired(ZonedDateTime.now());
+
+        long overflow = cacheRepository.count() - llmProperties.getCache().getMaxEntries();
+        int trimmed = 0;
+        if (overflow > 0) {
+            List<UUID> ids = cacheRepository.findLeastRecentlyUsedIds(PageRequest.of(0, (int) overflow));
+            cacheRepository.deleteAllByIdInBatch(ids);
+            trimmed = ids.size();
+        }
+
+        if (expired > 0 || trimmed > 0) {
+            log.info("Evicted {} expired and {} least recently used agent results", expired, trimmed);
+        }
+    }
+
+    /**
+     * The single non-mock backend every call goes to, or null when there is none. Mirrors how LlmConfig
+     * derives the backends from {@code platform.llm}.
+     */
+    private LlmProperties.Provider servingBackend() {
+        List<LlmProperties.Provider> providers = llmProperties.getProviders();
+        LlmProperties.Provider backend;
+        if (providers.isEmpty()) {
+            backend = new LlmProperties.Provider();
+            backend.setType(llmProperties.getProvider());
+            backend.setBaseUrl(llmProperties.getBaseUrl());
+        } else if (providers.size() == 1) {
+            backend = providers.get(0);
+        } else {
+            return null;
+        }
+        return backend.getType() != null && !"mock".equalsIgnoreCase(backend.getType()) ? backend : null;
+    }
+
+    private String modelName(LlmProperties.Provider backend) {
+        return backend.getModelName() != null ? backend.getModelName() : llmProperties.getModelName();
+    }
+
+    private void update(MessageDigest digest, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        // Length prefix keeps adjacent fields from running into each other
+        digest.update(String.valueOf(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+}
@@ -0,0 +1,122 @@
+package com.tibame.app_generator.service.llm;
+
+import com.tibame.app_generator.enums.AgentType;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A prompt template split once into literal text and {@code {{variable}}} placeholders, so that rendering
+ * is a single concatenation into a pre-sized buffer.
+ * <p>
+ * The version id identifies the template text: it is recorded on each task and is part of the agent result cache key.
+ * The expected output structure is derived from the example following the input, if the template has one.
+ */
+@Getter
+public final class CompiledPromptTemplate {
+
+    public static final String INPUT = "input";
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{\\{\\s*([\\w.]+)\\s*}}");
+
+    private final AgentType agentType;
+    private final String versionId;
+    private final String text;
+    // Tokens taken by the template itself, without its variables
+    private final int fixedTokens;
+    // literals.length == variables.length + 1
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+    // Null when the template shows no example output
+    private final OutputSchema outputSchema;
+
+    private CompiledPromptTemplate(AgentType agentType, String versionId, String text,
+                                   String[] literals, String[] variables) {
+        this.agentType = agentType;
+        this.versionId = versionId;
+        this.text = text;
+        this.literals = literals;
+        this.variables = variables;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        this.fixedTokens = TokenEstimator.fromChars(length);
+        int input = Arrays.asList(variables).lastIndexOf(INPUT);
+        this.outputSchema = OutputSchema.fromTemplate(
+                String.join("", Arrays.asList(literals).subList(input + 1, literals.length)));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the template does not reference the {@code input} variable
+     */
+    public static CompiledPromptTemplate compile(AgentType agentType, String versionId, String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        Matcher matcher = VARIABLE.matcher(text);
+        int position = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(position, matcher.start()));
+            variables.add(matcher.group(1));
+            position = matcher.end();
+        }
+        literals.add(text.substring(position));
+        if (!variables.contains(INPUT)) {
+            throw new IllegalArgumentException("Template does not reference {{" + INPUT + "}}");
+        }
+        return new CompiledPromptTemplate(agentType, versionId, text,
+                literals.toArray(String[]::new), variables.toArray(String[]::new));
+    }
+
+    /**
+     * Compiles the template shipped with the application. Its version id is derived from the text,
+     * so a redeploy with an edited template gets a new version.
+     */
+    public static CompiledPromptTemplate builtin(AgentType agentType) {
+        String text = AgentPromptTemplate.getTemplate(agentType);
+        return compile(agentType, agentType + "-builtin-" + shortHash(text), text);
+    }
+
+    public String render(String input) {
+        return render(Map.of(INPUT, input));
+    }
+
+    /**
+     * @throws IllegalArgumentException if a variable of the template has no value
+     */
+    public String render(Map<String, String> values) {
+        int length = literalLength;
+        for (String variable : variables) {
+            String value = values.get(variable);
+            if (value == null) {
+                throw new IllegalArgumentException("Value for the variable '" + variable + "' is missing");
+            }
+            length += value.length();
+        }
+        StringBuilder prompt = new StringBuilder(length);
+        for (int i = 0; i < variables.length; i++) {
+            prompt.append(literals[i]).append(values.get(variables[i]));
+        }
+        return prompt.append(literals[variables.length]).toString();
+    }
+
+    private static String shortHash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 4);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
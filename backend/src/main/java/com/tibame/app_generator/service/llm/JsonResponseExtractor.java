@@ -0,0 +1,77 @@
+package com.tibame.app_generator.service.llm;
+
+/**
+ * Pulls the JSON object out of an LLM response, dropping code fences and prose around it.
+ */
+public final class JsonResponseExtractor {
+
+    private JsonResponseExtractor() {
+    }
+
+    /**
+     * Returns the first top-level JSON object of the text, from its opening brace to the matching closing one.
+     * Braces inside strings are skipped. A truncated object is returned up to the end of the text, and text
+     * without any brace is returned trimmed, so that parsing it reports the actual problem.
+     */
+    public static String extract(String text) {
+        int start = text.indexOf('{');
+        if (start < 0) {
+            return text.trim();
+        }
+        int depth = 0;
+        boolean inString = false;
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (inString) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{') {
+                depth++;
+            } else if (c == '}' && --depth == 0) {
+                return text.substring(start, i + 1);
+            }
+        }
+        return text.substring(start).trim();
+    }
+
+    /**
+     * Returns the text from its first opening brace to the last closing brace or bracket, within the code fence
+     * the object starts in, if any. Unlike {@link #extract(String)} this does not track strings, so an unescaped
+     * quote cannot end the object early; meant for a second attempt once the strict extraction failed to parse.
+     */
+    public static String extractLenient(String text) {
+        int start = text.indexOf('{');
+        if (start < 0) {
+            return text.trim();
+        }
+        int limit = text.length();
+        int fence = text.lastIndexOf("```");
+        if (fence > start && text.lastIndexOf("```", start) >= 0) {
+            limit = fence;
+        }
+        int end = Math.max(text.lastIndexOf('}', limit - 1), text.lastIndexOf(']', limit - 1));
+        return end > start ? text.substring(start, end + 1) : text.substring(start, limit).trim();
+    }
+
+    /**
+     * Removes a Markdown code fence around a text, if present.
+     */
+    public static String stripFence(String text) {
+        String trimmed = text.trim();
+        if (!trimmed.startsWith("```")) {
+            return trimmed;
+        }
+        int firstLineEnd = trimmed.indexOf('\n');
+        if (firstLineEnd < 0) {
+            return trimmed;
+        }
+        String body = trimmed.substring(firstLineEnd + 1);
+        int end = body.lastIndexOf("```");
+        return (end >= 0 ? body.substring(0, end) : body).trim();
+    }
+}
@@ -1,17 +1,38 @@
 package com.tibame.app_generator.service.llm;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.UserPlanType;
 import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.repository.ProjectRepository;
+import com.tibame.app_generator.repository.WorkflowRunRepository;
 import com.tibame.app_generator.service.AgentTaskService;
+import com.tibame.app_generator.service.TaskStateMachine;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
-import dev.langchain4j.model.input.PromptTemplate;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 @Service
 @RequiredArgsConstructor
@@ -19,66 +40,285 @@ import java.util.Map;
 public class LlmAgentExecutionService {
 
     private final ChatLanguageModel chatLanguageModel;
+    private final StreamingChatLanguageModel streamingChatLanguageModel;
+    private final LlmProperties llmProperties;
     private final AgentTaskService agentTaskService;
+    private final TaskStateMachine taskStateMachine;
     private final ObjectMapper objectMapper;
+    private final AgentResultCache agentResultCache;
+    @Qualifier("llmCallExecutor")
+    private final AsyncTaskExecutor llmCallExecutor;
+    private final PipelineMetrics metrics;
+    private final LlmRateLimiter rateLimiter;
+    private final PromptCompactor promptCompactor;
+    private final PromptTemplateRegistry promptTemplateRegistry;
+    private final StructuredOutputParser structuredOutputParser;
+    private final ProjectRepository projectRepository;
+    private final WorkflowRunRepository workflowRunRepository;
+
+    // Outstanding LLM requests by task, so that they can be aborted
+    private final Map<UUID, Future<Response<AiMessage>>> inFlightCalls = new ConcurrentHashMap<>();
 
     public Map<String, Object> executeTask(AgentTask task, Map<String, Object> inputContext) {
         log.info("Executing LLM Task: {} (Type: {})", task.getTaskName(), task.getAgentType());
 
+        // Task state is written when the task starts and finishes, not on every step
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
         try {
-            agentTaskService.setInputContext(task.getId(), inputContext);
-            agentTaskService.startTask(task.getId());
+            CompiledPromptTemplate template = promptTemplateRegistry.get(task.getAgentType());
+            execution.setInputContext(inputContext, template.getVersionId());
+            execution.start();
+
+            String cacheKey = agentResultCache.isEnabled()
+                    ? agentResultCache.keyFor(template, inputContext)
+                    : null;
+            if (cacheKey != null) {
+                Optional<Map<String, Object>> cached = agentResultCache.get(cacheKey);
+                metrics.countCacheLookup(task.getAgentType(), cached.isPresent());
+                if (cached.isPresent()) {
+                    log.info("Serving task {} from the agent result cache", task.getId());
+                    Map<String, Object> result = cached.get();
+                    execution.markCached();
+                    execution.complete(result,
+                            (String) result.getOrDefault("summary", "Task completed successfully.") + " (cached)");
+                    return result;
+                }
+            }
 
             // 1. Prepare Prompt
-            String templateString = AgentPromptTemplate.getTemplate(task.getAgentType());
+            // Keep the input within the agent's token budget
+            // Summaries are requested like the task's own call, without streaming them to the task
+            PromptCompactor.Result compaction = promptCompactor.compact(template, inputContext,
+                    summaryPrompt -> generate(task, summaryPrompt, false, null));
+            if (compaction.isCompacted()) {
+                log.info("Compacted input of task {} from {} to {} tokens", task.getId(),
+                        compaction.tokensBefore(), compaction.tokensAfter());
+                execution.recordPromptCompaction(compaction.toRecord());
+            }
 
             // Convert inputContext to JSON string for the prompt
-            String inputJson = objectMapper.writeValueAsString(inputContext);
-
-            Map<String, Object> variables = new HashMap<>();
-            variables.put("input", inputJson);
+            String inputJson = objectMapper.writeValueAsString(compaction.input());
 
-            String prompt = PromptTemplate.from(templateString).apply(variables).text();
+            String prompt = template.render(inputJson);
 
             log.debug("Prompt for task {}: {}", task.getId(), prompt);
 
             // 2. Call LLM
-            agentTaskService.updateProgress(task.getId(), 20, "Analyzing requirements with AI...");
-            String response = chatLanguageModel.generate(prompt);
+            execution.progress(20, "Analyzing requirements with AI...");
+            List<Map<String, Object>> streamedElements = new ArrayList<>();
+            StreamingJsonObjectParser outputParser = llmProperties.getStreaming().isEnabled()
+                    ? outputParserFor(task, streamedElements)
+                    : null;
+            String response = generate(task, prompt, llmProperties.getStreaming().isEnabled(), outputParser);
 
-            agentTaskService.updateProgress(task.getId(), 80, "AI processing complete. Parsing results...");
+            execution.progress(80, "AI processing complete. Parsing results...");
 
-            // 3. Parse Response (Handle Markdown code blocks)
-            String cleanJson = cleanJson(response);
-            Map<String, Object> result = objectMapper.readValue(cleanJson, Map.class);
+            // 3. Parse Response, repairing invalid parts of it
+            Map<String, Object> result = parseResponse(execution, template, response, outputParser, streamedElements);
 
             // 4. Update Task with Results
             // Specifically look for a summary
             String summary = (String) result.getOrDefault("summary", "Task completed successfully.");
 
-            agentTaskService.updateContext(task.getId(), result);
-            agentTaskService.completeTask(task.getId(), summary);
+            if (cacheKey != null) {
+                agentResultCache.put(cacheKey, task.getAgentType(), result);
+            }
+
+            execution.complete(result, summary);
 
             return result;
 
+        } catch (CancellationException e) {
+            // The task was cancelled along with its run, which already recorded its state
+            log.info("LLM call of task {} was aborted", task.getId());
+            throw e;
         } catch (Exception e) {
             log.error("Task execution failed", e);
-            agentTaskService.failTask(task.getId(), "AI Execution Failed: " + e.getMessage());
+            execution.fail("AI Execution Failed: " + e.getMessage());
             throw new RuntimeException(e);
         }
     }
 
-    private String cleanJson(String response) {
-        response = response.trim();
-        if (response.startsWith("```json")) {
-            response = response.substring(7);
+    /**
+     * Aborts the outstanding LLM request of a task. The waiting worker is released right away; the thread
+     * making the request is interrupted and its response, if any, discarded. A streaming request
+     * keeps receiving until the provider closes it, but its remaining output is dropped.
+     */
+    public boolean abort(UUID taskId) {
+        if (rateLimiter.cancel(taskId)) {
+            return true;
+        }
+        Future<Response<AiMessage>> call = inFlightCalls.remove(taskId);
+        return call != null && call.cancel(true);
+    }
+
+    private String generate(AgentTask task, String prompt, boolean streamed, StreamingJsonObjectParser outputParser) throws Exception {
+        UUID taskId = task.getId();
+        metrics.recordPromptSize(task.getAgentType(), prompt.length());
+        LlmRateLimiter.Permit permit = acquirePermit(task, prompt);
+        long start = System.nanoTime();
+        String outcome = PipelineMetrics.OUTCOME_ERROR;
+        StreamingOutputForwarder forwarder = null;
+        Future<Response<AiMessage>> call;
+        Runnable startCall;
+        if (streamed) {
+            // Output deltas reach the task topic as they are generated
+            StreamingOutputForwarder streaming = new StreamingOutputForwarder(
+                    delta -> agentTaskService.publishOutputDelta(task, delta),
+                    Duration.ofMillis(llmProperties.getStreaming().getFlushIntervalMs()));
+            if (outputParser != null) {
+                streaming.setTokenListener(outputParser::feed);
+            }
+            forwarder = streaming;
+            call = streaming.getResult();
+            startCall = () -> streamingChatLanguageModel.generate(List.of(UserMessage.from(prompt)), streaming);
+        } else {
+            FutureTask<Response<AiMessage>> request =
+                    new FutureTask<>(() -> chatLanguageModel.generate(List.of(UserMessage.from(prompt))));
+            call = request;
+            startCall = () -> llmCallExecutor.execute(request);
+        }
+        register(taskId, call);
+        try {
+            startCall.run();
+            Response<AiMessage> response = call.get();
+            String text = response.content().text();
+            outcome = PipelineMetrics.OUTCOME_SUCCESS;
+            if (forwarder != null && forwarder.isStarted()) {
+                metrics.recordTimeToFirstToken(task.getAgentType(), forwarder.getFirstTokenAt() - start);
+            }
+            metrics.recordResponseSize(task.getAgentType(), text.length());
+            metrics.recordTokens(task.getAgentType(), response.tokenUsage());
+            rateLimiter.settle(permit, response.tokenUsage() != null ? response.tokenUsage().totalTokenCount() : null);
+            // The output parsed as it streamed in, so the aggregated text is not kept for parsing it again
+            return outputParser != null && outputParser.isComplete() ? null : text;
+        } catch (CancellationException e) {
+            outcome = PipelineMetrics.OUTCOME_CANCELLED;
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception cause ? cause : e;
+        } finally {
+            inFlightCalls.remove(taskId, call);
+            metrics.recordLlmCall(task.getAgentType(), System.nanoTime() - start, outcome);
+        }
+    }
+
+    /**
+     * Makes a call abortable before it is started. An abort that came in earlier found no call to cancel,
+     * but had already cancelled the task, so the call is then not started at all.
+     */
+    private void register(UUID taskId, Future<Response<AiMessage>> call) {
+        inFlightCalls.put(taskId, call);
+        if (agentTaskService.isCancelled(taskId)) {
+            inFlightCalls.remove(taskId, call);
+            call.cancel(true);
+            throw new CancellationException("Task " + taskId + " was cancelled before its LLM call started");
         }
-        if (response.startsWith("```")) { // sometimes it's just ```
-            response = response.substring(3);
+    }
+
+    /**
+     * Waits for rate-limit capacity. Calls of higher plans and of older runs are served first.
+     */
+    private LlmRateLimiter.Permit acquirePermit(AgentTask task, String prompt) throws InterruptedException {
+        if (!rateLimiter.isEnabled()) {
+            return LlmRateLimiter.Permit.NONE;
+        }
+        UserPlanType planType = projectRepository.findOwnerPlanType(task.getProject().getId()).orElse(UserPlanType.FREE);
+        ZonedDateTime runCreatedAt = task.getWorkflowRun() != null
+                ? workflowRunRepository.findCreatedAtById(task.getWorkflowRun().getId()).orElse(null)
+                : null;
+        return rateLimiter.acquire(task.getId(), planType, runCreatedAt, rateLimiter.estimateTokens(prompt));
+    }
+
+    /**
+     * Creates a parser that builds the task's result while its response streams in and announces
+     * each generated file as soon as it is complete.
+     */
+    private StreamingJsonObjectParser outputParserFor(AgentTask task, List<Map<String, Object>> streamedElements) {
+        return new StreamingJsonObjectParser(AgentPromptTemplate.getStreamedArray(task.getAgentType()), element -> {
+            streamedElements.add(element);
+            if (element.get("path") instanceof String path) {
+                Object content = element.get("content");
+                agentTaskService.publishFileReady(task, path, content instanceof String text ? text.length() : 0);
+            }
+        });
+    }
+
+    /**
+     * Parses and validates the output. {@code response} is null when the output was parsed as it streamed in;
+     * the elements of the streamed array were handed over while streaming and are put back into it here.
+     */
+    private Map<String, Object> parseResponse(TaskStateMachine.Execution execution, CompiledPromptTemplate template,
+                                              String response, StreamingJsonObjectParser outputParser,
+                                              List<Map<String, Object>> streamedElements) throws IOException {
+        AgentTask task = execution.getTask();
+        Map<String, Object> streamed = null;
+        if (outputParser != null) {
+            try {
+                streamed = outputParser.finish();
+                String streamedArray = AgentPromptTemplate.getStreamedArray(task.getAgentType());
+                if (streamedArray != null && streamed.get(streamedArray) instanceof List<?> remaining) {
+                    List<Object> elements = new ArrayList<>(streamedElements);
+                    elements.addAll(remaining);
+                    streamed.put(streamedArray, elements);
+                }
+            } catch (IOException e) {
+                log.debug("Streamed output of task {} did not parse incrementally: {}", task.getId(), e.getMessage());
+            }
+        }
+        int[] repairs = {0};
+        try {
+            StructuredOutputParser.Result result = structuredOutputParser.parse(response, streamed,
+                    template.getOutputSchema(), repairPrompt -> {
+                        repairs[0]++;
+                        return repair(execution, repairPrompt);
+                    });
+            if (result.repairs() > 0) {
+                metrics.countRepair(task.getAgentType(), PipelineMetrics.OUTCOME_SUCCESS);
+            }
+            return result.output();
+        } catch (StructuredOutputParser.InvalidOutputException e) {
+            // Fails the task, so that a retry generates the output again
+            metrics.countParseFailure(task.getAgentType());
+            if (repairs[0] > 0) {
+                metrics.countRepair(task.getAgentType(), PipelineMetrics.OUTCOME_ERROR);
+            }
+            throw e;
         }
-        if (response.endsWith("```")) {
-            response = response.substring(0, response.length() - 3);
+    }
+
+    /**
+     * Sends a repair prompt to the model. Repair calls are small, but take rate-limit capacity like any other call.
+     */
+    private String repair(TaskStateMachine.Execution execution, String prompt) {
+        AgentTask task = execution.getTask();
+        execution.progress(85, "Repairing invalid AI output...");
+        try {
+            LlmRateLimiter.Permit permit = acquirePermit(task, prompt);
+            long start = System.nanoTime();
+            String outcome = PipelineMetrics.OUTCOME_ERROR;
+            FutureTask<Response<AiMessage>> call =
+                    new FutureTask<>(() -> chatLanguageModel.generate(List.of(UserMessage.from(prompt))));
+            register(task.getId(), call);
+            try {
+                llmCallExecutor.execute(call);
+                Response<AiMessage> response = call.get();
+                outcome = PipelineMetrics.OUTCOME_SUCCESS;
+                metrics.recordTokens(task.getAgentType(), response.tokenUsage());
+                rateLimiter.settle(permit, response.tokenUsage() != null ? response.tokenUsage().totalTokenCount() : null);
+                return response.content().text();
+            } catch (CancellationException e) {
+                outcome = PipelineMetrics.OUTCOME_CANCELLED;
+                throw e;
+            } finally {
+                inFlightCalls.remove(task.getId(), call);
+                metrics.recordLlmCall(task.getAgentType(), System.nanoTime() - start, outcome);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while repairing output");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
         }
-        return response.trim();
     }
 }
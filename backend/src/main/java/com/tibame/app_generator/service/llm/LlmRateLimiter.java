@@ -0,0 +1,220 @@
+package com.tibame.app_generator.service.llm;
+
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.UserPlanType;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side limit on the requests and tokens sent to the LLM per minute, so that bursts wait
+ * for capacity here instead of being rejected by the provider and retried.
+ * <p>
+ * Both limits are token buckets refilled continuously. Calls queue by priority: higher plans first,
+ * then older runs, then arrival. Only the head of the queue may take capacity, so a large request
+ * is not starved by a stream of small ones. Token usage is estimated up front and corrected with
+ * the usage the provider reports once the call returns.
+ */
+@Component
+@Slf4j
+public class LlmRateLimiter {
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Capacity taken by a call, returned by {@link #acquire}.
+     */
+    public record Permit(long tokens) {
+        public static final Permit NONE = new Permit(0);
+    }
+
+    private static final class Waiter {
+        final UUID taskId;
+        final UserPlanType planType;
+        final ZonedDateTime runCreatedAt;
+        final long sequence;
+        boolean cancelled;
+
+        Waiter(UUID taskId, UserPlanType planType, ZonedDateTime runCreatedAt, long sequence) {
+            this.taskId = taskId;
+            this.planType = planType;
+            this.runCreatedAt = runCreatedAt;
+            this.sequence = sequence;
+        }
+    }
+
+    private static final Comparator<Waiter> PRIORITY = Comparator
+            .comparing((Waiter w) -> w.planType.ordinal(), Comparator.reverseOrder())
+            .thenComparing(w -> w.runCreatedAt, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(w -> w.sequence);
+
+    private final LlmProperties.RateLimit config;
+    private final PipelineMetrics metrics;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<Waiter> queue = new PriorityQueue<>(PRIORITY);
+    private final Map<UUID, Waiter> waitersByTask = new HashMap<>();
+
+    private double requestBucket;
+    private double tokenBucket;
+    private long lastRefill;
+    private long sequence;
+
+    @Autowired
+    public LlmRateLimiter(LlmProperties llmProperties, PipelineMetrics metrics) {
+        this(llmProperties.getRateLimit(), metrics, System::nanoTime);
+    }
+
+    LlmRateLimiter(LlmProperties.RateLimit config, PipelineMetrics metrics, LongSupplier nanoClock) {
+        this.config = config;
+        this.metrics = metrics;
+        this.nanoClock = nanoClock;
+        this.requestBucket = config.getRequestsPerMinute();
+        this.tokenBucket = config.getTokensPerMinute();
+        this.lastRefill = nanoClock.getAsLong();
+        metrics.gauge("agent.llm.ratelimit.queued", "LLM calls waiting for rate-limit capacity", this::getQueuedCount);
+    }
+
+    public boolean isEnabled() {
+        return config.isEnabled();
+    }
+
+    /**
+     * Estimates the tokens of a call from its prompt, plus the configured allowance for the response.
+     */
+    public long estimateTokens(String prompt) {
+        return TokenEstimator.estimate(prompt) + config.getEstimatedOutputTokens();
+    }
+
+    /**
+     * Blocks until the call of a task may be sent.
+     *
+     * @throws CancellationException if the task is cancelled through {@link #cancel(UUID)} while waiting
+     */
+    public Permit acquire(UUID taskId, UserPlanType planType, ZonedDateTime runCreatedAt, long estimatedTokens)
+            throws InterruptedException {
+        if (!config.isEnabled()) {
+            return Permit.NONE;
+        }
+        // A single call larger than the whole budget still has to go through eventually
+        long tokens = Math.min(estimatedTokens, config.getTokensPerMinute());
+        long waitStart = nanoClock.getAsLong();
+
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(taskId, planType != null ? planType : UserPlanType.FREE, runCreatedAt, sequence++);
+            queue.add(waiter);
+            waitersByTask.put(taskId, waiter);
+            try {
+                while (true) {
+                    if (waiter.cancelled) {
+                        throw new CancellationException("LLM call of task " + taskId + " was cancelled while queued");
+                    }
+                    refill();
+                    if (queue.peek() == waiter) {
+                        long waitNanos = nanosUntilAvailable(tokens);
+                        if (waitNanos <= 0) {
+                            requestBucket -= 1;
+                            tokenBucket -= tokens;
+                            break;
+                        }
+                        changed.awaitNanos(waitNanos);
+                    } else {
+                        changed.await();
+                    }
+                }
+            } finally {
+                queue.remove(waiter);
+                waitersByTask.remove(taskId, waiter);
+                // The next waiter may be able to go now
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        metrics.recordRateLimitWait(nanoClock.getAsLong() - waitStart);
+        return new Permit(tokens);
+    }
+
+    /**
+     * Corrects the token bucket once the provider reported the tokens a call actually used.
+     */
+    public void settle(Permit permit, Integer actualTokens) {
+        if (permit == Permit.NONE || actualTokens == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            refill();
+            // May go below zero when the estimate was too low; later calls then wait longer
+            tokenBucket = Math.min(config.getTokensPerMinute(), tokenBucket + permit.tokens() - actualTokens);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Releases the waiting call of a task, which then fails with a {@link CancellationException}.
+     */
+    public boolean cancel(UUID taskId) {
+        lock.lock();
+        try {
+            Waiter waiter = waitersByTask.get(taskId);
+            if (waiter == null) {
+                return false;
+            }
+            waiter.cancelled = true;
+            changed.signalAll();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        long elapsed = now - lastRefill;
+        if (elapsed <= 0) {
+            return;
+        }
+        lastRefill = now;
+        requestBucket = Math.min(config.getRequestsPerMinute(),
+                requestBucket + (double) config.getRequestsPerMinute() * elapsed / MINUTE_NANOS);
+        tokenBucket = Math.min(config.getTokensPerMinute(),
+                tokenBucket + (double) config.getTokensPerMinute() * elapsed / MINUTE_NANOS);
+    }
+
+    private long nanosUntilAvailable(long tokens) {
+        double missingRequests = Math.max(0, 1 - requestBucket);
+        double missingTokens = Math.max(0, tokens - tokenBucket);
+        double requestWait = missingRequests * MINUTE_NANOS / config.getRequestsPerMinute();
+        double tokenWait = missingTokens * MINUTE_NANOS / config.getTokensPerMinute();
+        return (long) Math.ceil(Math.max(requestWait, tokenWait));
+    }
+}
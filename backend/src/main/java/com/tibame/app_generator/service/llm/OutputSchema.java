@@ -0,0 +1,127 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.*;
+
+/**
+ * Expected structure of an agent's output, derived from the example output in its prompt template.
+ * <p>
+ * Every field of an example object is required, arrays must be arrays whose elements match the example's
+ * first element, and objects must be objects. Scalar fields accept any non-null value, since models
+ * legitimately answer with numbers or structured text where the example shows a string.
+ */
+public final class OutputSchema {
+
+    /**
+     * A mismatch at a path of the output; path elements are field names and array indexes.
+     */
+    public record Violation(List<Object> path, String message) {
+
+        public String pathString() {
+            StringBuilder text = new StringBuilder();
+            for (Object element : path) {
+                if (element instanceof Integer index) {
+                    text.append('[').append(index).append(']');
+                } else {
+                    text.append(text.isEmpty() ? "" : ".").append(element);
+                }
+            }
+            return text.isEmpty() ? "$" : text.toString();
+        }
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Node root;
+
+    private OutputSchema(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Derives the schema from the example JSON object of a template, or returns null if the template
+     * has no parseable example.
+     */
+    public static OutputSchema fromTemplate(String templateTail) {
+        try {
+            JsonNode example = MAPPER.readTree(JsonResponseExtractor.extract(templateTail));
+            return example != null && example.isObject() ? new OutputSchema(compile(example)) : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public List<Violation> validate(Object output) {
+        List<Violation> violations = new ArrayList<>();
+        validate(root, output, new ArrayList<>(), violations);
+        return violations;
+    }
+
+    /**
+     * The example of the schema node at a path, as JSON, to show the model what is expected.
+     */
+    public String exampleAt(List<Object> path) {
+        Node node = root;
+        for (Object element : path) {
+            if (node == null) {
+                break;
+            }
+            node = element instanceof Integer ? node.items : node.fields.get(element);
+        }
+        return node != null ? node.example.toString() : "";
+    }
+
+    private static Node compile(JsonNode example) {
+        Node node = new Node(example);
+        if (example.isObject()) {
+            example.fields().forEachRemaining(field -> node.fields.put(field.getKey(), compile(field.getValue())));
+        } else if (example.isArray() && !example.isEmpty()) {
+            node.items = compile(example.get(0));
+        }
+        return node;
+    }
+
+    private static void validate(Node node, Object value, List<Object> path, List<Violation> violations) {
+        if (node.example.isObject()) {
+            if (!(value instanceof Map<?, ?> object)) {
+                violations.add(new Violation(List.copyOf(path), "expected an object"));
+                return;
+            }
+            for (Map.Entry<String, Node> field : node.fields.entrySet()) {
+                path.add(field.getKey());
+                Object fieldValue = object.get(field.getKey());
+                if (fieldValue == null) {
+                    violations.add(new Violation(List.copyOf(path), "missing required field"));
+                } else {
+                    validate(field.getValue(), fieldValue, path, violations);
+                }
+                path.remove(path.size() - 1);
+            }
+        } else if (node.example.isArray()) {
+            if (!(value instanceof List<?> array)) {
+                violations.add(new Violation(List.copyOf(path), "expected an array"));
+                return;
+            }
+            if (node.items == null) {
+                return;
+            }
+            for (int i = 0; i < array.size(); i++) {
+                path.add(i);
+                validate(node.items, array.get(i), path, violations);
+                path.remove(path.size() - 1);
+            }
+        }
+    }
+
+    private static final class Node {
+        final JsonNode example;
+        final Map<String, Node> fields = new LinkedHashMap<>();
+        Node items;
+
+        Node(JsonNode example) {
+            this.example = example;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the input of an agent prompt within the agent's token budget.
+ * <p>
+ * When the serialized input exceeds the budget, the largest parts are compacted step by step until
+ * it fits: file bodies are reduced to their declarations, long lists are cut with a count of what
+ * was left out, long texts are optionally summarised by the LLM and finally truncated. Every step
+ * is reported so that it can be recorded on the task.
+ * <p>
+ * Summaries are requested through a {@link Summarizer} of the caller, so that they are made like the
+ * task's own LLM call: rate limited, abortable and metered.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PromptCompactor {
+
+    public static final String SIGNATURES = "SIGNATURES";
+    public static final String TRUNCATE_LIST = "TRUNCATE_LIST";
+    public static final String SUMMARIZE = "SUMMARIZE";
+    public static final String TRUNCATE_TEXT = "TRUNCATE_TEXT";
+
+    // Declarations worth keeping from a file body: types, functions, methods and annotations
+    private static final Pattern DECLARATION = Pattern.compile(
+            "^\\s*(@\\w+|(export\\s+)?(default\\s+)?(public|protected|private|abstract|static|final|async|class|interface|enum|record|function|def|type)\\b).*");
+
+    private static final int MAX_SIGNATURE_LINE = 200;
+
+    /**
+     * Outcome of {@link #compact}; {@code decisions} is empty when the input already fit.
+     */
+    public record Result(Map<String, Object> input, int budgetTokens, int tokensBefore, int tokensAfter,
+                         List<Map<String, Object>> decisions) {
+
+        public boolean isCompacted() {
+            return !decisions.isEmpty();
+        }
+
+        public Map<String, Object> toRecord() {
+            Map<String, Object> record = new LinkedHashMap<>();
+            record.put("budgetTokens", budgetTokens);
+            record.put("tokensBefore", tokensBefore);
+            record.put("tokensAfter", tokensAfter);
+            record.put("decisions", decisions);
+            return record;
+        }
+    }
+
+    /**
+     * Sends a summarisation prompt to the LLM and returns its reply.
+     */
+    @FunctionalInterface
+    public interface Summarizer {
+        String summarize(String prompt) throws Exception;
+    }
+
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+
+    public Result compact(CompiledPromptTemplate template, Map<String, Object> input, Summarizer summarizer) {
+        LlmProperties.PromptBudget config = llmProperties.getPromptBudget();
+        int budget = config.getMaxInputTokens().getOrDefault(template.getAgentType(), config.getDefaultMaxInputTokens())
+                - template.getFixedTokens();
+        int before = TokenEstimator.estimate(toJson(input));
+        if (!config.isEnabled() || before <= budget) {
+            return new Result(input, budget, before, before, List.of());
+        }
+
+        Map<String, Object> compacted = mutableCopy(input);
+        List<Map<String, Object>> decisions = new ArrayList<>();
+        long budgetChars = TokenEstimator.toChars(budget);
+
+        long size = reduceFileBodies(compacted, budgetChars, decisions);
+        if (size > budgetChars) {
+            size = truncateLists(compacted, budgetChars, config.getMaxListItems(), decisions);
+        }
+        if (size > budgetChars && config.isSummarize()) {
+            size = summarizeTexts(compacted, budgetChars, config.getMaxTextChars(), summarizer, decisions);
+        }
+        if (size > budgetChars) {
+            size = truncateTexts(compacted, budgetChars, config.getMaxTextChars(), decisions);
+        }
+
+        int after = TokenEstimator.fromChars(size);
+        if (after > budget) {
+            log.warn("Input of {} agent still exceeds its budget after compaction: {} > {} tokens", template.getAgentType(), after, budget);
+        }
+        return new Result(compacted, budget, before, after, decisions);
+    }
+
+    /**
+     * Replaces the content of generated files (objects with {@code path} and {@code content}) by their declarations,
+     * largest first.
+     */
+    private long reduceFileBodies(Map<String, Object> root, long budgetChars, List<Map<String, Object>> decisions) {
+        List<Slot> files = new ArrayList<>();
+        collect(root, "$", (slot, value) -> {
+            if (value instanceof Map<?, ?> map && map.get("path") instanceof String && map.get("content") instanceof String) {
+                files.add(new Slot(slot.path + ".content", map, "content"));
+            }
+        });
+        files.sort(Comparator.comparingInt((Slot s) -> ((String) s.get()).length()).reversed());
+
+        long size = toJson(root).length();
+        for (Slot file : files) {
+            if (size <= budgetChars) {
+                break;
+            }
+            String content = (String) file.get();
+            String signatures = signaturesOf(content);
+            if (signatures.length() >= content.length()) {
+                continue;
+            }
+            file.set(signatures);
+            size -= content.length() - signatures.length();
+            decisions.add(decision(file.path, SIGNATURES, content.length(), signatures.length()));
+        }
+        return toJson(root).length();
+    }
+
+    /**
+     * Cuts lists longer than {@code maxItems}, largest first, leaving a marker with the number of omitted items.
+     * Lists are cut in place, so that lists nested in the kept items are still part of the tree when their turn comes.
+     */
+    @SuppressWarnings("unchecked")
+    private long truncateLists(Map<String, Object> root, long budgetChars, int maxItems, List<Map<String, Object>> decisions) {
+        Map<List<Object>, String> lists = new IdentityHashMap<>();
+        collect(root, "$", (slot, value) -> {
+            if (value instanceof List<?> list && list.size() > maxItems) {
+                lists.put((List<Object>) list, slot.path);
+            }
+        });
+        // Outer lists first, so that nested lists inside removed items are not counted twice
+        List<List<Object>> bySize = new ArrayList<>(lists.keySet());
+        bySize.sort(Comparator.comparingInt((List<Object> list) -> toJson(list).length()).reversed());
+
+        long size = toJson(root).length();
+        Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Object> list : bySize) {
+            if (size <= budgetChars) {
+                break;
+            }
+            if (removed.contains(list)) {
+                continue;
+            }
+            int beforeChars = toJson(list).length();
+            List<Object> omitted = list.subList(maxItems, list.size());
+            int omittedItems = omitted.size();
+            markRemoved(omitted, removed);
+            omitted.clear();
+            list.add("... " + omittedItems + " more items omitted");
+            int afterChars = toJson(list).length();
+            size -= beforeChars - afterChars;
+            Map<String, Object> decision = decision(lists.get(list), TRUNCATE_LIST, beforeChars, afterChars);
+            decision.put("keptItems", maxItems);
+            decision.put("omittedItems", omittedItems);
+            decisions.add(decision);
+        }
+        return toJson(root).length();
+    }
+
+    private long summarizeTexts(Map<String, Object> root, long budgetChars, int maxChars, Summarizer summarizer,
+                                List<Map<String, Object>> decisions) {
+        long size = toJson(root).length();
+        for (Slot slot : longTexts(root, maxChars)) {
+            if (size <= budgetChars) {
+                break;
+            }
+            String text = (String) slot.get();
+            String summary;
+            try {
+                summary = summarizer.summarize("Summarise the following text in at most "
+                        + TokenEstimator.fromChars(maxChars) + " tokens. Keep names, identifiers and numbers. "
+                        + "Reply with the summary only.\n\n" + text).trim();
+            } catch (CancellationException e) {
+                // The task was cancelled, there is no prompt left to compact
+                throw e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Interrupted while summarising " + slot.path);
+            } catch (Exception e) {
+                log.warn("Summarising {} failed, it will be truncated instead: {}", slot.path, e.getMessage());
+                continue;
+            }
+            if (summary.length() >= text.length()) {
+                continue;
+            }
+            slot.set(summary);
+            size -= text.length() - summary.length();
+            decisions.add(decision(slot.path, SUMMARIZE, text.length(), summary.length()));
+        }
+        return toJson(root).length();
+    }
+
+    private long truncateTexts(Map<String, Object> root, long budgetChars, int maxChars, List<Map<String, Object>> decisions) {
+        long size = toJson(root).length();
+        for (Slot slot : longTexts(root, maxChars)) {
+            if (size <= budgetChars) {
+                break;
+            }
+            String text = (String) slot.get();
+            String truncated = text.substring(0, maxChars) + "... [" + (text.length() - maxChars) + " chars truncated]";
+            slot.set(truncated);
+            size -= text.length() - truncated.length();
+            decisions.add(decision(slot.path, TRUNCATE_TEXT, text.length(), truncated.length()));
+        }
+        return toJson(root).length();
+    }
+
+    private List<Slot> longTexts(Map<String, Object> root, int maxChars) {
+        List<Slot> texts = new ArrayList<>();
+        collect(root, "$", (slot, value) -> {
+            if (value instanceof String text && text.length() > maxChars) {
+                texts.add(slot);
+            }
+        });
+        texts.sort(Comparator.comparingInt((Slot s) -> ((String) s.get()).length()).reversed());
+        return texts;
+    }
+
+    static String signaturesOf(String content) {
+        StringBuilder signatures = new StringBuilder();
+        String[] lines = content.split("\n");
+        int omitted = 0;
+        for (String line : lines) {
+            if (line.length() <= MAX_SIGNATURE_LINE && DECLARATION.matcher(line).matches()) {
+                signatures.append(line.stripTrailing()).append('\n');
+            } else {
+                omitted++;
+            }
+        }
+        return signatures.append("// ... ").append(omitted).append(" lines omitted").toString();
+    }
+
+    /**
+     * A place in the input tree holding a value: a map entry or a list element.
+     */
+    private record Slot(String path, Object container, Object key) {
+
+        @SuppressWarnings("unchecked")
+        Object get() {
+            return container instanceof Map<?, ?> map ? map.get(key) : ((List<Object>) container).get((Integer) key);
+        }
+
+        @SuppressWarnings("unchecked")
+        void set(Object value) {
+            if (container instanceof Map<?, ?>) {
+                ((Map<Object, Object>) container).put(key, value);
+            } else {
+                ((List<Object>) container).set((Integer) key, value);
+            }
+        }
+    }
+
+    private interface SlotVisitor {
+        void visit(Slot slot, Object value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(Object node, String path, SlotVisitor visitor) {
+        if (node instanceof Map<?, ?> map) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) map).entrySet()) {
+                Slot slot = new Slot(path + "." + entry.getKey(), map, entry.getKey());
+                visitor.visit(slot, entry.getValue());
+                collect(entry.getValue(), slot.path, visitor);
+            }
+        } else if (node instanceof List<?> list) {
+            for (int i = 0; i < list.size(); i++) {
+                Slot slot = new Slot(path + "[" + i + "]", list, i);
+                visitor.visit(slot, list.get(i));
+                collect(list.get(i), slot.path, visitor);
+            }
+        }
+    }
+
+    private void markRemoved(Object node, Set<Object> removed) {
+        if (node instanceof Map<?, ?> map) {
+            removed.add(map);
+            map.values().forEach(value -> markRemoved(value, removed));
+        } else if (node instanceof List<?> list) {
+            removed.add(list);
+            list.forEach(value -> markRemoved(value, removed));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> mutableCopy(Map<String, Object> input) {
+        return (Map<String, Object>) copy(input);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object copy(Object node) {
+        if (node instanceof Map<?, ?> map) {
+            Map<String, Object> copy = new LinkedHashMap<>();
+            ((Map<String, Object>) map).forEach((key, value) -> copy.put(key, copy(value)));
+            return copy;
+        }
+        if (node instanceof List<?> list) {
+            List<Object> copy = new ArrayList<>(list.size());
+            list.forEach(value -> copy.add(copy(value)));
+            return copy;
+        }
+        return node;
+    }
+
+    private Map<String, Object> decision(String path, String action, int beforeChars, int afterChars) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("path", path);
+        decision.put("action", action);
+        decision.put("beforeChars", beforeChars);
+        decision.put("afterChars", afterChars);
+        return decision;
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize prompt input", e);
+        }
+    }
+}
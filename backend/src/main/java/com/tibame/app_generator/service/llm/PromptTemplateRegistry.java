@@ -0,0 +1,95 @@
+package com.tibame.app_generator.service.llm;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.model.PromptTemplateVersion;
+import com.tibame.app_generator.repository.PromptTemplateVersionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Serves the compiled prompt template of each agent type.
+ * <p>
+ * The templates shipped in {@link AgentPromptTemplate} are used until a version of the agent type is
+ * published in prompt_template_versions; the highest active version then takes over. Active versions are
+ * reloaded periodically, and only recompiled when the set of active versions changed, so a template can
+ * be changed or rolled back without a restart.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PromptTemplateRegistry {
+
+    private final PromptTemplateVersionRepository versionRepository;
+
+    private final Map<AgentType, CompiledPromptTemplate> builtins = compileBuiltins();
+    private volatile Map<AgentType, CompiledPromptTemplate> templates = builtins;
+    private Set<UUID> loadedVersionIds = Set.of();
+
+    @PostConstruct
+    void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Could not load prompt template versions, using the built-in templates: {}", e.getMessage());
+        }
+    }
+
+    public CompiledPromptTemplate get(AgentType agentType) {
+        CompiledPromptTemplate template = templates.get(agentType);
+        if (template == null) {
+            throw new IllegalArgumentException("No template found for agent type: " + agentType);
+        }
+        return template;
+    }
+
+    /**
+     * Switches to the currently active template versions. A version that does not compile is skipped,
+     * keeping what the agent type used before.
+     */
+    public synchronized void reload() {
+        Set<UUID> activeIds = new HashSet<>(versionRepository.findActiveIds());
+        if (activeIds.equals(loadedVersionIds)) {
+            return;
+        }
+
+        Map<AgentType, CompiledPromptTemplate> current = templates;
+        Map<AgentType, CompiledPromptTemplate> next = new EnumMap<>(builtins);
+        Set<AgentType> resolved = EnumSet.noneOf(AgentType.class);
+        for (PromptTemplateVersion version : versionRepository.findByActiveTrueOrderByVersionDesc()) {
+            AgentType agentType = version.getAgentType();
+            if (!resolved.add(agentType)) {
+                continue;
+            }
+            String versionId = agentType + "-v" + version.getVersion();
+            CompiledPromptTemplate previous = current.get(agentType);
+            if (previous != null && previous.getVersionId().equals(versionId)) {
+                next.put(agentType, previous);
+                continue;
+            }
+            try {
+                next.put(agentType, CompiledPromptTemplate.compile(agentType, versionId, version.getTemplate()));
+                log.info("Using prompt template {}", versionId);
+            } catch (IllegalArgumentException e) {
+                log.warn("Ignoring prompt template {}: {}", versionId, e.getMessage());
+                if (previous != null) {
+                    next.put(agentType, previous);
+                }
+            }
+        }
+
+        templates = Collections.unmodifiableMap(next);
+        loadedVersionIds = activeIds;
+    }
+
+    private static Map<AgentType, CompiledPromptTemplate> compileBuiltins() {
+        Map<AgentType, CompiledPromptTemplate> compiled = new EnumMap<>(AgentType.class);
+        for (AgentPromptTemplate template : AgentPromptTemplate.values()) {
+            compiled.put(template.getAgentType(), CompiledPromptTemplate.builtin(template.getAgentType()));
+        }
+        return Collections.unmodifiableMap(compiled);
+    }
+}
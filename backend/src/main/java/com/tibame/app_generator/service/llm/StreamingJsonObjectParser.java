@@ -0,0 +1,177 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Parses a JSON object from an LLM response while it streams in, on Jackson's non-blocking parser.
+ * <p>
+ * Text before the opening brace and after the closing one, such as Markdown code fences, is ignored.
+ * Each element of the top-level array named at construction is handed to the element listener as
+ * soon as it is complete, so callers can act on the first generated files before the last one arrives.
+ * The listener takes the element over: it is not kept in the parsed object, whose array only holds
+ * elements that are not objects, so the parser holds no more than the element being read.
+ * <p>
+ * Not thread-safe; a stream delivers its tokens sequentially.
+ */
+@Slf4j
+public class StreamingJsonObjectParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String streamedArray;
+    private final Consumer<Map<String, Object>> elementListener;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private final Deque<Object> containers = new ArrayDeque<>();
+    private String pendingField;
+    private Map<String, Object> root;
+    private List<Object> streamedElements;
+    private boolean started;
+    private boolean complete;
+    private IOException failure;
+    // High surrogate of a character split across two chunks
+    private char pendingHighSurrogate;
+
+    public StreamingJsonObjectParser(String streamedArray, Consumer<Map<String, Object>> elementListener) {
+        this.streamedArray = streamedArray;
+        this.elementListener = elementListener;
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to create JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Consumes the next chunk of the response. Parse errors are kept and reported by {@link #finish()}.
+     */
+    public void feed(String chunk) {
+        if (complete || failure != null || chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        if (pendingHighSurrogate != 0) {
+            chunk = pendingHighSurrogate + chunk;
+            pendingHighSurrogate = 0;
+        }
+        if (Character.isHighSurrogate(chunk.charAt(chunk.length() - 1))) {
+            pendingHighSurrogate = chunk.charAt(chunk.length() - 1);
+            chunk = chunk.substring(0, chunk.length() - 1);
+        }
+        if (!started) {
+            int brace = chunk.indexOf('{');
+            if (brace < 0) {
+                return;
+            }
+            started = true;
+            chunk = chunk.substring(brace);
+        }
+        try {
+            byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            drain();
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Ends the input and returns the parsed object.
+     *
+     * @throws IOException if the response was not a single complete JSON object
+     */
+    public Map<String, Object> finish() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (!complete) {
+            feeder.endOfInput();
+            drain();
+        }
+        if (!complete) {
+            throw new IOException("Incomplete JSON object in LLM response");
+        }
+        return root;
+    }
+
+    public boolean isComplete() {
+        return complete && failure == null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void drain() throws IOException {
+        JsonToken token;
+        while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case FIELD_NAME -> pendingField = parser.currentName();
+                case START_OBJECT -> {
+                    Map<String, Object> object = new LinkedHashMap<>();
+                    if (containers.isEmpty()) {
+                        root = object;
+                    } else {
+                        add(object);
+                    }
+                    containers.push(object);
+                }
+                case START_ARRAY -> {
+                    if (containers.isEmpty()) {
+                        throw new IOException("LLM response is a JSON array, expected an object");
+                    }
+                    List<Object> array = new ArrayList<>();
+                    if (containers.size() == 1 && streamedArray != null && streamedArray.equals(pendingField)) {
+                        streamedElements = array;
+                    }
+                    add(array);
+                    containers.push(array);
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    Object closed = containers.pop();
+                    if (containers.isEmpty()) {
+                        complete = true;
+                    } else if (containers.peek() == streamedElements && closed instanceof Map<?, ?> element) {
+                        // Added last, so it is the last element of the array
+                        streamedElements.remove(streamedElements.size() - 1);
+                        emit((Map<String, Object>) element);
+                    }
+                }
+                case VALUE_STRING -> add(parser.getText());
+                case VALUE_NUMBER_INT -> add(parser.getNumberValue());
+                case VALUE_NUMBER_FLOAT -> add(parser.getDoubleValue());
+                case VALUE_TRUE -> add(Boolean.TRUE);
+                case VALUE_FALSE -> add(Boolean.FALSE);
+                case VALUE_NULL -> add(null);
+                default -> {
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void add(Object value) {
+        Object parent = containers.peek();
+        if (parent instanceof Map<?, ?> map) {
+            ((Map<String, Object>) map).put(pendingField, value);
+        } else {
+            ((List<Object>) parent).add(value);
+        }
+    }
+
+    private void emit(Map<String, Object> element) {
+        try {
+            elementListener.accept(element);
+        } catch (RuntimeException e) {
+            // A failing listener must not break parsing of the response
+            log.warn("Listener for streamed {} element failed: {}", streamedArray, e.getMessage());
+        }
+    }
+}
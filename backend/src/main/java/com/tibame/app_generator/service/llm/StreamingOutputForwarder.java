@@ -0,0 +1,103 @@
+package com.tibame.app_generator.service.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Receives the tokens of a streaming LLM response and forwards them in throttled batches.
+ * <p>
+ * The first token is forwarded right away; after that, tokens are batched until the flush interval
+ * has passed, and whatever is left is flushed when the response completes. Only the unsent batch is
+ * buffered here, in a single reused builder; the full text comes with the model's final response.
+ * <p>
+ * An optional token listener sees every token as it arrives, before batching.
+ * <p>
+ * Once {@link #getResult()} is done, for instance because the task was cancelled, further tokens are dropped.
+ */
+public class StreamingOutputForwarder implements StreamingResponseHandler<AiMessage> {
+
+    @Getter
+    private final CompletableFuture<Response<AiMessage>> result = new CompletableFuture<>();
+
+    private final Consumer<String> deltaSink;
+    private final long flushIntervalNanos;
+    private final LongSupplier nanoClock;
+    private final StringBuilder pending = new StringBuilder(256);
+
+    @Setter
+    private Consumer<String> tokenListener;
+
+    @Getter
+    private boolean started;
+    // Clock reading at the first token, valid once started
+    @Getter
+    private long firstTokenAt;
+    private long lastFlushAt;
+
+    public StreamingOutputForwarder(Consumer<String> deltaSink, Duration flushInterval) {
+        this(deltaSink, flushInterval, System::nanoTime);
+    }
+
+    StreamingOutputForwarder(Consumer<String> deltaSink, Duration flushInterval, LongSupplier nanoClock) {
+        this.deltaSink = deltaSink;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public void onNext(String token) {
+        if (result.isDone() || token == null || token.isEmpty()) {
+            return;
+        }
+        if (tokenListener != null) {
+            tokenListener.accept(token);
+        }
+        String delta = null;
+        synchronized (pending) {
+            long now = nanoClock.getAsLong();
+            pending.append(token);
+            if (!started) {
+                started = true;
+                firstTokenAt = now;
+                delta = drain(now);
+            } else if (now - lastFlushAt >= flushIntervalNanos) {
+                delta = drain(now);
+            }
+        }
+        if (delta != null) {
+            deltaSink.accept(delta);
+        }
+    }
+
+    @Override
+    public void onComplete(Response<AiMessage> response) {
+        String delta;
+        synchronized (pending) {
+            delta = pending.isEmpty() ? null : drain(nanoClock.getAsLong());
+        }
+        if (delta != null && !result.isDone()) {
+            deltaSink.accept(delta);
+        }
+        result.complete(response);
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        result.completeExceptionally(error);
+    }
+
+    private String drain(long now) {
+        String delta = pending.toString();
+        pending.setLength(0);
+        lastFlushAt = now;
+        return delta;
+    }
+}
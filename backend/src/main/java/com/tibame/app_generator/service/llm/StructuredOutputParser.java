@@ -0,0 +1,208 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.tibame.app_generator.config.LlmProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * Turns an LLM response into the agent's output object, repairing what it can before a task has to be
+ * generated again.
+ * <p>
+ * The JSON object is extracted from surrounding prose and fences and parsed leniently (raw control characters,
+ * trailing commas and comments are accepted). When that still fails, only the parse error and the fragment
+ * around it are sent back to the model, and its corrected fragment is spliced in. Output that parses but does
+ * not match the agent's schema is repaired the same way, one broken element at a time. The number of repair
+ * calls per response is bounded; past that, the response is rejected.
+ */
+@Component
+@Slf4j
+public class StructuredOutputParser {
+
+    /**
+     * The response could not be turned into valid output, even after repairs.
+     */
+    public static class InvalidOutputException extends IOException {
+        public InvalidOutputException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Parsed output and the number of repair calls it took.
+     */
+    public record Result(Map<String, Object> output, int repairs) {
+    }
+
+    private final LlmProperties llmProperties;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+
+    public StructuredOutputParser(LlmProperties llmProperties, ObjectMapper objectMapper) {
+        this.llmProperties = llmProperties;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(Map.class)
+                .with(JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS)
+                .with(JsonReadFeature.ALLOW_TRAILING_COMMA)
+                .with(JsonReadFeature.ALLOW_JAVA_COMMENTS);
+    }
+
+    /**
+     * @param response the model's response text
+     * @param parsed   the output already parsed while the response streamed in, or null
+     * @param schema   expected structure, or null to skip validation
+     * @param model    sends a repair prompt to the model and returns its answer
+     */
+    public Result parse(String response, Map<String, Object> parsed, OutputSchema schema,
+                        UnaryOperator<String> model) throws InvalidOutputException {
+        LlmProperties.Repair config = llmProperties.getRepair();
+        int budget = config.isEnabled() ? config.getMaxAttempts() : 0;
+        int repairs = 0;
+
+        Map<String, Object> output = parsed;
+        if (output == null) {
+            String json = JsonResponseExtractor.extract(response);
+            boolean lenient = false;
+            while (true) {
+                try {
+                    output = reader.readValue(json);
+                    break;
+                } catch (JsonProcessingException e) {
+                    if (!lenient) {
+                        lenient = true;
+                        // An unescaped quote can end the strictly extracted object early; go on with all of it
+                        String whole = JsonResponseExtractor.extractLenient(response);
+                        if (!whole.equals(json)) {
+                            json = whole;
+                            continue;
+                        }
+                    }
+                    if (repairs >= budget) {
+                        throw new InvalidOutputException("Response is not valid JSON: " + e.getOriginalMessage(), e);
+                    }
+                    repairs++;
+                    json = repairSyntax(json, e, model);
+                }
+            }
+        }
+
+        if (schema == null) {
+            return new Result(output, repairs);
+        }
+        List<OutputSchema.Violation> violations = schema.validate(output);
+        while (!violations.isEmpty()) {
+            OutputSchema.Violation violation = violations.get(0);
+            List<Object> elementPath = enclosingElement(violation.path());
+            if (repairs >= budget || elementPath.isEmpty()) {
+                throw new InvalidOutputException("Response does not match the expected format: "
+                        + describe(violations), null);
+            }
+            repairs++;
+            repairElement(output, elementPath, violation, schema, model);
+            violations = schema.validate(output);
+        }
+        return new Result(output, repairs);
+    }
+
+    /**
+     * Asks the model to fix the fragment around a parse error and splices the answer into the document.
+     */
+    private String repairSyntax(String json, JsonProcessingException error, UnaryOperator<String> model) {
+        int maxChars = llmProperties.getRepair().getMaxFragmentChars();
+        long location = error.getLocation() != null ? error.getLocation().getCharOffset() : -1;
+        int offset = (int) Math.max(0, Math.min(json.length(), location >= 0 ? location : json.length()));
+
+        // Whole lines around the error, within the fragment size
+        int start = json.lastIndexOf('\n', Math.max(0, offset - 1));
+        start = start < 0 || offset - start > maxChars / 2 ? Math.max(0, offset - maxChars / 2) : start + 1;
+        int end = json.indexOf('\n', offset);
+        end = end < 0 || end - offset > maxChars / 2 ? Math.min(json.length(), offset + maxChars / 2) : end;
+
+        String fragment = json.substring(start, end);
+        String prompt = """
+                A JSON document failed to parse with this error: %s
+                This is the fragment around the error, characters %d to %d of the document:
+                <<<
+                %s
+                >>>
+                Return only the corrected fragment: fix the error (for example unescaped quotes or a missing comma), \
+                keep everything else unchanged, and add nothing before or after it. Do not use code fences.
+                """.formatted(error.getOriginalMessage(), start, end, fragment);
+        String fixed = JsonResponseExtractor.stripFence(model.apply(prompt));
+        log.info("Repaired JSON syntax error at offset {} with a {} char fragment", offset, fragment.length());
+        return json.substring(0, start) + fixed + json.substring(end);
+    }
+
+    /**
+     * Asks the model to fix the array element or nested object containing a violation, and replaces it.
+     */
+    @SuppressWarnings("unchecked")
+    private void repairElement(Map<String, Object> output, List<Object> elementPath, OutputSchema.Violation violation,
+                               OutputSchema schema, UnaryOperator<String> model) throws InvalidOutputException {
+        Object container = output;
+        for (Object element : elementPath.subList(0, elementPath.size() - 1)) {
+            container = element instanceof Integer index ? ((List<Object>) container).get(index)
+                    : ((Map<String, Object>) container).get(element);
+        }
+        Object key = elementPath.get(elementPath.size() - 1);
+        Object broken = key instanceof Integer index ? ((List<Object>) container).get(index)
+                : ((Map<String, Object>) container).get(key);
+
+        String brokenJson;
+        try {
+            brokenJson = objectMapper.writeValueAsString(broken);
+        } catch (IOException e) {
+            throw new InvalidOutputException("Failed to serialize invalid output", e);
+        }
+        String prompt = """
+                This JSON value, found at %s of a larger document, does not match the expected format: %s %s.
+                Expected format:
+                %s
+                Value:
+                %s
+                Return only the corrected JSON value, keeping its content. Do not use code fences.
+                """.formatted(new OutputSchema.Violation(elementPath, "").pathString(), violation.pathString(),
+                violation.message(), schema.exampleAt(elementPath), brokenJson);
+
+        Object fixed;
+        try {
+            fixed = reader.forType(Object.class).readValue(JsonResponseExtractor.stripFence(model.apply(prompt)));
+        } catch (JsonProcessingException e) {
+            throw new InvalidOutputException("Repair of " + violation.pathString() + " was not valid JSON", e);
+        }
+        if (key instanceof Integer index) {
+            ((List<Object>) container).set(index, fixed);
+        } else {
+            ((Map<String, Object>) container).put((String) key, fixed);
+        }
+        log.info("Repaired output element {} ({})", violation.pathString(), violation.message());
+    }
+
+    /**
+     * The path of the innermost array element containing a violation, or of the top-level field holding it.
+     * Empty if the violation concerns the root itself, which would amount to generating everything again.
+     */
+    private static List<Object> enclosingElement(List<Object> path) {
+        for (int end = path.size() - 1; end > 0; end--) {
+            if (path.get(end) instanceof Integer) {
+                return path.subList(0, end + 1);
+            }
+        }
+        return path.isEmpty() ? List.of() : path.subList(0, 1);
+    }
+
+    private static String describe(List<OutputSchema.Violation> violations) {
+        StringJoiner text = new StringJoiner("; ");
+        for (OutputSchema.Violation violation : violations.subList(0, Math.min(5, violations.size()))) {
+            text.add(violation.pathString() + " " + violation.message());
+        }
+        return violations.size() > 5 ? text + " (" + violations.size() + " in total)" : text.toString();
+    }
+}
@@ -0,0 +1,25 @@
+package com.tibame.app_generator.service.llm;
+
+/**
+ * Cheap token count estimate used for budgeting, without running the provider's tokenizer.
+ * Roughly four characters per token holds for English text, code and JSON.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        return text == null ? 0 : fromChars(text.length());
+    }
+
+    public static int fromChars(long chars) {
+        return (int) ((chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN);
+    }
+
+    public static long toChars(long tokens) {
+        return tokens * CHARS_PER_TOKEN;
+    }
+}
@@ -0,0 +1,147 @@
+package com.tibame.app_generator.service.llm.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.service.llm.TokenEstimator;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for an LLM provider, for load tests without network access or API costs.
+ * <p>
+ * Responses are valid output of the prompted agent, sized by the mock settings. The first token arrives
+ * after a latency drawn from the configured distribution; the rest follows at the configured token rate,
+ * in chunks when streaming and all at once otherwise. Server errors and 429 rejections are injected at the
+ * configured rates, as the same exceptions the OpenAI client throws, so retries, routing and rate limiting
+ * behave as they would against a real provider.
+ */
+public class MockChatLanguageModel implements ChatLanguageModel, StreamingChatLanguageModel {
+
+    // 99th percentile of the standard normal distribution
+    private static final double Z_99 = 2.3263;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    // Streams are paced by scheduled chunks rather than sleeping threads, so a few threads serve many of them
+    private static final ScheduledExecutorService STREAM_SCHEDULER = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "mock-llm-stream-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LlmProperties.Mock config;
+    private final MockResponseGenerator generator;
+
+    public MockChatLanguageModel(LlmProperties.Mock config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.generator = new MockResponseGenerator(config, objectMapper);
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        String prompt = promptOf(messages);
+        try {
+            RuntimeException failure = sampleFailure();
+            if (failure != null) {
+                Thread.sleep(config.getLatencyMinMs());
+                throw failure;
+            }
+            String text = generator.generate(prompt);
+            Thread.sleep(sampleLatencyMs() + generationMs(text.length()));
+            return response(prompt, text);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        String prompt = promptOf(messages);
+        RuntimeException failure = sampleFailure();
+        if (failure != null) {
+            STREAM_SCHEDULER.schedule(() -> handler.onError(failure), config.getLatencyMinMs(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        String text = generator.generate(prompt);
+        int chunkChars = (int) TokenEstimator.toChars(Math.max(1, config.getChunkTokens()));
+        long chunkIntervalMs = generationMs(chunkChars);
+        STREAM_SCHEDULER.schedule(() -> streamChunk(prompt, text, 0, chunkChars, chunkIntervalMs, handler),
+                sampleLatencyMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private void streamChunk(String prompt, String text, int offset, int chunkChars, long intervalMs,
+                             StreamingResponseHandler<AiMessage> handler) {
+        try {
+            int end = Math.min(text.length(), offset + chunkChars);
+            handler.onNext(text.substring(offset, end));
+            if (end == text.length()) {
+                handler.onComplete(response(prompt, text));
+            } else {
+                STREAM_SCHEDULER.schedule(() -> streamChunk(prompt, text, end, chunkChars, intervalMs, handler),
+                        intervalMs, TimeUnit.MILLISECONDS);
+            }
+        } catch (RuntimeException e) {
+            handler.onError(e);
+        }
+    }
+
+    long sampleLatencyMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double latency = switch (config.getLatencyDistribution()) {
+            case FIXED -> config.getLatencyMedianMs();
+            case UNIFORM -> config.getLatencyMinMs()
+                    + random.nextDouble() * (config.getLatencyMaxMs() - config.getLatencyMinMs());
+            case LOGNORMAL -> {
+                double sigma = Math.log((double) config.getLatencyP99Ms() / config.getLatencyMedianMs()) / Z_99;
+                yield config.getLatencyMedianMs() * Math.exp(sigma * random.nextGaussian());
+            }
+        };
+        return Math.round(Math.max(config.getLatencyMinMs(), Math.min(config.getLatencyMaxMs(), latency)));
+    }
+
+    private long generationMs(int chars) {
+        return TokenEstimator.fromChars(chars) * 1000L / Math.max(1, config.getTokensPerSecond());
+    }
+
+    private RuntimeException sampleFailure() {
+        double draw = ThreadLocalRandom.current().nextDouble();
+        if (draw < config.getRateLimitRate()) {
+            return new OpenAiHttpException(429, "Rate limit reached for requests (mock)");
+        }
+        if (draw < config.getRateLimitRate() + config.getFailureRate()) {
+            return new OpenAiHttpException(500, "The server had an error while processing your request (mock)");
+        }
+        return null;
+    }
+
+    private static String promptOf(List<ChatMessage> messages) {
+        StringBuilder prompt = new StringBuilder();
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage user && user.hasSingleText()) {
+                prompt.append(user.singleText());
+            }
+        }
+        return prompt.toString();
+    }
+
+    private static Response<AiMessage> response(String prompt, String text) {
+        return Response.from(AiMessage.from(text),
+                new TokenUsage(TokenEstimator.estimate(prompt), TokenEstimator.estimate(text)), FinishReason.STOP);
+    }
+}
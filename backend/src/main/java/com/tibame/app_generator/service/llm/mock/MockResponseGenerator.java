@@ -0,0 +1,136 @@
+package com.tibame.app_generator.service.llm.mock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.AgentType;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Builds responses in the output format of each agent's prompt template, sized by the mock settings.
+ */
+class MockResponseGenerator {
+
+    // Role of each agent as stated at the start of its prompt; input from upstream agents comes after it
+    private static final Map<String, AgentType> ROLES = Map.of(
+            "Project Manager", AgentType.PM,
+            "Software Architect", AgentType.SA,
+            "Programmer", AgentType.PG,
+            "QA Engineer", AgentType.QA);
+
+    private final LlmProperties.Mock config;
+    private final ObjectMapper objectMapper;
+
+    MockResponseGenerator(LlmProperties.Mock config, ObjectMapper objectMapper) {
+        this.config = config;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * The agent whose role is mentioned first in the prompt, PM if none is.
+     */
+    static AgentType agentTypeOf(String prompt) {
+        AgentType agentType = AgentType.PM;
+        int first = Integer.MAX_VALUE;
+        for (Map.Entry<String, AgentType> role : ROLES.entrySet()) {
+            int index = prompt.indexOf(role.getKey());
+            if (index >= 0 && index < first) {
+                first = index;
+                agentType = role.getValue();
+            }
+        }
+        return agentType;
+    }
+
+    String generate(String prompt) {
+        AgentType agentType = agentTypeOf(prompt);
+        Map<String, Object> output = switch (agentType) {
+            case PM -> pm();
+            case SA -> sa();
+            case PG -> pg();
+            case QA -> qa();
+        };
+        try {
+            return objectMapper.writeValueAsString(output);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize mock response", e);
+        }
+    }
+
+    private Map<String, Object> pm() {
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("summary", "Mock requirements for the described project.");
+        output.put("requirements", items(i -> Map.of(
+                "id", String.format("REQ-%03d", i),
+                "title", "Requirement " + i,
+                "description", "The system shall support capability " + i + ".")));
+        output.put("userStories", items(i -> Map.of(
+                "id", String.format("US-%03d", i),
+                "role", "user",
+                "action", "use capability " + i,
+                "benefit", "reach goal " + i)));
+        return output;
+    }
+
+    private Map<String, Object> sa() {
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("summary", "Mock layered architecture with a REST API over a relational database.");
+        StringBuilder schema = new StringBuilder();
+        for (int i = 1; i <= config.getListItems(); i++) {
+            schema.append("CREATE TABLE entity_").append(i).append(" (id UUID PRIMARY KEY, name VARCHAR(255));\n");
+        }
+        output.put("databaseSchema", schema.toString());
+        output.put("apiEndpoints", items(i -> Map.of(
+                "method", i % 2 == 0 ? "POST" : "GET",
+                "path", "/api/entities-" + i,
+                "description", "Operation on entity " + i)));
+        output.put("componentDesign", "Controllers delegate to services, which use repositories.");
+        return output;
+    }
+
+    private Map<String, Object> pg() {
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("summary", "Mock implementation of " + config.getFiles() + " files.");
+        List<Map<String, Object>> files = new ArrayList<>(config.getFiles());
+        for (int i = 1; i <= config.getFiles(); i++) {
+            files.add(Map.of(
+                    "path", "src/main/java/com/example/Generated" + i + ".java",
+                    "content", javaClass("Generated" + i)));
+        }
+        output.put("files", files);
+        return output;
+    }
+
+    private Map<String, Object> qa() {
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("summary", "Mock quality report: no blocking issues.");
+        output.put("testCases", items(i -> Map.of(
+                "id", String.format("TC-%03d", i),
+                "description", "Verify capability " + i,
+                "expectedResult", "Capability " + i + " works")));
+        output.put("codeReview", items(i -> Map.of(
+                "file", "src/main/java/com/example/Generated" + i + ".java",
+                "issues", List.of("Consider adding input validation"))));
+        return output;
+    }
+
+    private List<Map<String, Object>> items(IntFunction<Map<String, Object>> item) {
+        List<Map<String, Object>> items = new ArrayList<>(config.getListItems());
+        for (int i = 1; i <= config.getListItems(); i++) {
+            items.add(item.apply(i));
+        }
+        return items;
+    }
+
+    private String javaClass(String name) {
+        StringBuilder source = new StringBuilder("package com.example;\n\npublic class ").append(name).append(" {\n");
+        for (int m = 1; source.length() < config.getFileChars(); m++) {
+            source.append("\n    public String method").append(m).append("(String value) {\n")
+                    .append("        return \"").append(name).append('.').append(m).append(":\" + value;\n")
+                    .append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
@@ -0,0 +1,156 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * Health of one LLM backend as observed by the router: recent latencies, error rate, a circuit
+ * breaker and the request budget left in the current minute.
+ * <p>
+ * All times are {@link System#nanoTime()} readings supplied by the caller. Methods are synchronized
+ * since requests on different worker threads report into the same instance.
+ */
+class BackendStats {
+
+    enum CircuitState {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final long MINUTE_NANOS = 60_000_000_000L;
+    private static final double ERROR_RATE_ALPHA = 0.2;
+
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final long throttleCooldownNanos;
+    private final int requestsPerMinute;
+
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyNext;
+
+    private final Deque<Long> recentRequests = new ArrayDeque<>();
+
+    private double errorRate;
+    private int consecutiveFailures;
+    private CircuitState circuit = CircuitState.CLOSED;
+    private long openUntil;
+    private boolean trialInFlight;
+    private long throttledUntil;
+
+    BackendStats(int latencyWindow, int failureThreshold, long openDurationNanos, long throttleCooldownNanos,
+                 int requestsPerMinute) {
+        this.latencies = new long[latencyWindow];
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDurationNanos;
+        this.throttleCooldownNanos = throttleCooldownNanos;
+        this.requestsPerMinute = requestsPerMinute;
+    }
+
+    /**
+     * Whether a request may be sent now: the circuit lets it through, the backend is not cooling down
+     * from a rate-limit response and its per-minute budget is not used up.
+     */
+    synchronized boolean isAvailable(long now) {
+        if (now < throttledUntil) {
+            return false;
+        }
+        if (circuit == CircuitState.OPEN && now < openUntil) {
+            return false;
+        }
+        if (circuit == CircuitState.HALF_OPEN && trialInFlight) {
+            return false;
+        }
+        return remainingBudget(now) > 0;
+    }
+
+    /**
+     * Claims a request slot, or returns false if the backend became unavailable in the meantime.
+     * After the open period, the first request is the half-open trial deciding whether the circuit closes again.
+     */
+    synchronized boolean tryAcquire(long now) {
+        if (!isAvailable(now)) {
+            return false;
+        }
+        if (circuit == CircuitState.OPEN) {
+            circuit = CircuitState.HALF_OPEN;
+        }
+        if (circuit == CircuitState.HALF_OPEN) {
+            trialInFlight = true;
+        }
+        if (requestsPerMinute > 0) {
+            recentRequests.addLast(now);
+        }
+        return true;
+    }
+
+    synchronized void recordSuccess(long latencyNanos) {
+        latencies[latencyNext] = latencyNanos;
+        latencyNext = (latencyNext + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+
+        errorRate *= 1 - ERROR_RATE_ALPHA;
+        consecutiveFailures = 0;
+        circuit = CircuitState.CLOSED;
+        trialInFlight = false;
+    }
+
+    synchronized void recordFailure(long now, boolean throttled) {
+        errorRate = errorRate * (1 - ERROR_RATE_ALPHA) + ERROR_RATE_ALPHA;
+        consecutiveFailures++;
+        if (throttled) {
+            throttledUntil = now + throttleCooldownNanos;
+        }
+        if (circuit == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            circuit = CircuitState.OPEN;
+            openUntil = now + openDurationNanos;
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Releases a slot without judging the backend, e.g. when the request was cancelled by the caller.
+     */
+    synchronized void recordAbandoned() {
+        trialInFlight = false;
+    }
+
+    /**
+     * Lower is better: the median latency, inflated by the error rate and by how little of the
+     * request budget is left. Backends without samples score 0 so that they get explored.
+     */
+    synchronized double score(long now) {
+        double p50 = medianLatency();
+        double headroom = requestsPerMinute > 0 ? (double) remainingBudget(now) / requestsPerMinute : 1.0;
+        return p50 * (1 + 4 * errorRate) / Math.max(headroom, 0.05);
+    }
+
+    synchronized long medianLatency() {
+        if (latencyCount == 0) {
+            return 0;
+        }
+        long[] samples = Arrays.copyOf(latencies, latencyCount);
+        Arrays.sort(samples);
+        return samples[latencyCount / 2];
+    }
+
+    synchronized double getErrorRate() {
+        return errorRate;
+    }
+
+    synchronized CircuitState getCircuit() {
+        return circuit;
+    }
+
+    private int remainingBudget(long now) {
+        if (requestsPerMinute <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        while (!recentRequests.isEmpty() && now - recentRequests.peekFirst() >= MINUTE_NANOS) {
+            recentRequests.pollFirst();
+        }
+        return requestsPerMinute - recentRequests.size();
+    }
+}
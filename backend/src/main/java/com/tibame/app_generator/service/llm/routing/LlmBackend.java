@@ -0,0 +1,25 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import lombok.Getter;
+
+/**
+ * One configured LLM provider endpoint. The blocking and the streaming model talk to the same
+ * endpoint and therefore share their statistics.
+ */
+@Getter
+public class LlmBackend {
+
+    private final String name;
+    private final ChatLanguageModel chatModel;
+    private final StreamingChatLanguageModel streamingModel;
+    final BackendStats stats;
+
+    LlmBackend(String name, ChatLanguageModel chatModel, StreamingChatLanguageModel streamingModel, BackendStats stats) {
+        this.name = name;
+        this.chatModel = chatModel;
+        this.streamingModel = streamingModel;
+        this.stats = stats;
+    }
+}
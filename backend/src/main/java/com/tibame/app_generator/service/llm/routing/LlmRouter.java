@@ -0,0 +1,138 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Chooses the backend for each LLM request and keeps track of how the backends behave.
+ * <p>
+ * Available backends are ranked by {@link BackendStats#score(long)}: median latency, error rate and
+ * remaining rate-limit headroom. A request is sent to the best one and fails over to the next on error.
+ * Backends failing repeatedly are taken out by a circuit breaker, and a rate-limited backend cools down
+ * before it is used again, so one slow or throttled provider does not stall every run.
+ */
+@Slf4j
+public class LlmRouter {
+
+    private final List<LlmBackend> backends;
+    private final PipelineMetrics metrics;
+    private final LongSupplier nanoClock;
+
+    public LlmRouter(List<LlmBackend> backends, PipelineMetrics metrics) {
+        this(backends, metrics, System::nanoTime);
+    }
+
+    LlmRouter(List<LlmBackend> backends, PipelineMetrics metrics, LongSupplier nanoClock) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one LLM backend is required");
+        }
+        this.backends = List.copyOf(backends);
+        this.metrics = metrics;
+        this.nanoClock = nanoClock;
+    }
+
+    public static LlmBackend backend(String name, ChatLanguageModel chatModel, StreamingChatLanguageModel streamingModel,
+                                     LlmProperties.Routing routing, int requestsPerMinute) {
+        BackendStats stats = new BackendStats(routing.getLatencyWindow(), routing.getFailureThreshold(),
+                Duration.ofSeconds(routing.getOpenDurationSeconds()).toNanos(),
+                Duration.ofSeconds(routing.getThrottleCooldownSeconds()).toNanos(),
+                requestsPerMinute);
+        return new LlmBackend(name, chatModel, streamingModel, stats);
+    }
+
+    public List<LlmBackend> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Available backends, best first.
+     */
+    List<LlmBackend> rank() {
+        long now = nanoClock.getAsLong();
+        List<LlmBackend> available = new ArrayList<>(backends.size());
+        for (LlmBackend backend : backends) {
+            if (backend.stats.isAvailable(now)) {
+                available.add(backend);
+            }
+        }
+        // Scores are computed once up front since they change while other requests report back
+        Map<LlmBackend, Double> scores = new IdentityHashMap<>();
+        for (LlmBackend backend : available) {
+            scores.put(backend, backend.stats.score(now));
+        }
+        available.sort(Comparator.comparingDouble(scores::get));
+        return available;
+    }
+
+    long now() {
+        return nanoClock.getAsLong();
+    }
+
+    boolean tryAcquire(LlmBackend backend) {
+        return backend.stats.tryAcquire(nanoClock.getAsLong());
+    }
+
+    void recordSuccess(LlmBackend backend, long startedAt) {
+        long latency = nanoClock.getAsLong() - startedAt;
+        backend.stats.recordSuccess(latency);
+        metrics.recordProviderCall(backend.getName(), latency, PipelineMetrics.OUTCOME_SUCCESS);
+    }
+
+    void recordFailure(LlmBackend backend, long startedAt, Throwable error) {
+        long now = nanoClock.getAsLong();
+        boolean throttled = isThrottled(error);
+        backend.stats.recordFailure(now, throttled);
+        metrics.recordProviderCall(backend.getName(), now - startedAt, PipelineMetrics.OUTCOME_ERROR);
+        log.warn("LLM backend {} failed{}: {}", backend.getName(), throttled ? " (rate limited)" : "", error.getMessage());
+    }
+
+    void recordAbandoned(LlmBackend backend, long startedAt) {
+        backend.stats.recordAbandoned();
+        metrics.recordProviderCall(backend.getName(), nanoClock.getAsLong() - startedAt, PipelineMetrics.OUTCOME_CANCELLED);
+    }
+
+    IllegalStateException noBackendAvailable(Throwable lastError) {
+        IllegalStateException e = new IllegalStateException(lastError == null
+                ? "No LLM backend available, all are rate limited or have an open circuit"
+                : "All LLM backends failed: " + lastError.getMessage());
+        if (lastError != null) {
+            e.initCause(lastError);
+        }
+        return e;
+    }
+
+    static boolean isThrottled(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof OpenAiHttpException http && http.code() == 429) {
+                return true;
+            }
+            String message = t.getMessage();
+            if (message != null && message.toLowerCase(Locale.ROOT).contains("rate limit")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean isInterruption(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException) {
+                return true;
+            }
+        }
+        return Thread.currentThread().isInterrupted();
+    }
+}
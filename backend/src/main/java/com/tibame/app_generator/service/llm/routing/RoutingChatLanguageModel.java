@@ -0,0 +1,44 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+/**
+ * {@link ChatLanguageModel} sending each request to the best backend of an {@link LlmRouter},
+ * failing over to the next one when it errors.
+ */
+@RequiredArgsConstructor
+public class RoutingChatLanguageModel implements ChatLanguageModel {
+
+    private final LlmRouter router;
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        RuntimeException lastError = null;
+        for (LlmBackend backend : router.rank()) {
+            if (!router.tryAcquire(backend)) {
+                continue;
+            }
+            long startedAt = router.now();
+            try {
+                Response<AiMessage> response = backend.getChatModel().generate(messages);
+                router.recordSuccess(backend, startedAt);
+                return response;
+            } catch (RuntimeException e) {
+                if (LlmRouter.isInterruption(e)) {
+                    // Aborted by the caller, which is no reason to try elsewhere
+                    router.recordAbandoned(backend, startedAt);
+                    throw e;
+                }
+                router.recordFailure(backend, startedAt, e);
+                lastError = e;
+            }
+        }
+        throw router.noBackendAvailable(lastError);
+    }
+}
@@ -0,0 +1,70 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link StreamingChatLanguageModel} counterpart of {@link RoutingChatLanguageModel}. A stream fails
+ * over only while none of its tokens has been passed on; after that, an error ends the request.
+ */
+@RequiredArgsConstructor
+public class RoutingStreamingChatLanguageModel implements StreamingChatLanguageModel {
+
+    private final LlmRouter router;
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        attempt(messages, handler, router.rank().iterator(), null);
+    }
+
+    private void attempt(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler,
+                         Iterator<LlmBackend> candidates, Throwable lastError) {
+        while (candidates.hasNext()) {
+            LlmBackend backend = candidates.next();
+            if (!router.tryAcquire(backend)) {
+                continue;
+            }
+            long startedAt = router.now();
+            try {
+                backend.getStreamingModel().generate(messages, new StreamingResponseHandler<>() {
+                    private boolean receivedTokens;
+
+                    @Override
+                    public void onNext(String token) {
+                        receivedTokens = true;
+                        handler.onNext(token);
+                    }
+
+                    @Override
+                    public void onComplete(Response<AiMessage> response) {
+                        router.recordSuccess(backend, startedAt);
+                        handler.onComplete(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        router.recordFailure(backend, startedAt, error);
+                        if (receivedTokens) {
+                            handler.onError(error);
+                        } else {
+                            attempt(messages, handler, candidates, error);
+                        }
+                    }
+                });
+                return;
+            } catch (RuntimeException e) {
+                // The request could not even be sent
+                router.recordFailure(backend, startedAt, e);
+                lastError = e;
+            }
+        }
+        handler.onError(router.noBackendAvailable(lastError));
+    }
+}
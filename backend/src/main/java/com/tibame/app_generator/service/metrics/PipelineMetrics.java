@@ -0,0 +1,160 @@
+package com.tibame.app_generator.service.metrics;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.TaskStatus;
+import dev.langchain4j.model.output.TokenUsage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the agent pipeline, exported through {@code /actuator/prometheus}.
+ * <p>
+ * LLM meters are tagged with the agent type, so the cost and latency of each role can be told apart.
+ */
+@Component
+@RequiredArgsConstructor
+public class PipelineMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+
+    private final MeterRegistry meterRegistry;
+
+    public void recordLlmCall(AgentType agentType, long durationNanos, String outcome) {
+        Timer.builder("agent.llm.duration")
+                .description("Latency of LLM requests")
+                .tag("agent_type", agentType.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordProviderCall(String provider, long durationNanos, String outcome) {
+        Timer.builder("agent.llm.provider.duration")
+                .description("Latency of requests to each LLM backend, failovers included")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTimeToFirstToken(AgentType agentType, long durationNanos) {
+        Timer.builder("agent.llm.first_token")
+                .description("Time from sending a streaming LLM request to its first token")
+                .tag("agent_type", agentType.name())
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRateLimitWait(long durationNanos) {
+        Timer.builder("agent.llm.ratelimit.wait")
+                .description("Time LLM calls wait for rate-limit capacity")
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordPromptSize(AgentType agentType, int characters) {
+        size("agent.llm.prompt.size", "Size of prompts sent to the LLM", agentType).record(characters);
+    }
+
+    public void recordResponseSize(AgentType agentType, int characters) {
+        size("agent.llm.response.size", "Size of LLM responses", agentType).record(characters);
+    }
+
+    public void recordTokens(AgentType agentType, TokenUsage usage) {
+        if (usage == null) {
+            return;
+        }
+        if (usage.inputTokenCount() != null) {
+            tokens(agentType, "input").increment(usage.inputTokenCount());
+        }
+        if (usage.outputTokenCount() != null) {
+            tokens(agentType, "output").increment(usage.outputTokenCount());
+        }
+    }
+
+    public void countParseFailure(AgentType agentType) {
+        Counter.builder("agent.llm.parse.failures")
+                .description("LLM responses that were not valid JSON")
+                .tag("agent_type", agentType.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Counts responses that needed repair calls, tagged with whether the output was valid in the end.
+     */
+    public void countRepair(AgentType agentType, String outcome) {
+        Counter.builder("agent.llm.repairs")
+                .description("LLM responses repaired with targeted follow-up calls")
+                .tag("agent_type", agentType.name())
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void countCacheLookup(AgentType agentType, boolean hit) {
+        Counter.builder("agent.result.cache.lookups")
+                .description("Lookups in the agent result cache")
+                .tag("agent_type", agentType.name())
+                .tag("result", hit ? "hit" : "miss")
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void countRetry(AgentType agentType) {
+        Counter.builder("workflow.task.retries")
+                .description("Automatic retries scheduled for failed tasks")
+                .tag("agent_type", agentType.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void countPermanentFailure(AgentType agentType) {
+        Counter.builder("workflow.task.failures")
+                .description("Tasks that failed after exhausting their retries")
+                .tag("agent_type", agentType.name())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void recordRunDuration(Duration duration, TaskStatus status) {
+        Timer.builder("workflow.run.duration")
+                .description("End-to-end duration of workflow runs, from start to their final state")
+                .tag("status", status.name())
+                .register(meterRegistry)
+                .record(duration);
+    }
+
+    public void gauge(String name, String description, Supplier<Number> value) {
+        Gauge.builder(name, value)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary size(String name, String description, AgentType agentType) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("characters")
+                .tag("agent_type", agentType.name())
+                .register(meterRegistry);
+    }
+
+    private Counter tokens(AgentType agentType, String direction) {
+        return Counter.builder("agent.llm.tokens")
+                .description("Tokens consumed by LLM requests")
+                .tag("agent_type", agentType.name())
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,89 @@
+package com.tibame.app_generator.service.retry;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Minimal hashed timer wheel.
+ * <p>
+ * Time is divided into ticks of fixed length; a timeout lands in the bucket of its deadline tick
+ * modulo the wheel size. Adding a timeout is O(1) and each tick only inspects one bucket, so holding
+ * many pending timeouts costs little more than the entries themselves. Timeouts further away than one
+ * revolution simply stay in their bucket until the wheel has come round often enough.
+ * <p>
+ * The wheel does not own a thread; the caller drives it by calling {@link #advance(long)}.
+ */
+public class HashedTimerWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final List<List<Timeout<T>>> buckets;
+    private final int mask;
+
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two
+     */
+    public HashedTimerWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        int normalized = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.mask = normalized - 1;
+        this.buckets = new ArrayList<>(normalized);
+        for (int i = 0; i < normalized; i++) {
+            buckets.add(new ArrayList<>());
+        }
+    }
+
+    public synchronized void add(T item, long deadlineMillis) {
+        long deadlineTick = (deadlineMillis - startMillis + tickMillis - 1) / tickMillis;
+        // Anything already due fires on the next advance
+        deadlineTick = Math.max(deadlineTick, currentTick);
+        buckets.get((int) (deadlineTick & mask)).add(new Timeout<>(item, deadlineTick));
+        size++;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMillis} and returns every item whose deadline has passed.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        // Never scan more than one revolution; further ticks would only revisit the same buckets
+        long fromTick = Math.max(currentTick, targetTick - mask);
+        for (long tick = fromTick; tick <= targetTick; tick++) {
+            Iterator<Timeout<T>> iterator = buckets.get((int) (tick & mask)).iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.deadlineTick <= targetTick) {
+                    expired.add(timeout.item);
+                    iterator.remove();
+                    size--;
+                }
+            }
+        }
+        // The current tick's bucket is scanned again next time, which is where overdue additions land
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private static final class Timeout<T> {
+        private final T item;
+        private final long deadlineTick;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tibame.app_generator.service.retry;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.repository.AgentTaskRepository;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable scheduler for task retries.
+ * <p>
+ * The source of truth is {@code agent_tasks}: a task waiting for a retry is in RETRY_WAIT with its
+ * {@code next_retry_at} set, so pending retries survive restarts. Only retries becoming due within the
+ * next poll interval are held in memory, in a hashed timer wheel that fires them on time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RetryScheduler {
+
+    private final AgentTaskRepository agentTaskRepository;
+    private final WorkflowProperties workflowProperties;
+    @Lazy
+    private final WorkflowExecutor workflowExecutor;
+    @Qualifier("workflowTaskExecutor")
+    private final TaskExecutor workflowTaskExecutor;
+
+    // Due time of the retry held by the wheel per task, so polling never schedules the same retry twice and a
+    // rescheduled retry replaces the earlier one
+    private final Map<UUID, Long> scheduled = new ConcurrentHashMap<>();
+
+    private HashedTimerWheel<RetryEntry> wheel;
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    public void start() {
+        long tickMs = workflowProperties.getRetryTickMs();
+        wheel = new HashedTimerWheel<>(tickMs, workflowProperties.getRetryWheelSize(), System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers a retry for a task that was already persisted in RETRY_WAIT with {@code nextRetryAt}.
+     * Retries due beyond the next poll are left to the poller.
+     */
+    public void schedule(UUID taskId, UUID runId, ZonedDateTime dueAt) {
+        long dueMillis = dueAt.toInstant().toEpochMilli();
+        if (dueMillis <= System.currentTimeMillis() + workflowProperties.getRetryPollIntervalMs()) {
+            addToWheel(taskId, runId, dueMillis);
+        }
+    }
+
+    /**
+     * Loads retries that become due before the next poll, including those left over from before a restart.
+     */
+    @Scheduled(fixedDelayString = "#{@workflowProperties.retryPollIntervalMs}")
+    public void pollDueRetries() {
+        ZonedDateTime horizon = ZonedDateTime.now().plusNanos(workflowProperties.getRetryPollIntervalMs() * 1_000_000L);
+        List<AgentTask> due = agentTaskRepository.findByStatusAndNextRetryAtBeforeOrderByNextRetryAtAsc(
+                TaskStatus.RETRY_WAIT, horizon, PageRequest.of(0, workflowProperties.getRetryBatchSize()));
+
+        for (AgentTask task : due) {
+            if (task.getWorkflowRun() == null) {
+                continue;
+            }
+            addToWheel(task.getId(), task.getWorkflowRun().getId(), task.getNextRetryAt().toInstant().toEpochMilli());
+        }
+    }
+
+    public int getScheduledCount() {
+        return wheel.size();
+    }
+
+    private void addToWheel(UUID taskId, UUID runId, long dueMillis) {
+        Long previous = scheduled.put(taskId, dueMillis);
+        // An entry with another due time stays in the wheel, but is skipped when it comes up
+        if (previous == null || previous != dueMillis) {
+            wheel.add(new RetryEntry(taskId, runId, dueMillis), dueMillis);
+        }
+    }
+
+    private void tick() {
+        try {
+            for (RetryEntry entry : wheel.advance(System.currentTimeMillis())) {
+                if (scheduled.remove(entry.taskId(), entry.dueMillis())) {
+                    workflowTaskExecutor.execute(() -> fire(entry));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Retry timer tick failed", e);
+        }
+    }
+
+    private void fire(RetryEntry entry) {
+        try {
+            // The entry is in milliseconds, the stored due time may be finer
+            ZonedDateTime dueBefore = ZonedDateTime.ofInstant(Instant.ofEpochMilli(entry.dueMillis() + 1), ZoneOffset.UTC);
+            if (agentTaskRepository.claimRetry(entry.taskId(), dueBefore) == 0) {
+                log.debug("Retry of task {} was already taken, cancelled or rescheduled", entry.taskId());
+                return;
+            }
+            workflowExecutor.retryTaskAsync(entry.taskId(), entry.runId());
+        } catch (Exception e) {
+            log.error("Failed to execute scheduled retry for task {}", entry.taskId(), e);
+        }
+    }
+
+    private record RetryEntry(UUID taskId, UUID runId, long dueMillis) {
+    }
+}
@@ -0,0 +1,89 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.model.AgentTask;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * In-memory state of a node whose result is generated by several subtasks in parallel.
+ * <p>
+ * The node completes once every subtask has succeeded, and fails as soon as one of them fails for good.
+ * Transitions are synchronized since subtasks finish concurrently on worker threads.
+ */
+public class FanOut {
+
+    @Getter
+    private final RunExecution execution;
+
+    @Getter
+    private final int nodeIndex;
+
+    @Getter
+    private final AgentTask parentTask;
+
+    @Getter
+    private final List<PgFanOutPlanner.Module> modules;
+
+    private final Map<UUID, Integer> moduleBySubtask = new HashMap<>();
+    private final List<Map<String, Object>> results;
+    private int remaining;
+    private boolean settled;
+
+    public FanOut(RunExecution execution, int nodeIndex, AgentTask parentTask, List<PgFanOutPlanner.Module> modules) {
+        this.execution = execution;
+        this.nodeIndex = nodeIndex;
+        this.parentTask = parentTask;
+        this.modules = modules;
+        this.results = new ArrayList<>(Collections.nCopies(modules.size(), null));
+        this.remaining = modules.size();
+    }
+
+    public synchronized void addSubtask(UUID subtaskId, int module) {
+        moduleBySubtask.put(subtaskId, module);
+    }
+
+    public synchronized Set<UUID> getSubtaskIds() {
+        return new HashSet<>(moduleBySubtask.keySet());
+    }
+
+    public synchronized String moduleOf(UUID subtaskId) {
+        return modules.get(moduleBySubtask.get(subtaskId)).name();
+    }
+
+    public synchronized Map<String, Object> inputOf(UUID subtaskId) {
+        return modules.get(moduleBySubtask.get(subtaskId)).input();
+    }
+
+    public synchronized int getCompletedCount() {
+        return modules.size() - remaining;
+    }
+
+    /**
+     * Records the result of a subtask. Returns the results of all modules, in module order, once the last
+     * one completed, and null otherwise.
+     */
+    public synchronized List<Map<String, Object>> complete(UUID subtaskId, Map<String, Object> result) {
+        Integer module = moduleBySubtask.get(subtaskId);
+        if (settled || module == null || results.get(module) != null) {
+            return null;
+        }
+        results.set(module, result != null ? result : Map.of());
+        if (--remaining > 0) {
+            return null;
+        }
+        settled = true;
+        return new ArrayList<>(results);
+    }
+
+    /**
+     * Marks the node as failed. Returns false if it had already completed or failed.
+     */
+    public synchronized boolean fail() {
+        if (settled) {
+            return false;
+        }
+        settled = true;
+        return true;
+    }
+}
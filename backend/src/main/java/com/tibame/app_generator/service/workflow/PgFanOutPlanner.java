@@ -0,0 +1,158 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Splits the input of a PG node into modules that can be generated independently, and merges their files.
+ * <p>
+ * A module is a group of SA API endpoints sharing their first resource path segment ({@code /api/v1/orders/{id}}
+ * belongs to {@code orders}). Every module sees the whole architecture except for the endpoints of the other
+ * modules; the first module also owns the files shared by the application, so that the others do not
+ * generate them again.
+ */
+@Component
+@RequiredArgsConstructor
+public class PgFanOutPlanner {
+
+    public static final String ENDPOINTS = "apiEndpoints";
+
+    private static final Set<String> PATH_PREFIXES = Set.of("api", "rest");
+
+    private final WorkflowProperties workflowProperties;
+
+    public record Module(String name, Map<String, Object> input) {
+    }
+
+    /**
+     * Returns the modules of the input, or an empty list if it should be generated in a single call.
+     */
+    public List<Module> split(Map<String, Object> input) {
+        WorkflowProperties.PgFanOut config = workflowProperties.getPgFanOut();
+        if (!config.isEnabled() || !(input.get(ENDPOINTS) instanceof List<?> endpoints)) {
+            return List.of();
+        }
+
+        Map<String, List<Object>> groups = new TreeMap<>();
+        for (Object endpoint : endpoints) {
+            String path = endpoint instanceof Map<?, ?> map && map.get("path") instanceof String p ? p : "";
+            groups.computeIfAbsent(resourceOf(path), k -> new ArrayList<>()).add(endpoint);
+        }
+        if (groups.size() < config.getMinModules()) {
+            return List.of();
+        }
+
+        List<Map.Entry<String, List<Object>>> buckets = combine(groups, config.getMaxModules());
+        List<String> names = buckets.stream().map(Map.Entry::getKey).toList();
+        List<Module> modules = new ArrayList<>(buckets.size());
+        for (int i = 0; i < buckets.size(); i++) {
+            String name = buckets.get(i).getKey();
+            Map<String, Object> moduleInput = new HashMap<>(input);
+            moduleInput.put(ENDPOINTS, buckets.get(i).getValue());
+            moduleInput.put("module", name);
+            moduleInput.put("scope", i == 0
+                    ? "Implement the module '" + name + "' and the files shared by the whole application "
+                            + "(build file, main class, configuration, common types). The modules " + names
+                            + " are implemented separately."
+                    : "Implement only the module '" + name + "'. Shared application files (build file, main class, "
+                            + "configuration, common types) are generated by the module '" + names.get(0)
+                            + "'; do not generate them. The modules " + names + " are implemented separately.");
+            modules.add(new Module(name, moduleInput));
+        }
+        return modules;
+    }
+
+    /**
+     * Merges the results of the modules in order. A path generated by several modules keeps the first
+     * module's content; when the contents differ, the path is reported under {@code conflicts}.
+     */
+    public Map<String, Object> merge(List<Module> modules, List<Map<String, Object>> results) {
+        Map<String, Object> files = new LinkedHashMap<>();
+        Map<String, String> owners = new HashMap<>();
+        Map<String, List<String>> conflicts = new LinkedHashMap<>();
+        List<String> summaries = new ArrayList<>();
+
+        for (int i = 0; i < modules.size(); i++) {
+            String module = modules.get(i).name();
+            Map<String, Object> result = results.get(i);
+            if (result.get("summary") instanceof String summary) {
+                summaries.add(module + ": " + summary);
+            }
+            if (!(result.get("files") instanceof List<?> moduleFiles)) {
+                continue;
+            }
+            for (Object entry : moduleFiles) {
+                if (!(entry instanceof Map<?, ?> file) || !(file.get("path") instanceof String path)) {
+                    continue;
+                }
+                Object existing = files.get(path);
+                if (existing == null) {
+                    files.put(path, file);
+                    owners.put(path, module);
+                } else if (!Objects.equals(((Map<?, ?>) existing).get("content"), file.get("content"))) {
+                    conflicts.computeIfAbsent(path, p -> new ArrayList<>(List.of(owners.get(p)))).add(module);
+                }
+            }
+        }
+
+        Map<String, Object> merged = new LinkedHashMap<>();
+        merged.put("summary", String.join("\n", summaries));
+        merged.put("files", new ArrayList<>(files.values()));
+        merged.put("modules", modules.stream().map(Module::name).toList());
+        if (!conflicts.isEmpty()) {
+            List<Map<String, Object>> reported = new ArrayList<>();
+            conflicts.forEach((path, generatedBy) -> reported.add(Map.of("path", path, "modules", generatedBy)));
+            merged.put("conflicts", reported);
+        }
+        return merged;
+    }
+
+    static String resourceOf(String path) {
+        for (String segment : path.split("/")) {
+            String lower = segment.toLowerCase(Locale.ROOT);
+            if (lower.isEmpty() || PATH_PREFIXES.contains(lower) || lower.matches("v\\d+") || lower.startsWith("{")) {
+                continue;
+            }
+            return lower.replaceAll("[^a-z0-9_-]", "");
+        }
+        return "core";
+    }
+
+    /**
+     * Keeps the groups as modules, or combines them into {@code max} buckets of about equal endpoint counts.
+     */
+    private static List<Map.Entry<String, List<Object>>> combine(Map<String, List<Object>> groups, int max) {
+        if (groups.size() <= max) {
+            return new ArrayList<>(groups.entrySet());
+        }
+        List<Map.Entry<String, List<Object>>> bySize = new ArrayList<>(groups.entrySet());
+        bySize.sort(Comparator.comparingInt((Map.Entry<String, List<Object>> e) -> e.getValue().size()).reversed());
+
+        List<List<String>> names = new ArrayList<>();
+        List<List<Object>> endpoints = new ArrayList<>();
+        for (int i = 0; i < max; i++) {
+            names.add(new ArrayList<>());
+            endpoints.add(new ArrayList<>());
+        }
+        // Largest group first into the currently smallest bucket
+        for (Map.Entry<String, List<Object>> group : bySize) {
+            int smallest = 0;
+            for (int i = 1; i < max; i++) {
+                if (endpoints.get(i).size() < endpoints.get(smallest).size()) {
+                    smallest = i;
+                }
+            }
+            names.get(smallest).add(group.getKey());
+            endpoints.get(smallest).addAll(group.getValue());
+        }
+
+        List<Map.Entry<String, List<Object>>> buckets = new ArrayList<>(max);
+        for (int i = 0; i < max; i++) {
+            buckets.add(Map.entry(String.join("+", names.get(i)), endpoints.get(i)));
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,24 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.enums.AgentType;
+import lombok.Value;
+
+import java.util.Map;
+
+/**
+ * A typed, immutable workflow node as compiled from the raw graph data.
+ */
+@Value
+public class PlanNode {
+    int index;
+    String id;
+    AgentType agentType;
+    String label;
+    Map<String, Object> data;
+    // Hash of the node's definition and the fingerprints of its upstream nodes, changes whenever anything it depends on does
+    String fingerprint;
+
+    public String getTaskName() {
+        return label != null ? label : agentType.name() + " Task";
+    }
+}
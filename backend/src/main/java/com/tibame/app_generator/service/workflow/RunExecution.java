@@ -0,0 +1,235 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.model.WorkflowRun;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * In-memory scheduling state of a single workflow run.
+ * <p>
+ * Nodes are addressed by their index in the compiled {@link WorkflowPlan}.
+ * Each node tracks how many of its upstream nodes are still unfinished; as soon as
+ * that count reaches zero the node becomes ready and can be dispatched, independent
+ * of what the other branches of the graph are doing.
+ * <p>
+ * Only each node's own result is kept. A node's input is built from the base context and the
+ * results of its direct upstream nodes, so context does not snowball along long chains.
+ * <p>
+ * All state transitions are synchronized on the instance since node completions
+ * arrive concurrently from worker threads.
+ */
+public class RunExecution {
+
+    public enum NodeState {
+        PENDING,
+        RUNNING,
+        RETRY_WAIT,
+        SUCCESS,
+        FAIL
+    }
+
+    @Getter
+    private final WorkflowRun run;
+
+    @Getter
+    private final Map<String, Object> baseContext;
+
+    @Getter
+    private final WorkflowPlan plan;
+
+    private final int[] unfinishedUpstream;
+    private final NodeState[] states;
+    private final List<Map<String, Object>> results;
+    private final Deque<Integer> ready = new ArrayDeque<>();
+    private final String contextFingerprint;
+
+    private int completedCount;
+    private boolean halted;
+    private boolean finished;
+    private boolean cancelled;
+
+    public RunExecution(WorkflowRun run, WorkflowPlan plan, Map<String, Object> baseContext) {
+        this.run = run;
+        this.plan = plan;
+        this.baseContext = baseContext;
+        this.contextFingerprint = WorkflowPlan.digest(baseContext);
+
+        int size = plan.size();
+        this.unfinishedUpstream = new int[size];
+        this.states = new NodeState[size];
+        Arrays.fill(states, NodeState.PENDING);
+        this.results = new ArrayList<>(Collections.nCopies(size, null));
+
+        for (int i = 0; i < size; i++) {
+            unfinishedUpstream[i] = plan.getPredecessors()[i].length;
+            if (unfinishedUpstream[i] == 0) {
+                ready.add(i);
+            }
+        }
+    }
+
+    public int size() {
+        return plan.size();
+    }
+
+    public PlanNode getNode(int index) {
+        return plan.getNode(index);
+    }
+
+    public int indexOf(String nodeId) {
+        return plan.indexOf(nodeId);
+    }
+
+    /**
+     * Identifies what a node's result depends on: its own definition, everything upstream of it and the base context.
+     * Two runs producing the same fingerprint for a node would send it the same input.
+     */
+    public String fingerprintOf(int index) {
+        return plan.getNode(index).getFingerprint() + ":" + contextFingerprint;
+    }
+
+    public synchronized int getCompletedCount() {
+        return completedCount;
+    }
+
+    /**
+     * Builds the input of a node: the base context merged with the results of its direct upstream nodes,
+     * limited to the fields listed on the connecting edge where it has a projection.
+     */
+    public synchronized Map<String, Object> inputFor(int index) {
+        Map<String, Object> input = new HashMap<>(baseContext);
+        int[] upstreamNodes = plan.getPredecessors()[index];
+        String[][] projections = plan.getPredecessorFields()[index];
+        for (int k = 0; k < upstreamNodes.length; k++) {
+            Map<String, Object> result = results.get(upstreamNodes[k]);
+            if (result == null) {
+                continue;
+            }
+            if (projections[k] == null) {
+                input.putAll(result);
+            } else {
+                for (String field : projections[k]) {
+                    if (result.containsKey(field)) {
+                        input.put(field, result.get(field));
+                    }
+                }
+            }
+        }
+        return input;
+    }
+
+    /**
+     * Marks every ready node as running and returns them, unless the run is halted.
+     */
+    public synchronized List<Integer> drainReady() {
+        List<Integer> dispatched = new ArrayList<>();
+        if (halted) {
+            return dispatched;
+        }
+        while (!ready.isEmpty()) {
+            int index = ready.poll();
+            if (states[index] == NodeState.PENDING) {
+                states[index] = NodeState.RUNNING;
+                dispatched.add(index);
+            }
+        }
+        return dispatched;
+    }
+
+    /**
+     * Records a successful node and returns the downstream nodes that became ready.
+     */
+    public synchronized List<Integer> complete(int index, Map<String, Object> result) {
+        markSuccess(index, result);
+        return drainReady();
+    }
+
+    /**
+     * Restores a node that already completed in an earlier attempt of this run.
+     */
+    public synchronized void restore(int index, Map<String, Object> result) {
+        markSuccess(index, result);
+    }
+
+    public synchronized void markRetryWait(int index) {
+        states[index] = NodeState.RETRY_WAIT;
+    }
+
+    /**
+     * Marks a node as permanently failed. No further nodes are dispatched until it is retried.
+     */
+    public synchronized void markFailed(int index) {
+        states[index] = NodeState.FAIL;
+        halted = true;
+    }
+
+    /**
+     * Puts a failed or waiting node back into execution and returns other nodes that are ready as well.
+     */
+    public synchronized List<Integer> reopen(int index) {
+        states[index] = NodeState.RUNNING;
+        halted = false;
+        for (NodeState state : states) {
+            if (state == NodeState.FAIL) {
+                halted = true;
+                break;
+            }
+        }
+        return drainReady();
+    }
+
+    /**
+     * Stops the run for good: nothing is dispatched anymore and the run never finishes.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        halted = true;
+        ready.clear();
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    public synchronized boolean isHalted() {
+        return halted;
+    }
+
+    /**
+     * Returns true when no node of a halted run is still executing.
+     */
+    public synchronized boolean isIdle() {
+        for (NodeState state : states) {
+            if (state == NodeState.RUNNING) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true exactly once, when every node of the run has completed.
+     */
+    public synchronized boolean tryFinish() {
+        if (finished || cancelled || completedCount < plan.size()) {
+            return false;
+        }
+        finished = true;
+        return true;
+    }
+
+    private void markSuccess(int index, Map<String, Object> result) {
+        if (states[index] == NodeState.SUCCESS) {
+            return;
+        }
+        states[index] = NodeState.SUCCESS;
+        results.set(index, result != null ? result : Map.of());
+        completedCount++;
+        for (int downstream : plan.getSuccessors()[index]) {
+            if (--unfinishedUpstream[downstream] == 0) {
+                ready.add(downstream);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.enums.AgentType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Structural checks on raw {@code Workflow.graphData} before a run may start.
+ * Stateless, so it can be used (and benchmarked) without a Spring context.
+ */
+public final class WorkflowGraphValidator {
+
+    private WorkflowGraphValidator() {
+    }
+
+    /**
+     * Returns human readable errors; an empty list means the graph can be executed.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> validate(Map<String, Object> graphData) {
+        List<String> errors = new ArrayList<>();
+        if (graphData == null || !graphData.containsKey("nodes")) {
+            errors.add("Invalid graph data structure.");
+            return errors;
+        }
+
+        List<Map<String, Object>> nodes = (List<Map<String, Object>>) graphData.get("nodes");
+
+        if (nodes == null || nodes.isEmpty()) {
+            errors.add("Workflow must contain at least one node.");
+            return errors;
+        }
+
+        Set<String> presentTypes = new HashSet<>();
+        for (Map<String, Object> node : nodes) {
+            Map<String, Object> data = (Map<String, Object>) node.get("data");
+            if (data != null && data.containsKey("agentType")) {
+                presentTypes.add(String.valueOf(data.get("agentType")));
+            }
+        }
+
+        for (AgentType type : AgentType.values()) {
+            if (!presentTypes.contains(type.name())) {
+                 errors.add("Missing required agent role: " + type.name());
+            }
+        }
+
+        return errors;
+    }
+}
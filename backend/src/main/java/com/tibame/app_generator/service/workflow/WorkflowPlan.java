@@ -0,0 +1,247 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tibame.app_generator.enums.AgentType;
+import lombok.Getter;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+/**
+ * Immutable execution plan compiled from {@code Workflow.graphData}.
+ * <p>
+ * Nodes are stored in topological order and addressed by their index in that order;
+ * adjacency is kept as plain int arrays so that scheduling never has to walk the raw JSON maps again.
+ * <p>
+ * An edge may restrict which fields of its source node's result reach the target node by listing
+ * them in {@code data.fields}; {@link #getPredecessorFields()} is aligned with {@link #getPredecessors()}
+ * and holds {@code null} for edges passing the whole result.
+ */
+@Getter
+public class WorkflowPlan {
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper()
+            .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+    private final UUID workflowId;
+    private final ZonedDateTime version;
+    private final List<PlanNode> nodes;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    private final String[][][] predecessorFields;
+    private final Map<String, Integer> nodeIndex;
+
+    private WorkflowPlan(UUID workflowId, ZonedDateTime version, List<PlanNode> nodes, int[][] successors,
+                         int[][] predecessors, String[][][] predecessorFields, Map<String, Integer> nodeIndex) {
+        this.workflowId = workflowId;
+        this.version = version;
+        this.nodes = nodes;
+        this.successors = successors;
+        this.predecessors = predecessors;
+        this.predecessorFields = predecessorFields;
+        this.nodeIndex = nodeIndex;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public PlanNode getNode(int index) {
+        return nodes.get(index);
+    }
+
+    public int indexOf(String nodeId) {
+        Integer index = nodeIndex.get(nodeId);
+        if (index == null) {
+            throw new IllegalArgumentException("Node not found in workflow: " + nodeId);
+        }
+        return index;
+    }
+
+    /**
+     * Compiles raw graph data ({@code nodes} / {@code edges} lists as produced by the canvas) into a plan.
+     *
+     * @throws IllegalArgumentException if a node has no valid agent type
+     * @throws IllegalStateException    if the graph contains a cycle
+     */
+    @SuppressWarnings("unchecked")
+    public static WorkflowPlan compile(UUID workflowId, ZonedDateTime version, Map<String, Object> graphData) {
+        List<Map<String, Object>> rawNodes = (List<Map<String, Object>>) graphData.get("nodes");
+        List<Map<String, Object>> rawEdges = (List<Map<String, Object>>) graphData.get("edges");
+        if (rawNodes == null) rawNodes = List.of();
+        if (rawEdges == null) rawEdges = List.of();
+
+        int size = rawNodes.size();
+        Map<String, Integer> rawIndex = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            rawIndex.put((String) rawNodes.get(i).get("id"), i);
+        }
+
+        // Count edges per node first so adjacency can be stored in exactly sized arrays
+        int[] edgeSources = new int[rawEdges.size()];
+        int[] edgeTargets = new int[rawEdges.size()];
+        String[][] edgeFields = new String[rawEdges.size()][];
+        int[] outDegree = new int[size];
+        int[] inDegree = new int[size];
+        int edgeCount = 0;
+        for (Map<String, Object> edge : rawEdges) {
+            Integer source = rawIndex.get((String) edge.get("source"));
+            Integer target = rawIndex.get((String) edge.get("target"));
+            if (source != null && target != null) {
+                edgeSources[edgeCount] = source;
+                edgeTargets[edgeCount] = target;
+                edgeFields[edgeCount] = toFieldProjection(edge);
+                edgeCount++;
+                outDegree[source]++;
+                inDegree[target]++;
+            }
+        }
+        int[][] rawSuccessors = new int[size][];
+        String[][][] rawSuccessorFields = new String[size][][];
+        for (int i = 0; i < size; i++) {
+            rawSuccessors[i] = new int[outDegree[i]];
+            rawSuccessorFields[i] = new String[outDegree[i]][];
+        }
+        int[] fill = new int[size];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = fill[edgeSources[e]]++;
+            rawSuccessors[edgeSources[e]][slot] = edgeTargets[e];
+            rawSuccessorFields[edgeSources[e]][slot] = edgeFields[e];
+        }
+
+        // Kahn's algorithm over an int array used as FIFO queue
+        int[] remaining = inDegree.clone();
+        int[] order = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < size; i++) {
+            if (remaining[i] == 0) {
+                order[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            int u = order[head++];
+            for (int v : rawSuccessors[u]) {
+                if (--remaining[v] == 0) {
+                    order[tail++] = v;
+                }
+            }
+        }
+        if (tail != size) {
+            throw new IllegalStateException("Cycle detected in workflow graph");
+        }
+
+        // Re-index everything by topological position
+        int[] position = new int[size];
+        for (int i = 0; i < size; i++) {
+            position[order[i]] = i;
+        }
+
+        List<PlanNode> nodes = new ArrayList<>(size);
+        Map<String, Integer> nodeIndex = new HashMap<>(size * 2);
+        int[][] successors = new int[size][];
+        int[][] predecessors = new int[size][];
+        String[][][] predecessorFields = new String[size][][];
+        int[] predecessorFill = new int[size];
+        for (int i = 0; i < size; i++) {
+            predecessors[i] = new int[inDegree[order[i]]];
+            predecessorFields[i] = new String[inDegree[order[i]]][];
+        }
+        for (int i = 0; i < size; i++) {
+            int raw = order[i];
+            Map<String, Object> rawNode = rawNodes.get(raw);
+            String id = (String) rawNode.get("id");
+            nodeIndex.put(id, i);
+
+            int[] next = new int[rawSuccessors[raw].length];
+            for (int s = 0; s < next.length; s++) {
+                next[s] = position[rawSuccessors[raw][s]];
+                int slot = predecessorFill[next[s]]++;
+                predecessors[next[s]][slot] = i;
+                predecessorFields[next[s]][slot] = rawSuccessorFields[raw][s];
+            }
+            successors[i] = next;
+        }
+        // Predecessors are filled in ascending topological order already, which keeps fan-in merges deterministic
+
+        // In topological order every upstream fingerprint is known before it is needed
+        for (int i = 0; i < size; i++) {
+            Map<String, Object> rawNode = rawNodes.get(order[i]);
+            String id = (String) rawNode.get("id");
+            List<String> upstreamFingerprints = new ArrayList<>(predecessors[i].length);
+            for (int k = 0; k < predecessors[i].length; k++) {
+                // A changed projection changes the input just like a changed upstream node
+                String[] fields = predecessorFields[i][k];
+                upstreamFingerprints.add(nodes.get(predecessors[i][k]).getFingerprint()
+                        + (fields != null ? "|" + String.join(",", fields) : ""));
+            }
+            nodes.add(toPlanNode(i, id, rawNode, upstreamFingerprints));
+        }
+
+        return new WorkflowPlan(workflowId, version, Collections.unmodifiableList(nodes),
+                successors, predecessors, predecessorFields, Collections.unmodifiableMap(nodeIndex));
+    }
+
+    /**
+     * Reads the optional field list of an edge, sorted; {@code null} when the edge passes the whole result.
+     */
+    @SuppressWarnings("unchecked")
+    private static String[] toFieldProjection(Map<String, Object> edge) {
+        Map<String, Object> data = (Map<String, Object>) edge.get("data");
+        Object fields = data != null ? data.get("fields") : null;
+        if (!(fields instanceof Collection<?> list) || list.isEmpty()) {
+            return null;
+        }
+        String[] projection = new String[list.size()];
+        int i = 0;
+        for (Object field : list) {
+            projection[i++] = String.valueOf(field);
+        }
+        Arrays.sort(projection);
+        return projection;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PlanNode toPlanNode(int index, String id, Map<String, Object> rawNode, List<String> upstreamFingerprints) {
+        Map<String, Object> data = (Map<String, Object>) rawNode.get("data");
+        if (data == null) {
+            throw new IllegalArgumentException("Node " + id + " has no data");
+        }
+        String agentTypeStr = (String) data.get("agentType");
+        AgentType agentType;
+        try {
+            agentType = AgentType.valueOf(agentTypeStr);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            throw new IllegalArgumentException("Invalid agent type: " + agentTypeStr);
+        }
+        return new PlanNode(index, id, agentType, (String) data.get("label"),
+                Collections.unmodifiableMap(new LinkedHashMap<>(data)),
+                fingerprint(data, upstreamFingerprints));
+    }
+
+    private static String fingerprint(Map<String, Object> data, List<String> upstreamFingerprints) {
+        // The label only names the task, renaming a node does not change what it produces
+        Map<String, Object> definition = new HashMap<>(data);
+        definition.remove("label");
+        List<String> upstream = new ArrayList<>(upstreamFingerprints);
+        Collections.sort(upstream);
+        return digest(definition, upstream);
+    }
+
+    /**
+     * SHA-256 over the canonical JSON (map keys sorted) of the given values.
+     */
+    static String digest(Object... values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(CANONICAL_MAPPER.writeValueAsBytes(values));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Failed to compute fingerprint", e);
+        }
+    }
+}
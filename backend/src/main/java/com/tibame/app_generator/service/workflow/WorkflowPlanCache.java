@@ -0,0 +1,67 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.model.Workflow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bounded LRU cache of compiled workflow plans, keyed by workflow id and {@code updatedAt}.
+ * Saving a workflow bumps {@code updatedAt}, so an edited graph is simply compiled under a new key
+ * while runs started on the previous version keep using the plan they were started with.
+ */
+@Component
+@Slf4j
+public class WorkflowPlanCache {
+
+    private final Map<String, WorkflowPlan> plans;
+
+    public WorkflowPlanCache(WorkflowProperties workflowProperties) {
+        int maxSize = workflowProperties.getPlanCacheSize();
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WorkflowPlan> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public WorkflowPlan getPlan(Workflow workflow) {
+        String key = keyOf(workflow.getId(), workflow.getUpdatedAt());
+        synchronized (plans) {
+            WorkflowPlan plan = plans.get(key);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        // Compile outside the lock; a concurrent duplicate compilation is harmless
+        WorkflowPlan plan = WorkflowPlan.compile(workflow.getId(), workflow.getUpdatedAt(), workflow.getGraphData());
+        log.debug("Compiled workflow plan {} ({} nodes)", key, plan.size());
+
+        synchronized (plans) {
+            WorkflowPlan existing = plans.putIfAbsent(key, plan);
+            return existing != null ? existing : plan;
+        }
+    }
+
+    /**
+     * Returns the plan of an earlier version of a workflow if it is still cached. Only the current graph is
+     * stored, so a version that has been evicted cannot be compiled again.
+     */
+    public Optional<WorkflowPlan> findPlan(UUID workflowId, ZonedDateTime version) {
+        synchronized (plans) {
+            return Optional.ofNullable(plans.get(keyOf(workflowId, version)));
+        }
+    }
+
+    private String keyOf(UUID workflowId, ZonedDateTime version) {
+        return workflowId + "@" + (version == null ? "" : version.toInstant());
+    }
+}
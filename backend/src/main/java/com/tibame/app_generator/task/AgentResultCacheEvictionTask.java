@@ -0,0 +1,27 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.service.llm.AgentResultCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AgentResultCacheEvictionTask {
+
+    private final AgentResultCache agentResultCache;
+
+    @Scheduled(fixedRate = 3600000) // Every hour
+    public void evict() {
+        if (!agentResultCache.isEnabled()) {
+            return;
+        }
+        try {
+            agentResultCache.evict();
+        } catch (Exception e) {
+            log.error("Agent result cache eviction failed", e);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.service.llm.PromptTemplateRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PromptTemplateReloadTask {
+
+    private final PromptTemplateRegistry promptTemplateRegistry;
+
+    @Scheduled(fixedDelayString = "#{@llmProperties.promptTemplates.reloadIntervalMs}")
+    public void reload() {
+        try {
+            promptTemplateRegistry.reload();
+        } catch (Exception e) {
+            log.error("Prompt template reload failed", e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.service.TaskLogService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class TaskLogFlushTask {
+
+    private final TaskLogService taskLogService;
+
+    @Scheduled(fixedDelayString = "#{@workflowProperties.taskLog.flushIntervalMs}")
+    public void flush() {
+        taskLogService.flush();
+    }
+}
@@ -0,0 +1,87 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.model.AgentTaskLog;
+import com.tibame.app_generator.repository.AgentTaskLogRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Moves logs written before task logs became append-only out of the former {@code agent_tasks.log_content}
+ * column, which is no longer mapped, into {@code agent_task_logs}, one row per line. Runs once per startup
+ * before interrupted runs are resumed, so no task has new lines yet; each task is copied and its old
+ * column cleared in one transaction. Nothing happens when the column does not exist.
+ */
+@Component
+@Slf4j
+public class TaskLogMigrationTask {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AgentTaskLogRepository agentTaskLogRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public TaskLogMigrationTask(JdbcTemplate jdbcTemplate, AgentTaskLogRepository agentTaskLogRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.agentTaskLogRepository = agentTaskLogRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void migrateLogContent() {
+        int migrated = 0;
+        List<Map<String, Object>> tasks;
+        do {
+            try {
+                tasks = jdbcTemplate.queryForList(
+                        "select t.id, t.log_content from agent_tasks t where t.log_content is not null " +
+                                "and not exists (select 1 from agent_task_logs l where l.agent_task_id = t.id) " +
+                                "limit " + BATCH_SIZE);
+            } catch (DataAccessException e) {
+                // Schema created after log_content was dropped from the entity
+                log.debug("No log_content column to migrate: {}", e.getMessage());
+                return;
+            }
+            for (Map<String, Object> task : tasks) {
+                UUID taskId = toUuid(task.get("id"));
+                String content = (String) task.get("log_content");
+                transactionTemplate.executeWithoutResult(status -> copy(taskId, content));
+                migrated++;
+            }
+        } while (tasks.size() == BATCH_SIZE);
+
+        if (migrated > 0) {
+            log.info("Moved the log_content of {} tasks to agent_task_logs", migrated);
+        }
+    }
+
+    private void copy(UUID taskId, String content) {
+        String[] lines = content.split("\n");
+        List<AgentTaskLog> rows = new ArrayList<>(lines.length);
+        for (int seq = 0; seq < lines.length; seq++) {
+            rows.add(AgentTaskLog.builder().taskId(taskId).seq((long) seq).message(lines[seq]).build());
+        }
+        agentTaskLogRepository.saveAll(rows);
+        agentTaskLogRepository.flush();
+        jdbcTemplate.update("update agent_tasks set log_content = null where id = ?", taskId);
+    }
+
+    private static UUID toUuid(Object id) {
+        return id instanceof UUID uuid ? uuid : UUID.fromString(id.toString());
+    }
+}
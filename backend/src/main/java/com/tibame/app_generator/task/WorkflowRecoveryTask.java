@@ -0,0 +1,62 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.WorkflowRun;
+import com.tibame.app_generator.repository.WorkflowRunRepository;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Picks up runs that were still RUNNING when the application stopped and resumes them
+ * from their last checkpoints, so completed (and paid for) LLM results are not thrown away.
+ * Runs that were still waiting for admission are queued again in their original order.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WorkflowRecoveryTask {
+
+    private final WorkflowRunRepository workflowRunRepository;
+    private final WorkflowExecutor workflowExecutor;
+    private final WorkflowProperties workflowProperties;
+    private final RunAdmissionService runAdmissionService;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void resumeInterruptedRuns() {
+        if (!workflowProperties.isResumeOnStartup()) {
+            return;
+        }
+
+        List<WorkflowRun> interruptedRuns = workflowRunRepository.findByStatus(TaskStatus.RUNNING);
+        if (!interruptedRuns.isEmpty()) {
+            log.info("Found {} interrupted workflow runs to resume.", interruptedRuns.size());
+        }
+
+        for (WorkflowRun run : interruptedRuns) {
+            try {
+                runAdmissionService.register(run);
+                workflowExecutor.resumeRunAsync(run.getId());
+            } catch (Exception e) {
+                log.error("Failed to resume workflow run: {}", run.getId(), e);
+            }
+        }
+
+        for (WorkflowRun run : workflowRunRepository.findByStatusOrderByCreatedAtAsc(TaskStatus.PENDING)) {
+            try {
+                runAdmissionService.submit(run);
+            } catch (Exception e) {
+                log.error("Failed to queue workflow run: {}", run.getId(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.WorkflowService;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WorkflowCancelIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private WorkflowService workflowService;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private ChatLanguageModel chatLanguageModel;
+
+    private Project project;
+    private WorkflowRun run;
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("cancel_" + UUID.randomUUID())
+                .email("cancel_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("Cancel Test Project " + UUID.randomUUID())
+                .description("A test project")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(node("pm", "PM"), node("sa", "SA")));
+        graphData.put("edges", List.of(Map.of("id", "e1", "source", "pm", "target", "sa")));
+
+        Workflow workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graphData);
+        workflowRepository.save(workflow);
+
+        run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build());
+    }
+
+    @Test
+    public void testCancelAbortsInFlightCall() throws Exception {
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch callInterrupted = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        // Simulates a request that hangs until the calling thread is interrupted
+        when(chatLanguageModel.generate(anyList())).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            callStarted.countDown();
+            try {
+                Thread.sleep(30_000);
+            } catch (InterruptedException e) {
+                callInterrupted.countDown();
+                throw e;
+            }
+            return Response.from(AiMessage.from("{\"summary\": \"too late\"}"));
+        });
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+        assertTrue(callStarted.await(5, TimeUnit.SECONDS));
+
+        WorkflowRun cancelled = workflowService.cancelRun(run.getId());
+
+        assertEquals(TaskStatus.CANCELLED, cancelled.getStatus());
+        assertNotNull(cancelled.getEndedAt());
+        assertTrue(callInterrupted.await(5, TimeUnit.SECONDS));
+
+        // The run stays cancelled and the downstream node never starts
+        Thread.sleep(500);
+        assertEquals(TaskStatus.CANCELLED, workflowRunRepository.findById(run.getId()).orElseThrow().getStatus());
+        List<AgentTask> tasks = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId());
+        assertEquals(1, tasks.size());
+        assertEquals(TaskStatus.CANCELLED, tasks.get(0).getStatus());
+        assertEquals(1, calls.get());
+
+        assertThrows(IllegalStateException.class, () -> workflowService.cancelRun(run.getId()));
+    }
+
+    @Test
+    public void testRunCancelledBeforeDispatchIsNotExecuted() throws Exception {
+        // Cancelled after admission marked it started, before the executor picked it up
+        assertEquals(1, workflowRunRepository.markCancelled(run.getId(), ZonedDateTime.now()));
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        Thread.sleep(500);
+        assertEquals(TaskStatus.CANCELLED, workflowRunRepository.findById(run.getId()).orElseThrow().getStatus());
+        assertTrue(agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId()).isEmpty());
+        verify(chatLanguageModel, never()).generate(anyList());
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+}
@@ -0,0 +1,156 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.llm.LlmAgentExecutionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WorkflowIncrementalRunIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private LlmAgentExecutionService llmAgentExecutionService;
+
+    private Project project;
+    private Workflow workflow;
+    private final List<String> executedNodes = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("incr_" + UUID.randomUUID())
+                .email("incr_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("Incremental Test Project " + UUID.randomUUID())
+                .description("A test project")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graph(null));
+        workflow = workflowRepository.save(workflow);
+
+        when(llmAgentExecutionService.executeTask(any(), any())).thenAnswer(invocation -> {
+            AgentTask task = invocation.getArgument(0);
+            executedNodes.add(task.getNodeId());
+            return Map.of(task.getNodeId() + "-result", "done");
+        });
+    }
+
+    @Test
+    public void testChangedRunOnlyExecutesDirtyNodes() throws Exception {
+        WorkflowRun first = startAndAwait(null);
+        assertEquals(TaskStatus.SUCCESS, first.getStatus());
+        assertEquals(List.of("pm", "sa", "pg", "qa"), executedNodes);
+
+        // Tweak the QA prompt only
+        workflow.setGraphData(graph("Focus on edge cases"));
+        workflowRepository.save(workflow);
+        executedNodes.clear();
+
+        WorkflowRun second = startAndAwait(first.getId());
+
+        assertEquals(TaskStatus.SUCCESS, second.getStatus());
+        assertEquals(List.of("qa"), executedNodes);
+        assertEquals(3, second.getReusedNodes());
+        assertEquals(4, second.getCompletedNodes());
+        // Reused results are checkpointed for the new run as well
+        assertEquals(4, checkpointRepository.findByWorkflowRun_Id(second.getId()).size());
+    }
+
+    private WorkflowRun startAndAwait(UUID sourceRunId) throws InterruptedException {
+        WorkflowRun run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .sourceRunId(sourceRunId)
+                .build());
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 40; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+        return finished;
+    }
+
+    private Map<String, Object> graph(String qaPrompt) {
+        Map<String, Object> qa = node("qa", "QA");
+        if (qaPrompt != null) {
+            ((Map<String, Object>) qa.get("data")).put("prompt", qaPrompt);
+        }
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(node("pm", "PM"), node("sa", "SA"), node("pg", "PG"), qa));
+        graphData.put("edges", List.of(edge("pm", "sa"), edge("sa", "pg"), edge("pg", "qa")));
+        return graphData;
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
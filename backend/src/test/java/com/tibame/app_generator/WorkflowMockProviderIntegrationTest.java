@@ -0,0 +1,140 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs a whole workflow through the real agent execution path against the mock LLM provider.
+ */
+@SpringBootTest(properties = {
+        "platform.llm.provider=mock",
+        "platform.llm.streaming.enabled=true",
+        "platform.workflow.pg-fan-out.enabled=true",
+        "platform.llm.mock.latency-distribution=FIXED",
+        "platform.llm.mock.latency-min-ms=0",
+        "platform.llm.mock.latency-median-ms=10",
+        "platform.llm.mock.tokens-per-second=1000000",
+        "platform.llm.mock.files=2"
+})
+@ActiveProfiles("test")
+public class WorkflowMockProviderIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private Project project;
+    private WorkflowRun run;
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("mock_" + UUID.randomUUID())
+                .email("mock_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("Mock Provider Project " + UUID.randomUUID())
+                .description("A shop")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(node("pm", "PM"), node("sa", "SA"), node("pg", "PG"), node("qa", "QA")));
+        graphData.put("edges", List.of(edge("pm", "sa"), edge("sa", "pg"), edge("pg", "qa")));
+
+        Workflow workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graphData);
+        workflowRepository.save(workflow);
+
+        run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build());
+    }
+
+    @Test
+    public void testWorkflowRunsAgainstMockProvider() throws Exception {
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 60; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+
+        assertNotNull(finished);
+        assertEquals(TaskStatus.SUCCESS, finished.getStatus());
+
+        List<AgentTask> tasks = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId());
+        List<AgentTask> nodeTasks = tasks.stream().filter(t -> t.getNodeId() != null).toList();
+        assertEquals(4, nodeTasks.size());
+        AgentTask pg = nodeTasks.stream().filter(t -> t.getAgentType() == AgentType.PG).findFirst().orElseThrow();
+        // The mock SA design has one module per endpoint, each generating the same two files
+        List<AgentTask> subtasks = tasks.stream().filter(t -> pg.getId().equals(t.getParentTaskId())).toList();
+        assertEquals(5, subtasks.size());
+        assertEquals(2, ((List<?>) pg.getContextData().get("files")).size());
+        assertFalse(pg.getContextData().containsKey("conflicts"));
+        assertTrue(subtasks.get(0).getPromptVersion().startsWith("PG-builtin-"));
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
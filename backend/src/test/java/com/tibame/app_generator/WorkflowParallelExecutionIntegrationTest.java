@@ -0,0 +1,159 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.llm.LlmAgentExecutionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WorkflowParallelExecutionIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private LlmAgentExecutionService llmAgentExecutionService;
+
+    private Project project;
+    private WorkflowRun run;
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("dag_" + UUID.randomUUID())
+                .email("dag_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("DAG Test Project " + UUID.randomUUID())
+                .description("A test project")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        // PM fans out into two SA branches which join again at PG
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(
+                node("pm", "PM"), node("sa-api", "SA"), node("sa-db", "SA"), node("pg", "PG")));
+        graphData.put("edges", List.of(
+                edge("pm", "sa-api"), edge("pm", "sa-db"), edge("sa-api", "pg"), edge("sa-db", "pg")));
+
+        Workflow workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graphData);
+        workflowRepository.save(workflow);
+
+        run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build());
+    }
+
+    @Test
+    public void testIndependentBranchesRunConcurrently() throws Exception {
+        CountDownLatch branchesStarted = new CountDownLatch(2);
+        Map<String, Map<String, Object>> inputsByNode = new ConcurrentHashMap<>();
+
+        when(llmAgentExecutionService.executeTask(any(), any())).thenAnswer(invocation -> {
+            AgentTask task = invocation.getArgument(0);
+            Map<String, Object> input = invocation.getArgument(1);
+            inputsByNode.put(task.getNodeId(), new HashMap<>(input));
+
+            if (task.getNodeId().startsWith("sa-")) {
+                // Each SA branch only proceeds once the other one is running as well
+                branchesStarted.countDown();
+                if (!branchesStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("SA branches were not executed concurrently");
+                }
+            }
+            return Map.of(task.getNodeId() + "-result", "done");
+        });
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 40; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+
+        assertNotNull(finished);
+        assertEquals(TaskStatus.SUCCESS, finished.getStatus());
+        assertEquals(4, finished.getTotalNodes());
+        assertEquals(4, finished.getCompletedNodes());
+
+        // The fan-in node sees the results of both branches, but not those of nodes further upstream
+        Map<String, Object> pgInput = inputsByNode.get("pg");
+        assertNotNull(pgInput);
+        assertEquals("done", pgInput.get("sa-api-result"));
+        assertEquals("done", pgInput.get("sa-db-result"));
+        assertFalse(pgInput.containsKey("pm-result"));
+        assertEquals("A test project", pgInput.get("description"));
+
+        assertEquals(4, agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId()).size());
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
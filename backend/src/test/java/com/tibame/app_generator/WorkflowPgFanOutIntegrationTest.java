@@ -0,0 +1,179 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.llm.LlmAgentExecutionService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = "platform.workflow.pg-fan-out.enabled=true")
+@ActiveProfiles("test")
+public class WorkflowPgFanOutIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private LlmAgentExecutionService llmAgentExecutionService;
+
+    private Project project;
+    private WorkflowRun run;
+
+    @BeforeAll
+    static void enableFastRetries() {
+        System.setProperty("app.test.mode", "true");
+    }
+
+    @AfterAll
+    static void restoreRetryDelays() {
+        System.clearProperty("app.test.mode");
+    }
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("fanout_" + UUID.randomUUID())
+                .email("fanout_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("Fan-out Test Project " + UUID.randomUUID())
+                .description("A shop")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(node("sa", "SA"), node("pg", "PG")));
+        graphData.put("edges", List.of(edge("sa", "pg")));
+
+        Workflow workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graphData);
+        workflowRepository.save(workflow);
+
+        run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build());
+    }
+
+    @Test
+    public void testPgNodeIsGeneratedByModuleSubtasks() throws Exception {
+        AtomicBoolean usersFailed = new AtomicBoolean();
+        when(llmAgentExecutionService.executeTask(any(), any())).thenAnswer(invocation -> {
+            AgentTask task = invocation.getArgument(0);
+            Map<String, Object> input = invocation.getArgument(1);
+            if ("sa".equals(task.getNodeId())) {
+                return Map.of("summary", "Architecture", "apiEndpoints", List.of(
+                        Map.of("method", "GET", "path", "/api/orders"),
+                        Map.of("method", "GET", "path", "/api/orders/{id}"),
+                        Map.of("method", "GET", "path", "/api/users")));
+            }
+            if (task.getParentTaskId() == null) {
+                throw new IllegalStateException("The PG node must not be generated in a single call");
+            }
+            if ("orders".equals(input.get("module"))) {
+                return Map.of("summary", "Orders", "files", List.of(file("pom.xml", "a"), file("Order.java", "o")));
+            }
+            // The first attempt of the users module fails and is retried on its own
+            if (usersFailed.compareAndSet(false, true)) {
+                throw new RuntimeException("Malformed escape");
+            }
+            return Map.of("summary", "Users", "files", List.of(file("pom.xml", "b"), file("User.java", "u")));
+        });
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 40; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+
+        assertNotNull(finished);
+        assertEquals(TaskStatus.SUCCESS, finished.getStatus());
+
+        List<AgentTask> tasks = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId());
+        AgentTask pg = tasks.stream().filter(t -> "pg".equals(t.getNodeId())).findFirst().orElseThrow();
+        assertEquals(TaskStatus.SUCCESS, pg.getStatus());
+        assertEquals(3, ((List<?>) pg.getContextData().get("files")).size());
+        assertEquals(List.of("orders", "users"), pg.getContextData().get("modules"));
+        assertEquals(1, ((List<?>) pg.getContextData().get("conflicts")).size());
+
+        List<AgentTask> subtasks = tasks.stream().filter(t -> pg.getId().equals(t.getParentTaskId())).toList();
+        assertEquals(2, subtasks.size());
+        AgentTask users = subtasks.stream().filter(t -> t.getTaskName().endsWith("[users]")).findFirst().orElseThrow();
+        assertEquals(1, users.getRetryCount());
+
+        Map<String, Object> checkpoint = checkpointRepository.findByWorkflowRun_IdAndNodeId(run.getId(), "pg")
+                .orElseThrow().getResult();
+        assertEquals(3, ((List<?>) checkpoint.get("files")).size());
+    }
+
+    private Map<String, Object> file(String path, String content) {
+        return Map.of("path", path, "content", content);
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new LinkedHashMap<>();
+        edge.put("id", source + "-" + target);
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
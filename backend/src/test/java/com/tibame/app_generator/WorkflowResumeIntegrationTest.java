@@ -0,0 +1,174 @@
+package com.tibame.app_generator;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.*;
+import com.tibame.app_generator.repository.*;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.llm.LlmAgentExecutionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+@ActiveProfiles("test")
+public class WorkflowResumeIntegrationTest {
+
+    @Autowired
+    private WorkflowExecutor workflowExecutor;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private WorkflowRepository workflowRepository;
+
+    @Autowired
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockBean
+    private LlmAgentExecutionService llmAgentExecutionService;
+
+    private Project project;
+    private WorkflowRun run;
+    private AgentTask interruptedTask;
+
+    @BeforeEach
+    public void setup() {
+        checkpointRepository.deleteAll();
+        agentTaskRepository.deleteAll();
+        workflowRunRepository.deleteAll();
+        workflowRepository.deleteAll();
+        projectRepository.deleteAll();
+        userRepository.deleteAll();
+
+        User user = userRepository.save(User.builder()
+                .username("resume_" + UUID.randomUUID())
+                .email("resume_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+
+        project = projectRepository.save(Project.builder()
+                .name("Resume Test Project " + UUID.randomUUID())
+                .description("A test project")
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+
+        Map<String, Object> graphData = new LinkedHashMap<>();
+        graphData.put("nodes", List.of(node("pm", "PM"), node("sa", "SA")));
+        graphData.put("edges", List.of(Map.of("id", "e1", "source", "pm", "target", "sa")));
+
+        Workflow workflow = new Workflow();
+        workflow.setProject(project);
+        workflow.setGraphData(graphData);
+        workflowRepository.save(workflow);
+
+        // State left behind by a restart: PM checkpointed, SA was in flight
+        run = workflowRunRepository.save(WorkflowRun.builder()
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build());
+
+        checkpointRepository.save(WorkflowRunCheckpoint.builder()
+                .workflowRun(run)
+                .nodeId("pm")
+                .result(Map.of("requirements", "from checkpoint"))
+                .build());
+
+        interruptedTask = agentTaskRepository.save(AgentTask.builder()
+                .project(project)
+                .workflowRun(run)
+                .nodeId("sa")
+                .agentType(AgentType.SA)
+                .taskName("sa")
+                .status(TaskStatus.RUNNING)
+                .build());
+    }
+
+    @Test
+    public void testResumeSkipsCheckpointedNodes() throws Exception {
+        Map<String, Map<String, Object>> inputsByNode = new ConcurrentHashMap<>();
+        when(llmAgentExecutionService.executeTask(any(), any())).thenAnswer(invocation -> {
+            AgentTask task = invocation.getArgument(0);
+            inputsByNode.put(task.getNodeId(), new HashMap<>(invocation.getArgument(1)));
+            return Map.of("design", "done");
+        });
+
+        workflowExecutor.resumeRunAsync(run.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 40; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+
+        assertNotNull(finished);
+        assertEquals(TaskStatus.SUCCESS, finished.getStatus());
+
+        // Only SA was executed again, with the checkpointed PM result as input
+        assertEquals(Set.of("sa"), inputsByNode.keySet());
+        assertEquals("from checkpoint", inputsByNode.get("sa").get("requirements"));
+        assertEquals("A test project", inputsByNode.get("sa").get("description"));
+
+        assertEquals(TaskStatus.FAIL, agentTaskRepository.findById(interruptedTask.getId()).orElseThrow().getStatus());
+        assertEquals(2, checkpointRepository.findByWorkflowRun_Id(run.getId()).size());
+    }
+
+    @Test
+    public void testResumeRefusesEditedWorkflow() throws Exception {
+        // The run was started on a version whose plan is no longer available
+        run.setWorkflowVersion(ZonedDateTime.now().minusDays(1));
+        workflowRunRepository.save(run);
+
+        workflowExecutor.resumeRunAsync(run.getId());
+
+        WorkflowRun finished = null;
+        for (int i = 0; i < 40; i++) {
+            finished = workflowRunRepository.findById(run.getId()).orElseThrow();
+            if (finished.getStatus() != TaskStatus.RUNNING) {
+                break;
+            }
+            Thread.sleep(250);
+        }
+
+        assertNotNull(finished);
+        assertEquals(TaskStatus.FAIL, finished.getStatus());
+        verify(llmAgentExecutionService, never()).executeTask(any(), any());
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("agentType", agentType);
+        data.put("label", id);
+        Map<String, Object> node = new LinkedHashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+}
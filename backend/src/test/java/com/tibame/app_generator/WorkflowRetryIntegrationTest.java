@@ -35,6 +35,9 @@ public class WorkflowRetryIntegrationTest {
     @Autowired
     private WorkflowRunRepository workflowRunRepository;
 
+    @Autowired
+    private WorkflowRunCheckpointRepository checkpointRepository;
+
     @Autowired
     private AgentTaskRepository agentTaskRepository;
 
@@ -50,6 +53,7 @@ public class WorkflowRetryIntegrationTest {
     @BeforeEach
     public void setup() {
         // Cleaning up manually as we removed @Transactional (implied)
+        checkpointRepository.deleteAll();
         agentTaskRepository.deleteAll();
         workflowRunRepository.deleteAll();
         workflowRepository.deleteAll();
@@ -131,4 +135,31 @@ public class WorkflowRetryIntegrationTest {
         assertTrue(task.getAttemptHistory().size() >= 1, "Attempt history should have at least 1 entry");
         assertEquals("Fail 1", task.getAttemptHistory().get(0).get("error"), "Error message should match");
     }
+
+    @Test
+    public void testRetryKeepsColumnsWrittenByTheExecution() throws Exception {
+        doAnswer(invocation -> {
+            // What the task's execution writes before its LLM call fails
+            AgentTask executing = invocation.getArgument(0);
+            AgentTask stored = agentTaskRepository.findById(executing.getId()).orElseThrow();
+            stored.setInputContext(new HashMap<>(Map.of("description", "An app")));
+            stored.setPromptVersion("PM-v1");
+            agentTaskRepository.save(stored);
+            throw new RuntimeException("Fail 1");
+        }).when(llmAgentExecutionService).executeTask(any(), any());
+
+        workflowExecutor.executeRunAsync(run.getId(), project.getId());
+
+        AgentTask task = null;
+        for (int i = 0; i < 20 && (task == null || task.getRetryCount() == 0); i++) {
+            Thread.sleep(200);
+            task = agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(run.getId()).stream()
+                    .findFirst().orElse(null);
+        }
+
+        assertNotNull(task, "Task should be created");
+        assertTrue(task.getRetryCount() >= 1, "Retry should be scheduled");
+        assertEquals("PM-v1", task.getPromptVersion());
+        assertEquals(Map.of("description", "An app"), task.getInputContext());
+    }
 }
@@ -0,0 +1,61 @@
+package com.tibame.app_generator.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedTaskExecutorTest {
+
+    private BoundedTaskExecutor executor(int maxSize, int queueCapacity, ExecutorProperties.RejectionPolicy policy) {
+        ExecutorProperties.Pool pool = new ExecutorProperties.Pool(maxSize, maxSize, queueCapacity, policy);
+        // Platform threads stand in for virtual threads, which need a newer JDK
+        return new BoundedTaskExecutor("test-", new SimpleAsyncTaskExecutor("test-"), runnable -> runnable, pool);
+    }
+
+    @Test
+    void taskSubmittingToItsSaturatedExecutorDoesNotWait() throws Exception {
+        BoundedTaskExecutor executor = executor(1, 0, ExecutorProperties.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch done = new CountDownLatch(1);
+
+        executor.execute(() -> executor.execute(done::countDown));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void runsAtMostMaxSizeAndRejectsBeyondTheQueue() throws Exception {
+        BoundedTaskExecutor executor = executor(2, 1, ExecutorProperties.RejectionPolicy.ABORT);
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(3);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+        Runnable task = () -> {
+            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            concurrent.decrementAndGet();
+            finished.countDown();
+        };
+
+        executor.execute(task);
+        executor.execute(task);
+        executor.execute(task);
+        assertThrows(TaskRejectedException.class, () -> executor.execute(task));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxConcurrent.get());
+    }
+}
@@ -0,0 +1,100 @@
+package com.tibame.app_generator.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundBackpressureInterceptorTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OutboundBackpressureInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        WebSocketProperties properties = new WebSocketProperties();
+        properties.setMaxQueuedProgressPerSession(2);
+        interceptor = new OutboundBackpressureInterceptor(properties, meterRegistry);
+    }
+
+    @Test
+    void dropsOldestQueuedProgressOfSlowSession() {
+        Message<?> first = message("s1", "PROGRESS", "t1");
+        Message<?> completed = message("s1", "COMPLETED", "t1");
+        Message<?> second = message("s1", "PROGRESS", "t1");
+        Message<?> third = message("s1", "PROGRESS", "t1");
+        for (Message<?> message : new Message<?>[]{first, completed, second, third}) {
+            interceptor.preSend(message, null);
+        }
+
+        assertEquals(4, meterRegistry.get("websocket.session.queue.depth.max").gauge().value());
+
+        assertNull(interceptor.beforeHandle(first, null, null));
+        assertSame(completed, interceptor.beforeHandle(completed, null, null));
+        assertSame(second, interceptor.beforeHandle(second, null, null));
+        assertSame(third, interceptor.beforeHandle(third, null, null));
+
+        assertEquals(1, meterRegistry.get("websocket.messages.dropped").counter().count());
+        assertEquals(0, meterRegistry.get("websocket.session.queue.depth.total").gauge().value());
+    }
+
+    @Test
+    void sessionsAreTrackedSeparately() {
+        interceptor.preSend(message("s1", "PROGRESS", "t1"), null);
+        interceptor.preSend(message("s1", "PROGRESS", "t1"), null);
+        Message<?> other = message("s2", "PROGRESS", "t1");
+        interceptor.preSend(other, null);
+
+        assertSame(other, interceptor.beforeHandle(other, null, null));
+        assertEquals(2, meterRegistry.get("websocket.session.queue.depth.max").gauge().value());
+        assertEquals(0, meterRegistry.get("websocket.messages.dropped").counter().count());
+    }
+
+    @Test
+    void keepsLatestProgressOfEveryTask() {
+        Message<?> onlyOfA = message("s1", "PROGRESS", "a");
+        Message<?> firstOfB = message("s1", "PROGRESS", "b");
+        Message<?> secondOfB = message("s1", "PROGRESS", "b");
+        Message<?> thirdOfB = message("s1", "PROGRESS", "b");
+        for (Message<?> message : new Message<?>[]{onlyOfA, firstOfB, secondOfB, thirdOfB}) {
+            interceptor.preSend(message, null);
+        }
+
+        // Task B's updates supersede each other, never task A's only one
+        assertSame(onlyOfA, interceptor.beforeHandle(onlyOfA, null, null));
+        assertNull(interceptor.beforeHandle(firstOfB, null, null));
+        assertNull(interceptor.beforeHandle(secondOfB, null, null));
+        assertSame(thirdOfB, interceptor.beforeHandle(thirdOfB, null, null));
+        assertEquals(2, meterRegistry.get("websocket.messages.dropped").counter().count());
+    }
+
+    @Test
+    void neverDropsTheOnlyProgressOfATask() {
+        Message<?> a = message("s1", "PROGRESS", "a");
+        Message<?> b = message("s1", "PROGRESS", "b");
+        Message<?> c = message("s1", "PROGRESS", "c");
+        for (Message<?> message : new Message<?>[]{a, b, c}) {
+            interceptor.preSend(message, null);
+        }
+
+        assertSame(a, interceptor.beforeHandle(a, null, null));
+        assertSame(b, interceptor.beforeHandle(b, null, null));
+        assertSame(c, interceptor.beforeHandle(c, null, null));
+        assertEquals(0, meterRegistry.get("websocket.messages.dropped").counter().count());
+    }
+
+    private Message<?> message(String sessionId, String eventType, String taskId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination("/topic/project/p1/tasks");
+        accessor.setNativeHeader(OutboundBackpressureInterceptor.EVENT_TYPE_HEADER, eventType);
+        accessor.setNativeHeader(OutboundBackpressureInterceptor.TASK_ID_HEADER, taskId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
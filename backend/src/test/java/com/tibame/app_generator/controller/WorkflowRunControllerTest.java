@@ -1,10 +1,12 @@
 package com.tibame.app_generator.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.enums.RunMode;
 import com.tibame.app_generator.model.WorkflowRun;
 import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.WorkflowRunRepository;
 import com.tibame.app_generator.service.WorkflowService;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -29,6 +31,7 @@ public class WorkflowRunControllerTest {
     @MockBean private WorkflowService workflowService;
     @MockBean private WorkflowRunRepository workflowRunRepository;
     @MockBean private AgentTaskRepository agentTaskRepository;
+    @MockBean private RunAdmissionService runAdmissionService;
 
     @Test
     public void testGetProjectRuns() throws Exception {
@@ -45,7 +48,7 @@ public class WorkflowRunControllerTest {
         UUID projectId = UUID.randomUUID();
         WorkflowRun run = new WorkflowRun();
         run.setId(UUID.randomUUID());
-        given(workflowService.startRun(projectId)).willReturn(run);
+        given(workflowService.startRun(projectId, RunMode.FULL)).willReturn(run);
 
         mockMvc.perform(post("/api/projects/{projectId}/runs", projectId))
                 .andExpect(status().isAccepted());
@@ -1,5 +1,6 @@
 package com.tibame.app_generator.service;
 
+import com.tibame.app_generator.config.WorkflowProperties;
 import com.tibame.app_generator.dto.TaskEventDTO;
 import com.tibame.app_generator.dto.TaskEventType;
 import com.tibame.app_generator.enums.AgentType;
@@ -11,17 +12,18 @@ import com.tibame.app_generator.repository.ProjectRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 
 import java.util.Collections;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -37,12 +39,16 @@ class AgentTaskServiceTest {
     @Mock
     private SimpMessagingTemplate messagingTemplate;
 
-    @InjectMocks
+    @Mock
+    private TaskLogService taskLogService;
+
     private AgentTaskService agentTaskService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        agentTaskService = new AgentTaskService(agentTaskRepository, projectRepository,
+                new TaskEventPublisher(messagingTemplate, new WorkflowProperties()), taskLogService);
     }
 
     @Test
@@ -69,7 +75,7 @@ class AgentTaskServiceTest {
         verify(agentTaskRepository).save(any(AgentTask.class));
 
         ArgumentCaptor<TaskEventDTO> captor = ArgumentCaptor.forClass(TaskEventDTO.class);
-        verify(messagingTemplate).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture());
+        verify(messagingTemplate).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture(), anyMap());
 
         TaskEventDTO event = captor.getValue();
         assertEquals(TaskEventType.QUEUED, event.getType());
@@ -97,7 +103,58 @@ class AgentTaskServiceTest {
         verify(agentTaskRepository).save(task);
 
         ArgumentCaptor<TaskEventDTO> captor = ArgumentCaptor.forClass(TaskEventDTO.class);
-        verify(messagingTemplate).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture());
+        verify(messagingTemplate).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture(), anyMap());
         assertEquals(TaskEventType.RUNNING, captor.getValue().getType());
     }
+
+    @Test
+    void failTask_ShouldAppendToLogInsteadOfRewritingTask() {
+        UUID taskId = UUID.randomUUID();
+        Project project = Project.builder().build();
+        project.setId(UUID.randomUUID());
+
+        AgentTask task = AgentTask.builder()
+                .id(taskId)
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .build();
+
+        when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(task));
+
+        agentTaskService.updateProgress(taskId, 50, "Halfway");
+        agentTaskService.failTask(taskId, "Boom");
+
+        assertEquals(TaskStatus.FAIL, task.getStatus());
+        assertEquals("Boom", task.getErrorDetails());
+        verify(taskLogService).append(taskId, "Halfway");
+        verify(taskLogService).append(taskId, "ERROR: Boom");
+        verify(taskLogService).close(taskId);
+    }
+
+    @Test
+    void completeTask_ShouldPublishResultReferenceInsteadOfContext() {
+        UUID taskId = UUID.randomUUID();
+        UUID projectId = UUID.randomUUID();
+        Project project = Project.builder().build();
+        project.setId(projectId);
+
+        AgentTask task = AgentTask.builder()
+                .id(taskId)
+                .project(project)
+                .status(TaskStatus.RUNNING)
+                .contextData(Map.of("files", Collections.nCopies(100, Map.of("path", "A.java", "content", "..."))))
+                .build();
+
+        when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(task));
+
+        agentTaskService.completeTask(taskId, "Done");
+
+        ArgumentCaptor<TaskEventDTO> captor = ArgumentCaptor.forClass(TaskEventDTO.class);
+        verify(messagingTemplate).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture(), anyMap());
+        TaskEventDTO event = captor.getValue();
+        assertEquals(TaskEventType.COMPLETED, event.getType());
+        assertEquals(TaskStatus.SUCCESS, event.getStatus());
+        assertEquals(100, event.getProgress());
+        assertEquals(Map.of("resultUrl", "/api/projects/" + projectId + "/tasks/" + taskId + "/result"), event.getPayload());
+    }
 }
@@ -0,0 +1,102 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.dto.TaskEventDTO;
+import com.tibame.app_generator.dto.TaskEventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class TaskEventPublisherTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final UUID projectId = UUID.randomUUID();
+    private final UUID taskId = UUID.randomUUID();
+    private WorkflowProperties workflowProperties;
+    private TaskEventPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        workflowProperties = new WorkflowProperties();
+        workflowProperties.getTaskEvents().setProgressWindowMs(200L);
+        publisher = new TaskEventPublisher(messagingTemplate, workflowProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        publisher.stop();
+    }
+
+    @Test
+    void coalescesProgressWithinWindow() {
+        publisher.publish(progress(10, "Started"));
+        publisher.publish(progress(20, "Step 1"));
+        publisher.publish(progress(30, "Step 2"));
+
+        List<TaskEventDTO> sent = sentEvents(1);
+        assertEquals(10, sent.get(0).getProgress());
+
+        // The merged event follows once the window ends
+        List<TaskEventDTO> later = awaitSent(2);
+        assertEquals(30, later.get(1).getProgress());
+        assertEquals("Step 1\nStep 2", later.get(1).getMessage());
+    }
+
+    @Test
+    void flushesPendingProgressBeforeOtherEvents() {
+        publisher.publish(progress(10, "Started"));
+        publisher.publish(progress(50, "Halfway"));
+        publisher.publish(event(TaskEventType.COMPLETED, 100, "Done"));
+
+        List<TaskEventDTO> sent = sentEvents(3);
+        assertEquals(List.of(TaskEventType.PROGRESS, TaskEventType.PROGRESS, TaskEventType.COMPLETED),
+                sent.stream().map(TaskEventDTO::getType).toList());
+        assertEquals("Halfway", sent.get(1).getMessage());
+    }
+
+    @Test
+    void sendsEachProgressWhenCoalescingIsDisabled() {
+        workflowProperties.getTaskEvents().setProgressWindowMs(0L);
+
+        publisher.publish(progress(10, "a"));
+        publisher.publish(progress(20, "b"));
+
+        assertEquals(2, sentEvents(2).size());
+    }
+
+    private List<TaskEventDTO> awaitSent(int count) {
+        ArgumentCaptor<TaskEventDTO> captor = ArgumentCaptor.forClass(TaskEventDTO.class);
+        verify(messagingTemplate, timeout(2000).times(count)).convertAndSend(anyString(), captor.capture(), anyMap());
+        return captor.getAllValues();
+    }
+
+    private List<TaskEventDTO> sentEvents(int count) {
+        ArgumentCaptor<TaskEventDTO> captor = ArgumentCaptor.forClass(TaskEventDTO.class);
+        verify(messagingTemplate, times(count)).convertAndSend(eq("/topic/project/" + projectId + "/tasks"), captor.capture(), anyMap());
+        return captor.getAllValues();
+    }
+
+    private TaskEventDTO progress(int progress, String message) {
+        return event(TaskEventType.PROGRESS, progress, message);
+    }
+
+    private TaskEventDTO event(TaskEventType type, int progress, String message) {
+        return TaskEventDTO.builder()
+                .type(type)
+                .projectId(projectId)
+                .taskId(taskId)
+                .progress(progress)
+                .message(message)
+                .build();
+    }
+}
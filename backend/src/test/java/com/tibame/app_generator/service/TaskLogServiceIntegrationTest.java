@@ -0,0 +1,81 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.model.AgentTaskLog;
+import com.tibame.app_generator.repository.AgentTaskLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TaskLogServiceIntegrationTest {
+
+    @Autowired
+    private TaskLogService taskLogService;
+
+    @Autowired
+    private AgentTaskLogRepository agentTaskLogRepository;
+
+    private UUID taskId;
+
+    @BeforeEach
+    void setUp() {
+        taskId = UUID.randomUUID();
+    }
+
+    @Test
+    void readsPagesAndTailInOrder() {
+        for (int i = 0; i < 10; i++) {
+            taskLogService.append(taskId, "line " + i);
+        }
+
+        List<AgentTaskLog> page = taskLogService.read(taskId, 3, 4);
+        assertEquals(List.of(3L, 4L, 5L, 6L), page.stream().map(AgentTaskLog::getSeq).toList());
+        assertEquals("line 3", page.get(0).getMessage());
+
+        List<AgentTaskLog> tail = taskLogService.tail(taskId, 3);
+        assertEquals(List.of("line 7", "line 8", "line 9"), tail.stream().map(AgentTaskLog::getMessage).toList());
+
+        assertTrue(taskLogService.read(taskId, 10, 5).isEmpty());
+    }
+
+    @Test
+    void retriedTaskContinuesNumbering() {
+        taskLogService.append(taskId, "first attempt");
+        taskLogService.append(taskId, "ERROR: failed");
+        taskLogService.close(taskId);
+        taskLogService.flush();
+
+        taskLogService.append(taskId, "second attempt");
+
+        List<AgentTaskLog> lines = taskLogService.read(taskId, 0, 100);
+        assertEquals(List.of(0L, 1L, 2L), lines.stream().map(AgentTaskLog::getSeq).toList());
+        assertEquals("second attempt", lines.get(2).getMessage());
+        assertEquals(3, agentTaskLogRepository.findMaxSeq(taskId).orElseThrow() + 1);
+    }
+
+    @Test
+    void rejectedLineDoesNotHoldBackOthers() {
+        taskLogService.append(taskId, "line 0");
+        // Takes the number the service hands out next, so that line can never be written
+        agentTaskLogRepository.save(AgentTaskLog.builder().taskId(taskId).seq(1L).message("conflicting").build());
+        taskLogService.append(taskId, "line 1");
+        taskLogService.append(taskId, "line 2");
+
+        taskLogService.flush();
+
+        List<AgentTaskLog> lines = taskLogService.read(taskId, 0, 100);
+        assertEquals(List.of("line 0", "conflicting", "line 2"), lines.stream().map(AgentTaskLog::getMessage).toList());
+
+        // Nothing is left to be written again
+        taskLogService.append(taskId, "line 3");
+        assertEquals("line 3", taskLogService.tail(taskId, 1).get(0).getMessage());
+    }
+}
@@ -0,0 +1,133 @@
+package com.tibame.app_generator.service;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.dto.TaskEventType;
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.model.Project;
+import com.tibame.app_generator.repository.AgentTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TaskStateMachineTest {
+
+    private final AgentTaskRepository agentTaskRepository = mock(AgentTaskRepository.class);
+    private final AgentTaskService agentTaskService = mock(AgentTaskService.class);
+    private final TaskLogService taskLogService = mock(TaskLogService.class);
+    private WorkflowProperties workflowProperties;
+    private TaskStateMachine taskStateMachine;
+
+    private AgentTask task;
+    private AgentTask stored;
+
+    @BeforeEach
+    void setUp() {
+        workflowProperties = new WorkflowProperties();
+        taskStateMachine = new TaskStateMachine(agentTaskRepository, agentTaskService, taskLogService,
+                workflowProperties, mock(PlatformTransactionManager.class));
+
+        Project project = Project.builder().build();
+        project.setId(UUID.randomUUID());
+        UUID taskId = UUID.randomUUID();
+        task = AgentTask.builder().id(taskId).project(project).agentType(AgentType.PM).build();
+        stored = AgentTask.builder().id(taskId).project(project).agentType(AgentType.PM)
+                .retryCount(2)
+                .contextData(new HashMap<>(Map.of("label", "PM")))
+                .build();
+        when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(stored));
+    }
+
+    @Test
+    void writesOnlyOnStartAndCompletion() {
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
+        execution.setInputContext(Map.of("description", "An app"), "PM-v1");
+        execution.start();
+        execution.progress(20, "Analyzing");
+        execution.recordPromptCompaction(Map.of("budgetTokens", 100));
+        execution.progress(80, "Parsing");
+        execution.complete(Map.of("summary", "Done"), "Done");
+
+        verify(agentTaskRepository, times(2)).findById(task.getId());
+        assertEquals(TaskStatus.SUCCESS, stored.getStatus());
+        assertEquals(100, stored.getProgressPct());
+        assertEquals("PM-v1", stored.getPromptVersion());
+        assertEquals(Map.of("description", "An app"), stored.getInputContext());
+        assertEquals(Map.of("budgetTokens", 100), stored.getPromptCompaction());
+        assertEquals(Map.of("label", "PM", "summary", "Done"), stored.getContextData());
+        // Columns the execution does not own are left as they are
+        assertEquals(2, stored.getRetryCount());
+
+        InOrder events = inOrder(agentTaskService);
+        events.verify(agentTaskService).publishEvent(task, TaskEventType.RUNNING, "Task started.");
+        events.verify(agentTaskService).publishEvent(task, TaskEventType.PROGRESS, "Analyzing");
+        events.verify(agentTaskService).publishEvent(task, TaskEventType.PROGRESS, "Parsing");
+        events.verify(agentTaskService).publishEvent(task, TaskEventType.COMPLETED, "Done");
+        verify(taskLogService).append(task.getId(), "Analyzing");
+        verify(taskLogService).close(task.getId());
+    }
+
+    @Test
+    void writesProgressAtCheckpoints() {
+        workflowProperties.getTaskState().setCheckpointIntervalMs(0L);
+
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
+        execution.start();
+        execution.progress(20, "Analyzing");
+
+        verify(agentTaskRepository, times(2)).findById(task.getId());
+        assertEquals(20, stored.getProgressPct());
+        assertEquals(TaskStatus.RUNNING, stored.getStatus());
+    }
+
+    @Test
+    void keepsCancellationThatHappenedWhileExecuting() {
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
+        execution.start();
+        stored.setStatus(TaskStatus.CANCELLED);
+
+        // The caller stops there instead of treating the task as done
+        assertThrows(CancellationException.class, () -> execution.complete(Map.of("summary", "Too late"), "Too late"));
+
+        assertEquals(TaskStatus.CANCELLED, stored.getStatus());
+        assertFalse(stored.getContextData().containsKey("summary"));
+        verify(agentTaskService, never()).publishEvent(any(), eq(TaskEventType.COMPLETED), any());
+    }
+
+    @Test
+    void failsTaskWhenCompletionCannotBeWritten() {
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
+        execution.start();
+        when(agentTaskRepository.findById(task.getId()))
+                .thenThrow(new IllegalStateException("Connection lost"))
+                .thenReturn(Optional.of(stored));
+
+        assertThrows(IllegalStateException.class, () -> execution.complete(Map.of("summary", "Done"), "Done"));
+        execution.fail("Connection lost");
+
+        assertEquals(TaskStatus.FAIL, stored.getStatus());
+        assertEquals("Connection lost", stored.getErrorDetails());
+        assertFalse(stored.getContextData().containsKey("summary"));
+        verify(agentTaskService).publishEvent(task, TaskEventType.FAILED, "Connection lost");
+    }
+
+    @Test
+    void rejectsCompletionBeforeStart() {
+        TaskStateMachine.Execution execution = taskStateMachine.begin(task);
+
+        assertThrows(IllegalStateException.class, () -> execution.complete(Map.of(), "Done"));
+    }
+}
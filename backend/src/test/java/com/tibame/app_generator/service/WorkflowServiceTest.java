@@ -10,15 +10,19 @@ import com.tibame.app_generator.repository.AgentTaskRepository;
 import com.tibame.app_generator.repository.ProjectRepository;
 import com.tibame.app_generator.repository.WorkflowRunRepository;
 import com.tibame.app_generator.repository.WorkflowRepository;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.*;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -30,6 +34,7 @@ public class WorkflowServiceTest {
     @Mock private AgentTaskService agentTaskService;
     @Mock private AgentTaskRepository agentTaskRepository;
     @Mock private WorkflowExecutor workflowExecutor;
+    @Mock private RunAdmissionService runAdmissionService;
 
     @InjectMocks private WorkflowService workflowService;
 
@@ -72,10 +77,45 @@ public class WorkflowServiceTest {
             return run;
         });
 
-        workflowService.startRun(projectId);
+        when(runAdmissionService.submit(any(WorkflowRun.class))).thenReturn(0);
+
+        WorkflowRun run = workflowService.startRun(projectId);
 
         verify(workflowRunRepository, times(1)).save(any(WorkflowRun.class));
-        verify(workflowExecutor, times(1)).executeRunAsync(any(UUID.class), eq(projectId));
+        verify(runAdmissionService, times(1)).submit(run);
+        assertEquals(TaskStatus.RUNNING, run.getStatus());
+        assertEquals(0, run.getQueuePosition());
+    }
+
+    @Test
+    public void testStartRunQueuedWhenNotAdmitted() {
+        UUID projectId = UUID.randomUUID();
+        Project project = new Project();
+        project.setId(projectId);
+
+        Map<String, Object> graphData = new HashMap<>();
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (AgentType type : AgentType.values()) {
+            Map<String, Object> node = new HashMap<>();
+            node.put("id", type.name());
+            node.put("data", new HashMap<>(Map.of("agentType", type.name())));
+            nodes.add(node);
+        }
+        graphData.put("nodes", nodes);
+        Workflow workflow = new Workflow();
+        workflow.setGraphData(graphData);
+
+        when(projectRepository.findById(projectId)).thenReturn(Optional.of(project));
+        when(workflowRepository.findByProjectId(projectId)).thenReturn(Optional.of(workflow));
+        when(workflowRunRepository.save(any(WorkflowRun.class))).thenAnswer(i -> i.getArguments()[0]);
+        when(runAdmissionService.submit(any(WorkflowRun.class))).thenReturn(3);
+
+        WorkflowRun run = workflowService.startRun(projectId);
+
+        assertEquals(TaskStatus.PENDING, run.getStatus());
+        assertEquals(3, run.getQueuePosition());
+        assertNull(run.getStartedAt());
+        verifyNoInteractions(workflowExecutor);
     }
 
     @Test
@@ -87,6 +127,8 @@ public class WorkflowServiceTest {
         task.setId(taskId);
         WorkflowRun run = new WorkflowRun();
         run.setId(runId);
+        // Runs start out PENDING, and a queued run cannot be retried
+        run.setStatus(TaskStatus.FAIL);
         task.setWorkflowRun(run);
 
         when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(task));
@@ -96,4 +138,67 @@ public class WorkflowServiceTest {
         verify(agentTaskRepository, times(1)).save(task);
         // Async call retryTaskAsync is triggered
     }
+
+    @Test
+    public void testRetryTaskQueuedWhenRunNotAdmitted() {
+        UUID taskId = UUID.randomUUID();
+        WorkflowRun run = new WorkflowRun();
+        run.setId(UUID.randomUUID());
+        run.setStatus(TaskStatus.FAIL);
+        AgentTask task = new AgentTask();
+        task.setId(taskId);
+        task.setStatus(TaskStatus.FAIL);
+        task.setWorkflowRun(run);
+
+        when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(task));
+        when(runAdmissionService.submit(eq(run), any(Runnable.class))).thenReturn(2);
+
+        WorkflowRun result = workflowService.retryTask(taskId);
+
+        assertEquals(TaskStatus.PENDING, result.getStatus());
+        assertEquals(2, result.getQueuePosition());
+        verify(workflowRunRepository).save(run);
+        verifyNoInteractions(workflowExecutor);
+    }
+
+    @Test
+    public void testRetryTaskInRunningRunKeepsItsSlot() {
+        UUID taskId = UUID.randomUUID();
+        WorkflowRun run = new WorkflowRun();
+        run.setId(UUID.randomUUID());
+        run.setStatus(TaskStatus.RUNNING);
+        AgentTask task = new AgentTask();
+        task.setId(taskId);
+        task.setStatus(TaskStatus.FAIL);
+        task.setWorkflowRun(run);
+
+        when(agentTaskRepository.findById(taskId)).thenReturn(Optional.of(task));
+
+        workflowService.retryTask(taskId);
+
+        verify(workflowExecutor).retryTaskAsync(taskId, run.getId());
+        verifyNoInteractions(runAdmissionService);
+    }
+
+    @Test
+    public void testResumeRunGoesThroughAdmission() {
+        UUID runId = UUID.randomUUID();
+        WorkflowRun run = new WorkflowRun();
+        run.setId(runId);
+        run.setStatus(TaskStatus.FAIL);
+
+        when(workflowRunRepository.findById(runId)).thenReturn(Optional.of(run));
+        when(agentTaskRepository.findByWorkflowRun_IdOrderByCreatedAtAsc(runId)).thenReturn(List.of());
+        ArgumentCaptor<Runnable> start = ArgumentCaptor.forClass(Runnable.class);
+        when(runAdmissionService.submit(eq(run), start.capture())).thenReturn(0);
+
+        WorkflowRun result = workflowService.resumeRun(runId);
+
+        assertEquals(TaskStatus.RUNNING, result.getStatus());
+        assertEquals(0, result.getQueuePosition());
+        verify(workflowExecutor, never()).resumeRunAsync(any());
+        // Resumed by the admission service once admitted
+        start.getValue().run();
+        verify(workflowExecutor).resumeRunAsync(runId);
+    }
 }
@@ -0,0 +1,94 @@
+package com.tibame.app_generator.service.admission;
+
+import com.tibame.app_generator.enums.UserPlanType;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunAdmissionQueueTest {
+
+    private static final Map<UserPlanType, Integer> USER_CAPS = Map.of(
+            UserPlanType.FREE, 1, UserPlanType.PRO, 4, UserPlanType.ENTERPRISE, 16);
+    private static final Map<UserPlanType, Integer> WEIGHTS = Map.of(
+            UserPlanType.FREE, 1, UserPlanType.PRO, 3, UserPlanType.ENTERPRISE, 6);
+
+    @Test
+    void admit_RespectsPerUserAndPerProjectCaps() {
+        RunAdmissionQueue queue = new RunAdmissionQueue(10, 1, USER_CAPS, WEIGHTS);
+        UUID freeUser = UUID.randomUUID();
+        UUID proUser = UUID.randomUUID();
+        UUID proProject = UUID.randomUUID();
+
+        RunAdmissionQueue.Ticket free1 = ticket(freeUser, UUID.randomUUID(), UserPlanType.FREE);
+        RunAdmissionQueue.Ticket free2 = ticket(freeUser, UUID.randomUUID(), UserPlanType.FREE);
+        RunAdmissionQueue.Ticket pro1 = ticket(proUser, proProject, UserPlanType.PRO);
+        RunAdmissionQueue.Ticket pro2 = ticket(proUser, proProject, UserPlanType.PRO);
+        RunAdmissionQueue.Ticket pro3 = ticket(proUser, UUID.randomUUID(), UserPlanType.PRO);
+        List.of(free1, free2, pro1, pro2, pro3).forEach(queue::enqueue);
+
+        List<RunAdmissionQueue.Ticket> admitted = queue.admit();
+
+        // The free user is capped at one run, the second run of the pro project waits for the first
+        assertEquals(3, admitted.size());
+        assertTrue(admitted.containsAll(List.of(free1, pro1, pro3)));
+        assertEquals(2, queue.getQueuedCount());
+        assertTrue(queue.positionOf(free2.runId()) > 0);
+        assertTrue(queue.positionOf(pro2.runId()) > 0);
+
+        assertTrue(queue.release(pro1.runId()));
+        assertEquals(List.of(pro2), queue.admit());
+    }
+
+    @Test
+    void admit_SharesSlotsByPlanWeight() {
+        RunAdmissionQueue queue = new RunAdmissionQueue(1, 100, Map.of(
+                UserPlanType.FREE, 100, UserPlanType.ENTERPRISE, 100), WEIGHTS);
+        UUID freeUser = UUID.randomUUID();
+        UUID enterpriseUser = UUID.randomUUID();
+        for (int i = 0; i < 20; i++) {
+            queue.enqueue(ticket(freeUser, UUID.randomUUID(), UserPlanType.FREE));
+            queue.enqueue(ticket(enterpriseUser, UUID.randomUUID(), UserPlanType.ENTERPRISE));
+        }
+
+        int enterpriseAdmissions = 0;
+        for (int i = 0; i < 14; i++) {
+            RunAdmissionQueue.Ticket next = queue.admit().get(0);
+            if (next.userId().equals(enterpriseUser)) {
+                enterpriseAdmissions++;
+            }
+            queue.release(next.runId());
+        }
+
+        assertEquals(12, enterpriseAdmissions);
+    }
+
+    @Test
+    void positionOf_ReportsQueuedRunsAndRunningRuns() {
+        RunAdmissionQueue queue = new RunAdmissionQueue(1, 1, USER_CAPS, WEIGHTS);
+        UUID user = UUID.randomUUID();
+        RunAdmissionQueue.Ticket first = ticket(user, UUID.randomUUID(), UserPlanType.FREE);
+        RunAdmissionQueue.Ticket second = ticket(user, UUID.randomUUID(), UserPlanType.FREE);
+        RunAdmissionQueue.Ticket third = ticket(user, UUID.randomUUID(), UserPlanType.FREE);
+        List.of(first, second, third).forEach(queue::enqueue);
+
+        queue.admit();
+
+        assertEquals(0, queue.positionOf(first.runId()));
+        assertEquals(1, queue.positionOf(second.runId()));
+        assertEquals(2, queue.positionOf(third.runId()));
+        assertEquals(-1, queue.positionOf(UUID.randomUUID()));
+
+        // Dropping a queued run moves the ones behind it forward
+        assertTrue(queue.release(second.runId()));
+        assertEquals(1, queue.positionOf(third.runId()));
+        assertEquals(1, queue.getQueuedCount());
+    }
+
+    private RunAdmissionQueue.Ticket ticket(UUID userId, UUID projectId, UserPlanType planType) {
+        return new RunAdmissionQueue.Ticket(UUID.randomUUID(), projectId, userId, planType);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.repository.AgentResultCacheRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class AgentResultCacheTest {
+
+    private static final CompiledPromptTemplate PM_TEMPLATE = CompiledPromptTemplate.builtin(AgentType.PM);
+    private static final CompiledPromptTemplate SA_TEMPLATE = CompiledPromptTemplate.builtin(AgentType.SA);
+
+    @Mock
+    private AgentResultCacheRepository cacheRepository;
+
+    private LlmProperties llmProperties;
+    private AgentResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        llmProperties = new LlmProperties();
+        cache = new AgentResultCache(cacheRepository, llmProperties, new ObjectMapper());
+    }
+
+    @Test
+    void keyFor_IgnoresMapOrdering() {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("description", "Shop");
+        first.put("nested", new LinkedHashMap<>(Map.of("a", 1)));
+        first.put("summary", "x");
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("summary", "x");
+        second.put("nested", new LinkedHashMap<>(Map.of("a", 1)));
+        second.put("description", "Shop");
+
+        assertEquals(cache.keyFor(PM_TEMPLATE, first), cache.keyFor(PM_TEMPLATE, second));
+    }
+
+    @Test
+    void keyFor_ChangesWithAgentTypeModelAndTemperature() {
+        Map<String, Object> input = Map.of("description", "Shop");
+        String baseline = cache.keyFor(PM_TEMPLATE, input);
+
+        assertNotEquals(baseline, cache.keyFor(SA_TEMPLATE, input));
+
+        llmProperties.setModelName("gpt-4o-mini");
+        String otherModel = cache.keyFor(PM_TEMPLATE, input);
+        assertNotEquals(baseline, otherModel);
+
+        llmProperties.setTemperature(0.0);
+        assertNotEquals(otherModel, cache.keyFor(PM_TEMPLATE, input));
+    }
+
+    @Test
+    void keyFor_FollowsTheSingleConfiguredProvider() {
+        Map<String, Object> input = Map.of("description", "Shop");
+        String baseline = cache.keyFor(PM_TEMPLATE, input);
+
+        LlmProperties.Provider local = new LlmProperties.Provider();
+        local.setName("local");
+        local.setBaseUrl("http://localhost:11434/v1");
+        local.setModelName("llama3");
+        llmProperties.setProviders(List.of(local));
+
+        assertNotEquals(baseline, cache.keyFor(PM_TEMPLATE, input));
+    }
+
+    @Test
+    void isEnabled_BypassedForRoutedOrMockBackends() {
+        llmProperties.getCache().setEnabled(true);
+        assertTrue(cache.isEnabled());
+
+        LlmProperties.Provider first = new LlmProperties.Provider();
+        first.setName("first");
+        LlmProperties.Provider second = new LlmProperties.Provider();
+        second.setName("second");
+        llmProperties.setProviders(List.of(first, second));
+        assertFalse(cache.isEnabled());
+
+        llmProperties.setProviders(List.of());
+        llmProperties.setProvider("mock");
+        assertFalse(cache.isEnabled());
+    }
+}
@@ -1,10 +1,23 @@
 package com.tibame.app_generator.service.llm;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
 import com.tibame.app_generator.enums.AgentType;
 import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.repository.PromptTemplateVersionRepository;
 import com.tibame.app_generator.service.AgentTaskService;
+import com.tibame.app_generator.service.TaskStateMachine;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
 import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,11 +27,14 @@ import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -27,12 +43,49 @@ class LlmAgentExecutionServiceTest {
     @Mock
     private ChatLanguageModel chatLanguageModel;
 
+    @Mock
+    private StreamingChatLanguageModel streamingChatLanguageModel;
+
+    @Spy
+    private LlmProperties llmProperties = new LlmProperties();
+
     @Mock
     private AgentTaskService agentTaskService;
 
+    @Mock
+    private TaskStateMachine taskStateMachine;
+
+    @Mock
+    private TaskStateMachine.Execution execution;
+
+    @Mock
+    private AgentResultCache agentResultCache;
+
     @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
+    @Spy
+    private AsyncTaskExecutor llmCallExecutor = new TaskExecutorAdapter(Runnable::run);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private PipelineMetrics metrics = new PipelineMetrics(meterRegistry);
+
+    @Mock
+    private LlmRateLimiter rateLimiter;
+
+    @Spy
+    private PromptCompactor promptCompactor = new PromptCompactor(new LlmProperties(), new ObjectMapper());
+
+    @Spy
+    private PromptTemplateRegistry promptTemplateRegistry =
+            new PromptTemplateRegistry(mock(PromptTemplateVersionRepository.class));
+
+    @Spy
+    private StructuredOutputParser structuredOutputParser =
+            new StructuredOutputParser(llmProperties, new ObjectMapper());
+
     @InjectMocks
     private LlmAgentExecutionService service;
 
@@ -49,6 +102,8 @@ class LlmAgentExecutionServiceTest {
                 .build();
         context = new HashMap<>();
         context.put("description", "A simple web app");
+        lenient().when(taskStateMachine.begin(task)).thenReturn(execution);
+        lenient().when(execution.getTask()).thenReturn(task);
     }
 
     @Test
@@ -57,10 +112,12 @@ class LlmAgentExecutionServiceTest {
         String jsonResponse = """
                 {
                     "summary": "Requirements analyzed.",
-                    "requirements": []
+                    "requirements": [],
+                    "userStories": []
                 }
                 """;
-        when(chatLanguageModel.generate(anyString())).thenReturn(jsonResponse);
+        when(chatLanguageModel.generate(anyList()))
+                .thenReturn(Response.from(AiMessage.from(jsonResponse), new TokenUsage(120, 40)));
 
         // Execute
         Map<String, Object> result = service.executeTask(task, context);
@@ -69,20 +126,139 @@ class LlmAgentExecutionServiceTest {
         assertNotNull(result);
         assertEquals("Requirements analyzed.", result.get("summary"));
 
-        verify(agentTaskService).startTask(task.getId());
-        verify(agentTaskService).updateContext(eq(task.getId()), anyMap());
-        verify(agentTaskService).completeTask(task.getId(), "Requirements analyzed.");
+        verify(execution).setInputContext(eq(context), startsWith("PM-builtin-"));
+        verify(execution).start();
+        verify(execution).complete(anyMap(), eq("Requirements analyzed."));
+
+        assertEquals(1, meterRegistry.get("agent.llm.duration")
+                .tags("agent_type", "PM", "outcome", "success").timer().count());
+        assertEquals(120, meterRegistry.get("agent.llm.tokens")
+                .tags("agent_type", "PM", "direction", "input").counter().count());
+        assertEquals(40, meterRegistry.get("agent.llm.tokens")
+                .tags("agent_type", "PM", "direction", "output").counter().count());
     }
 
     @Test
     void executeTask_Failure() {
         // Mock LLM failure
-        when(chatLanguageModel.generate(anyString())).thenThrow(new RuntimeException("API Error"));
+        when(chatLanguageModel.generate(anyList())).thenThrow(new RuntimeException("API Error"));
 
         // Execute
         assertThrows(RuntimeException.class, () -> service.executeTask(task, context));
 
         // Verify
-        verify(agentTaskService).failTask(eq(task.getId()), contains("API Error"));
+        verify(execution).fail(contains("API Error"));
+        assertEquals(1, meterRegistry.get("agent.llm.duration")
+                .tags("agent_type", "PM", "outcome", "error").timer().count());
+    }
+
+    @Test
+    void executeTask_CancelledBeforeCallStartsSkipsLlm() {
+        // The run was cancelled before the call could be registered, so the abort found nothing
+        when(agentTaskService.isCancelled(task.getId())).thenReturn(true);
+
+        assertThrows(CancellationException.class, () -> service.executeTask(task, context));
+
+        verifyNoInteractions(chatLanguageModel);
+        verify(execution, never()).fail(any());
+    }
+
+    @Test
+    void executeTask_SummariesAreMeteredLikeTheTaskCall() throws Exception {
+        doAnswer(invocation -> {
+            PromptCompactor.Summarizer summarizer = invocation.getArgument(2);
+            assertEquals("Short summary.", summarizer.summarize("Summarise this"));
+            return invocation.callRealMethod();
+        }).when(promptCompactor).compact(any(), any(), any());
+        when(chatLanguageModel.generate(anyList()))
+                .thenReturn(Response.from(AiMessage.from("Short summary.")))
+                .thenReturn(Response.from(AiMessage.from(
+                        "{\"summary\": \"Done\", \"requirements\": [], \"userStories\": []}")));
+
+        service.executeTask(task, context);
+
+        verify(chatLanguageModel, times(2)).generate(anyList());
+        verify(rateLimiter, times(2)).settle(any(), any());
+        assertEquals(2, meterRegistry.get("agent.llm.duration")
+                .tags("agent_type", "PM", "outcome", "success").timer().count());
+    }
+
+    @Test
+    void executeTask_UnparseableResponseIsCounted() {
+        when(chatLanguageModel.generate(anyList())).thenReturn(Response.from(AiMessage.from("not json")));
+
+        assertThrows(RuntimeException.class, () -> service.executeTask(task, context));
+
+        assertEquals(1, meterRegistry.get("agent.llm.parse.failures").tags("agent_type", "PM").counter().count());
+    }
+
+    @Test
+    void executeTask_StreamingForwardsDeltas() {
+        llmProperties.getStreaming().setEnabled(true);
+        doAnswer(invocation -> {
+            StreamingResponseHandler<AiMessage> handler = invocation.getArgument(1);
+            handler.onNext("{\"summary\": ");
+            handler.onNext("\"Streamed\", \"requirements\": [], \"userStories\": []}");
+            handler.onComplete(Response.from(AiMessage.from(
+                    "{\"summary\": \"Streamed\", \"requirements\": [], \"userStories\": []}")));
+            return null;
+        }).when(streamingChatLanguageModel).generate(anyList(), any());
+
+        Map<String, Object> result = service.executeTask(task, context);
+
+        assertEquals("Streamed", result.get("summary"));
+        verifyNoInteractions(chatLanguageModel);
+        // The first token goes out right away, the rest once the response completes
+        verify(agentTaskService).publishOutputDelta(task, "{\"summary\": ");
+        verify(agentTaskService).publishOutputDelta(task, "\"Streamed\", \"requirements\": [], \"userStories\": []}");
+        assertEquals(1, meterRegistry.get("agent.llm.first_token").tags("agent_type", "PM").timer().count());
+    }
+
+    @Test
+    void executeTask_StreamedFilesAreNotParsedAgain() throws Exception {
+        llmProperties.getStreaming().setEnabled(true);
+        task.setAgentType(AgentType.PG);
+        String output = "{\"summary\": \"Built\", \"files\": [{\"path\": \"A.java\", \"content\": \"class A {}\"}]}";
+        doAnswer(invocation -> {
+            StreamingResponseHandler<AiMessage> handler = invocation.getArgument(1);
+            handler.onNext(output);
+            handler.onComplete(Response.from(AiMessage.from(output)));
+            return null;
+        }).when(streamingChatLanguageModel).generate(anyList(), any());
+
+        Map<String, Object> result = service.executeTask(task, context);
+
+        assertEquals(List.of(Map.of("path", "A.java", "content", "class A {}")), result.get("files"));
+        verify(agentTaskService).publishFileReady(task, "A.java", 10);
+        // The aggregated text is not handed on once the streamed output parsed
+        verify(structuredOutputParser).parse(isNull(), anyMap(), any(), any());
+    }
+
+    @Test
+    void executeTask_CacheHitSkipsLlm() {
+        when(agentResultCache.isEnabled()).thenReturn(true);
+        when(agentResultCache.keyFor(any(), eq(context))).thenReturn("key");
+        when(agentResultCache.get("key")).thenReturn(Optional.of(Map.of("summary", "From cache")));
+
+        Map<String, Object> result = service.executeTask(task, context);
+
+        assertEquals("From cache", result.get("summary"));
+        verifyNoInteractions(chatLanguageModel);
+        verify(execution).markCached();
+        verify(execution).complete(anyMap(), eq("From cache (cached)"));
+    }
+
+    @Test
+    void executeTask_CacheMissStoresResult() {
+        when(agentResultCache.isEnabled()).thenReturn(true);
+        when(agentResultCache.keyFor(any(), eq(context))).thenReturn("key");
+        when(agentResultCache.get("key")).thenReturn(Optional.empty());
+        when(chatLanguageModel.generate(anyList())).thenReturn(Response.from(AiMessage.from(
+                "{\"summary\": \"Fresh\", \"requirements\": [], \"userStories\": []}")));
+
+        service.executeTask(task, context);
+
+        verify(agentResultCache).put(eq("key"), eq(AgentType.PM), argThat(r -> "Fresh".equals(r.get("summary"))));
+        verify(execution, never()).markCached();
     }
 }
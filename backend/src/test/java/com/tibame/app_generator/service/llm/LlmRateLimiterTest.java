@@ -0,0 +1,109 @@
+package com.tibame.app_generator.service.llm;
+
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.UserPlanType;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LlmRateLimiterTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Test
+    void disabledLimiterNeverWaits() throws Exception {
+        LlmProperties.RateLimit config = config(1, 10);
+        config.setEnabled(false);
+        LlmRateLimiter limiter = limiter(config);
+
+        for (int i = 0; i < 5; i++) {
+            assertSame(LlmRateLimiter.Permit.NONE, limiter.acquire(UUID.randomUUID(), UserPlanType.FREE, null, 100));
+        }
+    }
+
+    @Test
+    void queuedCallsAreServedByPlanThenRunAge() throws Exception {
+        // One request per second once the initial burst is used up
+        LlmRateLimiter limiter = limiter(config(60, 1_000_000));
+        for (int i = 0; i < 60; i++) {
+            limiter.acquire(UUID.randomUUID(), UserPlanType.FREE, null, 10);
+        }
+
+        ZonedDateTime now = ZonedDateTime.now();
+        List<String> served = new CopyOnWriteArrayList<>();
+        Future<?> freeFirst = submit(limiter, "free-first", UserPlanType.FREE, now, served);
+        awaitQueued(limiter, 1);
+        Future<?> freeOld = submit(limiter, "free-old", UserPlanType.FREE, now.minusHours(1), served);
+        Future<?> freeNew = submit(limiter, "free-new", UserPlanType.FREE, now, served);
+        Future<?> enterprise = submit(limiter, "enterprise", UserPlanType.ENTERPRISE, now, served);
+        awaitQueued(limiter, 4);
+
+        for (Future<?> f : List.of(freeFirst, freeOld, freeNew, enterprise)) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        // Higher plans go first, then older runs, then arrival order
+        assertEquals(List.of("enterprise", "free-old", "free-first", "free-new"), served);
+    }
+
+    @Test
+    void tokenBudgetIsCorrectedWithActualUsage() throws Exception {
+        LlmRateLimiter limiter = limiter(config(1000, 600));
+        LlmRateLimiter.Permit permit = limiter.acquire(UUID.randomUUID(), UserPlanType.FREE, null, 600);
+        // The call used far fewer tokens than estimated, so the next one does not have to wait a minute
+        limiter.settle(permit, 100);
+
+        long start = System.nanoTime();
+        limiter.acquire(UUID.randomUUID(), UserPlanType.FREE, null, 400);
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+    }
+
+    @Test
+    void cancelReleasesAWaitingCall() throws Exception {
+        LlmRateLimiter limiter = limiter(config(1, 1_000_000));
+        limiter.acquire(UUID.randomUUID(), UserPlanType.FREE, null, 10);
+
+        UUID taskId = UUID.randomUUID();
+        Future<?> waiting = executor.submit(() -> limiter.acquire(taskId, UserPlanType.FREE, null, 10));
+        awaitQueued(limiter, 1);
+
+        assertTrue(limiter.cancel(taskId));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CancellationException.class, e.getCause());
+        assertEquals(0, limiter.getQueuedCount());
+    }
+
+    private Future<?> submit(LlmRateLimiter limiter, String name, UserPlanType plan, ZonedDateTime runCreatedAt,
+                             List<String> served) {
+        return executor.submit(() -> {
+            limiter.acquire(UUID.randomUUID(), plan, runCreatedAt, 10);
+            served.add(name);
+            return null;
+        });
+    }
+
+    private void awaitQueued(LlmRateLimiter limiter, int count) throws InterruptedException {
+        for (int i = 0; i < 100 && limiter.getQueuedCount() < count; i++) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, limiter.getQueuedCount());
+    }
+
+    private LlmRateLimiter limiter(LlmProperties.RateLimit config) {
+        return new LlmRateLimiter(config, new PipelineMetrics(new SimpleMeterRegistry()), System::nanoTime);
+    }
+
+    private LlmProperties.RateLimit config(int requestsPerMinute, int tokensPerMinute) {
+        LlmProperties.RateLimit config = new LlmProperties.RateLimit();
+        config.setEnabled(true);
+        config.setRequestsPerMinute(requestsPerMinute);
+        config.setTokensPerMinute(tokensPerMinute);
+        return config;
+    }
+}
@@ -0,0 +1,141 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.AgentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PromptCompactorTest {
+
+    private static final CompiledPromptTemplate QA_TEMPLATE = CompiledPromptTemplate.builtin(AgentType.QA);
+
+    private final LlmProperties llmProperties = new LlmProperties();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PromptCompactor.Summarizer summarizer = mock(PromptCompactor.Summarizer.class);
+    private PromptCompactor compactor;
+
+    @BeforeEach
+    void setUp() {
+        // The QA template alone is a few hundred tokens
+        llmProperties.getPromptBudget().getMaxInputTokens().put(AgentType.QA, 1500);
+        compactor = new PromptCompactor(llmProperties, objectMapper);
+    }
+
+    @Test
+    void inputWithinBudgetIsLeftAlone() {
+        Map<String, Object> input = Map.of("description", "A todo app");
+
+        PromptCompactor.Result result = compactor.compact(QA_TEMPLATE, input, summarizer);
+
+        assertSame(input, result.input());
+        assertFalse(result.isCompacted());
+    }
+
+    @Test
+    void fileBodiesAreReducedToSignaturesFirst() throws Exception {
+        Map<String, Object> input = new HashMap<>();
+        input.put("summary", "Implemented the API");
+        input.put("files", List.of(
+                file("src/Big.java", javaClass("Big", 80)),
+                file("src/Small.java", javaClass("Small", 5))));
+
+        PromptCompactor.Result result = compactor.compact(QA_TEMPLATE, input, summarizer);
+
+        assertTrue(result.isCompacted());
+        assertTrue(result.tokensAfter() <= result.budgetTokens());
+        assertEquals(1, result.decisions().size());
+        assertEquals("$.files[0].content", result.decisions().get(0).get("path"));
+        assertEquals(PromptCompactor.SIGNATURES, result.decisions().get(0).get("action"));
+
+        Map<String, Object> big = ((List<Map<String, Object>>) result.input().get("files")).get(0);
+        String content = (String) big.get("content");
+        assertTrue(content.contains("public class Big {"));
+        assertTrue(content.contains("public int method0(int value) {"));
+        assertFalse(content.contains("return value"));
+        // The caller's input is not modified
+        assertTrue(((String) ((List<Map<String, Object>>) input.get("files")).get(0).get("content")).contains("return value"));
+    }
+
+    @Test
+    void longListsAreTruncatedWithACount() {
+        List<Map<String, Object>> testCases = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            testCases.add(Map.of("id", "TC-" + i, "description", "Checks behaviour number " + i + " of the system"));
+        }
+
+        PromptCompactor.Result result = compactor.compact(QA_TEMPLATE, Map.of("testCases", testCases), summarizer);
+
+        List<Object> kept = (List<Object>) result.input().get("testCases");
+        assertEquals(21, kept.size());
+        assertEquals("... 180 more items omitted", kept.get(20));
+        Map<String, Object> decision = result.decisions().get(0);
+        assertEquals(PromptCompactor.TRUNCATE_LIST, decision.get("action"));
+        assertEquals(180, decision.get("omittedItems"));
+    }
+
+    @Test
+    void listsNestedInKeptItemsAreTruncatedInTheResult() {
+        List<Object> outer = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            List<String> steps = new ArrayList<>();
+            for (int j = 0; j < 40; j++) {
+                steps.add("Step " + j + " of scenario " + i);
+            }
+            outer.add(steps);
+        }
+
+        PromptCompactor.Result result = compactor.compact(QA_TEMPLATE, Map.of("scenarios", outer), summarizer);
+
+        List<Object> kept = (List<Object>) result.input().get("scenarios");
+        assertEquals(21, kept.size());
+        List<Object> first = (List<Object>) kept.get(0);
+        assertEquals(21, first.size());
+        assertEquals("... 20 more items omitted", first.get(20));
+        // Every recorded cut is in the result
+        long truncatedInResult = kept.stream()
+                .filter(item -> item instanceof List<?> steps && steps.size() == 21)
+                .count();
+        assertEquals(result.decisions().size() - 1, truncatedInResult);
+    }
+
+    @Test
+    void longTextsAreSummarisedWhenEnabledAndTruncatedOtherwise() throws Exception {
+        String text = "lorem ipsum ".repeat(1000);
+
+        PromptCompactor.Result truncated = compactor.compact(QA_TEMPLATE, Map.of("notes", text), summarizer);
+        assertEquals(PromptCompactor.TRUNCATE_TEXT, truncated.decisions().get(0).get("action"));
+        assertTrue(((String) truncated.input().get("notes")).endsWith("chars truncated]"));
+        verifyNoInteractions(summarizer);
+
+        llmProperties.getPromptBudget().setSummarize(true);
+        when(summarizer.summarize(anyString())).thenReturn("Placeholder text.");
+
+        PromptCompactor.Result summarised = compactor.compact(QA_TEMPLATE, Map.of("notes", text), summarizer);
+        assertEquals(PromptCompactor.SUMMARIZE, summarised.decisions().get(0).get("action"));
+        assertEquals("Placeholder text.", summarised.input().get("notes"));
+    }
+
+    private Map<String, Object> file(String path, String content) {
+        Map<String, Object> file = new LinkedHashMap<>();
+        file.put("path", path);
+        file.put("content", content);
+        return file;
+    }
+
+    private String javaClass(String name, int methods) {
+        StringBuilder source = new StringBuilder("package demo;\n\npublic class " + name + " {\n");
+        for (int i = 0; i < methods; i++) {
+            source.append("    public int method").append(i).append("(int value) {\n")
+                    .append("        return value * ").append(i).append(";\n")
+                    .append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
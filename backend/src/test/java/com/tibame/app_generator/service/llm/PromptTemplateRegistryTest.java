@@ -0,0 +1,105 @@
+package com.tibame.app_generator.service.llm;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.model.PromptTemplateVersion;
+import com.tibame.app_generator.repository.PromptTemplateVersionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PromptTemplateRegistryTest {
+
+    @Mock
+    private PromptTemplateVersionRepository versionRepository;
+
+    private PromptTemplateRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PromptTemplateRegistry(versionRepository);
+    }
+
+    @Test
+    void usesBuiltinTemplatesUntilAVersionIsPublished() {
+        CompiledPromptTemplate template = registry.get(AgentType.PG);
+
+        assertTrue(template.getVersionId().startsWith("PG-builtin-"));
+        assertEquals(AgentPromptTemplate.getTemplate(AgentType.PG).replace("{{input}}", "{\"a\":1}"),
+                template.render("{\"a\":1}"));
+    }
+
+    @Test
+    void switchesToTheHighestActiveVersion() {
+        PromptTemplateVersion v2 = version(AgentType.PM, 2, "Plan v2: {{ input }}");
+        PromptTemplateVersion v1 = version(AgentType.PM, 1, "Plan v1: {{input}}");
+        when(versionRepository.findActiveIds()).thenReturn(List.of(v1.getId(), v2.getId()));
+        when(versionRepository.findByActiveTrueOrderByVersionDesc()).thenReturn(List.of(v2, v1));
+
+        registry.reload();
+
+        CompiledPromptTemplate template = registry.get(AgentType.PM);
+        assertEquals("PM-v2", template.getVersionId());
+        assertEquals("Plan v2: shop", template.render("shop"));
+        assertTrue(registry.get(AgentType.SA).getVersionId().startsWith("SA-builtin-"));
+
+        // Unchanged active versions are neither reloaded nor recompiled
+        registry.reload();
+        verify(versionRepository, times(1)).findByActiveTrueOrderByVersionDesc();
+        assertSame(template, registry.get(AgentType.PM));
+    }
+
+    @Test
+    void keepsThePreviousTemplateWhenAVersionDoesNotCompile() {
+        PromptTemplateVersion good = version(AgentType.QA, 1, "Review {{input}}");
+        PromptTemplateVersion broken = version(AgentType.QA, 2, "Review {{code}}");
+        when(versionRepository.findActiveIds())
+                .thenReturn(List.of(good.getId()))
+                .thenReturn(List.of(good.getId(), broken.getId()));
+        when(versionRepository.findByActiveTrueOrderByVersionDesc())
+                .thenReturn(List.of(good))
+                .thenReturn(List.of(broken, good));
+
+        registry.reload();
+        registry.reload();
+
+        assertEquals("QA-v1", registry.get(AgentType.QA).getVersionId());
+    }
+
+    @Test
+    void fallsBackToTheBuiltinTemplateWhenVersionsAreDeactivated() {
+        PromptTemplateVersion v1 = version(AgentType.SA, 1, "Design {{input}}");
+        when(versionRepository.findActiveIds()).thenReturn(List.of(v1.getId())).thenReturn(List.of());
+        when(versionRepository.findByActiveTrueOrderByVersionDesc()).thenReturn(List.of(v1)).thenReturn(List.of());
+
+        registry.reload();
+        assertEquals("SA-v1", registry.get(AgentType.SA).getVersionId());
+
+        registry.reload();
+        assertTrue(registry.get(AgentType.SA).getVersionId().startsWith("SA-builtin-"));
+    }
+
+    @Test
+    void renderRejectsMissingVariables() {
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile(AgentType.PM, "PM-v9", "{{input}} for {{user}}");
+
+        assertThrows(IllegalArgumentException.class, () -> template.render("shop"));
+    }
+
+    private PromptTemplateVersion version(AgentType agentType, int version, String template) {
+        return PromptTemplateVersion.builder()
+                .id(UUID.randomUUID())
+                .agentType(agentType)
+                .version(version)
+                .template(template)
+                .build();
+    }
+}
@@ -0,0 +1,75 @@
+package com.tibame.app_generator.service.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingJsonObjectParserTest {
+
+    private final List<Map<String, Object>> files = new ArrayList<>();
+    private final StreamingJsonObjectParser parser = new StreamingJsonObjectParser("files", files::add);
+
+    @Test
+    void emitsEachFileAsSoonAsItIsComplete() throws IOException {
+        parser.feed("```json\n{\"summary\": \"done\", \"fi");
+        parser.feed("les\": [{\"path\": \"A.java\", \"content\": \"class A {}\"}");
+        assertEquals(1, files.size());
+        assertEquals("A.java", files.get(0).get("path"));
+
+        parser.feed(", {\"path\": \"B.java\", \"content\": \"cla");
+        assertEquals(1, files.size());
+        parser.feed("ss B { \\\"x\\\" }\"}], \"count\": 2, \"ratio\": 0.5, \"ok\": true, \"none\": null}\n```");
+        assertEquals(2, files.size());
+        assertEquals("class B { \"x\" }", files.get(1).get("content"));
+
+        Map<String, Object> result = parser.finish();
+        assertTrue(parser.isComplete());
+        assertEquals("done", result.get("summary"));
+        // Emitted files were handed over, not kept
+        assertEquals(List.of(), result.get("files"));
+        assertEquals(2, result.get("count"));
+        assertEquals(0.5, result.get("ratio"));
+        assertEquals(Boolean.TRUE, result.get("ok"));
+        assertTrue(result.containsKey("none"));
+    }
+
+    @Test
+    void ignoresNestedArraysWithTheSameName() throws IOException {
+        parser.feed("{\"module\": {\"files\": [{\"path\": \"x\"}]}, \"files\": [{\"path\": \"y\"}]}");
+
+        assertEquals(1, files.size());
+        assertEquals("y", files.get(0).get("path"));
+        assertEquals(Map.of("files", List.of(Map.of("path", "x"))), parser.finish().get("module"));
+    }
+
+    @Test
+    void keepsCharactersSplitAcrossChunks() throws IOException {
+        String text = "{\"summary\": \"😀 ok\"}";
+        int split = text.indexOf('\uD83D') + 1;
+        parser.feed(text.substring(0, split));
+        parser.feed(text.substring(split));
+
+        assertEquals("😀 ok", parser.finish().get("summary"));
+    }
+
+    @Test
+    void reportsTruncatedOutput() {
+        parser.feed("{\"files\": [{\"path\": \"A.java\"}, {\"path\": ");
+
+        assertEquals(1, files.size());
+        assertThrows(IOException.class, parser::finish);
+        assertFalse(parser.isComplete());
+    }
+
+    @Test
+    void reportsMalformedOutput() {
+        parser.feed("{\"summary\": oops}");
+
+        assertThrows(IOException.class, parser::finish);
+    }
+}
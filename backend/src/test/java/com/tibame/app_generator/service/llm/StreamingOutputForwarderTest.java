@@ -0,0 +1,60 @@
+package com.tibame.app_generator.service.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingOutputForwarderTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private final List<String> deltas = new ArrayList<>();
+    private final StreamingOutputForwarder forwarder =
+            new StreamingOutputForwarder(deltas::add, Duration.ofMillis(250), clock::get);
+
+    @Test
+    void batchesTokensWithinTheFlushInterval() throws Exception {
+        token(0, "a");
+        token(100, "b");
+        token(300, "c");
+        token(350, "d");
+        Response<AiMessage> response = Response.from(AiMessage.from("abcd"));
+        forwarder.onComplete(response);
+
+        assertEquals(List.of("a", "bc", "d"), deltas);
+        assertSame(response, forwarder.getResult().get());
+        assertTrue(forwarder.isStarted());
+        assertEquals(0, forwarder.getFirstTokenAt());
+    }
+
+    @Test
+    void dropsTokensOnceCancelled() {
+        token(0, "a");
+        forwarder.getResult().cancel(true);
+        token(500, "b");
+        forwarder.onComplete(Response.from(AiMessage.from("ab")));
+
+        assertEquals(List.of("a"), deltas);
+    }
+
+    @Test
+    void errorFailsTheResult() {
+        forwarder.onError(new IllegalStateException("stream broken"));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> forwarder.getResult().get());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(deltas.isEmpty());
+    }
+
+    private void token(long atMillis, String token) {
+        clock.set(Duration.ofMillis(atMillis).toNanos());
+        forwarder.onNext(token);
+    }
+}
@@ -0,0 +1,153 @@
+package com.tibame.app_generator.service.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StructuredOutputParserTest {
+
+    private static final OutputSchema SCHEMA = OutputSchema.fromTemplate("""
+            Output must be in strict JSON format with the following structure:
+            {
+              "summary": "...",
+              "files": [
+                { "path": "src/Demo.java", "content": "..." }
+              ]
+            }
+            """);
+
+    private final List<String> repairPrompts = new ArrayList<>();
+    private LlmProperties llmProperties;
+    private StructuredOutputParser parser;
+
+    @BeforeEach
+    void setUp() {
+        llmProperties = new LlmProperties();
+        parser = new StructuredOutputParser(llmProperties, new ObjectMapper());
+    }
+
+    @Test
+    void extractsObjectFromProseAndFences() throws Exception {
+        String response = """
+                Here is the implementation:
+                ```json
+                {"summary": "Done", "files": [{"path": "A.java", "content": "class A {}",},]}
+                ```
+                Let me know if you need anything else.
+                """;
+
+        StructuredOutputParser.Result result = parser.parse(response, null, SCHEMA, model());
+
+        assertEquals("Done", result.output().get("summary"));
+        assertEquals(0, result.repairs());
+        assertTrue(repairPrompts.isEmpty());
+    }
+
+    @Test
+    void repairsSyntaxErrorWithFragmentOnly() throws Exception {
+        String response = """
+                {
+                  "summary": "Done",
+                  "files": [
+                    {"path": "A.java", "content": "class A { String s = "x"; }"}
+                  ]
+                }
+                """;
+
+        StructuredOutputParser.Result result = parser.parse(response, null, SCHEMA,
+                model("    {\"path\": \"A.java\", \"content\": \"class A { String s = \\\"x\\\"; }\"}"));
+
+        assertEquals(1, result.repairs());
+        List<?> files = (List<?>) result.output().get("files");
+        assertEquals("class A { String s = \"x\"; }", ((Map<?, ?>) files.get(0)).get("content"));
+        // Only the broken line is sent, not the whole document
+        assertTrue(repairPrompts.get(0).contains("\"path\": \"A.java\""));
+        assertFalse(repairPrompts.get(0).contains("\"summary\""));
+    }
+
+    @Test
+    void repairsWholeObjectWhenAnUnescapedQuoteEndsItEarly() throws Exception {
+        // Strictly scanned, the stray quote turns the closing brace in the content into the end of the object
+        String response = """
+                ```json
+                {"summary": "Fits a 5" screen",
+                "files": [{"path": "A.java", "content": "} class A"}]}
+                ```
+                """;
+
+        StructuredOutputParser.Result result = parser.parse(response, null, SCHEMA,
+                model("{\"summary\": \"Fits a 5\\\" screen\","));
+
+        assertEquals(1, result.repairs());
+        assertEquals("Fits a 5\" screen", result.output().get("summary"));
+        List<?> files = (List<?>) result.output().get("files");
+        assertEquals("} class A", ((Map<?, ?>) files.get(0)).get("content"));
+    }
+
+    @Test
+    void repairsInvalidArrayElement() throws Exception {
+        String response = """
+                {"summary": "Done", "files": [
+                  {"path": "A.java", "content": "class A {}"},
+                  {"path": "B.java"}
+                ]}
+                """;
+
+        StructuredOutputParser.Result result = parser.parse(response, null, SCHEMA,
+                model("```json\n{\"path\": \"B.java\", \"content\": \"class B {}\"}\n```"));
+
+        assertEquals(1, result.repairs());
+        List<?> files = (List<?>) result.output().get("files");
+        assertEquals("class B {}", ((Map<?, ?>) files.get(1)).get("content"));
+        assertTrue(repairPrompts.get(0).contains("files[1].content missing required field"));
+        assertFalse(repairPrompts.get(0).contains("A.java"));
+    }
+
+    @Test
+    void repairsMissingTopLevelField() throws Exception {
+        StructuredOutputParser.Result result = parser.parse("{\"files\": []}", null, SCHEMA,
+                model("\"Nothing to implement\""));
+
+        assertEquals("Nothing to implement", result.output().get("summary"));
+    }
+
+    @Test
+    void validatesStreamedOutput() throws Exception {
+        Map<String, Object> streamed = new java.util.HashMap<>(Map.of("summary", "Done", "files", "none"));
+
+        StructuredOutputParser.Result result = parser.parse("", streamed, SCHEMA, model("[]"));
+
+        assertEquals(List.of(), result.output().get("files"));
+    }
+
+    @Test
+    void rejectsOutputOnceRepairsAreExhausted() {
+        assertThrows(StructuredOutputParser.InvalidOutputException.class,
+                () -> parser.parse("{\"summary\": \"Done\", \"files\": [{]}", null, SCHEMA, model("{]")));
+        assertEquals(2, repairPrompts.size());
+    }
+
+    @Test
+    void rejectsRightAwayWhenRepairIsDisabled() {
+        llmProperties.getRepair().setEnabled(false);
+
+        assertThrows(StructuredOutputParser.InvalidOutputException.class,
+                () -> parser.parse("{\"summary\": \"Done\"}", null, SCHEMA, model()));
+        assertTrue(repairPrompts.isEmpty());
+    }
+
+    private UnaryOperator<String> model(String... answers) {
+        return prompt -> {
+            repairPrompts.add(prompt);
+            return answers[Math.min(repairPrompts.size(), answers.length) - 1];
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package com.tibame.app_generator.service.llm.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.service.llm.CompiledPromptTemplate;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.output.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MockChatLanguageModelTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LlmProperties.Mock config = new LlmProperties.Mock();
+    private MockChatLanguageModel model;
+
+    @BeforeEach
+    void setUp() {
+        config.setLatencyDistribution(LlmProperties.Mock.LatencyDistribution.FIXED);
+        config.setLatencyMinMs(0);
+        config.setLatencyMedianMs(0);
+        config.setTokensPerSecond(1_000_000);
+        config.setFiles(3);
+        config.setFileChars(500);
+        model = new MockChatLanguageModel(config, objectMapper);
+    }
+
+    @Test
+    void answersInTheOutputFormatOfThePromptedAgent() throws Exception {
+        // Upstream output in the input must not be mistaken for the agent's own role
+        String prompt = prompt(AgentType.QA, "{\"summary\": \"Programmer output\", \"files\": []}");
+
+        Response<AiMessage> response = model.generate(List.of(UserMessage.from(prompt)));
+
+        Map<?, ?> output = objectMapper.readValue(response.content().text(), Map.class);
+        assertEquals(5, ((List<?>) output.get("testCases")).size());
+        assertTrue(output.containsKey("codeReview"));
+        assertTrue(response.tokenUsage().inputTokenCount() > 0);
+    }
+
+    @Test
+    void generatesConfiguredNumberAndSizeOfFiles() throws Exception {
+        Response<AiMessage> response = model.generate(List.of(UserMessage.from(prompt(AgentType.PG, "{}"))));
+
+        List<?> files = (List<?>) objectMapper.readValue(response.content().text(), Map.class).get("files");
+        assertEquals(3, files.size());
+        String content = (String) ((Map<?, ?>) files.get(0)).get("content");
+        assertTrue(content.length() >= 500);
+    }
+
+    @Test
+    void streamsTheResponseInChunks() throws Exception {
+        StringBuilder streamed = new StringBuilder();
+        CompletableFuture<Response<AiMessage>> done = new CompletableFuture<>();
+        int[] chunks = {0};
+
+        model.generate(List.of(UserMessage.from(prompt(AgentType.SA, "{}"))), new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+                streamed.append(token);
+                chunks[0]++;
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                done.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                done.completeExceptionally(error);
+            }
+        });
+
+        Response<AiMessage> response = done.get(5, TimeUnit.SECONDS);
+        assertEquals(response.content().text(), streamed.toString());
+        assertTrue(chunks[0] > 10);
+        assertTrue(objectMapper.readValue(streamed.toString(), Map.class).containsKey("apiEndpoints"));
+    }
+
+    @Test
+    void injectsRateLimitRejections() {
+        config.setRateLimitRate(1.0);
+
+        OpenAiHttpException error = assertThrows(OpenAiHttpException.class,
+                () -> model.generate(List.of(UserMessage.from(prompt(AgentType.PM, "{}")))));
+        assertEquals(429, error.code());
+    }
+
+    @Test
+    void samplesLatencyWithinBounds() {
+        config.setLatencyDistribution(LlmProperties.Mock.LatencyDistribution.LOGNORMAL);
+        config.setLatencyMinMs(50);
+        config.setLatencyMedianMs(200);
+        config.setLatencyP99Ms(1000);
+        config.setLatencyMaxMs(1500);
+
+        long below = 0;
+        for (int i = 0; i < 2000; i++) {
+            long latency = model.sampleLatencyMs();
+            assertTrue(latency >= 50 && latency <= 1500);
+            if (latency <= 200) {
+                below++;
+            }
+        }
+        // Half of the samples fall below the median
+        assertTrue(below > 800 && below < 1200, "below median: " + below);
+    }
+
+    private String prompt(AgentType agentType, String input) {
+        return CompiledPromptTemplate.builtin(agentType).render(input);
+    }
+}
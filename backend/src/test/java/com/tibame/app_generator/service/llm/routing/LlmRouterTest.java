@@ -0,0 +1,152 @@
+package com.tibame.app_generator.service.llm.routing;
+
+import com.tibame.app_generator.config.LlmProperties;
+import com.tibame.app_generator.service.metrics.PipelineMetrics;
+import dev.ai4j.openai4j.OpenAiHttpException;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class LlmRouterTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(UserMessage.from("hi"));
+
+    private final AtomicLong clock = new AtomicLong(1);
+    private final LlmProperties.Routing routing = new LlmProperties.Routing();
+    private final PipelineMetrics metrics = new PipelineMetrics(new SimpleMeterRegistry());
+
+    private ChatLanguageModel fast;
+    private ChatLanguageModel slow;
+
+    @BeforeEach
+    void setUp() {
+        routing.setFailureThreshold(2);
+        fast = mock(ChatLanguageModel.class);
+        slow = mock(ChatLanguageModel.class);
+    }
+
+    @Test
+    void prefersTheBackendWithLowerMedianLatency() {
+        LlmRouter router = router(LlmRouter.backend("slow", slow, null, routing, 0),
+                LlmRouter.backend("fast", fast, null, routing, 0));
+        when(slow.generate(anyList())).thenAnswer(invocation -> answerAfter(Duration.ofSeconds(5), "slow"));
+        when(fast.generate(anyList())).thenAnswer(invocation -> answerAfter(Duration.ofMillis(500), "fast"));
+        RoutingChatLanguageModel model = new RoutingChatLanguageModel(router);
+
+        // Unmeasured backends come first, so both get a sample
+        model.generate(MESSAGES);
+        model.generate(MESSAGES);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals("fast", model.generate(MESSAGES).content().text());
+        }
+        verify(slow, times(1)).generate(anyList());
+    }
+
+    @Test
+    void failsOverAndOpensTheCircuit() {
+        LlmRouter router = router(LlmRouter.backend("primary", fast, null, routing, 0),
+                LlmRouter.backend("secondary", slow, null, routing, 0));
+        when(fast.generate(anyList())).thenThrow(new RuntimeException("connection refused"));
+        when(slow.generate(anyList())).thenAnswer(invocation -> answerAfter(Duration.ofSeconds(1), "secondary"));
+        RoutingChatLanguageModel model = new RoutingChatLanguageModel(router);
+
+        assertEquals("secondary", model.generate(MESSAGES).content().text());
+        assertEquals("secondary", model.generate(MESSAGES).content().text());
+        assertEquals(BackendStats.CircuitState.OPEN, router.getBackends().get(0).stats.getCircuit());
+
+        // While the circuit is open the failing backend is not tried at all
+        model.generate(MESSAGES);
+        verify(fast, times(2)).generate(anyList());
+
+        // After the open period a single trial decides; a success closes the circuit again
+        clock.addAndGet(Duration.ofSeconds(routing.getOpenDurationSeconds()).toNanos());
+        reset(fast);
+        when(fast.generate(anyList())).thenReturn(Response.from(AiMessage.from("primary")));
+        assertEquals("primary", model.generate(MESSAGES).content().text());
+        assertEquals(BackendStats.CircuitState.CLOSED, router.getBackends().get(0).stats.getCircuit());
+    }
+
+    @Test
+    void skipsRateLimitedAndExhaustedBackends() {
+        LlmRouter router = router(LlmRouter.backend("limited", fast, null, routing, 1),
+                LlmRouter.backend("throttled", slow, null, routing, 0));
+        when(fast.generate(anyList())).thenReturn(Response.from(AiMessage.from("limited")));
+        when(slow.generate(anyList())).thenThrow(new RuntimeException(new OpenAiHttpException(429, "Too many requests")));
+        RoutingChatLanguageModel model = new RoutingChatLanguageModel(router);
+
+        assertEquals("limited", model.generate(MESSAGES).content().text());
+        // The budget of one request per minute is used up and the other backend is throttled
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> model.generate(MESSAGES));
+        assertInstanceOf(RuntimeException.class, e.getCause());
+        assertThrows(IllegalStateException.class, () -> model.generate(MESSAGES));
+        verify(slow, times(1)).generate(anyList());
+
+        clock.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertEquals("limited", model.generate(MESSAGES).content().text());
+    }
+
+    @Test
+    void streamingFailsOverOnlyBeforeTheFirstToken() {
+        StreamingChatLanguageModel broken = mock(StreamingChatLanguageModel.class);
+        StreamingChatLanguageModel working = mock(StreamingChatLanguageModel.class);
+        doAnswer(invocation -> {
+            StreamingResponseHandler<AiMessage> handler = invocation.getArgument(1);
+            handler.onError(new RuntimeException("unavailable"));
+            return null;
+        }).when(broken).generate(anyList(), any(StreamingResponseHandler.class));
+        doAnswer(invocation -> {
+            StreamingResponseHandler<AiMessage> handler = invocation.getArgument(1);
+            handler.onNext("ok");
+            handler.onComplete(Response.from(AiMessage.from("ok")));
+            return null;
+        }).when(working).generate(anyList(), any(StreamingResponseHandler.class));
+        LlmRouter router = router(LlmRouter.backend("broken", null, broken, routing, 0),
+                LlmRouter.backend("working", null, working, routing, 0));
+
+        CompletableFuture<Response<AiMessage>> result = new CompletableFuture<>();
+        new RoutingStreamingChatLanguageModel(router).generate(MESSAGES, new StreamingResponseHandler<>() {
+            @Override
+            public void onNext(String token) {
+            }
+
+            @Override
+            public void onComplete(Response<AiMessage> response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                result.completeExceptionally(error);
+            }
+        });
+
+        assertEquals("ok", result.join().content().text());
+    }
+
+    private LlmRouter router(LlmBackend... backends) {
+        return new LlmRouter(List.of(backends), metrics, clock::get);
+    }
+
+    private Response<AiMessage> answerAfter(Duration latency, String text) {
+        clock.addAndGet(latency.toNanos());
+        return Response.from(AiMessage.from(text));
+    }
+}
@@ -0,0 +1,55 @@
+package com.tibame.app_generator.service.retry;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimerWheelTest {
+
+    @Test
+    public void testFiresOnlyExpiredTimeouts() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<>(100, 8, 0);
+        wheel.add("early", 250);
+        wheel.add("late", 550);
+
+        assertTrue(wheel.advance(200).isEmpty());
+        assertEquals(List.of("early"), wheel.advance(300));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("late"), wheel.advance(600));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testTimeoutBeyondOneRevolutionWaitsForItsRound() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<>(100, 4, 0);
+        // Lands in the same bucket as tick 1 but three revolutions later
+        wheel.add("far", 1300);
+
+        assertTrue(wheel.advance(100).isEmpty());
+        assertTrue(wheel.advance(500).isEmpty());
+        assertTrue(wheel.advance(900).isEmpty());
+        assertEquals(List.of("far"), wheel.advance(1300));
+    }
+
+    @Test
+    public void testOverdueTimeoutFiresOnNextAdvance() {
+        HashedTimerWheel<String> wheel = new HashedTimerWheel<>(100, 8, 0);
+        wheel.advance(1000);
+        wheel.add("overdue", 200);
+
+        assertEquals(List.of("overdue"), wheel.advance(1000));
+    }
+
+    @Test
+    public void testLargeJumpStillFiresEverything() {
+        HashedTimerWheel<Integer> wheel = new HashedTimerWheel<>(10, 16, 0);
+        for (int i = 0; i < 100; i++) {
+            wheel.add(i, i * 37L);
+        }
+
+        assertEquals(100, wheel.advance(100_000).size());
+        assertEquals(0, wheel.size());
+    }
+}
@@ -0,0 +1,52 @@
+package com.tibame.app_generator.service.retry;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.repository.AgentTaskRepository;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class RetrySchedulerTest {
+
+    private final AgentTaskRepository agentTaskRepository = mock(AgentTaskRepository.class);
+    private final WorkflowExecutor workflowExecutor = mock(WorkflowExecutor.class);
+    private RetryScheduler retryScheduler;
+
+    @BeforeEach
+    public void setUp() {
+        WorkflowProperties properties = new WorkflowProperties();
+        properties.setRetryTickMs(10L);
+        retryScheduler = new RetryScheduler(agentTaskRepository, properties, workflowExecutor, Runnable::run);
+        retryScheduler.start();
+        when(agentTaskRepository.claimRetry(any(), any())).thenReturn(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        retryScheduler.stop();
+    }
+
+    @Test
+    public void testRescheduledRetryFiresAtItsNewTime() throws Exception {
+        UUID taskId = UUID.randomUUID();
+        UUID runId = UUID.randomUUID();
+
+        retryScheduler.schedule(taskId, runId, ZonedDateTime.now().plusNanos(50_000_000L));
+        retryScheduler.schedule(taskId, runId, ZonedDateTime.now().plusNanos(400_000_000L));
+
+        Thread.sleep(200);
+        verify(workflowExecutor, never()).retryTaskAsync(any(), any());
+
+        Thread.sleep(400);
+        verify(agentTaskRepository, times(1)).claimRetry(eq(taskId), any());
+        verify(workflowExecutor, times(1)).retryTaskAsync(taskId, runId);
+    }
+}
@@ -0,0 +1,94 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgFanOutPlannerTest {
+
+    private final WorkflowProperties properties = new WorkflowProperties();
+    private PgFanOutPlanner planner;
+
+    @BeforeEach
+    void setUp() {
+        properties.getPgFanOut().setEnabled(true);
+        planner = new PgFanOutPlanner(properties);
+    }
+
+    @Test
+    void splitsEndpointsByResource() {
+        Map<String, Object> input = Map.of(
+                "componentDesign", "Layered",
+                "apiEndpoints", List.of(
+                        endpoint("/api/v1/orders"), endpoint("/api/v1/orders/{id}"),
+                        endpoint("/api/users"), endpoint("/health")));
+
+        List<PgFanOutPlanner.Module> modules = planner.split(input);
+
+        assertEquals(List.of("health", "orders", "users"), modules.stream().map(PgFanOutPlanner.Module::name).toList());
+        Map<String, Object> orders = modules.get(1).input();
+        assertEquals(2, ((List<?>) orders.get("apiEndpoints")).size());
+        assertEquals("Layered", orders.get("componentDesign"));
+        assertEquals("orders", orders.get("module"));
+        // Only the first module generates the shared files
+        assertTrue(((String) modules.get(0).input().get("scope")).contains("files shared by the whole application"));
+        assertTrue(((String) orders.get("scope")).contains("do not generate them"));
+    }
+
+    @Test
+    void combinesModulesBeyondTheLimit() {
+        properties.getPgFanOut().setMaxModules(2);
+        Map<String, Object> input = Map.of("apiEndpoints", List.of(
+                endpoint("/api/a"), endpoint("/api/a/1"), endpoint("/api/a/2"),
+                endpoint("/api/b"), endpoint("/api/c"), endpoint("/api/d")));
+
+        List<PgFanOutPlanner.Module> modules = planner.split(input);
+
+        assertEquals(2, modules.size());
+        assertEquals("a", modules.get(0).name());
+        assertEquals("b+c+d", modules.get(1).name());
+        assertEquals(3, ((List<?>) modules.get(1).input().get("apiEndpoints")).size());
+    }
+
+    @Test
+    void keepsSmallOrDisabledDesignsInOneCall() {
+        Map<String, Object> input = Map.of("apiEndpoints", List.of(endpoint("/api/a"), endpoint("/api/a/{id}")));
+        assertTrue(planner.split(input).isEmpty());
+        assertTrue(planner.split(Map.of("description", "no design")).isEmpty());
+
+        properties.getPgFanOut().setEnabled(false);
+        assertTrue(planner.split(Map.of("apiEndpoints", List.of(endpoint("/a"), endpoint("/b")))).isEmpty());
+    }
+
+    @Test
+    void mergesFilesAndReportsConflicts() {
+        List<PgFanOutPlanner.Module> modules = List.of(
+                new PgFanOutPlanner.Module("orders", Map.of()), new PgFanOutPlanner.Module("users", Map.of()));
+        List<Map<String, Object>> results = List.of(
+                Map.of("summary", "Orders", "files", List.of(file("pom.xml", "a"), file("Order.java", "o"))),
+                Map.of("summary", "Users", "files", List.of(file("pom.xml", "b"), file("Order.java", "o"), file("User.java", "u"))));
+
+        Map<String, Object> merged = planner.merge(modules, results);
+
+        List<?> files = (List<?>) merged.get("files");
+        assertEquals(3, files.size());
+        assertEquals("a", ((Map<?, ?>) files.get(0)).get("content"));
+        // Identical duplicates are not conflicts
+        assertEquals(List.of(Map.of("path", "pom.xml", "modules", List.of("orders", "users"))), merged.get("conflicts"));
+        assertEquals("orders: Orders\nusers: Users", merged.get("summary"));
+        assertEquals(List.of("orders", "users"), merged.get("modules"));
+    }
+
+    private Map<String, Object> endpoint(String path) {
+        return Map.of("method", "GET", "path", path, "description", path);
+    }
+
+    private Map<String, Object> file(String path, String content) {
+        return Map.of("path", path, "content", content);
+    }
+}
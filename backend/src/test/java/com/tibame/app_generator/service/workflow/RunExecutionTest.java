@@ -0,0 +1,73 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.model.WorkflowRun;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RunExecutionTest {
+
+    @Test
+    void inputFor_ShouldOnlyContainDirectUpstreamResults() {
+        RunExecution execution = execution(List.of(edge("pm", "sa", null), edge("sa", "pg", null)));
+
+        execution.complete(execution.indexOf("pm"), Map.of("userStories", "stories"));
+        execution.complete(execution.indexOf("sa"), Map.of("databaseSchema", "schema"));
+
+        Map<String, Object> pgInput = execution.inputFor(execution.indexOf("pg"));
+        assertEquals("schema", pgInput.get("databaseSchema"));
+        assertEquals("A shop", pgInput.get("description"));
+        assertFalse(pgInput.containsKey("userStories"));
+    }
+
+    @Test
+    void inputFor_ShouldApplyEdgeProjection() {
+        RunExecution execution = execution(List.of(
+                edge("pm", "sa", null), edge("sa", "pg", List.of("apiEndpoints", "missing"))));
+
+        execution.complete(execution.indexOf("pm"), Map.of("userStories", "stories"));
+        execution.complete(execution.indexOf("sa"), Map.of("apiEndpoints", "endpoints", "databaseSchema", "schema"));
+
+        Map<String, Object> pgInput = execution.inputFor(execution.indexOf("pg"));
+        assertEquals("endpoints", pgInput.get("apiEndpoints"));
+        assertFalse(pgInput.containsKey("databaseSchema"));
+        assertFalse(pgInput.containsKey("missing"));
+    }
+
+    @Test
+    void fingerprintOf_ShouldChangeWithProjection() {
+        RunExecution full = execution(List.of(edge("pm", "sa", null), edge("sa", "pg", null)));
+        RunExecution projected = execution(List.of(edge("pm", "sa", null), edge("sa", "pg", List.of("apiEndpoints"))));
+
+        assertEquals(full.fingerprintOf(full.indexOf("sa")), projected.fingerprintOf(projected.indexOf("sa")));
+        assertNotEquals(full.fingerprintOf(full.indexOf("pg")), projected.fingerprintOf(projected.indexOf("pg")));
+    }
+
+    private RunExecution execution(List<Map<String, Object>> edges) {
+        Map<String, Object> graphData = new HashMap<>();
+        graphData.put("nodes", List.of(node("pm", "PM"), node("sa", "SA"), node("pg", "PG")));
+        graphData.put("edges", edges);
+        WorkflowPlan plan = WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graphData);
+        return new RunExecution(new WorkflowRun(), plan, Map.of("description", "A shop"));
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> node = new HashMap<>();
+        node.put("id", id);
+        node.put("data", Map.of("agentType", agentType));
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target, List<String> fields) {
+        Map<String, Object> edge = new HashMap<>();
+        edge.put("source", source);
+        edge.put("target", target);
+        if (fields != null) {
+            edge.put("data", Map.of("fields", fields));
+        }
+        return edge;
+    }
+}
@@ -0,0 +1,107 @@
+package com.tibame.app_generator.service.workflow;
+
+import com.tibame.app_generator.enums.AgentType;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkflowPlanTest {
+
+    @Test
+    void compile_ShouldOrderNodesTopologicallyAndBuildAdjacency() {
+        Map<String, Object> graphData = graph(
+                List.of(node("qa", "QA"), node("pg", "PG"), node("sa", "SA"), node("pm", "PM")),
+                List.of(edge("pm", "sa"), edge("sa", "pg"), edge("pg", "qa")));
+
+        WorkflowPlan plan = WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graphData);
+
+        assertEquals(4, plan.size());
+        assertEquals("pm", plan.getNode(0).getId());
+        assertEquals(AgentType.PM, plan.getNode(0).getAgentType());
+        assertEquals("qa", plan.getNode(3).getId());
+        assertEquals(1, plan.indexOf("sa"));
+        assertArrayEquals(new int[]{2}, plan.getSuccessors()[1]);
+        assertArrayEquals(new int[]{1}, plan.getPredecessors()[2]);
+        assertEquals(0, plan.getPredecessors()[0].length);
+    }
+
+    @Test
+    void compile_ShouldSortFanInPredecessors() {
+        Map<String, Object> graphData = graph(
+                List.of(node("pm", "PM"), node("sa1", "SA"), node("sa2", "SA"), node("pg", "PG")),
+                List.of(edge("sa2", "pg"), edge("pm", "sa1"), edge("pm", "sa2"), edge("sa1", "pg")));
+
+        WorkflowPlan plan = WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graphData);
+
+        int pg = plan.indexOf("pg");
+        assertArrayEquals(new int[]{plan.indexOf("sa1"), plan.indexOf("sa2")}, plan.getPredecessors()[pg]);
+    }
+
+    @Test
+    void compile_ShouldRejectCycles() {
+        Map<String, Object> graphData = graph(
+                List.of(node("a", "PM"), node("b", "SA")),
+                List.of(edge("a", "b"), edge("b", "a")));
+
+        assertThrows(IllegalStateException.class,
+                () -> WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graphData));
+    }
+
+    @Test
+    void compile_ShouldRejectUnknownAgentType() {
+        Map<String, Object> graphData = graph(List.of(node("a", "DESIGNER")), List.of());
+
+        assertThrows(IllegalArgumentException.class,
+                () -> WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graphData));
+    }
+
+    @Test
+    void compile_ShouldPropagateFingerprintChangesDownstreamOnly() {
+        List<Map<String, Object>> edges = List.of(edge("pm", "sa"), edge("sa", "pg"), edge("pm", "qa"));
+        WorkflowPlan before = WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graph(
+                List.of(node("pm", "PM"), node("sa", "SA"), node("pg", "PG"), node("qa", "QA")), edges));
+
+        Map<String, Object> editedSa = node("sa", "SA");
+        ((Map<String, Object>) editedSa.get("data")).put("prompt", "Prefer PostgreSQL");
+        Map<String, Object> renamedQa = node("qa", "QA");
+        ((Map<String, Object>) renamedQa.get("data")).put("label", "Quality");
+        WorkflowPlan after = WorkflowPlan.compile(UUID.randomUUID(), ZonedDateTime.now(), graph(
+                List.of(node("pm", "PM"), editedSa, node("pg", "PG"), renamedQa), edges));
+
+        assertEquals(fingerprint(before, "pm"), fingerprint(after, "pm"));
+        assertNotEquals(fingerprint(before, "sa"), fingerprint(after, "sa"));
+        assertNotEquals(fingerprint(before, "pg"), fingerprint(after, "pg"));
+        // Renaming does not change what a node produces
+        assertEquals(fingerprint(before, "qa"), fingerprint(after, "qa"));
+    }
+
+    private String fingerprint(WorkflowPlan plan, String nodeId) {
+        return plan.getNode(plan.indexOf(nodeId)).getFingerprint();
+    }
+
+    private Map<String, Object> graph(List<Map<String, Object>> nodes, List<Map<String, Object>> edges) {
+        Map<String, Object> graphData = new HashMap<>();
+        graphData.put("nodes", nodes);
+        graphData.put("edges", edges);
+        return graphData;
+    }
+
+    private Map<String, Object> node(String id, String agentType) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("agentType", agentType);
+        Map<String, Object> node = new HashMap<>();
+        node.put("id", id);
+        node.put("data", data);
+        return node;
+    }
+
+    private Map<String, Object> edge(String source, String target) {
+        Map<String, Object> edge = new HashMap<>();
+        edge.put("source", source);
+        edge.put("target", target);
+        return edge;
+    }
+}
@@ -0,0 +1,83 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.enums.AgentType;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.AgentTask;
+import com.tibame.app_generator.model.AgentTaskLog;
+import com.tibame.app_generator.model.Project;
+import com.tibame.app_generator.model.User;
+import com.tibame.app_generator.repository.AgentTaskRepository;
+import com.tibame.app_generator.repository.ProjectRepository;
+import com.tibame.app_generator.repository.UserRepository;
+import com.tibame.app_generator.service.TaskLogService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TaskLogMigrationTaskIntegrationTest {
+
+    @Autowired
+    private TaskLogMigrationTask taskLogMigrationTask;
+
+    @Autowired
+    private TaskLogService taskLogService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private AgentTaskRepository agentTaskRepository;
+
+    @Test
+    void movesLogContentToLogLines() {
+        // Column left behind by a schema from before append-only task logs
+        jdbcTemplate.execute("alter table agent_tasks add column if not exists log_content text");
+
+        User user = userRepository.save(User.builder()
+                .username("migration_" + UUID.randomUUID())
+                .email("migration_" + UUID.randomUUID() + "@example.com")
+                .passwordHash("hash")
+                .build());
+        Project project = projectRepository.save(Project.builder()
+                .name("Migration Test Project " + UUID.randomUUID())
+                .gitRepoPath("/tmp/test-repo-" + UUID.randomUUID())
+                .user(user)
+                .build());
+        AgentTask task = agentTaskRepository.save(AgentTask.builder()
+                .project(project)
+                .agentType(AgentType.PM)
+                .taskName("pm")
+                .status(TaskStatus.SUCCESS)
+                .build());
+        jdbcTemplate.update("update agent_tasks set log_content = ? where id = ?",
+                "Task started\nAnalyzing requirements\nTask completed", task.getId());
+
+        taskLogMigrationTask.migrateLogContent();
+
+        List<AgentTaskLog> lines = taskLogService.read(task.getId(), 0, 100);
+        assertEquals(List.of("Task started", "Analyzing requirements", "Task completed"),
+                lines.stream().map(AgentTaskLog::getMessage).toList());
+        assertEquals(List.of(0L, 1L, 2L), lines.stream().map(AgentTaskLog::getSeq).toList());
+        assertNull(jdbcTemplate.queryForObject("select log_content from agent_tasks where id = ?",
+                String.class, task.getId()));
+
+        // Nothing is copied twice
+        taskLogMigrationTask.migrateLogContent();
+        assertEquals(3, taskLogService.read(task.getId(), 0, 100).size());
+    }
+}
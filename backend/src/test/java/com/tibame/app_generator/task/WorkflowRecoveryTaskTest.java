@@ -0,0 +1,74 @@
+package com.tibame.app_generator.task;
+
+import com.tibame.app_generator.config.WorkflowProperties;
+import com.tibame.app_generator.enums.TaskStatus;
+import com.tibame.app_generator.model.WorkflowRun;
+import com.tibame.app_generator.repository.WorkflowRunRepository;
+import com.tibame.app_generator.service.WorkflowExecutor;
+import com.tibame.app_generator.service.admission.RunAdmissionService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WorkflowRecoveryTaskTest {
+
+    @Mock
+    private WorkflowRunRepository workflowRunRepository;
+
+    @Mock
+    private WorkflowExecutor workflowExecutor;
+
+    @Mock
+    private RunAdmissionService runAdmissionService;
+
+    @Spy
+    private WorkflowProperties workflowProperties = new WorkflowProperties();
+
+    @InjectMocks
+    private WorkflowRecoveryTask workflowRecoveryTask;
+
+    @Test
+    void resumeInterruptedRuns_ShouldResumeEveryRunningRun() {
+        WorkflowRun first = WorkflowRun.builder().id(UUID.randomUUID()).status(TaskStatus.RUNNING).build();
+        WorkflowRun second = WorkflowRun.builder().id(UUID.randomUUID()).status(TaskStatus.RUNNING).build();
+        when(workflowRunRepository.findByStatus(TaskStatus.RUNNING)).thenReturn(List.of(first, second));
+
+        workflowRecoveryTask.resumeInterruptedRuns();
+
+        verify(workflowExecutor).resumeRunAsync(first.getId());
+        verify(workflowExecutor).resumeRunAsync(second.getId());
+        verify(runAdmissionService).register(first);
+        verify(runAdmissionService).register(second);
+    }
+
+    @Test
+    void resumeInterruptedRuns_ShouldRequeuePendingRuns() {
+        WorkflowRun pending = WorkflowRun.builder().id(UUID.randomUUID()).status(TaskStatus.PENDING).build();
+        when(workflowRunRepository.findByStatusOrderByCreatedAtAsc(TaskStatus.PENDING)).thenReturn(List.of(pending));
+
+        workflowRecoveryTask.resumeInterruptedRuns();
+
+        verify(runAdmissionService).submit(pending);
+        verify(workflowExecutor, never()).resumeRunAsync(any());
+    }
+
+    @Test
+    void resumeInterruptedRuns_ShouldDoNothingWhenDisabled() {
+        workflowProperties.setResumeOnStartup(false);
+
+        workflowRecoveryTask.resumeInterruptedRuns();
+
+        verify(workflowRunRepository, never()).findByStatus(any());
+        verify(workflowExecutor, never()).resumeRunAsync(any());
+    }
+}
@@ -1,8 +1,8 @@
 import React, { useEffect, useState } from 'react';
 import { useTaskStore, Task } from '../../stores/useTaskStore';
-import { useWorkflowRunStore } from '../../stores/useWorkflowRunStore';
+import { useWorkflowRunStore, RunMode } from '../../stores/useWorkflowRunStore';
 import { useProjectStore } from '../../stores/useProjectStore';
-import { Play, RotateCcw, CheckCircle, XCircle, Clock, Loader2, ChevronDown, ChevronRight, Terminal, FileText, AlertTriangle, RefreshCw } from 'lucide-react';
+import { Play, RotateCcw, CheckCircle, XCircle, Clock, Loader2, ChevronDown, ChevronRight, Terminal, FileText, AlertTriangle, RefreshCw, Ban, Square } from 'lucide-react';
 import axios from 'axios';
 
 interface RunDetailsPanelProps {
@@ -10,8 +10,8 @@ interface RunDetailsPanelProps {
 }
 
 export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) => {
-  const { runs, currentRun, fetchRuns, fetchRun, startRun, retryRun, setCurrentRun } = useWorkflowRunStore();
-  const { tasks, fetchTasksByRun, connectionStatus } = useTaskStore();
+  const { runs, currentRun, fetchRuns, fetchRun, startRun, retryRun, cancelRun, setCurrentRun } = useWorkflowRunStore();
+  const { tasks, fetchTasksByRun, fetchTaskLog, fetchTaskResult, connectionStatus } = useTaskStore();
   const { canRun } = useProjectStore();
   const allowedToRun = canRun();
 
@@ -21,6 +21,15 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
     fetchRuns(projectId);
   }, [projectId]);
 
+  // Logs and results are not part of the task list and are loaded when a task is opened or finishes
+  const expandedStatus = expandedTaskId ? tasks[expandedTaskId]?.status : undefined;
+  useEffect(() => {
+    if (expandedTaskId) {
+      fetchTaskLog(projectId, expandedTaskId);
+      fetchTaskResult(projectId, expandedTaskId);
+    }
+  }, [expandedTaskId, expandedStatus, projectId]);
+
   useEffect(() => {
     if (runs.length > 0 && !currentRun) {
         setCurrentRun(runs[0]);
@@ -36,12 +45,12 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
   // Poll for run status if running
   useEffect(() => {
     let interval: NodeJS.Timeout;
-    if (currentRun && currentRun.status === 'RUNNING') {
+    if (currentRun && (currentRun.status === 'RUNNING' || currentRun.status === 'PENDING')) {
         interval = setInterval(async () => {
              // Refresh runs list to get updated status
              await fetchRuns(projectId);
              const updatedRun = await fetchRun(currentRun.id);
-             if (updatedRun && updatedRun.status !== 'RUNNING') {
+             if (updatedRun && updatedRun.status !== 'RUNNING' && updatedRun.status !== 'PENDING') {
                  // Status changed, maybe refresh tasks one last time
                  fetchTasksByRun(updatedRun.id);
              }
@@ -50,10 +59,10 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
     return () => clearInterval(interval);
   }, [currentRun?.status, currentRun?.id, projectId]);
 
-  const handleStartRun = async () => {
+  const handleStartRun = async (mode: RunMode = 'FULL') => {
     if (!allowedToRun) return;
     try {
-        await startRun(projectId);
+        await startRun(projectId, mode);
     } catch (e) {
         alert("Failed to start run");
     }
@@ -68,6 +77,15 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
       }
   };
 
+  const handleCancelRun = async () => {
+      if (!currentRun || !allowedToRun) return;
+      try {
+          await cancelRun(currentRun.id);
+      } catch (e) {
+          alert("Failed to cancel run");
+      }
+  };
+
   const runTasks = Object.values(tasks)
     .filter(t => t.workflowRunId === currentRun?.id)
     .sort((a, b) => new Date(a.createdAt).getTime() - new Date(b.createdAt).getTime());
@@ -88,7 +106,7 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
             >
                 {runs.map(run => (
                     <option key={run.id} value={run.id}>
-                        {new Date(run.createdAt).toLocaleString()} ({run.status})
+                        {new Date(run.createdAt).toLocaleString()} ({run.status}{run.status === 'PENDING' && run.queuePosition ? ` #${run.queuePosition} in queue` : ''})
                     </option>
                 ))}
                 {runs.length === 0 && <option value="">No runs</option>}
@@ -101,7 +119,18 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
         </div>
 
         <div className="flex gap-2">
-            {currentRun?.status === 'FAIL' && (
+            {(currentRun?.status === 'RUNNING' || currentRun?.status === 'PENDING') && (
+                <button
+                    onClick={handleCancelRun}
+                    disabled={!allowedToRun}
+                    className="flex items-center gap-1 px-2 py-1 text-xs bg-red-600 hover:bg-red-700 rounded text-white transition-colors disabled:opacity-50 disabled:cursor-not-allowed"
+                    title={allowedToRun ? "Cancel Run" : "Permission Denied"}
+                >
+                    <Square size={12} />
+                    Cancel
+                </button>
+            )}
+            {(currentRun?.status === 'FAIL' || currentRun?.status === 'CANCELLED') && (
                 <button
                     onClick={handleRetryRun}
                     disabled={!allowedToRun}
@@ -113,7 +142,16 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
                 </button>
             )}
             <button
-                onClick={handleStartRun}
+                onClick={() => handleStartRun('CHANGED')}
+                disabled={!allowedToRun}
+                className="flex items-center gap-1 px-2 py-1 text-xs bg-gray-600 hover:bg-gray-700 rounded text-white transition-colors disabled:opacity-50 disabled:cursor-not-allowed"
+                title={allowedToRun ? "Re-run only changed nodes and their descendants" : "Permission Denied"}
+            >
+                <RefreshCw size={12} />
+                Re-run Changed
+            </button>
+            <button
+                onClick={() => handleStartRun()}
                 disabled={!allowedToRun}
                 className="flex items-center gap-1 px-2 py-1 text-xs bg-blue-600 hover:bg-blue-700 rounded text-white transition-colors disabled:opacity-50 disabled:cursor-not-allowed"
                 title={allowedToRun ? "New Run" : "Permission Denied"}
@@ -133,13 +171,15 @@ export const RunDetailsPanel: React.FC<RunDetailsPanelProps> = ({ projectId }) =
              <div className="text-center text-gray-500 text-sm py-4">No tasks in this run.</div>
         )}
         {runTasks.map((task) => (
-          <TaskItem
-            key={task.id}
-            task={task}
-            isExpanded={expandedTaskId === task.id}
-            onToggle={() => setExpandedTaskId(expandedTaskId === task.id ? null : task.id)}
-            allowedToRetry={allowedToRun}
-          />
+          // Module subtasks are listed indented below the node task they generate
+          <div key={task.id} className={task.parentTaskId ? 'ml-4' : undefined}>
+            <TaskItem
+              task={task}
+              isExpanded={expandedTaskId === task.id}
+              onToggle={() => setExpandedTaskId(expandedTaskId === task.id ? null : task.id)}
+              allowedToRetry={allowedToRun}
+            />
+          </div>
         ))}
       </div>
     </div>
@@ -177,6 +217,7 @@ const TaskItem: React.FC<TaskItemProps> = ({ task, isExpanded, onToggle, allowed
             case 'RETRY_WAIT': return <RefreshCw size={16} className="text-orange-400 animate-spin" />;
             case 'SUCCESS': return <CheckCircle size={16} className="text-green-400" />;
             case 'FAIL': return <XCircle size={16} className="text-red-400" />;
+            case 'CANCELLED': return <Ban size={16} className="text-gray-500" />;
             default: return <Clock size={16} className="text-gray-400" />;
         }
     };
@@ -257,7 +298,12 @@ const TaskItem: React.FC<TaskItemProps> = ({ task, isExpanded, onToggle, allowed
 
                     <div className="p-2 font-mono text-xs text-gray-300 max-h-60 overflow-y-auto scrollbar-thin scrollbar-thumb-gray-600 scrollbar-track-transparent">
                         {selectedTab === 'log' && (
-                            <pre className="whitespace-pre-wrap">{task.logContent || 'No logs available.'}</pre>
+                            <>
+                                <pre className="whitespace-pre-wrap">{task.logContent || 'No logs available.'}</pre>
+                                {task.status === 'RUNNING' && task.streamedOutput && (
+                                    <pre className="whitespace-pre-wrap mt-2 pt-2 text-gray-400 border-t border-gray-800">{task.streamedOutput}</pre>
+                                )}
+                            </>
                         )}
                         {selectedTab === 'summary' && (
                             <div className="whitespace-pre-wrap">
@@ -276,6 +322,25 @@ const TaskItem: React.FC<TaskItemProps> = ({ task, isExpanded, onToggle, allowed
                                      </div>
                                 )}
 
+                                {task.promptVersion && (
+                                    <div className="mb-2 text-xs text-gray-500">
+                                        Prompt template: <span className="text-gray-300 font-mono">{task.promptVersion}</span>
+                                    </div>
+                                )}
+
+                                {task.promptCompaction && (
+                                    <div className="mb-2 p-2 bg-blue-950/20 border border-blue-900/30 rounded">
+                                        <div className="text-blue-300 text-xs font-semibold mb-1">
+                                            Input compacted: {task.promptCompaction.tokensBefore} → {task.promptCompaction.tokensAfter} tokens (budget {task.promptCompaction.budgetTokens})
+                                        </div>
+                                        {task.promptCompaction.decisions.map((decision, i) => (
+                                            <div key={i} className="text-xs text-gray-400">
+                                                {decision.action} {decision.path} ({decision.beforeChars} → {decision.afterChars} chars)
+                                            </div>
+                                        ))}
+                                    </div>
+                                )}
+
                                 {task.inputContext && (
                                     <div className="mb-2">
                                         <div className="text-gray-500 mb-1">Input Context:</div>
@@ -1,4 +1,4 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import { useTaskStore, Task } from '../../stores/useTaskStore';
 import { Play, CheckCircle, XCircle, Clock, Loader2, ChevronDown, ChevronRight, Terminal } from 'lucide-react';
 import axios from 'axios';
@@ -10,8 +10,19 @@ interface TaskPanelProps {
 export const TaskPanel: React.FC<TaskPanelProps> = ({ projectId }) => {
   const tasks = useTaskStore((state) => state.tasks);
   const connectionStatus = useTaskStore((state) => state.connectionStatus);
+  const fetchTaskLog = useTaskStore((state) => state.fetchTaskLog);
+  const fetchTaskResult = useTaskStore((state) => state.fetchTaskResult);
   const [expandedTaskId, setExpandedTaskId] = useState<string | null>(null);
 
+  // Logs and results are not part of the task list and are loaded when a task is opened or finishes
+  const expandedStatus = expandedTaskId ? tasks[expandedTaskId]?.status : undefined;
+  useEffect(() => {
+    if (expandedTaskId) {
+      fetchTaskLog(projectId, expandedTaskId);
+      fetchTaskResult(projectId, expandedTaskId);
+    }
+  }, [expandedTaskId, expandedStatus, projectId]);
+
   const handleSimulate = async () => {
     try {
       await axios.post(`/api/projects/${projectId}/tasks/simulate`);
@@ -103,6 +114,11 @@ const TaskItem: React.FC<{ task: Task; isExpanded: boolean; onToggle: () => void
                     <pre className="whitespace-pre-wrap max-h-40 overflow-y-auto p-1 scrollbar-thin scrollbar-thumb-gray-600 scrollbar-track-transparent">
                         {task.logContent || 'No logs available.'}
                     </pre>
+                    {task.status === 'RUNNING' && task.streamedOutput && (
+                        <pre className="whitespace-pre-wrap max-h-40 overflow-y-auto p-1 mt-1 text-gray-400 border-t border-gray-800 scrollbar-thin scrollbar-thumb-gray-600 scrollbar-track-transparent">
+                            {task.streamedOutput}
+                        </pre>
+                    )}
                 </div>
             )}
         </div>
@@ -1,36 +1,46 @@
 import { create } from 'zustand';
 import axios from 'axios';
 
-export type TaskStatus = 'PENDING' | 'RUNNING' | 'SUCCESS' | 'FAIL' | 'RETRY_WAIT';
+export type TaskStatus = 'PENDING' | 'RUNNING' | 'SUCCESS' | 'FAIL' | 'RETRY_WAIT' | 'CANCELLED';
 
 export interface Task {
   id: string;
   projectId: string;
   workflowRunId?: string;
+  parentTaskId?: string; // Set on module subtasks of a node task
   agentType: string;
   taskName: string;
   status: TaskStatus;
   progressPct: number;
-  logContent: string;
+  logContent?: string; // Loaded from the log tail, then extended by events
+  streamedOutput?: string; // Raw model output received so far while the task runs
   inputContext?: any;
-  contextData?: any;
+  contextData?: any; // Result of the task, fetched separately; events only refer to it
   retryCount?: number;
   maxRetries?: number;
   backoffFactor?: number;
   attemptHistory?: Array<{timestamp: string, error: string, attempt: number}>;
   isRetryable?: boolean;
   errorDetails?: string;
+  promptVersion?: string;
+  promptCompaction?: {
+    budgetTokens: number;
+    tokensBefore: number;
+    tokensAfter: number;
+    decisions: Array<{path: string, action: string, beforeChars: number, afterChars: number}>;
+  };
   createdAt: string;
 }
 
 export interface TaskEvent {
-  type: 'QUEUED' | 'RUNNING' | 'STEP_START' | 'STEP_COMPLETE' | 'PROGRESS' | 'COMPLETED' | 'FAILED' | 'RETRY_SCHEDULED';
+  type: 'QUEUED' | 'RUNNING' | 'STEP_START' | 'STEP_COMPLETE' | 'PROGRESS' | 'COMPLETED' | 'FAILED' | 'RETRY_SCHEDULED' | 'CANCELLED' | 'OUTPUT_DELTA' | 'FILE_READY';
   projectId: string;
   taskId: string;
   taskName: string;
+  status?: TaskStatus;
   progress: number;
-  message: string;
-  payload: any;
+  message: string; // New log line(s), several when progress events were coalesced; a slow connection may skip some
+  payload: any; // Small event data only, e.g. { resultUrl } on COMPLETED or { path, length } on FILE_READY
   timestamp: string;
 }
 
@@ -41,6 +51,8 @@ interface TaskState {
   setConnectionStatus: (status: 'connected' | 'disconnected' | 'connecting') => void;
   fetchTasks: (projectId: string) => Promise<void>;
   fetchTasksByRun: (runId: string) => Promise<void>;
+  fetchTaskLog: (projectId: string, taskId: string) => Promise<void>;
+  fetchTaskResult: (projectId: string, taskId: string) => Promise<void>;
   handleEvent: (event: TaskEvent) => void;
 }
 
@@ -82,6 +94,31 @@ export const useTaskStore = create<TaskState>((set, get) => ({
       }
   },
 
+  fetchTaskLog: async (projectId, taskId) => {
+      try {
+          const response = await axios.get(`/api/projects/${projectId}/tasks/${taskId}/logs/tail`, {
+              params: { lines: 200 }
+          });
+          const logContent = response.data.map((line: { message: string }) => line.message).join('\n');
+          set((state) => state.tasks[taskId]
+              ? { tasks: { ...state.tasks, [taskId]: { ...state.tasks[taskId], logContent } } }
+              : state);
+      } catch (error) {
+          console.error('Failed to fetch task log', error);
+      }
+  },
+
+  fetchTaskResult: async (projectId, taskId) => {
+      try {
+          const response = await axios.get(`/api/projects/${projectId}/tasks/${taskId}/result`);
+          set((state) => state.tasks[taskId]
+              ? { tasks: { ...state.tasks, [taskId]: { ...state.tasks[taskId], contextData: response.data } } }
+              : state);
+      } catch (error) {
+          console.error('Failed to fetch task result', error);
+      }
+  },
+
   handleEvent: (event) => {
     const { tasks } = get();
     const existingTask = tasks[event.taskId];
@@ -97,21 +134,28 @@ export const useTaskStore = create<TaskState>((set, get) => ({
             taskName: event.taskName,
             status: 'PENDING',
             progressPct: event.progress || 0,
-            logContent: event.message || '',
+            logContent: event.type === 'OUTPUT_DELTA' ? '' : event.message || '',
             createdAt: event.timestamp
         };
     } else {
         newTask = { ...existingTask };
     }
 
+    // Streamed model output is appended verbatim and does not touch the log or status
+    if (event.type === 'OUTPUT_DELTA') {
+        newTask.streamedOutput = (newTask.streamedOutput || '') + (event.message || '');
+        set({ tasks: { ...tasks, [event.taskId]: newTask } });
+        return;
+    }
+
     // Update progress
     if (event.progress !== null && event.progress !== undefined) {
         newTask.progressPct = event.progress;
     }
 
-    // Update context
-    if (event.payload) {
-        newTask.contextData = event.payload;
+    // A new result is fetched when the task is opened, the event only points to it
+    if (event.payload?.resultUrl) {
+        newTask.contextData = undefined;
     }
 
     // Append log
@@ -126,6 +170,7 @@ export const useTaskStore = create<TaskState>((set, get) => ({
             break;
         case 'RUNNING':
             newTask.status = 'RUNNING';
+            newTask.streamedOutput = undefined;
             break;
         case 'COMPLETED':
             newTask.status = 'SUCCESS';
@@ -135,6 +180,9 @@ export const useTaskStore = create<TaskState>((set, get) => ({
             newTask.status = 'FAIL';
             newTask.errorDetails = event.message;
             break;
+        case 'CANCELLED':
+            newTask.status = 'CANCELLED';
+            break;
         case 'RETRY_SCHEDULED':
             newTask.status = 'RETRY_WAIT';
             // We could update retry history here if payload contained it,
@@ -148,5 +196,10 @@ export const useTaskStore = create<TaskState>((set, get) => ({
             [event.taskId]: newTask
         }
     });
+
+    // Progress events skipped for a slow connection took their log lines along, the stored log is complete
+    if (event.type === 'COMPLETED' || event.type === 'FAILED' || event.type === 'CANCELLED') {
+        get().fetchTaskLog(event.projectId, event.taskId);
+    }
   }
 }));
@@ -1,13 +1,20 @@
 import { create } from 'zustand';
 import axios from 'axios';
 
-export type RunStatus = 'PENDING' | 'RUNNING' | 'SUCCESS' | 'FAIL';
+export type RunStatus = 'PENDING' | 'RUNNING' | 'SUCCESS' | 'FAIL' | 'CANCELLED';
+
+// CHANGED reuses results of nodes unchanged since the last successful run
+export type RunMode = 'FULL' | 'CHANGED';
 
 export interface WorkflowRun {
   id: string;
   projectId: string;
   status: RunStatus;
-  startedAt: string;
+  startedAt?: string;
+  // Position in the admission queue while the run is PENDING
+  queuePosition?: number;
+  sourceRunId?: string;
+  reusedNodes?: number;
   endedAt?: string;
   createdAt: string;
   updatedAt: string;
@@ -20,8 +27,9 @@ interface WorkflowRunState {
 
   fetchRuns: (projectId: string) => Promise<void>;
   fetchRun: (runId: string) => Promise<WorkflowRun | null>;
-  startRun: (projectId: string) => Promise<void>;
+  startRun: (projectId: string, mode?: RunMode) => Promise<void>;
   retryRun: (runId: string) => Promise<void>;
+  cancelRun: (runId: string) => Promise<void>;
   setCurrentRun: (run: WorkflowRun | null) => void;
 }
 
@@ -57,9 +65,9 @@ export const useWorkflowRunStore = create<WorkflowRunState>((set, get) => ({
     }
   },
 
-  startRun: async (projectId) => {
+  startRun: async (projectId, mode = 'FULL') => {
     try {
-      const response = await axios.post(`/api/projects/${projectId}/runs`);
+      const response = await axios.post(`/api/projects/${projectId}/runs`, null, { params: { mode } });
       const newRun = response.data;
       set((state) => ({
           runs: [newRun, ...state.runs],
@@ -73,13 +81,13 @@ export const useWorkflowRunStore = create<WorkflowRunState>((set, get) => ({
 
   retryRun: async (runId) => {
     try {
-        await axios.post(`/api/runs/${runId}/retry`);
-        // Optimistically update status
+        const response = await axios.post(`/api/runs/${runId}/retry`);
+        // RUNNING, or PENDING with its queue position when the run has to wait for admission
+        const resumedRun = response.data;
         const { runs, currentRun } = get();
-        const updatedRuns = runs.map(r => r.id === runId ? { ...r, status: 'RUNNING' as RunStatus } : r);
-        set({ runs: updatedRuns });
+        set({ runs: runs.map(r => r.id === runId ? { ...r, ...resumedRun } : r) });
         if (currentRun?.id === runId) {
-            set({ currentRun: { ...currentRun, status: 'RUNNING' } });
+            set({ currentRun: { ...currentRun, ...resumedRun } });
         }
     } catch (error) {
         console.error('Failed to retry run', error);
@@ -87,5 +95,20 @@ export const useWorkflowRunStore = create<WorkflowRunState>((set, get) => ({
     }
   },
 
+  cancelRun: async (runId) => {
+    try {
+        const response = await axios.post(`/api/runs/${runId}/cancel`);
+        const cancelledRun = response.data;
+        const { runs, currentRun } = get();
+        set({ runs: runs.map(r => r.id === runId ? { ...r, ...cancelledRun } : r) });
+        if (currentRun?.id === runId) {
+            set({ currentRun: { ...currentRun, ...cancelledRun } });
+        }
+    } catch (error) {
+        console.error('Failed to cancel run', error);
+        throw error;
+    }
+  },
+
   setCurrentRun: (run) => set({ currentRun: run })
 }));